@@ -1,6 +1,5 @@
 package com.example.wuxio.constraint;
 
-import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -13,10 +12,10 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.example.bitmapreader.BitmapReader;
 import com.example.constraintlayout.Constraint;
 import com.example.constraintlayout.ConstraintLayout;
 import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+import com.example.constraintlayout.image.ImageBinder;
 import com.example.jsonparser.JsonParser;
 
 import java.io.StringReader;
@@ -394,14 +393,7 @@ public class JsonFragment extends Fragment {
                     Integer index = (Integer) mViewFromJson.getViewData(position);
                     int picRes = pics[index];
 
-                    Bitmap bitmap = BitmapReader.decodeMaxSampledBitmap(
-                            getResources(),
-                            picRes,
-                            width,
-                            height
-                    );
-
-                    ((ImageView) view).setImageBitmap(bitmap);
+                    ImageBinder.get(getContext()).bind((ImageView) view, picRes, width, height);
 
                 } else if (layoutType == 1) {
 
@@ -409,9 +401,7 @@ public class JsonFragment extends Fragment {
 
                     int size = mConstraint.getWeightWidth(3, 1, 20 * 4);
                     int picRes = pics[index];
-                    Bitmap bitmap = BitmapReader.decodeMaxSampledBitmap(getResources(), picRes, size, size);
-
-                    ((ImageView) view).setImageBitmap(bitmap);
+                    ImageBinder.get(getContext()).bind((ImageView) view, picRes, size, size);
                 }
             }
         }
@@ -20,6 +20,7 @@ import android.widget.TextView;
 import com.example.constraintlayout.Constraint;
 import com.example.constraintlayout.ConstraintLayout;
 import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+import com.example.constraintlayout.image.ImageBinder;
 import com.example.wuxio.constraint.bean.GankBean;
 import com.example.wuxio.constraint.bean.GankJson;
 
@@ -193,9 +194,7 @@ public class RecyclerFragment extends Fragment {
                 return mTextView3;
             } else {
 
-                ImageView imageView = new ImageView(getContext());
-                imageView.setImageResource(R.drawable.ace);
-                return imageView;
+                return new ImageView(getContext());
             }
         }
 
@@ -227,12 +226,12 @@ public class RecyclerFragment extends Fragment {
             } else if (position == 1) {
                 constraint.leftToLeftOfParent(20).topToBottomOfView(0, 20);
             } else if (position == 2) {
-                constraint.rightToRightOfParent(-20).topToBottomOfView(0, 20);
+                constraint.rightToRightOfParent(-20).baselineToBaselineOfView(1, 0);
             } else if (position == 3) {
                 constraint.leftToLeftOfParent(0)
                         .rightToRightOfParent(0)
                         .setHorizontalBias(0.5f)
-                        .topToBottomOfView(0, 20);
+                        .baselineToBaselineOfView(1, 0);
             } else if (position == 4) {
 
                 int size = constraint.getWeightWidth(3, 1, 20 * 4);
@@ -252,6 +251,15 @@ public class RecyclerFragment extends Fragment {
         }
 
 
+        @Override
+        public void afterMeasure(int position, View view) {
+
+            if (position >= 4) {
+                ImageBinder.get(getContext()).bind((ImageView) view, R.drawable.ace);
+            }
+        }
+
+
         @Override
         public int getChildCount() {
 
@@ -1,9 +1,13 @@
 package com.example.wuxio.constraint;
 
+import android.graphics.Paint;
+import android.graphics.drawable.ColorDrawable;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
+import android.text.Layout;
+import android.text.TextPaint;
 import android.util.TypedValue;
 import android.view.Gravity;
 import android.view.LayoutInflater;
@@ -16,6 +20,9 @@ import com.example.banner.BannerView;
 import com.example.banner.adapter.BasePagerAdapter;
 import com.example.constraintlayout.Constraint;
 import com.example.constraintlayout.ConstraintLayout;
+import com.example.constraintlayout.DrawableItem;
+import com.example.constraintlayout.RenderItem;
+import com.example.constraintlayout.TextItem;
 import com.example.constraintlayout.adapter.BaseConstraintAdapter;
 
 import java.util.Locale;
@@ -89,8 +96,17 @@ public class TaoFragment extends Fragment {
 
     //============================ nbl ============================
 
+    /**
+     * 图标下面的文字,使用绘制项,不需要创建view
+     */
+    private static final String[] ICON_LABELS = {
+            "阅读", "自我", "政策", "警务", "英语", "建筑", "美食", "音乐", "历史", "篮球"
+    };
+
     private class ConstraintAdapter extends BaseConstraintAdapter {
 
+        private TextPaint mLabelPaint;
+
         @Override
         public View generateViewTo(int position) {
 
@@ -376,6 +392,56 @@ public class TaoFragment extends Fragment {
 
             return 43;
         }
+
+
+        /**
+         * 每个图标下面一个文字,头条下面一条分隔线
+         */
+        @Override
+        public int getRenderItemCount() {
+
+            return ICON_LABELS.length + 1;
+        }
+
+
+        @Override
+        public RenderItem generateRenderItemTo(int index) {
+
+            if (index < ICON_LABELS.length) {
+                if (mLabelPaint == null) {
+                    mLabelPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+                    mLabelPaint.setTextSize(TypedValue.applyDimension(
+                            TypedValue.COMPLEX_UNIT_SP, 12, getResources().getDisplayMetrics()));
+                }
+                TextItem item = new TextItem(ICON_LABELS[index], mLabelPaint);
+                item.setAlignment(Layout.Alignment.ALIGN_CENTER);
+                item.setLayoutSize(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+                return item;
+            }
+
+            DrawableItem divider = new DrawableItem(new ColorDrawable(getResources().getColor(R.color.skyblue)));
+            divider.setLayoutSize(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
+            return divider;
+        }
+
+
+        @Override
+        public Constraint generateRenderConstraintTo(int index, Constraint constraint, RenderItem item) {
+
+            if (index < ICON_LABELS.length) {
+
+                int icon = index + 1;
+                constraint.leftToLeftOfView(icon, 0)
+                        .rightToRightOfView(icon, 0)
+                        .topToBottomOfView(icon, 10);
+            } else {
+
+                constraint.leftToLeftOfParent(20)
+                        .rightToRightOfParent(-20)
+                        .topToBottomOfView(13, 9, 2);
+            }
+            return constraint;
+        }
     }
 
 
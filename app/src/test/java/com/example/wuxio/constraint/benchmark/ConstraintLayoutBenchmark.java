@@ -0,0 +1,279 @@
+package com.example.wuxio.constraint.benchmark;
+
+import android.support.v4.app.Fragment;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+
+import com.example.constraintlayout.ConstraintLayout;
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+import com.example.constraintlayout.stats.LayoutStats;
+import com.example.wuxio.constraint.FlowFragment;
+import com.example.wuxio.constraint.JsonFragment;
+import com.example.wuxio.constraint.RecyclerFragment;
+import com.example.wuxio.constraint.TaoFragment;
+import com.example.wuxio.constraint.YunFragment;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowView;
+import org.robolectric.shadows.support.v4.SupportFragmentController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * 在JVM上使用Robolectric重放示例页面的adapter,统计{@link ConstraintLayout#onMeasure(int, int)}/
+ * {@link ConstraintLayout#onLayout(boolean, int, int, int, int)}在不同宽度下的耗时,子view测量次数,布局请求次数,
+ * 用于在没有设备的情况下检查对布局的优化
+ * <p>
+ * 耗时较长并且只输出统计数据,默认跳过,使用 -Dlayout.benchmark=true 运行:
+ * ./gradlew :app:testDebugUnitTest --tests '*ConstraintLayoutBenchmark*' -Dlayout.benchmark=true
+ *
+ * @author wuxio
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class ConstraintLayoutBenchmark {
+
+    /**
+     * 开启基准测试的系统属性
+     */
+    static final String BENCHMARK_PROPERTY = "layout.benchmark";
+
+    /**
+     * 测试的宽度
+     */
+    private static final int[] WIDTHS = {480, 720, 1080, 1440};
+
+    /**
+     * 预热次数,不统计
+     */
+    private static final int WARM_UP = 20;
+
+    /**
+     * 统计次数
+     */
+    private static final int PASSES = 50;
+
+    /**
+     * recycler 测量时的高度
+     */
+    private static final int RECYCLER_HEIGHT = 1920;
+
+
+    @Before
+    public void checkEnabled() {
+
+        Assume.assumeTrue("benchmark disabled, run with -D" + BENCHMARK_PROPERTY + "=true",
+                          Boolean.getBoolean(BENCHMARK_PROPERTY));
+    }
+
+
+    @Test
+    public void yun() {
+
+        runFragment("Yun", YunFragment.newInstance());
+    }
+
+
+    @Test
+    public void tao() {
+
+        runFragment("Tao", TaoFragment.newInstance());
+    }
+
+
+    @Test
+    public void recyclerItem() {
+
+        runFragment("RecyclerItem", RecyclerFragment.newInstance());
+    }
+
+
+    @Test
+    public void json() {
+
+        runFragment("Json", JsonFragment.newInstance());
+    }
+
+
+    @Test
+    public void flow() {
+
+        runFragment("Flow", FlowFragment.newInstance());
+    }
+
+    //============================ 执行 ============================
+
+
+    private void runFragment(String name, Fragment fragment) {
+
+        SupportFragmentController.setupFragment(fragment);
+        View root = fragment.getView();
+        assertTrue(name + " has no view", root != null);
+
+        for (int width : WIDTHS) {
+
+            /* recycler 的条目在布局之后才会创建,先让根布局完成一次测量布局 */
+
+            measureAndLayout(root, width, RECYCLER_HEIGHT);
+
+            List< ConstraintLayout > layouts = new ArrayList<>();
+            findConstraintLayouts(root, layouts);
+            assertTrue(name + " has no ConstraintLayout", layouts.size() > 0);
+
+            for (int i = 0; i < layouts.size(); i++) {
+                runLayout(name + "#" + i, layouts.get(i), width);
+            }
+        }
+    }
+
+
+    private void runLayout(String name, ConstraintLayout layout, int width) {
+
+        CountingAdapter adapter = wrapAdapter(layout);
+
+        for (int i = 0; i < WARM_UP; i++) {
+            runPass(layout, width);
+        }
+
+        long totalNanos = 0;
+        long maxNanos = 0;
+        int layoutRequests = 0;
+        adapter.reset();
+        LayoutStats stats = layout.getLayoutStats();
+        stats.reset();
+
+        for (int i = 0; i < PASSES; i++) {
+
+            resetLayoutRequests(layout);
+
+            long start = System.nanoTime();
+            runPass(layout, width);
+            long cost = System.nanoTime() - start;
+
+            totalNanos += cost;
+            if (cost > maxNanos) {
+                maxNanos = cost;
+            }
+            layoutRequests += countLayoutRequests(layout);
+        }
+
+        System.out.println(String.format(
+                Locale.ENGLISH,
+                "%-16s width=%4d children=%3d avg=%8.1fus max=%8.1fus constraints/pass=%5.1f " +
+                        "measures/pass=%5.1f (skipped %5.1f) layouts/pass=%5.1f views=%d layoutRequests/pass=%5.1f",
+                name,
+                width,
+                adapter.getChildCount(),
+                totalNanos / 1000f / PASSES,
+                maxNanos / 1000f,
+                adapter.constraintGenerated * 1f / PASSES,
+                stats.getChildMeasured() * 1f / PASSES,
+                stats.getChildMeasureSkipped() * 1f / PASSES,
+                adapter.childLaidOut * 1f / PASSES,
+                adapter.viewGenerated,
+                layoutRequests * 1f / PASSES
+        ));
+
+        assertTrue(name + " measured nothing", adapter.childMeasured > 0);
+        assertTrue(name + " lost measure stats",
+                   stats.getChildMeasured() + stats.getChildMeasureSkipped() == adapter.childMeasured);
+
+        layout.setAdapter(adapter.getDelegate());
+    }
+
+
+    /**
+     * 一次完整的测量布局过程,宽度固定,高度不限制(和在ScrollView中一样)
+     */
+    private void runPass(ConstraintLayout layout, int width) {
+
+        layout.forceLayout();
+        layout.measure(
+                MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED)
+        );
+        layout.layout(0, 0, layout.getMeasuredWidth(), layout.getMeasuredHeight());
+    }
+
+    //============================ 辅助 ============================
+
+
+    private CountingAdapter wrapAdapter(ConstraintLayout layout) {
+
+        BaseConstraintAdapter adapter = layout.getAdapter();
+        if (adapter instanceof CountingAdapter) {
+            return (CountingAdapter) adapter;
+        }
+
+        CountingAdapter countingAdapter = new CountingAdapter(adapter);
+        layout.setAdapter(countingAdapter);
+        return countingAdapter;
+    }
+
+
+    private void measureAndLayout(View root, int width, int height) {
+
+        root.measure(
+                MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(height, MeasureSpec.AT_MOST)
+        );
+        root.layout(0, 0, root.getMeasuredWidth(), root.getMeasuredHeight());
+    }
+
+
+    private void findConstraintLayouts(View view, List< ConstraintLayout > out) {
+
+        if (view instanceof ConstraintLayout) {
+            out.add((ConstraintLayout) view);
+            return;
+        }
+
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                findConstraintLayouts(group.getChildAt(i), out);
+            }
+        }
+    }
+
+
+    private void resetLayoutRequests(ConstraintLayout layout) {
+
+        shadowOf(layout).setDidRequestLayout(false);
+        for (int i = 0; i < layout.getChildCount(); i++) {
+            shadowOf(layout.getChildAt(i)).setDidRequestLayout(false);
+        }
+    }
+
+
+    /**
+     * @return 一次测量布局过程中,布局和子view请求重新布局的次数
+     */
+    private int countLayoutRequests(ConstraintLayout layout) {
+
+        int count = 0;
+
+        ShadowView shadow = shadowOf(layout);
+        if (shadow.didRequestLayout()) {
+            count++;
+        }
+
+        for (int i = 0; i < layout.getChildCount(); i++) {
+            if (shadowOf(layout.getChildAt(i)).didRequestLayout()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.wuxio.constraint.benchmark;
+
+import android.view.View;
+
+import com.example.constraintlayout.Constraint;
+import com.example.constraintlayout.ConstraintLayout;
+import com.example.constraintlayout.RenderItem;
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+
+/**
+ * 包装一个{@link BaseConstraintAdapter},统计每次测量布局过程中adapter被调用的次数,用于基准测试
+ *
+ * @author wuxio
+ */
+class CountingAdapter extends BaseConstraintAdapter {
+
+    private final BaseConstraintAdapter mDelegate;
+
+    /**
+     * 统计数据
+     */
+    int viewGenerated;
+    int constraintGenerated;
+    int childMeasured;
+    int childLaidOut;
+
+
+    CountingAdapter(BaseConstraintAdapter delegate) {
+
+        mDelegate = delegate;
+    }
+
+
+    BaseConstraintAdapter getDelegate() {
+
+        return mDelegate;
+    }
+
+
+    /**
+     * 清空统计数据,每次测量之前调用
+     */
+    void reset() {
+
+        viewGenerated = 0;
+        constraintGenerated = 0;
+        childMeasured = 0;
+        childLaidOut = 0;
+    }
+
+
+    @Override
+    public View generateViewTo(int position) {
+
+        viewGenerated++;
+        return mDelegate.generateViewTo(position);
+    }
+
+
+    @Override
+    public ConstraintLayout.LayoutParams generateLayoutParamsTo(int position, View view) {
+
+        return mDelegate.generateLayoutParamsTo(position, view);
+    }
+
+
+    @Override
+    public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+        constraintGenerated++;
+        return mDelegate.generateConstraintTo(position, constraint, view);
+    }
+
+
+    @Override
+    public int getChildCount() {
+
+        return mDelegate.getChildCount();
+    }
+
+
+    @Override
+    public long getItemKey(int position) {
+
+        return mDelegate.getItemKey(position);
+    }
+
+
+    @Override
+    public int getRenderItemCount() {
+
+        return mDelegate.getRenderItemCount();
+    }
+
+
+    @Override
+    public RenderItem generateRenderItemTo(int index) {
+
+        return mDelegate.generateRenderItemTo(index);
+    }
+
+
+    @Override
+    public Constraint generateRenderConstraintTo(int index, Constraint constraint, RenderItem item) {
+
+        return mDelegate.generateRenderConstraintTo(index, constraint, item);
+    }
+
+
+    @Override
+    public void beforeMeasure(int position, View view) {
+
+        childMeasured++;
+        mDelegate.beforeMeasure(position, view);
+    }
+
+
+    @Override
+    public void afterMeasure(int position, View view) {
+
+        mDelegate.afterMeasure(position, view);
+    }
+
+
+    @Override
+    public void beforeLayout(int position, View view) {
+
+        childLaidOut++;
+        mDelegate.beforeLayout(position, view);
+    }
+
+
+    @Override
+    public void afterLayout(int position, View view) {
+
+        mDelegate.afterLayout(position, view);
+    }
+}
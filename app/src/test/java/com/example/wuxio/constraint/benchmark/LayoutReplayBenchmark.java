@@ -0,0 +1,187 @@
+package com.example.wuxio.constraint.benchmark;
+
+import android.support.v4.app.Fragment;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+
+import com.example.constraintlayout.ConstraintLayout;
+import com.example.constraintlayout.LayoutRecorder;
+import com.example.constraintlayout.LayoutReplay;
+import com.example.wuxio.constraint.JsonFragment;
+import com.example.wuxio.constraint.YunFragment;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.support.v4.SupportFragmentController;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 重放{@link LayoutRecorder}录制的测量过程,统计求解部分的耗时;
+ * 使用 -Dlayout.recordings=目录 重放在设备上录制的文件(*.clrec),没有指定时先录制示例页面,保存之后再读取重放
+ * <p>
+ * 和{@link ConstraintLayoutBenchmark}相同默认跳过,使用 -Dlayout.benchmark=true 开启:
+ * <p>
+ * ./gradlew :app:testDebugUnitTest --tests '*LayoutReplayBenchmark*' -Dlayout.benchmark=true -Dlayout.recordings=/path/to/recordings
+ *
+ * @author wuxio
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class LayoutReplayBenchmark {
+
+    private static final String RECORDINGS_PROPERTY = "layout.recordings";
+    private static final String SUFFIX              = ".clrec";
+
+    private static final int WARM_UP = 200;
+    private static final int PASSES  = 1000;
+
+    /**
+     * 录制时的宽度,高度不限制
+     */
+    private static final int[] WIDTHS = {720, 1080};
+
+
+    @Before
+    public void checkEnabled() {
+
+        String property = ConstraintLayoutBenchmark.BENCHMARK_PROPERTY;
+        Assume.assumeTrue("benchmark disabled, run with -D" + property + "=true",
+                          Boolean.getBoolean(property));
+    }
+
+
+    @Test
+    public void replayRecordings() throws IOException {
+
+        String directory = System.getProperty(RECORDINGS_PROPERTY);
+        if (directory != null) {
+            File[] files = new File(directory).listFiles();
+            assertTrue("no recordings in " + directory, files != null);
+            for (File file : files) {
+                if (file.getName().endsWith(SUFFIX)) {
+                    runReplay(file.getName(), readFile(file));
+                }
+            }
+            return;
+        }
+
+        runReplay("Yun", recordToFile("Yun", YunFragment.newInstance()));
+        runReplay("Json", recordToFile("Json", JsonFragment.newInstance()));
+    }
+
+    //============================ 录制 ============================
+
+
+    /**
+     * 录制页面中所有{@link ConstraintLayout}在不同宽度下的测量,保存到临时文件之后读回
+     */
+    private LayoutReplay recordToFile(String name, Fragment fragment) throws IOException {
+
+        SupportFragmentController.setupFragment(fragment);
+        View root = fragment.getView();
+        assertTrue(name + " has no view", root != null);
+
+        List< ConstraintLayout > layouts = new ArrayList<>();
+        findConstraintLayouts(root, layouts);
+        assertTrue(name + " has no ConstraintLayout", layouts.size() > 0);
+
+        LayoutRecorder recorder = new LayoutRecorder();
+        for (ConstraintLayout layout : layouts) {
+            layout.setLayoutRecorder(recorder);
+            for (int width : WIDTHS) {
+                layout.forceLayout();
+                layout.measure(
+                        MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                        MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED)
+                );
+            }
+            layout.setLayoutRecorder(null);
+        }
+        assertEquals(layouts.size() * WIDTHS.length, recorder.getPassCount());
+
+        File file = File.createTempFile(name, SUFFIX);
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file)) {
+            recorder.writeTo(out);
+        }
+        return readFile(file);
+    }
+
+
+    private LayoutReplay readFile(File file) throws IOException {
+
+        try (InputStream in = new FileInputStream(file)) {
+            return LayoutReplay.read(in);
+        }
+    }
+
+    //============================ 重放 ============================
+
+
+    private void runReplay(String name, LayoutReplay replay) {
+
+        for (int i = 0; i < WARM_UP; i++) {
+            replay.replay();
+        }
+        final int specChecksum = replay.getSpecChecksum();
+
+        long totalNanos = 0;
+        long minNanos = Long.MAX_VALUE;
+        for (int i = 0; i < PASSES; i++) {
+            long cost = replay.replay();
+            totalNanos += cost;
+            minNanos = Math.min(minNanos, cost);
+            assertEquals(name + " replay generated different specs", specChecksum, replay.getSpecChecksum());
+        }
+
+        System.out.println(String.format(
+                Locale.ENGLISH,
+                "%-16s passes=%3d positions=%5d avg=%8.1fus min=%8.1fus per-position=%6.1fns mismatches=%d specs=%08x",
+                name,
+                replay.getPassCount(),
+                replay.getPositionCount(),
+                totalNanos / 1000f / PASSES,
+                minNanos / 1000f,
+                replay.getPositionCount() == 0 ? 0f : totalNanos * 1f / PASSES / replay.getPositionCount(),
+                replay.getMismatchCount(),
+                specChecksum
+        ));
+
+        assertEquals(name + " replay differs from recording", 0, replay.getMismatchCount());
+    }
+
+    //============================ 辅助 ============================
+
+
+    private void findConstraintLayouts(View view, List< ConstraintLayout > out) {
+
+        if (view instanceof ConstraintLayout) {
+            out.add((ConstraintLayout) view);
+            return;
+        }
+
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                findConstraintLayouts(group.getChildAt(i), out);
+            }
+        }
+    }
+}
@@ -5,9 +5,9 @@ package com.example.constraintlayout;
  */
 
 import android.graphics.Rect;
+import android.util.Log;
 import android.view.View;
-
-import java.util.Locale;
+import android.view.ViewGroup;
 
 import static android.view.ViewGroup.LayoutParams.WRAP_CONTENT;
 
@@ -21,6 +21,18 @@ public class Constraint {
 
     private static final String TAG = "Constraint";
 
+    /**
+     * 约束方法中偏移量和尺寸的单位,{@link #setUnit(int)}
+     */
+    public static final int UNIT_PX = 0;
+    public static final int UNIT_DP = 1;
+    public static final int UNIT_SP = 2;
+
+    /**
+     * 单位换算比例使用16位小数的定点数,这个值表示1
+     */
+    static final int UNIT_SCALE_ONE = 1 << 16;
+
     /**
      * 约束后的尺寸
      */
@@ -29,25 +41,65 @@ public class Constraint {
     int right;
     int bottom;
 
+    /**
+     * baseline 对齐时,自己的baseline需要在的坐标
+     */
+    int baseline;
+
     /**
      * 水平/竖直方向有剩余空间时,偏移比
      */
     float horizontalBias = 0f;
     float verticalBias   = 0f;
 
+    /**
+     * 宽高的范围,在生成measureSpec时生效
+     */
+    private int minWidth;
+    private int maxWidth  = Integer.MAX_VALUE;
+    private int minHeight;
+    private int maxHeight = Integer.MAX_VALUE;
+
+    /**
+     * 宽高比:{@link #RATIO_HEIGHT_FROM_WIDTH} 高度 = 宽度 * ratio,{@link #RATIO_WIDTH_FROM_HEIGHT} 宽度 = 高度 * ratio
+     */
+    private static final int RATIO_NONE              = 0;
+    private static final int RATIO_HEIGHT_FROM_WIDTH = 1;
+    private static final int RATIO_WIDTH_FROM_HEIGHT = 2;
+
+    private int   ratioMode = RATIO_NONE;
+    private float ratio;
+
+    /**
+     * 当前单位到像素的换算比例,定点数,由布局在配置变化时计算好
+     */
+    private int unitScale = UNIT_SCALE_ONE;
+
     /**
      * 3位表示left是否有约束,1为有,0为没有
      * 2位表示top是否有约束,1为有,0为没有
      * 1位表示right是否有约束,1为有,0为没有
      * 0位表示bottom是否有约束,1为有,0为没有
+     * 4位表示baseline是否有约束,有约束时竖直方向按baseline对齐
      */
     private int stateFlags;
 
+    /**
+     * 父布局是wrap_content时,相对父布局右边/底边的边暂时以0为基准,内容尺寸确定之后再加上;
+     * 每一位表示一条边,位置与{@link EdgeRelations}中边的序号相同
+     */
+    private int deferredFlags;
+
     /**
      * 一个支持约束的布局
      */
     private ConstraintSupport mParent;
 
+    /**
+     * 求解模式下记录每条边的来源,平时为null
+     */
+    EdgeRelations mRelations;
+
 
     @Override
     public String toString() {
@@ -74,6 +126,15 @@ public class Constraint {
     }
 
 
+    /**
+     * @return 生成约束使用的布局
+     */
+    ConstraintSupport getSupport() {
+
+        return mParent;
+    }
+
+
     /**
      * 重置状态
      */
@@ -88,6 +149,21 @@ public class Constraint {
         verticalBias = 0f;
 
         stateFlags = 0;
+        deferredFlags = 0;
+        baseline = 0;
+
+        minWidth = 0;
+        maxWidth = Integer.MAX_VALUE;
+        minHeight = 0;
+        maxHeight = Integer.MAX_VALUE;
+        ratioMode = RATIO_NONE;
+        ratio = 0f;
+
+        unitScale = mParent.getUnitScale(mParent.getDefaultUnit());
+
+        if (mRelations != null) {
+            mRelations.clear();
+        }
     }
 
 
@@ -103,6 +179,9 @@ public class Constraint {
 
         horizontalBias = 0f;
         verticalBias = 0f;
+
+        deferredFlags = 0;
+        recordAbsolute();
     }
 
 
@@ -118,6 +197,77 @@ public class Constraint {
 
         horizontalBias = 0f;
         verticalBias = 0f;
+
+        deferredFlags = 0;
+        recordAbsolute();
+    }
+
+    /**
+     * 复制另一个约束的结果,用于保存一个约束,之后再使用
+     */
+    void set(Constraint other) {
+
+        left = other.left;
+        top = other.top;
+        right = other.right;
+        bottom = other.bottom;
+
+        horizontalBias = other.horizontalBias;
+        verticalBias = other.verticalBias;
+
+        stateFlags = other.stateFlags;
+        deferredFlags = other.deferredFlags;
+        baseline = other.baseline;
+
+        minWidth = other.minWidth;
+        maxWidth = other.maxWidth;
+        minHeight = other.minHeight;
+        maxHeight = other.maxHeight;
+        ratioMode = other.ratioMode;
+        ratio = other.ratio;
+    }
+
+
+    /**
+     * {@link #saveState(int[])}使用的int数量
+     */
+    static final int STATE_SIZE = 10;
+
+
+    /**
+     * 保存四条边之外的状态,用于{@link LayoutRecorder}录制
+     */
+    void saveState(int[] out) {
+
+        out[0] = stateFlags;
+        out[1] = baseline;
+        out[2] = minWidth;
+        out[3] = maxWidth;
+        out[4] = minHeight;
+        out[5] = maxHeight;
+        out[6] = ratioMode;
+        out[7] = Float.floatToIntBits(ratio);
+        out[8] = Float.floatToIntBits(horizontalBias);
+        out[9] = Float.floatToIntBits(verticalBias);
+    }
+
+
+    /**
+     * 恢复{@link #saveState(int[])}保存的状态,用于{@link LayoutReplay}重放
+     */
+    void restoreState(int[] state) {
+
+        stateFlags = state[0];
+        baseline = state[1];
+        minWidth = state[2];
+        maxWidth = state[3];
+        minHeight = state[4];
+        maxHeight = state[5];
+        ratioMode = state[6];
+        ratio = Float.intBitsToFloat(state[7]);
+        horizontalBias = Float.intBitsToFloat(state[8]);
+        verticalBias = Float.intBitsToFloat(state[9]);
+        deferredFlags = 0;
     }
 
     //============================偏移============================
@@ -168,6 +318,218 @@ public class Constraint {
         return this;
     }
 
+    //============================ 单位 ============================
+
+
+    /**
+     * 设置约束方法(约束至parent/view/key,以及最小最大尺寸)中偏移量和尺寸的单位,{@link #init()}之后恢复为布局的默认单位;
+     * 平移,复制和使用坐标初始化的方法通常和读取到的坐标一起使用,始终是像素
+     *
+     * @param unit {@link #UNIT_PX},{@link #UNIT_DP},{@link #UNIT_SP}
+     */
+    public Constraint setUnit(int unit) {
+
+        if (unit < UNIT_PX || unit > UNIT_SP) {
+            throw new IllegalArgumentException("unknown unit: " + unit);
+        }
+        unitScale = mParent.getUnitScale(unit);
+        return this;
+    }
+
+
+    /**
+     * 当前单位的数值转换为像素,用于和读取到的坐标一起计算
+     *
+     * @param value 当前单位的数值
+     * @return 像素
+     */
+    public int toPx(int value) {
+
+        return px(value);
+    }
+
+
+    /**
+     * 定点数乘法,四舍五入
+     */
+    private int px(int value) {
+
+        if (unitScale == UNIT_SCALE_ONE) {
+            return value;
+        }
+        long px = (value * (long) unitScale + (UNIT_SCALE_ONE >> 1)) >> 16;
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(px, Integer.MAX_VALUE));
+    }
+
+    //============================ 尺寸范围 宽高比 ============================
+
+
+    /**
+     * 设置最小宽度;view的宽度是wrap_content时,测量结果小于最小宽度会按最小宽度重新测量并布局
+     *
+     * @param minWidth 最小宽度
+     */
+    public Constraint setMinWidth(int minWidth) {
+
+        this.minWidth = Math.max(px(minWidth), 0);
+        return this;
+    }
+
+
+    /**
+     * 设置最大宽度;view的宽度是wrap_content时,作为测量时的最大宽度
+     *
+     * @param maxWidth 最大宽度
+     */
+    public Constraint setMaxWidth(int maxWidth) {
+
+        this.maxWidth = Math.max(px(maxWidth), 0);
+        return this;
+    }
+
+
+    /**
+     * 设置最小高度,同{@link #setMinWidth(int)}
+     *
+     * @param minHeight 最小高度
+     */
+    public Constraint setMinHeight(int minHeight) {
+
+        this.minHeight = Math.max(px(minHeight), 0);
+        return this;
+    }
+
+
+    /**
+     * 设置最大高度,同{@link #setMaxWidth(int)}
+     *
+     * @param maxHeight 最大高度
+     */
+    public Constraint setMaxHeight(int maxHeight) {
+
+        this.maxHeight = Math.max(px(maxHeight), 0);
+        return this;
+    }
+
+
+    /**
+     * 高度 = 宽度 * ratio,忽略布局参数中的高度;宽度来自约束(受最小最大宽度限制),
+     * 宽度是wrap_content时比例不生效,需要测量之后才能知道宽度
+     *
+     * @param ratio 高度/宽度
+     */
+    public Constraint setHeightRatio(float ratio) {
+
+        if (ratio <= 0) {
+            throw new IllegalArgumentException("ratio must be positive: " + ratio);
+        }
+        this.ratioMode = RATIO_HEIGHT_FROM_WIDTH;
+        this.ratio = ratio;
+        return this;
+    }
+
+
+    /**
+     * 宽度 = 高度 * ratio,同{@link #setHeightRatio(float)}
+     *
+     * @param ratio 宽度/高度
+     */
+    public Constraint setWidthRatio(float ratio) {
+
+        if (ratio <= 0) {
+            throw new IllegalArgumentException("ratio must be positive: " + ratio);
+        }
+        this.ratioMode = RATIO_WIDTH_FROM_HEIGHT;
+        this.ratio = ratio;
+        return this;
+    }
+
+
+    /**
+     * @return 测量之后的宽度限制在最小最大宽度之间, 用于布局
+     */
+    int clampWidth(int width) {
+
+        return Math.max(minWidth, Math.min(width, maxWidth));
+    }
+
+
+    int clampHeight(int height) {
+
+        return Math.max(minHeight, Math.min(height, maxHeight));
+    }
+
+
+    /**
+     * wrap_content 的测量结果不在最小最大尺寸之间时,布局使用的尺寸和测量尺寸不同,需要按布局尺寸重新测量一次
+     *
+     * @return true:需要使用{@link #makeClampedWidthSpec(int)}和{@link #makeClampedHeightSpec(int)}重新测量
+     */
+    boolean isClamped(int measuredWidth, int measuredHeight) {
+
+        return clampWidth(measuredWidth) != measuredWidth || clampHeight(measuredHeight) != measuredHeight;
+    }
+
+
+    /**
+     * @return 布局使用的宽度, EXACTLY
+     */
+    int makeClampedWidthSpec(int measuredWidth) {
+
+        return View.MeasureSpec.makeMeasureSpec(clampWidth(measuredWidth), View.MeasureSpec.EXACTLY);
+    }
+
+
+    int makeClampedHeightSpec(int measuredHeight) {
+
+        return View.MeasureSpec.makeMeasureSpec(clampHeight(measuredHeight), View.MeasureSpec.EXACTLY);
+    }
+
+    //============================ 记录边的来源 ============================
+
+
+    private void record(int edge, int kind, int position, int targetEdge, int offset) {
+
+        /* 相对延迟的父布局边,或者相对自己延迟的另一条边,这条边也需要延迟 */
+
+        boolean deferred;
+        if (kind == EdgeRelations.KIND_PARENT) {
+            deferred = isParentEdgeDeferred(targetEdge);
+        } else if (kind == EdgeRelations.KIND_SELF) {
+            deferred = (deferredFlags & (1 << targetEdge)) != 0;
+        } else {
+            deferred = false;
+        }
+        if (deferred) {
+            deferredFlags |= 1 << edge;
+        } else {
+            deferredFlags &= ~(1 << edge);
+        }
+
+        if (mRelations != null) {
+            mRelations.set(edge, kind, position, targetEdge, offset);
+        }
+    }
+
+
+    private void recordAbsolute() {
+
+        if (mRelations != null) {
+            mRelations.set(EdgeRelations.LEFT, EdgeRelations.KIND_ABSOLUTE, -1, -1, left);
+            mRelations.set(EdgeRelations.TOP, EdgeRelations.KIND_ABSOLUTE, -1, -1, top);
+            mRelations.set(EdgeRelations.RIGHT, EdgeRelations.KIND_ABSOLUTE, -1, -1, right);
+            mRelations.set(EdgeRelations.BOTTOM, EdgeRelations.KIND_ABSOLUTE, -1, -1, bottom);
+        }
+    }
+
+
+    private void recordShift(int leftOffset, int topOffset, int rightOffset, int bottomOffset) {
+
+        if (mRelations != null) {
+            mRelations.shift(leftOffset, topOffset, rightOffset, bottomOffset);
+        }
+    }
+
     //============================ 标记受约束的边 ============================
 
 
@@ -195,6 +557,12 @@ public class Constraint {
     }
 
 
+    private void setBaselineConstraint() {
+
+        stateFlags |= 0b10000;
+    }
+
+
     /**
      * @return true: 以left为基准,layout
      */
@@ -230,6 +598,15 @@ public class Constraint {
         return (stateFlags >> 3 & 0b1) == 1;
     }
 
+
+    /**
+     * @return true: 以baseline为基准,layout
+     */
+    boolean isBaselineConstraint() {
+
+        return (stateFlags >> 4 & 0b1) == 1;
+    }
+
     //============================约束至Parent============================
 
 
@@ -240,8 +617,11 @@ public class Constraint {
      */
     public Constraint leftToLeftOfParent(int offset) {
 
+        offset = px(offset);
+
         setLeftConstraint();
         left = mParent.getParentLeft() + offset;
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_PARENT, -1, EdgeRelations.LEFT, offset);
         return this;
     }
 
@@ -254,9 +634,14 @@ public class Constraint {
      */
     public Constraint leftToLeftOfParent(int offset, int width) {
 
+        offset = px(offset);
+        width = px(width);
+
         setLeftConstraint();
         left = mParent.getParentLeft() + offset;
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_PARENT, -1, EdgeRelations.LEFT, offset);
         right = left + width;
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_SELF, -1, EdgeRelations.LEFT, width);
         return this;
     }
 
@@ -268,10 +653,11 @@ public class Constraint {
      */
     public Constraint leftToRightOfParent(int offset) {
 
-        checkParentRight();
+        offset = px(offset);
 
         setLeftConstraint();
-        left = mParent.getParentRight() + offset;
+        left = parentRight() + offset;
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_PARENT, -1, EdgeRelations.RIGHT, offset);
         return this;
     }
 
@@ -284,11 +670,14 @@ public class Constraint {
      */
     public Constraint leftToRightOfParent(int offset, int width) {
 
-        checkParentRight();
+        offset = px(offset);
+        width = px(width);
 
         setLeftConstraint();
-        left = mParent.getParentRight() + offset;
+        left = parentRight() + offset;
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_PARENT, -1, EdgeRelations.RIGHT, offset);
         right = left + width;
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_SELF, -1, EdgeRelations.LEFT, width);
         return this;
     }
 
@@ -300,8 +689,11 @@ public class Constraint {
      */
     public Constraint rightToLeftOfParent(int offset) {
 
+        offset = px(offset);
+
         setRightConstraint();
         right = mParent.getParentLeft() + offset;
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_PARENT, -1, EdgeRelations.LEFT, offset);
         return this;
     }
 
@@ -314,9 +706,14 @@ public class Constraint {
      */
     public Constraint rightToLeftOfParent(int offset, int width) {
 
+        offset = px(offset);
+        width = px(width);
+
         setRightConstraint();
         right = mParent.getParentLeft() + offset;
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_PARENT, -1, EdgeRelations.LEFT, offset);
         left = right - width;
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_SELF, -1, EdgeRelations.RIGHT, -width);
         return this;
     }
 
@@ -328,10 +725,11 @@ public class Constraint {
      */
     public Constraint rightToRightOfParent(int offset) {
 
-        checkParentRight();
+        offset = px(offset);
 
         setRightConstraint();
-        right = mParent.getParentRight() + offset;
+        right = parentRight() + offset;
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_PARENT, -1, EdgeRelations.RIGHT, offset);
         return this;
     }
 
@@ -344,11 +742,14 @@ public class Constraint {
      */
     public Constraint rightToRightOfParent(int offset, int width) {
 
-        checkParentRight();
+        offset = px(offset);
+        width = px(width);
 
         setRightConstraint();
-        right = mParent.getParentRight() + offset;
+        right = parentRight() + offset;
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_PARENT, -1, EdgeRelations.RIGHT, offset);
         left = right - width;
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_SELF, -1, EdgeRelations.RIGHT, -width);
         return this;
     }
 
@@ -360,8 +761,11 @@ public class Constraint {
      */
     public Constraint topToTopOfParent(int offset) {
 
+        offset = px(offset);
+
         setTopConstraint();
         top = mParent.getParentTop() + offset;
+        record(EdgeRelations.TOP, EdgeRelations.KIND_PARENT, -1, EdgeRelations.TOP, offset);
         return this;
     }
 
@@ -374,9 +778,14 @@ public class Constraint {
      */
     public Constraint topToTopOfParent(int offset, int height) {
 
+        offset = px(offset);
+        height = px(height);
+
         setTopConstraint();
         top = mParent.getParentTop() + offset;
+        record(EdgeRelations.TOP, EdgeRelations.KIND_PARENT, -1, EdgeRelations.TOP, offset);
         bottom = top + height;
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_SELF, -1, EdgeRelations.TOP, height);
         return this;
     }
 
@@ -388,10 +797,11 @@ public class Constraint {
      */
     public Constraint topToBottomOfParent(int offset) {
 
-        checkParentBottom();
+        offset = px(offset);
 
         setTopConstraint();
-        top = mParent.getParentBottom() + offset;
+        top = parentBottom() + offset;
+        record(EdgeRelations.TOP, EdgeRelations.KIND_PARENT, -1, EdgeRelations.BOTTOM, offset);
         return this;
     }
 
@@ -404,11 +814,14 @@ public class Constraint {
      */
     public Constraint topToBottomOfParent(int offset, int height) {
 
-        checkParentBottom();
+        offset = px(offset);
+        height = px(height);
 
         setTopConstraint();
-        top = mParent.getParentBottom() + offset;
+        top = parentBottom() + offset;
+        record(EdgeRelations.TOP, EdgeRelations.KIND_PARENT, -1, EdgeRelations.BOTTOM, offset);
         bottom = top + height;
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_SELF, -1, EdgeRelations.TOP, height);
         return this;
     }
 
@@ -420,8 +833,11 @@ public class Constraint {
      */
     public Constraint bottomToTopOfParent(int offset) {
 
+        offset = px(offset);
+
         setBottomConstraint();
         bottom = mParent.getParentTop() + offset;
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_PARENT, -1, EdgeRelations.TOP, offset);
         return this;
     }
 
@@ -434,9 +850,14 @@ public class Constraint {
      */
     public Constraint bottomToTopOfParent(int offset, int height) {
 
+        offset = px(offset);
+        height = px(height);
+
         setBottomConstraint();
         bottom = mParent.getParentTop() + offset;
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_PARENT, -1, EdgeRelations.TOP, offset);
         top = bottom - height;
+        record(EdgeRelations.TOP, EdgeRelations.KIND_SELF, -1, EdgeRelations.BOTTOM, -height);
         return this;
     }
 
@@ -448,10 +869,11 @@ public class Constraint {
      */
     public Constraint bottomToBottomOfParent(int offset) {
 
-        checkParentBottom();
+        offset = px(offset);
 
         setBottomConstraint();
-        bottom = mParent.getParentBottom() + offset;
+        bottom = parentBottom() + offset;
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_PARENT, -1, EdgeRelations.BOTTOM, offset);
         return this;
     }
 
@@ -464,11 +886,14 @@ public class Constraint {
      */
     public Constraint bottomToBottomOfParent(int offset, int height) {
 
-        checkParentBottom();
+        offset = px(offset);
+        height = px(height);
 
         setBottomConstraint();
-        bottom = mParent.getParentBottom() + offset;
+        bottom = parentBottom() + offset;
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_PARENT, -1, EdgeRelations.BOTTOM, offset);
         top = bottom - height;
+        record(EdgeRelations.TOP, EdgeRelations.KIND_SELF, -1, EdgeRelations.BOTTOM, -height);
         return this;
     }
 
@@ -483,8 +908,11 @@ public class Constraint {
      */
     public Constraint leftToLeftOfView(int position, int offset) {
 
+        offset = px(offset);
+
         setLeftConstraint();
         left = mParent.getViewLeft(position) + offset;
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_VIEW, position, EdgeRelations.LEFT, offset);
         return this;
     }
 
@@ -498,9 +926,14 @@ public class Constraint {
      */
     public Constraint leftToLeftOfView(int position, int offset, int width) {
 
+        offset = px(offset);
+        width = px(width);
+
         setLeftConstraint();
         left = mParent.getViewLeft(position) + offset;
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_VIEW, position, EdgeRelations.LEFT, offset);
         right = left + width;
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_SELF, -1, EdgeRelations.LEFT, width);
         return this;
     }
 
@@ -513,8 +946,11 @@ public class Constraint {
      */
     public Constraint leftToRightOfView(int position, int offset) {
 
+        offset = px(offset);
+
         setLeftConstraint();
         left = mParent.getViewRight(position) + offset;
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_VIEW, position, EdgeRelations.RIGHT, offset);
         return this;
     }
 
@@ -528,9 +964,14 @@ public class Constraint {
      */
     public Constraint leftToRightOfView(int position, int offset, int width) {
 
+        offset = px(offset);
+        width = px(width);
+
         setLeftConstraint();
         left = mParent.getViewRight(position) + offset;
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_VIEW, position, EdgeRelations.RIGHT, offset);
         right = left + width;
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_SELF, -1, EdgeRelations.LEFT, width);
         return this;
     }
 
@@ -543,8 +984,11 @@ public class Constraint {
      */
     public Constraint rightToLeftOfView(int position, int offset) {
 
+        offset = px(offset);
+
         setRightConstraint();
         right = mParent.getViewLeft(position) + offset;
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_VIEW, position, EdgeRelations.LEFT, offset);
         return this;
     }
 
@@ -558,9 +1002,14 @@ public class Constraint {
      */
     public Constraint rightToLeftOfView(int position, int offset, int width) {
 
+        offset = px(offset);
+        width = px(width);
+
         setRightConstraint();
         right = mParent.getViewLeft(position) + offset;
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_VIEW, position, EdgeRelations.LEFT, offset);
         left = right - width;
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_SELF, -1, EdgeRelations.RIGHT, -width);
         return this;
     }
 
@@ -573,8 +1022,11 @@ public class Constraint {
      */
     public Constraint rightToRightOfView(int position, int offset) {
 
+        offset = px(offset);
+
         setRightConstraint();
         right = mParent.getViewRight(position) + offset;
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_VIEW, position, EdgeRelations.RIGHT, offset);
         return this;
     }
 
@@ -588,9 +1040,14 @@ public class Constraint {
      */
     public Constraint rightToRightOfView(int position, int offset, int width) {
 
+        offset = px(offset);
+        width = px(width);
+
         setRightConstraint();
         right = mParent.getViewRight(position) + offset;
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_VIEW, position, EdgeRelations.RIGHT, offset);
         left = right - width;
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_SELF, -1, EdgeRelations.RIGHT, -width);
         return this;
     }
 
@@ -603,8 +1060,11 @@ public class Constraint {
      */
     public Constraint topToTopOfView(int position, int offset) {
 
+        offset = px(offset);
+
         setTopConstraint();
         top = mParent.getViewTop(position) + offset;
+        record(EdgeRelations.TOP, EdgeRelations.KIND_VIEW, position, EdgeRelations.TOP, offset);
         return this;
     }
 
@@ -618,9 +1078,14 @@ public class Constraint {
      */
     public Constraint topToTopOfView(int position, int offset, int height) {
 
+        offset = px(offset);
+        height = px(height);
+
         setTopConstraint();
         top = mParent.getViewTop(position) + offset;
+        record(EdgeRelations.TOP, EdgeRelations.KIND_VIEW, position, EdgeRelations.TOP, offset);
         bottom = top + height;
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_SELF, -1, EdgeRelations.TOP, height);
         return this;
     }
 
@@ -633,8 +1098,11 @@ public class Constraint {
      */
     public Constraint topToBottomOfView(int position, int offset) {
 
+        offset = px(offset);
+
         setTopConstraint();
         top = mParent.getViewBottom(position) + offset;
+        record(EdgeRelations.TOP, EdgeRelations.KIND_VIEW, position, EdgeRelations.BOTTOM, offset);
         return this;
     }
 
@@ -648,9 +1116,14 @@ public class Constraint {
      */
     public Constraint topToBottomOfView(int position, int offset, int height) {
 
+        offset = px(offset);
+        height = px(height);
+
         setTopConstraint();
         top = mParent.getViewBottom(position) + offset;
+        record(EdgeRelations.TOP, EdgeRelations.KIND_VIEW, position, EdgeRelations.BOTTOM, offset);
         bottom = top + height;
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_SELF, -1, EdgeRelations.TOP, height);
         return this;
     }
 
@@ -663,8 +1136,11 @@ public class Constraint {
      */
     public Constraint bottomToTopOfView(int position, int offset) {
 
+        offset = px(offset);
+
         setBottomConstraint();
         bottom = mParent.getViewTop(position) + offset;
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_VIEW, position, EdgeRelations.TOP, offset);
         return this;
     }
 
@@ -678,9 +1154,14 @@ public class Constraint {
      */
     public Constraint bottomToTopOfView(int position, int offset, int height) {
 
+        offset = px(offset);
+        height = px(height);
+
         setBottomConstraint();
         bottom = mParent.getViewTop(position) + offset;
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_VIEW, position, EdgeRelations.TOP, offset);
         top = bottom - height;
+        record(EdgeRelations.TOP, EdgeRelations.KIND_SELF, -1, EdgeRelations.BOTTOM, -height);
         return this;
     }
 
@@ -693,8 +1174,11 @@ public class Constraint {
      */
     public Constraint bottomToBottomOfView(int position, int offset) {
 
+        offset = px(offset);
+
         setBottomConstraint();
         bottom = mParent.getViewBottom(position) + offset;
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_VIEW, position, EdgeRelations.BOTTOM, offset);
         return this;
     }
 
@@ -708,12 +1192,283 @@ public class Constraint {
      */
     public Constraint bottomToBottomOfView(int position, int offset, int height) {
 
+        offset = px(offset);
+        height = px(height);
+
         setBottomConstraint();
         bottom = mParent.getViewBottom(position) + offset;
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_VIEW, position, EdgeRelations.BOTTOM, offset);
         top = bottom - height;
+        record(EdgeRelations.TOP, EdgeRelations.KIND_SELF, -1, EdgeRelations.BOTTOM, -height);
         return this;
     }
 
+    /**
+     * 约束自己的baseline至位于position view的baseline,用于对齐不同字号的文字;
+     * 使用该view测量之后记录的baseline,对齐不需要额外的测量;没有baseline的view以底边作为baseline
+     *
+     * @param position 布局位置
+     * @param offset   偏移量,与坐标轴同向
+     */
+    public Constraint baselineToBaselineOfView(int position, int offset) {
+
+        offset = px(offset);
+
+        int target = mParent.getViewBaseline(position);
+        if (target == -1) {
+            target = mParent.getViewBottom(position);
+        }
+
+        setBaselineConstraint();
+        baseline = target + offset;
+        if (mRelations != null) {
+            mRelations.setBaseline(position, offset);
+        }
+        return this;
+    }
+
+    //============================约束至key============================
+
+
+    /**
+     * 查找key对应的布局位置,key由{@link com.example.constraintlayout.adapter.BaseConstraintAdapter#getItemKey(int)}提供;
+     * 使用key约束时,插入删除子view不会让约束指向错误的view
+     *
+     * @param key view的key
+     * @return 布局位置
+     */
+    public int positionOfKey(long key) {
+
+        int position = mParent.getPositionOfKey(key);
+        if (position < 0) {
+            throw new IllegalArgumentException("no view with key: " + key);
+        }
+        return position;
+    }
+
+
+    /**
+     * 约束自己的左边至key对应view的左边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     */
+    public Constraint leftToLeftOfKey(long key, int offset) {
+
+        return leftToLeftOfView(positionOfKey(key), offset);
+    }
+
+
+    /**
+     * 约束自己的左边至key对应view的左边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     * @param width    期望的宽度
+     */
+    public Constraint leftToLeftOfKey(long key, int offset, int width) {
+
+        return leftToLeftOfView(positionOfKey(key), offset, width);
+    }
+
+
+    /**
+     * 约束自己的左边至key对应view的右边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     */
+    public Constraint leftToRightOfKey(long key, int offset) {
+
+        return leftToRightOfView(positionOfKey(key), offset);
+    }
+
+
+    /**
+     * 约束自己的左边至key对应view的右边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     * @param width    期望的宽度
+     */
+    public Constraint leftToRightOfKey(long key, int offset, int width) {
+
+        return leftToRightOfView(positionOfKey(key), offset, width);
+    }
+
+
+    /**
+     * 约束自己的右边至key对应view的左边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     */
+    public Constraint rightToLeftOfKey(long key, int offset) {
+
+        return rightToLeftOfView(positionOfKey(key), offset);
+    }
+
+
+    /**
+     * 约束自己的右边至key对应view的左边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     * @param width    期望的宽度
+     */
+    public Constraint rightToLeftOfKey(long key, int offset, int width) {
+
+        return rightToLeftOfView(positionOfKey(key), offset, width);
+    }
+
+
+    /**
+     * 约束自己的右边至key对应view的右边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     */
+    public Constraint rightToRightOfKey(long key, int offset) {
+
+        return rightToRightOfView(positionOfKey(key), offset);
+    }
+
+
+    /**
+     * 约束自己的右边至key对应view的右边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     * @param width    期望的宽度
+     */
+    public Constraint rightToRightOfKey(long key, int offset, int width) {
+
+        return rightToRightOfView(positionOfKey(key), offset, width);
+    }
+
+
+    /**
+     * 约束自己的上边至key对应view的上边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     */
+    public Constraint topToTopOfKey(long key, int offset) {
+
+        return topToTopOfView(positionOfKey(key), offset);
+    }
+
+
+    /**
+     * 约束自己的上边至key对应view的上边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     * @param height   期望的高度
+     */
+    public Constraint topToTopOfKey(long key, int offset, int height) {
+
+        return topToTopOfView(positionOfKey(key), offset, height);
+    }
+
+
+    /**
+     * 约束自己的上边至key对应view的下边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     */
+    public Constraint topToBottomOfKey(long key, int offset) {
+
+        return topToBottomOfView(positionOfKey(key), offset);
+    }
+
+
+    /**
+     * 约束自己的上边至key对应view的下边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     * @param height   期望的高度
+     */
+    public Constraint topToBottomOfKey(long key, int offset, int height) {
+
+        return topToBottomOfView(positionOfKey(key), offset, height);
+    }
+
+
+    /**
+     * 约束自己的下边至key对应view的上边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     */
+    public Constraint bottomToTopOfKey(long key, int offset) {
+
+        return bottomToTopOfView(positionOfKey(key), offset);
+    }
+
+
+    /**
+     * 约束自己的下边至key对应view的上边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     * @param height   期望的高度
+     */
+    public Constraint bottomToTopOfKey(long key, int offset, int height) {
+
+        return bottomToTopOfView(positionOfKey(key), offset, height);
+    }
+
+
+    /**
+     * 约束自己的下边至key对应view的下边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     */
+    public Constraint bottomToBottomOfKey(long key, int offset) {
+
+        return bottomToBottomOfView(positionOfKey(key), offset);
+    }
+
+
+    /**
+     * 约束自己的下边至key对应view的下边
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     * @param height   期望的高度
+     */
+    public Constraint bottomToBottomOfKey(long key, int offset, int height) {
+
+        return bottomToBottomOfView(positionOfKey(key), offset, height);
+    }
+
+
+    /**
+     * 约束自己的baseline至key对应view的baseline
+     *
+     * @param key      view的key
+     * @param offset   偏移量,与坐标轴同向
+     */
+    public Constraint baselineToBaselineOfKey(long key, int offset) {
+
+        return baselineToBaselineOfView(positionOfKey(key), offset);
+    }
+
+
+    /**
+     * 复制key对应view的位置
+     *
+     * @param key view的key
+     */
+    public Constraint copyFromKey(long key) {
+
+        return copyFrom(positionOfKey(key));
+    }
+
     //============================从一个view复制一个约束============================
 
 
@@ -725,9 +1480,14 @@ public class Constraint {
         setBottomConstraint();
 
         left = mParent.getViewLeft(position);
+
+        record(EdgeRelations.LEFT, EdgeRelations.KIND_VIEW, position, EdgeRelations.LEFT, 0);
         top = mParent.getViewTop(position);
+        record(EdgeRelations.TOP, EdgeRelations.KIND_VIEW, position, EdgeRelations.TOP, 0);
         right = mParent.getViewRight(position);
+        record(EdgeRelations.RIGHT, EdgeRelations.KIND_VIEW, position, EdgeRelations.RIGHT, 0);
         bottom = mParent.getViewBottom(position);
+        record(EdgeRelations.BOTTOM, EdgeRelations.KIND_VIEW, position, EdgeRelations.BOTTOM, 0);
         return this;
     }
 
@@ -742,6 +1502,7 @@ public class Constraint {
 
         left += offset;
         right += offset;
+        recordShift(offset, 0, offset, 0);
         return this;
     }
 
@@ -757,6 +1518,7 @@ public class Constraint {
         int offset = newX - left;
         left = newX;
         right += offset;
+        recordShift(offset, 0, offset, 0);
 
         return this;
     }
@@ -773,6 +1535,7 @@ public class Constraint {
         int offset = newX - right;
         left += offset;
         right = newX;
+        recordShift(offset, 0, offset, 0);
 
         return this;
     }
@@ -788,6 +1551,7 @@ public class Constraint {
 
         top += offset;
         bottom += offset;
+        recordShift(0, offset, 0, offset);
         return this;
     }
 
@@ -803,6 +1567,7 @@ public class Constraint {
         int offset = newY - top;
         top = newY;
         bottom += offset;
+        recordShift(0, offset, 0, offset);
 
         return this;
     }
@@ -819,6 +1584,7 @@ public class Constraint {
         int offset = newY - bottom;
         top += offset;
         bottom = newY;
+        recordShift(0, offset, 0, offset);
 
         return this;
     }
@@ -839,6 +1605,7 @@ public class Constraint {
         top += topOffset;
         right += rightOffset;
         bottom += bottomOffset;
+        recordShift(leftOffset, topOffset, rightOffset, bottomOffset);
         return this;
     }
 
@@ -846,106 +1613,214 @@ public class Constraint {
 
 
     /**
-     * 检查该约束是否合法,合法:right>=left && bottom>=top
+     * 检查该约束是否合法,合法:right>=left && bottom>=top,非法时打印日志
+     *
+     * @return true:合法
      */
-    public void check(View view, int position) {
+    public boolean check(View view, int position) {
 
         ConstraintLayout.LayoutParams params = (ConstraintLayout.LayoutParams) view.getLayoutParams();
 
-        boolean hor;
-        if (params.width == WRAP_CONTENT) {
-            hor = true;
-        } else {
-            hor = right >= left;
+        boolean legal = isLegal(params.width, params.height);
+        if (!legal) {
+            Log.e(TAG, makeIllegalMessage(view, position));
         }
+        return legal;
+    }
 
-        boolean ver;
-        if (params.height == WRAP_CONTENT) {
-            ver = true;
-        } else {
-            ver = bottom >= top;
-        }
 
-        boolean legal = hor && ver;
+    /**
+     * 检查该约束是否合法,合法:right>=left && bottom>=top,wrap_content 的方向不检查;
+     * 不会创建任何对象,可以在测量过程中频繁调用
+     *
+     * @param layoutWidth  view 布局参数中的宽度
+     * @param layoutHeight view 布局参数中的高度
+     * @return true:合法
+     */
+    public boolean isLegal(int layoutWidth, int layoutHeight) {
 
-        if (!legal) {
-            String message = " right must >= left, bottom must >= top, current is: left=%d ," +
-                    "top=%d ,right=%d , bottom=%d ; " + view.toString() + " layoutPosition: " + position;
-            String format = String.format(Locale.CHINA, message, left, top, right, bottom);
-            try {
-                throw new RuntimeException(format);
-            } catch (RuntimeException e) {
-                e.printStackTrace();
-            }
-        }
+        boolean hor = layoutWidth == WRAP_CONTENT || right >= left;
+        boolean ver = layoutHeight == WRAP_CONTENT || bottom >= top;
+
+        return hor && ver;
+    }
+
+
+    /**
+     * 约束非法时的描述信息,只在需要报告时创建
+     */
+    String makeIllegalMessage(View view, int position) {
+
+        return " right must >= left, bottom must >= top, current is: left=" + left +
+                " ,top=" + top +
+                " ,right=" + right +
+                " , bottom=" + bottom +
+                " ; " + view + " layoutPosition: " + position;
     }
 
 
     /**
-     * 根据约束生成一个measureSpec
+     * 根据约束生成一个measureSpec,包含最大宽度和宽高比;wrap_content 的测量结果小于最小宽度时,
+     * 需要按{@link #makeClampedWidthSpec(int)}再测量一次
      *
      * @return 宽度Spec, 用于测量view
      */
     public int makeWidthSpec(View view) {
 
-        ConstraintLayout.LayoutParams params = (ConstraintLayout.LayoutParams) view.getLayoutParams();
-        if (params.width == WRAP_CONTENT) {
-            return View.MeasureSpec.makeMeasureSpec(Integer.MAX_VALUE >> 1, View.MeasureSpec.AT_MOST);
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        return makeWidthSpec(params.width, params.height);
+    }
+
+
+    /**
+     * 根据约束和布局参数中的宽高生成一个measureSpec,用于没有view的{@link RenderItem}
+     *
+     * @param width  布局参数中的宽度
+     * @param height 布局参数中的高度
+     * @return 宽度Spec
+     */
+    int makeWidthSpec(int width, int height) {
+
+        if (ratioMode == RATIO_WIDTH_FROM_HEIGHT && height != WRAP_CONTENT) {
+            int baseHeight = clampHeight(constraintHeight());
+            return View.MeasureSpec.makeMeasureSpec(clampWidth(Math.round(baseHeight * ratio)), View.MeasureSpec.EXACTLY);
+        }
+
+        if (width == WRAP_CONTENT) {
+            return View.MeasureSpec.makeMeasureSpec(Math.min(maxWidth, Integer.MAX_VALUE >> 1), View.MeasureSpec.AT_MOST);
         } else {
-            if (left < right) {
-                return View.MeasureSpec.makeMeasureSpec(right - left, View.MeasureSpec.EXACTLY);
-            } else {
-                return View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.EXACTLY);
-            }
+            return View.MeasureSpec.makeMeasureSpec(clampWidth(constraintWidth()), View.MeasureSpec.EXACTLY);
         }
     }
 
 
     /**
-     * 根据约束生成一个measureSpec
+     * 根据约束生成一个measureSpec,包含最小最大高度和宽高比,view只需要测量一次
      *
      * @return 高度Spec, 用于测量view
      */
     public int makeHeightSpec(View view) {
 
-        ConstraintLayout.LayoutParams params = (ConstraintLayout.LayoutParams) view.getLayoutParams();
-        if (params.height == WRAP_CONTENT) {
-            return View.MeasureSpec.makeMeasureSpec(Integer.MAX_VALUE >> 1, View.MeasureSpec.AT_MOST);
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        return makeHeightSpec(params.width, params.height);
+    }
+
+
+    /**
+     * 同{@link #makeWidthSpec(int, int)}
+     *
+     * @return 高度Spec
+     */
+    int makeHeightSpec(int width, int height) {
+
+        if (ratioMode == RATIO_HEIGHT_FROM_WIDTH && width != WRAP_CONTENT) {
+            int baseWidth = clampWidth(constraintWidth());
+            return View.MeasureSpec.makeMeasureSpec(clampHeight(Math.round(baseWidth * ratio)), View.MeasureSpec.EXACTLY);
+        }
+
+        if (height == WRAP_CONTENT) {
+            return View.MeasureSpec.makeMeasureSpec(Math.min(maxHeight, Integer.MAX_VALUE >> 1), View.MeasureSpec.AT_MOST);
         } else {
-            if (bottom > top) {
-                return View.MeasureSpec.makeMeasureSpec(bottom - top, View.MeasureSpec.EXACTLY);
-            } else {
-                return View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.EXACTLY);
-            }
+            return View.MeasureSpec.makeMeasureSpec(clampHeight(constraintHeight()), View.MeasureSpec.EXACTLY);
         }
     }
 
-    //============================right bottom check============================
+
+    private int constraintWidth() {
+
+        return left < right ? right - left : 0;
+    }
+
+
+    private int constraintHeight() {
+
+        return bottom > top ? bottom - top : 0;
+    }
+
+    //============================ 延迟的父布局边 ============================
 
 
     /**
      * 如果父布局宽度是wrap_content,而你又约束到父布局右边,此时父布局的右边坐标是未知的;
-     * 需要全部view测量之后才有坐标,而现在又需要坐标才能测量,矛盾
+     * 先以0为基准,全部view测量之后得到内容宽度,再由布局加上内容宽度
      */
-    private void checkParentRight() {
+    private int parentRight() {
 
-        if (mParent.getParentRight() == -1) {
-            throw new RuntimeException(" you can't constraint to parent right when parent width is not " +
-                    "match_parent or a exactly dimensions ");
+        int right = mParent.getParentRight();
+        return right == -1 ? 0 : right;
+    }
+
+
+    /**
+     * 同{@link #parentRight()},父布局高度是wrap_content时先以0为基准
+     */
+    private int parentBottom() {
+
+        int bottom = mParent.getParentBottom();
+        return bottom == -1 ? 0 : bottom;
+    }
+
+
+    private boolean isParentEdgeDeferred(int edge) {
+
+        if (edge == EdgeRelations.RIGHT) {
+            return mParent.getParentRight() == -1;
         }
+        if (edge == EdgeRelations.BOTTOM) {
+            return mParent.getParentBottom() == -1;
+        }
+        return false;
     }
 
 
     /**
-     * 如果父布局高度是wrap_content,而你又约束到父布局底边,此时父布局的底边坐标是未知的;
-     * 需要全部view测量之后才有坐标,而现在又需要坐标才能测量,矛盾
+     * @return true:有边相对父布局右边/底边,并且父布局的尺寸还不确定
      */
-    private void checkParentBottom() {
+    boolean hasDeferredEdges() {
+
+        return deferredFlags != 0;
+    }
+
+
+    /**
+     * @return true:水平方向有延迟的边
+     */
+    boolean isHorizontalDeferred() {
+
+        return (deferredFlags & (1 << EdgeRelations.LEFT | 1 << EdgeRelations.RIGHT)) != 0;
+    }
 
-        if (mParent.getParentBottom() == -1) {
-            throw new RuntimeException(" you can't constraint to parent bottom when parent height is not " +
-                    "match_parent or a exactly dimensions ");
+
+    /**
+     * @return true:竖直方向有延迟的边
+     */
+    boolean isVerticalDeferred() {
+
+        return (deferredFlags & (1 << EdgeRelations.TOP | 1 << EdgeRelations.BOTTOM)) != 0;
+    }
+
+
+    /**
+     * 内容尺寸确定之后,延迟的边加上父布局右边/底边的坐标
+     *
+     * @param parentRight  父布局右边
+     * @param parentBottom 父布局底边
+     */
+    void resolveDeferred(int parentRight, int parentBottom) {
+
+        if ((deferredFlags & 1 << EdgeRelations.LEFT) != 0) {
+            left += parentRight;
+        }
+        if ((deferredFlags & 1 << EdgeRelations.RIGHT) != 0) {
+            right += parentRight;
+        }
+        if ((deferredFlags & 1 << EdgeRelations.TOP) != 0) {
+            top += parentBottom;
+        }
+        if ((deferredFlags & 1 << EdgeRelations.BOTTOM) != 0) {
+            bottom += parentBottom;
         }
+        deferredFlags = 0;
     }
 
     //============================weight support============================
@@ -0,0 +1,617 @@
+package com.example.constraintlayout;
+
+import android.view.View;
+
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * 组合多个{@link BaseConstraintAdapter},每个adapter是一个逻辑上的组,用来代替嵌套的{@link ConstraintLayout};
+ * 组内的约束相对组的区域求解(约束至parent就是约束至组的区域,约束至view的布局位置是组内的位置),
+ * 组内的view直接添加到外层布局中,没有中间层级,每个view只测量一次;组内的绘制项同样相对组的区域求解
+ * <p>
+ * 组的区域使用{@link GroupBounds}相对外层布局生成,没有设置时就是整个布局;
+ * 组的区域在外层布局是wrap_content时不要约束到外层布局的右边/底边
+ *
+ * @author wuxio
+ */
+public class ConstraintGroupAdapter extends BaseConstraintAdapter {
+
+    /**
+     * 组的序号保存在key的高位
+     */
+    private static final int GROUP_KEY_SHIFT = 48;
+
+    private final ArrayList< Group > mGroups = new ArrayList<>();
+
+    /**
+     * 每个组第一个view在外层布局中的位置,最后一个是总数
+     */
+    private int[] mStarts = new int[1];
+
+    /**
+     * 每个组第一个绘制项在外层布局中的序号,最后一个是总数
+     */
+    private int[] mRenderStarts = new int[1];
+
+    /**
+     * 生成约束时可能递归(引用了还没有求解的位置),每一层使用自己的约束
+     */
+    private Level[] mLevels = new Level[2];
+    private int     mDepth;
+
+    //============================ 组 ============================
+
+
+    /**
+     * 添加一个组,区域是整个布局
+     *
+     * @param adapter 组内的adapter
+     * @return 组的序号
+     */
+    public int addGroup(BaseConstraintAdapter adapter) {
+
+        return addGroup(adapter, null);
+    }
+
+
+    /**
+     * 添加一个组
+     *
+     * @param adapter 组内的adapter
+     * @param bounds  生成组的区域,null 表示整个布局
+     * @return 组的序号
+     */
+    public int addGroup(BaseConstraintAdapter adapter, GroupBounds bounds) {
+
+        if (adapter == null) {
+            throw new IllegalArgumentException("adapter is null");
+        }
+        mGroups.add(new Group(adapter, bounds));
+        return mGroups.size() - 1;
+    }
+
+
+    public int getGroupCount() {
+
+        return mGroups.size();
+    }
+
+
+    public BaseConstraintAdapter getGroupAdapter(int group) {
+
+        return mGroups.get(group).adapter;
+    }
+
+
+    /**
+     * @param group 组的序号
+     * @return 该组第一个view在外层布局中的位置, 在{@link #getChildCount()}之后有效
+     */
+    public int getGroupStart(int group) {
+
+        return mStarts[group];
+    }
+
+
+    /**
+     * 读取组内view的最下边,用于把后面的组或者view放在该组下面;组内还没有求解的位置会先求解
+     *
+     * @param constraint 正在生成的外层约束
+     * @param group      组的序号
+     * @return 组内view的最下边, 组内没有view时返回0
+     */
+    public int getGroupContentBottom(Constraint constraint, int group) {
+
+        int bottom = 0;
+        for (int i = mStarts[group], end = mStarts[group + 1]; i < end; i++) {
+            bottom = Math.max(bottom, constraint.getViewBottom(i));
+        }
+        return bottom;
+    }
+
+
+    /**
+     * 读取组内view的最右边,同{@link #getGroupContentBottom(Constraint, int)}
+     */
+    public int getGroupContentRight(Constraint constraint, int group) {
+
+        int right = 0;
+        for (int i = mStarts[group], end = mStarts[group + 1]; i < end; i++) {
+            right = Math.max(right, constraint.getViewRight(i));
+        }
+        return right;
+    }
+
+    //============================ adapter ============================
+
+
+    @Override
+    public int getChildCount() {
+
+        int size = mGroups.size();
+        if (mStarts.length != size + 1) {
+            mStarts = new int[size + 1];
+        }
+
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            mStarts[i] = count;
+            count += mGroups.get(i).adapter.getChildCount();
+        }
+        mStarts[size] = count;
+        return count;
+    }
+
+
+    @Override
+    public View generateViewTo(int position) {
+
+        int group = groupOf(position);
+        return mGroups.get(group).adapter.generateViewTo(position - mStarts[group]);
+    }
+
+
+    @Override
+    public ConstraintLayout.LayoutParams generateLayoutParamsTo(int position, View view) {
+
+        int group = groupOf(position);
+        return mGroups.get(group).adapter.generateLayoutParamsTo(position - mStarts[group], view);
+    }
+
+
+    @Override
+    public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+        int group = groupOf(position);
+        Group item = mGroups.get(group);
+        int start = mStarts[group];
+
+        Level level = obtainLevel(constraint.getSupport());
+        EdgeRelations relations = constraint.mRelations;
+        mDepth++;
+        try {
+
+            /* 1. 相对外层布局生成组的区域 */
+
+            Constraint bounds = generateBounds(level, group, relations != null);
+
+            /* 2. 相对组的区域生成组内的约束,复制到外层约束 */
+
+            Constraint child = level.child;
+            child.mRelations = relations == null ? null : level.childRelations;
+            child.init();
+            child = item.adapter.generateConstraintTo(position - start, child, view);
+            constraint.set(child);
+
+            /* 3. 求解模式或者录制时,边的来源也转换为相对外层布局 */
+
+            if (relations != null) {
+                mapRelations(level, bounds, start, relations);
+            }
+        } finally {
+            mDepth--;
+        }
+        return constraint;
+    }
+
+
+    @Override
+    public int getRenderItemCount() {
+
+        int size = mGroups.size();
+        if (mRenderStarts.length != size + 1) {
+            mRenderStarts = new int[size + 1];
+        }
+
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            mRenderStarts[i] = count;
+            count += mGroups.get(i).adapter.getRenderItemCount();
+        }
+        mRenderStarts[size] = count;
+        return count;
+    }
+
+
+    @Override
+    public RenderItem generateRenderItemTo(int index) {
+
+        int group = groupOf(mRenderStarts, index);
+        return mGroups.get(group).adapter.generateRenderItemTo(index - mRenderStarts[group]);
+    }
+
+
+    /**
+     * 和{@link #generateConstraintTo(int, Constraint, View)}相同,相对组的区域生成绘制项的约束
+     */
+    @Override
+    public Constraint generateRenderConstraintTo(int index, Constraint constraint, RenderItem item) {
+
+        int group = groupOf(mRenderStarts, index);
+        BaseConstraintAdapter adapter = mGroups.get(group).adapter;
+
+        Level level = obtainLevel(constraint.getSupport());
+        mDepth++;
+        try {
+            generateBounds(level, group, false);
+
+            Constraint child = level.child;
+            child.mRelations = null;
+            child.init();
+            child = adapter.generateRenderConstraintTo(index - mRenderStarts[group], child, item);
+            constraint.set(child);
+        } finally {
+            mDepth--;
+        }
+        return constraint;
+    }
+
+
+    /**
+     * 组的序号在高位,组内adapter的key在低{@value #GROUP_KEY_SHIFT}位
+     */
+    @Override
+    public long getItemKey(int position) {
+
+        int group = groupOf(position);
+        return groupKey(group, mGroups.get(group).adapter.getItemKey(position - mStarts[group]));
+    }
+
+
+    @Override
+    public void beforeMeasure(int position, View view) {
+
+        int group = groupOf(position);
+        mGroups.get(group).adapter.beforeMeasure(position - mStarts[group], view);
+    }
+
+
+    @Override
+    public void afterMeasure(int position, View view) {
+
+        int group = groupOf(position);
+        mGroups.get(group).adapter.afterMeasure(position - mStarts[group], view);
+    }
+
+
+    @Override
+    public void beforeLayout(int position, View view) {
+
+        int group = groupOf(position);
+        mGroups.get(group).adapter.beforeLayout(position - mStarts[group], view);
+    }
+
+
+    @Override
+    public void afterLayout(int position, View view) {
+
+        int group = groupOf(position);
+        mGroups.get(group).adapter.afterLayout(position - mStarts[group], view);
+    }
+
+    //============================ 内部 ============================
+
+
+    /**
+     * 二分查找布局位置所在的组,空的组不会被找到
+     */
+    private int groupOf(int position) {
+
+        return groupOf(mStarts, position);
+    }
+
+
+    private static int groupOf(int[] starts, int position) {
+
+        int low = 0;
+        int high = starts.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * 相对外层布局生成组的区域,设置给组内约束使用的父布局
+     *
+     * @param record true:记录组区域每条边的来源
+     */
+    private Constraint generateBounds(Level level, int group, boolean record) {
+
+        Group item = mGroups.get(group);
+        Constraint bounds = level.bounds;
+        bounds.mRelations = record ? level.boundsRelations : null;
+        bounds.init();
+        if (item.bounds != null) {
+            bounds = item.bounds.generateGroupConstraint(group, bounds);
+        }
+        level.support.set(group, mStarts[group], bounds);
+        return bounds;
+    }
+
+
+    /**
+     * 组内约束记录的边的来源转换为外层布局的来源:组内的布局位置加上组的开始位置,
+     * 相对父布局的边就是相对组区域的边,使用组区域这条边的来源加上偏移
+     */
+    private static void mapRelations(Level level, Constraint bounds, int start, EdgeRelations out) {
+
+        EdgeRelations child = level.childRelations;
+        for (int edge = 0; edge < 4; edge++) {
+            int kind = child.kinds[edge];
+            if (kind == EdgeRelations.KIND_PARENT) {
+                mapBoundsEdge(level, bounds, child.targetEdges[edge], child.offsets[edge], edge, out);
+            } else if (kind == EdgeRelations.KIND_VIEW) {
+                out.set(edge, kind, child.positions[edge] + start, child.targetEdges[edge], child.offsets[edge]);
+            } else {
+                out.set(edge, kind, child.positions[edge], child.targetEdges[edge], child.offsets[edge]);
+            }
+        }
+
+        int baseline = child.baselinePosition;
+        out.setBaseline(baseline < 0 ? -1 : baseline + start, child.baselineOffset);
+    }
+
+
+    /**
+     * 组区域的一条边加上偏移,转换为相对外层布局的来源
+     *
+     * @param boundsEdge 组区域的边
+     * @param offset     相对这条边的偏移
+     * @param edge       组内约束的边
+     */
+    private static void mapBoundsEdge(Level level, Constraint bounds, int boundsEdge, int offset, int edge, EdgeRelations out) {
+
+        /* 组区域指定了宽高时这条边相对另一条边,沿着来源查找 */
+
+        EdgeRelations relations = level.boundsRelations;
+        for (int i = 0; i < 4 && relations.kinds[boundsEdge] == EdgeRelations.KIND_SELF; i++) {
+            offset += relations.offsets[boundsEdge];
+            boundsEdge = relations.targetEdges[boundsEdge];
+        }
+
+        int kind = relations.kinds[boundsEdge];
+        if (kind == EdgeRelations.KIND_PARENT || kind == EdgeRelations.KIND_VIEW || kind == EdgeRelations.KIND_ABSOLUTE) {
+            out.set(edge, kind, relations.positions[boundsEdge], relations.targetEdges[boundsEdge],
+                    relations.offsets[boundsEdge] + offset);
+            return;
+        }
+
+        /* 没有约束的边是初始化时的值:右边/底边是外层布局的边,其他是固定值 */
+
+        ConstraintSupport outer = level.outer;
+        int value = edgeValue(bounds, boundsEdge);
+        if ((boundsEdge == EdgeRelations.RIGHT && value == outer.getParentRight())
+                || (boundsEdge == EdgeRelations.BOTTOM && value == outer.getParentBottom())) {
+            out.set(edge, EdgeRelations.KIND_PARENT, -1, boundsEdge, offset);
+        } else {
+            out.set(edge, EdgeRelations.KIND_ABSOLUTE, -1, -1, value + offset);
+        }
+    }
+
+
+    private static int edgeValue(Constraint constraint, int edge) {
+
+        switch (edge) {
+            case EdgeRelations.LEFT:
+                return constraint.left;
+            case EdgeRelations.TOP:
+                return constraint.top;
+            case EdgeRelations.RIGHT:
+                return constraint.right;
+            default:
+                return constraint.bottom;
+        }
+    }
+
+
+    private static long groupKey(int group, long key) {
+
+        return ((long) group << GROUP_KEY_SHIFT) ^ key;
+    }
+
+
+    private Level obtainLevel(ConstraintSupport outer) {
+
+        int depth = mDepth;
+        if (depth == mLevels.length) {
+            mLevels = Arrays.copyOf(mLevels, depth << 1);
+        }
+
+        Level level = mLevels[depth];
+        if (level == null || level.outer != outer) {
+            level = new Level(outer);
+            mLevels[depth] = level;
+        }
+        return level;
+    }
+
+    //============================ 组的区域 ============================
+
+
+    /**
+     * 生成组的区域
+     */
+    public interface GroupBounds {
+
+        /**
+         * 相对外层布局生成组的区域,和{@link BaseConstraintAdapter#generateConstraintTo(int, Constraint, View)}相同
+         *
+         * @param group      组的序号
+         * @param constraint 初始化的约束,相对外层布局
+         * @return 组的区域
+         */
+        Constraint generateGroupConstraint(int group, Constraint constraint);
+    }
+
+
+    private static class Group {
+
+        final BaseConstraintAdapter adapter;
+        final GroupBounds           bounds;
+
+
+        Group(BaseConstraintAdapter adapter, GroupBounds bounds) {
+
+            this.adapter = adapter;
+            this.bounds = bounds;
+        }
+    }
+
+
+    /**
+     * 一层递归使用的约束
+     */
+    private static class Level {
+
+        final ConstraintSupport outer;
+        final Constraint        bounds;
+        final GroupSupport      support;
+        final Constraint        child;
+
+        /**
+         * 外层约束需要记录边的来源时,组区域和组内约束的来源
+         */
+        final EdgeRelations boundsRelations = new EdgeRelations();
+        final EdgeRelations childRelations  = new EdgeRelations();
+
+
+        Level(ConstraintSupport outer) {
+
+            this.outer = outer;
+            this.bounds = new Constraint(outer);
+            this.support = new GroupSupport(outer);
+            this.child = new Constraint(support);
+        }
+    }
+
+
+    /**
+     * 组内约束使用的父布局:父布局的边是组的区域,布局位置转换为外层布局的位置
+     */
+    private static class GroupSupport implements ConstraintSupport {
+
+        private final ConstraintSupport mOuter;
+
+        private int mGroup;
+        private int mStart;
+        private int mLeft;
+        private int mTop;
+        private int mRight;
+        private int mBottom;
+
+
+        GroupSupport(ConstraintSupport outer) {
+
+            mOuter = outer;
+        }
+
+
+        void set(int group, int start, Constraint bounds) {
+
+            mGroup = group;
+            mStart = start;
+            mLeft = bounds.left;
+            mTop = bounds.top;
+            mRight = bounds.right;
+            mBottom = bounds.bottom;
+        }
+
+
+        @Override
+        public int getParentLeft() {
+
+            return mLeft;
+        }
+
+
+        @Override
+        public int getParentTop() {
+
+            return mTop;
+        }
+
+
+        /**
+         * 组的区域没有约束右边,并且外层布局是wrap_content时是-1,和外层布局一样延迟到内容尺寸确定之后
+         */
+        @Override
+        public int getParentRight() {
+
+            return mRight;
+        }
+
+
+        @Override
+        public int getParentBottom() {
+
+            return mBottom;
+        }
+
+
+        @Override
+        public int getViewLeft(int position) {
+
+            return mOuter.getViewLeft(mStart + position);
+        }
+
+
+        @Override
+        public int getViewTop(int position) {
+
+            return mOuter.getViewTop(mStart + position);
+        }
+
+
+        @Override
+        public int getViewRight(int position) {
+
+            return mOuter.getViewRight(mStart + position);
+        }
+
+
+        @Override
+        public int getViewBottom(int position) {
+
+            return mOuter.getViewBottom(mStart + position);
+        }
+
+
+        @Override
+        public int getViewBaseline(int position) {
+
+            return mOuter.getViewBaseline(mStart + position);
+        }
+
+
+        @Override
+        public int getUnitScale(int unit) {
+
+            return mOuter.getUnitScale(unit);
+        }
+
+
+        @Override
+        public int getDefaultUnit() {
+
+            return mOuter.getDefaultUnit();
+        }
+
+
+        @Override
+        public int getPositionOfKey(long key) {
+
+            int position = mOuter.getPositionOfKey(groupKey(mGroup, key));
+            return position < 0 ? -1 : position - mStart;
+        }
+    }
+}
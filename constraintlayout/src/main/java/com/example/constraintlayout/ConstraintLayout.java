@@ -1,15 +1,26 @@
 package com.example.constraintlayout;
 
 import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 
 import com.example.constraintlayout.adapter.ArrayAdapter;
 import com.example.constraintlayout.adapter.BaseConstraintAdapter;
 import com.example.constraintlayout.adapter.ListAdapter;
 import com.example.constraintlayout.simple.ConstraintOperator;
+import com.example.constraintlayout.stats.LayoutStats;
+import com.example.constraintlayout.trace.LayoutTracer;
 
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -19,6 +30,21 @@ import java.util.List;
  */
 public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
 
+    private static final String TAG = "ConstraintLayout";
+
+    /**
+     * 不检查约束是否合法,没有任何开销,用于正式版本
+     */
+    public static final int VALIDATION_OFF     = 0;
+    /**
+     * 收集非法约束,每次测量结束后报告一次,默认模式
+     */
+    public static final int VALIDATION_COLLECT = 1;
+    /**
+     * 发现非法约束时直接抛出异常,用于调试
+     */
+    public static final int VALIDATION_STRICT  = 2;
+
     /**
      * adapter 用于使用约束布局
      */
@@ -35,6 +61,125 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
     private int mParentRight;
     private int mParentBottom;
 
+    /**
+     * 记录每个布局位置测量之后的位置,用于{@link ConstraintSupport}读取位置信息,避免查找view和强转布局参数
+     */
+    private RectTable mRectTable;
+
+    /**
+     * 回收的约束,{@link #newConstraint()}优先从这里取,避免每次都创建
+     */
+    private Constraint[] mConstraintPool = new Constraint[4];
+    private int          mConstraintPoolSize;
+
+    /**
+     * 记录每个布局位置的约束生成/测量/布局片段,{@link LayoutTracer#setEnabled(boolean)}开启
+     */
+    private LayoutTracer mTracer;
+
+    /**
+     * 统计数据,同时汇总到adapter类对应的统计数据
+     */
+    private LayoutStats mStats;
+
+    /**
+     * 约束检查模式
+     */
+    private int                           mValidationMode = VALIDATION_COLLECT;
+    private ConstraintViolations          mViolations;
+    private OnConstraintViolationListener mViolationListener;
+
+    /**
+     * 是否正在测量:测量中收集的非法约束在测量结束后报告;测量之外(更新约束)收集到单独的对象,更新结束后报告
+     */
+    private boolean              mMeasuring;
+    private ConstraintViolations mUpdateViolations;
+
+    /**
+     * 触摸查找索引,{@link #setHitTestIndexEnabled(boolean)}开启
+     */
+    private HitTestIndex mHitTestIndex;
+
+    /**
+     * 计算位置时使用的临时区域
+     */
+    private final Rect mSolvedRect = new Rect();
+
+    /**
+     * 按竖直方向排序的区间索引,用于查找区域内的布局位置
+     */
+    private IntervalIndex mIntervalIndex;
+
+    /**
+     * key 到布局位置的索引,第一次使用key约束时创建
+     */
+    private KeyIndex mKeyIndex;
+
+    /**
+     * 求解顺序,支持约束引用后面的布局位置
+     */
+    private SolveOrder   mSolveOrder;
+    private Constraint[] mSolveConstraints = new Constraint[4];
+
+    /**
+     * 线性约束求解模式,null 时使用默认的逐条边赋值
+     */
+    private ConstraintSystem mConstraintSystem;
+
+    /**
+     * 求解模式重新生成约束时不为null,求解的结果记录到其中
+     */
+    private ConstraintSystem mRebuildingSystem;
+
+    /**
+     * 父布局是wrap_content时,约束到父布局右边/底边的布局位置,内容尺寸确定之后只对这些位置再求解一次
+     */
+    private int[]        mDeferredPositions   = new int[4];
+    private Constraint[] mDeferredConstraints = new Constraint[4];
+    private int          mDeferredCount;
+    private boolean      mDeferring;
+
+    /**
+     * 正在生成约束的布局位置读取到的延迟方向,读取了延迟位置的布局位置也需要延迟,内容尺寸确定之后重新生成约束
+     */
+    private int mDependsFlags;
+
+    /**
+     * 上一次测量得到的内容右边/底边,父布局不是wrap_content时等于{@link #getParentRight()},{@link #getParentBottom()}
+     */
+    private int mContentRight;
+    private int mContentBottom;
+
+    /**
+     * 布局方向是RTL:约束中的left/right是start/end,位置表中保存的也是逻辑坐标,布局时镜像为实际坐标
+     */
+    private boolean mLayoutRtl;
+
+    /**
+     * 没有view的绘制项,以及它们的位置,使用单独的位置表,不占用布局位置
+     */
+    private RenderItem[] mRenderItems = new RenderItem[0];
+    private int          mRenderCount;
+    private RectTable    mRenderTable;
+
+    /**
+     * 分帧测量,{@link #setMeasureFrameBudget(long)}开启
+     */
+    private MeasureSlicer             mSlicer;
+    private OnMeasureProgressListener mProgressListener;
+
+    /**
+     * 录制测量过程,{@link #setLayoutRecorder(LayoutRecorder)}开启
+     */
+    private LayoutRecorder mRecorder;
+
+    /**
+     * 约束的默认单位,以及dp/sp到像素的定点数比例,只在创建和配置变化时计算
+     */
+    private int mDefaultUnit = Constraint.UNIT_PX;
+    private int mDpScale     = Constraint.UNIT_SCALE_ONE;
+    private int mSpScale     = Constraint.UNIT_SCALE_ONE;
+
 
     public ConstraintLayout(Context context) {
 
@@ -59,7 +204,12 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
 
         /* 初始化一个约束,用来复用 */
 
+        updateUnitScales();
         mConstraint = new Constraint(this);
+        mRectTable = new RectTable();
+        mSolveOrder = new SolveOrder();
+        mTracer = new LayoutTracer();
+        mStats = new LayoutStats();
     }
 
 
@@ -74,15 +224,105 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
 
 
     /**
-     * @return new 新创建一个,推荐使用{@link #obtainConstraint()}获取约束
+     * @return 一个独立的空约束, 优先复用{@link #recycleConstraint(Constraint)}回收的约束,推荐使用{@link #obtainConstraint()}获取约束
      */
     public Constraint newConstraint() {
 
-        Constraint constraint = new Constraint(this);
+        Constraint constraint;
+        if (mConstraintPoolSize > 0) {
+            constraint = mConstraintPool[--mConstraintPoolSize];
+            mConstraintPool[mConstraintPoolSize] = null;
+        } else {
+            constraint = new Constraint(this);
+        }
         constraint.init();
         return constraint;
     }
 
+
+    /**
+     * 回收一个{@link #newConstraint()}获取的约束,回收之后不要再使用它
+     *
+     * @param constraint 不再使用的约束
+     */
+    public void recycleConstraint(Constraint constraint) {
+
+        if (constraint == null || constraint == mConstraint) {
+            return;
+        }
+
+        if (mConstraintPoolSize < mConstraintPool.length) {
+            mConstraintPool[mConstraintPoolSize++] = constraint;
+        }
+    }
+
+    //============================ 单位 ============================
+
+
+    /**
+     * 设置约束的默认单位,之后获取的约束中偏移量和尺寸都使用这个单位,例如{@link Constraint#UNIT_DP}
+     *
+     * @param unit {@link Constraint#UNIT_PX},{@link Constraint#UNIT_DP},{@link Constraint#UNIT_SP}
+     */
+    public void setDefaultUnit(int unit) {
+
+        if (unit < Constraint.UNIT_PX || unit > Constraint.UNIT_SP) {
+            throw new IllegalArgumentException("unknown unit: " + unit);
+        }
+        if (mDefaultUnit != unit) {
+            mDefaultUnit = unit;
+            requestLayout();
+        }
+    }
+
+
+    @Override
+    public int getDefaultUnit() {
+
+        return mDefaultUnit;
+    }
+
+
+    @Override
+    public int getUnitScale(int unit) {
+
+        switch (unit) {
+            case Constraint.UNIT_DP:
+                return mDpScale;
+            case Constraint.UNIT_SP:
+                return mSpScale;
+            default:
+                return Constraint.UNIT_SCALE_ONE;
+        }
+    }
+
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+
+        super.onConfigurationChanged(newConfig);
+
+        /* 默认单位是px时约束中也可以单独指定dp/sp,任意一个比例变化都需要重新测量;求解模式中的常量也需要重新生成 */
+
+        int dpScale = mDpScale;
+        int spScale = mSpScale;
+        updateUnitScales();
+        if (dpScale != mDpScale || spScale != mSpScale) {
+            if (mConstraintSystem != null) {
+                mConstraintSystem.invalidate();
+            }
+            requestLayout();
+        }
+    }
+
+
+    private void updateUnitScales() {
+
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        mDpScale = Math.round(metrics.density * Constraint.UNIT_SCALE_ONE);
+        mSpScale = Math.round(metrics.scaledDensity * Constraint.UNIT_SCALE_ONE);
+    }
+
     //============================ 设置Adapter ============================
 
 
@@ -93,6 +333,18 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
      */
     public void setAdapter(BaseConstraintAdapter adapter) {
 
+        if (mTransition != null) {
+            mTransition.cancel();
+        }
+        mStats.setAggregate(adapter == null ? null : LayoutStats.forAdapter(adapter.getClass()));
+        mRectTable.clearAllFlags();
+        clearRenderItems();
+        cancelSlicedMeasure();
+        mSolveOrder.invalidate();
+        if (mKeyIndex != null) {
+            mKeyIndex.markDirty();
+        }
+
         if (mAdapter != null) {
             mAdapter = adapter;
             super.requestLayout();
@@ -109,6 +361,93 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
     }
 
 
+    /**
+     * 开启线性约束求解模式,adapter生成的约束转换为必须满足的等式,可以在{@link ConstraintSystem}中
+     * 添加带强度的等式和不等式,以及拖动编辑变量
+     *
+     * @param system 求解系统,null 关闭求解模式
+     */
+    public void setConstraintSystem(ConstraintSystem system) {
+
+        if (mConstraintSystem == system) {
+            return;
+        }
+
+        if (mConstraintSystem != null) {
+            mConstraintSystem.detach();
+        }
+        mConstraintSystem = system;
+        if (system != null) {
+            system.attach(this);
+        }
+        requestLayout();
+    }
+
+
+    public ConstraintSystem getConstraintSystem() {
+
+        return mConstraintSystem;
+    }
+
+
+    /**
+     * 设置约束检查模式
+     *
+     * @param validationMode {@link #VALIDATION_OFF},{@link #VALIDATION_COLLECT},{@link #VALIDATION_STRICT}
+     */
+    public void setValidationMode(int validationMode) {
+
+        if (validationMode < VALIDATION_OFF || validationMode > VALIDATION_STRICT) {
+            throw new IllegalArgumentException("unknown validation mode: " + validationMode);
+        }
+        mValidationMode = validationMode;
+    }
+
+
+    public int getValidationMode() {
+
+        return mValidationMode;
+    }
+
+
+    /**
+     * 设置非法约束的监听,{@link #VALIDATION_COLLECT}模式下每次测量结束后回调一次,测量之外更新约束时在更新结束后回调,
+     * 不设置时打印日志
+     *
+     * @param listener 监听
+     */
+    public void setOnConstraintViolationListener(OnConstraintViolationListener listener) {
+
+        mViolationListener = listener;
+    }
+
+
+    /**
+     * @return 该布局的统计数据, 同一个adapter类的汇总数据使用{@link LayoutStats#forAdapter(Class)}获取
+     */
+    public LayoutStats getLayoutStats() {
+
+        return mStats;
+    }
+
+
+    /**
+     * 开始录制之后每次完整的测量,用于使用{@link LayoutReplay}离线重放
+     *
+     * @param recorder 录制,null 停止录制
+     */
+    public void setLayoutRecorder(LayoutRecorder recorder) {
+
+        mRecorder = recorder;
+    }
+
+
+    public LayoutRecorder getLayoutRecorder() {
+
+        return mRecorder;
+    }
+
+
     /**
      * 使用数组创建一个布局
      */
@@ -132,6 +471,17 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
 
+        mMeasuring = true;
+        try {
+            measureLayout(widthMeasureSpec, heightMeasureSpec);
+        } finally {
+            mMeasuring = false;
+        }
+    }
+
+
+    private void measureLayout(int widthMeasureSpec, int heightMeasureSpec) {
+
         if (mAdapter == null) {
             setMeasuredDimension(
                     MeasureSpec.getSize(widthMeasureSpec),
@@ -140,11 +490,18 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
             return;
         }
 
+        final long startNanos = System.nanoTime();
+
         int widthFromParent = MeasureSpec.getSize(widthMeasureSpec);
         int widthMode = MeasureSpec.getMode(widthMeasureSpec);
         int heightFromParent = MeasureSpec.getSize(heightMeasureSpec);
         int heightMode = MeasureSpec.getMode(heightMeasureSpec);
 
+        /* RTL 时在逻辑坐标中求解,start 在左边 */
+
+        mLayoutRtl = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1
+                && getLayoutDirection() == LAYOUT_DIRECTION_RTL;
+
         /* 判断右边和底边约束是否可用 */
 
         if (widthMode == MeasureSpec.EXACTLY) {
@@ -164,396 +521,2733 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
         BaseConstraintAdapter adapter = mAdapter;
 
         final int childCount = adapter.getChildCount();
-        int mostRight = 0;
-        int mostBottom = 0;
+        mRectTable.ensureCapacity(childCount);
+        if (mKeyIndex != null && mKeyIndex.size() != childCount) {
+            mKeyIndex.markDirty();
+        }
+
+        /* 分帧测量:测量条件没有变化时继续上一帧,父布局的spec变化时这次直接完成,否则重新开始 */
+
+        MeasureSlicer slicer = mSlicer;
+        final boolean sliced = slicer != null && slicer.isEnabled() && mConstraintSystem == null
+                && !slicer.isSpecChanged(childCount, widthMeasureSpec, heightMeasureSpec);
+        final boolean resume = sliced && slicer.canResume(childCount, widthMeasureSpec, heightMeasureSpec);
+        if (slicer != null && slicer.isActive() && !resume) {
+            slicer.cancel();
+        }
+
+        if (mViolations != null && !resume) {
+            mViolations.clear();
+        }
+        if (mRecorder != null && !resume) {
+            mRecorder.beginPass(widthMeasureSpec, heightMeasureSpec,
+                                getParentLeft(), getParentTop(), getParentRight(), getParentBottom(),
+                                childCount);
+        }
+        /* 1. 先创建所有view,约束可以引用后面的布局位置 */
 
         for (int i = 0; i < childCount; i++) {
 
             View child = getChildAt(i);
-            if (child == null) {
+            if (child == null || child == mOverlay) {
 
                 child = adapter.generateViewTo(i);
                 LayoutParams params = adapter.generateLayoutParamsTo(i, child);
-                addView(child, params);
+                addView(child, i, params);
+                mRectTable.clearFlag(i, RectTable.FLAG_MEASURED);
+                mStats.recordViewCreated();
+            } else {
+                mStats.recordViewReused();
             }
+        }
+
+        /* 2. 求解约束,测量;约束到未知的父布局右边/底边的布局位置先记录下来 */
 
-            LayoutParams params = measureViewWithConstraint(adapter, i, child);
+        if (!resume) {
+            mDeferredCount = 0;
+        }
+        mDeferring = mParentRight == -1 || mParentBottom == -1;
+        boolean complete = true;
+        try {
+            if (mConstraintSystem != null) {
+                measureWithSystem(adapter, childCount);
+            } else if (sliced) {
+                if (!resume) {
+                    slicer.start(childCount, widthMeasureSpec, heightMeasureSpec);
+                }
+                complete = solveSlice(adapter, childCount, slicer.deadline(startNanos), resume);
+            } else {
+                solveInOrder(adapter, childCount);
+            }
+        } finally {
+            mDeferring = false;
+        }
 
-            /* 记录最右边最下边已经使用到的尺寸,用于之后设置自己的尺寸 */
+        /* 记录最右边最下边已经使用到的尺寸,用于之后设置自己的尺寸;延迟的方向,以及分帧时还没有求解的位置不参与 */
 
-            if (params.right > mostRight) {
-                mostRight = params.right;
+        int mostRight = 0;
+        int mostBottom = 0;
+        RectTable table = mRectTable;
+        for (int i = 0; i < childCount; i++) {
+            if (!complete && !mSolveOrder.isSolved(i)) {
+                continue;
             }
-            if (params.bottom > mostBottom) {
-                mostBottom = params.bottom;
+            if (table.getRight(i) > mostRight && !table.hasFlag(i, RectTable.FLAG_DEFERRED_HORIZONTAL)) {
+                mostRight = table.getRight(i);
+            }
+            if (table.getBottom(i) > mostBottom && !table.hasFlag(i, RectTable.FLAG_DEFERRED_VERTICAL)) {
+                mostBottom = table.getBottom(i);
             }
         }
 
-        /* 根据模式设置尺寸信息 */
+        if (!complete) {
 
-        int width = 0;
-        int height = 0;
+            /* 分帧测量还没有完成,先使用已经求解的部分设置尺寸,下一帧继续 */
 
-        if (widthMode == MeasureSpec.EXACTLY) {
-            width = widthFromParent;
-        } else if (widthMode == MeasureSpec.AT_MOST) {
-            width = Math.min(mostRight, widthFromParent);
-        } else {
-            width = mostRight;
+            setMeasuredDimension(
+                    resolveMeasuredSize(mostRight, widthFromParent, widthMode),
+                    resolveMeasuredSize(mostBottom, heightFromParent, heightMode)
+            );
+            measureOverlay();
+            slicer.scheduleNextFrame();
+            if (mProgressListener != null) {
+                mProgressListener.onMeasureProgress(this, slicer.next(), childCount);
+            }
+            mStats.recordMeasurePass(System.nanoTime() - startNanos);
+            return;
         }
 
-        if (heightMode == MeasureSpec.EXACTLY) {
-            height = heightFromParent;
-        } else if (heightMode == MeasureSpec.AT_MOST) {
-            height = Math.min(mostBottom, heightFromParent);
-        } else {
-            height = mostBottom;
-        }
+        /* 3. 内容尺寸确定之后,只对约束到父布局右边/底边的布局位置再求解一次 */
 
-        setMeasuredDimension(width, height);
-    }
+        mContentRight = mParentRight != -1 ? getParentRight()
+                : widthMode == MeasureSpec.AT_MOST ? Math.min(mostRight, widthFromParent - (mLayoutRtl ? getPaddingLeft() : getPaddingRight()))
+                : mostRight;
+        mContentBottom = mParentBottom != -1 ? getParentBottom()
+                : heightMode == MeasureSpec.AT_MOST ? Math.min(mostBottom, heightFromParent - getPaddingBottom())
+                : mostBottom;
 
+        for (int k = 0; k < mDeferredCount; k++) {
+            int position = mDeferredPositions[k];
+            if (table.hasFlag(position, RectTable.FLAG_DEFERRED_DEPENDENT)) {
 
-    /**
-     * 记录测量之后view的布局位置,简化{@link #onLayout(boolean, int, int, int, int)}操作
-     */
-    private LayoutParams measureViewWithConstraint(BaseConstraintAdapter adapter, int position, View child) {
+                /* 生成约束时读取到的是临时位置,被读取的位置已经在前面重新求解 */
 
-        /* 1. 先测量 */
+                measureViewWithConstraint(adapter, position, getChildAt(position), obtainConstraint());
+            } else {
+                Constraint constraint = mDeferredConstraints[k];
+                constraint.resolveDeferred(mContentRight, mContentBottom);
+                applyConstraint(adapter, position, getChildAt(position), constraint);
+            }
 
-        Constraint constraint = adapter.generateConstraintTo(position, obtainConstraint(), child);
+            mostRight = Math.max(mostRight, table.getRight(position));
+            mostBottom = Math.max(mostBottom, table.getBottom(position));
+        }
 
-        constraint.check(child, position);
+        /* 4. 没有view的绘制项,在所有view之后求解 */
 
-        int widthSpec = constraint.makeWidthSpec(child);
-        int heightSpec = constraint.makeHeightSpec(child);
+        int renderCount = measureRenderItems(adapter);
+        for (int k = 0; k < renderCount; k++) {
+            mostRight = Math.max(mostRight, mRenderTable.getRight(k));
+            mostBottom = Math.max(mostBottom, mRenderTable.getBottom(k));
+        }
 
-        adapter.beforeMeasure(position, child);
-        measureChild(child,
-                widthSpec,
-                heightSpec
-        );
-        adapter.afterMeasure(position, child);
+        /* 根据模式设置尺寸信息 */
 
-        /* 2. 记录测量之后该view的位置 */
+        int width = resolveMeasuredSize(mostRight, widthFromParent, widthMode);
+        int height = resolveMeasuredSize(mostBottom, heightFromParent, heightMode);
+
+        setMeasuredDimension(width, height);
+        measureOverlay();
+
+        reportViolations();
 
-        return setChildLayoutParams(constraint, child);
+        if (mRecorder != null) {
+            mRecorder.endPass(width, height);
+        }
+        if (sliced) {
+            slicer.finish();
+            if (mProgressListener != null) {
+                mProgressListener.onMeasureComplete(this, width, height);
+            }
+        }
+
+        mStats.recordMeasurePass(System.nanoTime() - startNanos);
     }
 
 
     /**
-     * 使用约束测量单个view,该方法用于更新约束
+     * 根据模式计算自己的尺寸
+     *
+     * @param used       内容已经使用的尺寸
+     * @param fromParent 父布局spec的尺寸
+     * @param mode       父布局spec的模式
      */
-    private void measureViewWithConstraint(int position,
-                                           View child,
-                                           Constraint constraint) {
-
-        /* 1. 先测量 */
-
-        constraint.check(child, position);
+    private static int resolveMeasuredSize(int used, int fromParent, int mode) {
 
-        int widthSpec = constraint.makeWidthSpec(child);
-        int heightSpec = constraint.makeHeightSpec(child);
+        if (mode == MeasureSpec.EXACTLY) {
+            return fromParent;
+        } else if (mode == MeasureSpec.AT_MOST) {
+            return Math.min(used, fromParent);
+        } else {
+            return used;
+        }
+    }
 
-        measureChild(child,
-                widthSpec,
-                heightSpec
-        );
 
-        /* 2. 记录测量之后该view的位置 */
+    private void measureOverlay() {
 
-        setChildLayoutParams(constraint, child);
+        if (mOverlay != null) {
+            mOverlay.measure(
+                    MeasureSpec.makeMeasureSpec(getMeasuredWidth(), MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(getMeasuredHeight(), MeasureSpec.EXACTLY)
+            );
+        }
     }
 
 
     /**
-     * 在{@link #onMeasure(int, int)}中调用,用来设置位置信息
-     * used for set layout info
+     * 按上次的求解顺序求解,引用了还没有求解的位置时先求解被引用的位置
+     */
+    private void solveInOrder(BaseConstraintAdapter adapter, int childCount) {
+
+        SolveOrder order = mSolveOrder;
+        order.begin(childCount);
+        boolean solved = false;
+        try {
+            for (int i = 0; i < childCount; i++) {
+                int position = order.positionAt(i, childCount);
+                if (!order.isSolved(position)) {
+                    solvePosition(adapter, position);
+                }
+            }
+            solved = true;
+        } finally {
+            if (solved) {
+                order.end();
+            } else {
+                order.abort();
+            }
+        }
+    }
+
+
+    /**
+     * 分帧测量:从上一帧停下的序号继续按求解顺序求解,超过截止时间之后暂停,至少求解一个序号
      *
-     * @param constraint child's constraint
-     * @param child      child in group
-     * @return child's layoutParams with layout Info
+     * @return true:所有布局位置都已经求解
      */
-    private LayoutParams setChildLayoutParams(Constraint constraint, View child) {
+    private boolean solveSlice(BaseConstraintAdapter adapter, int childCount, long deadline, boolean resume) {
 
-        final int minBias = 0;
+        SolveOrder order = mSolveOrder;
+        MeasureSlicer slicer = mSlicer;
+        if (resume) {
+            order.resume();
+        } else {
+            order.begin(childCount);
+        }
 
-        LayoutParams params = getChildLayoutParams(child);
+        boolean solved = false;
+        try {
+            while (slicer.next() < childCount) {
+                int position = order.positionAt(slicer.next(), childCount);
+                if (!order.isSolved(position)) {
+                    solvePosition(adapter, position);
+                }
+                slicer.advance();
+                if (System.nanoTime() >= deadline) {
+                    break;
+                }
+            }
+            solved = true;
+        } finally {
+            if (!solved) {
+                order.abort();
+                slicer.cancel();
+            } else if (slicer.next() < childCount) {
+                order.pause();
+            } else {
+                order.end();
+            }
+        }
+        return slicer.next() >= childCount;
+    }
 
-        /* 读取约束信息 */
 
-        int constraintLeft = constraint.left;
-        int constraintTop = constraint.top;
-        int constraintRight = constraint.right;
-        int constraintBottom = constraint.bottom;
+    /**
+     * 求解模式:约束变化时使用adapter重新生成线性约束,之后读取求解的结果测量
+     */
+    private void measureWithSystem(BaseConstraintAdapter adapter, int childCount) {
 
-        /* 根据水平偏移比调整 left right */
+        ConstraintSystem system = mConstraintSystem;
 
-        if (constraint.horizontalBias == minBias) {
+        int parentLeft = getParentLeft();
+        int parentTop = getParentTop();
+        int parentRight = getParentRight();
+        int parentBottom = getParentBottom();
 
-            if (constraint.isLeftConstraint()) {
-                params.left = constraintLeft;
-                params.right = constraintLeft + child.getMeasuredWidth();
+        if (system.needsRebuild(childCount, parentLeft, parentTop, parentRight, parentBottom)) {
+
+            /* 按引用顺序求解一次生成约束:引用的位置已经是这次的结果,没有约束的边使用测量之后的值 */
+
+            system.beginRebuild(childCount);
+            mRebuildingSystem = system;
+            try {
+                solveInOrder(adapter, childCount);
+            } finally {
+                mRebuildingSystem = null;
+            }
+            mDeferredCount = 0;
+
+            system.endRebuild(parentLeft, parentTop, parentRight, parentBottom);
+        }
+
+        system.updateVariables();
+
+        Constraint constraint = obtainConstraint();
+        for (int i = 0; i < childCount; i++) {
+            system.resolve(i, constraint);
+            applyConstraint(adapter, i, getChildAt(i), constraint);
+        }
+    }
+
+
+    /**
+     * 求解一个布局位置;求解过程中约束引用了还没有求解的位置时,会递归求解被引用的位置,
+     * 每一层使用自己的约束,避免覆盖外层正在生成的约束
+     */
+    private void solvePosition(BaseConstraintAdapter adapter, int position) {
+
+        SolveOrder order = mSolveOrder;
+        int depth = order.depth();
+
+        Constraint constraint;
+        if (depth == 0) {
+            constraint = obtainConstraint();
+        } else {
+            if (depth >= mSolveConstraints.length) {
+                mSolveConstraints = Arrays.copyOf(mSolveConstraints, depth << 1);
+            }
+            constraint = mSolveConstraints[depth];
+            if (constraint == null) {
+                constraint = new Constraint(this);
+                mSolveConstraints[depth] = constraint;
+            }
+            constraint.init();
+        }
+
+        ConstraintSystem system = mRebuildingSystem;
+        LayoutRecorder recorder = mRecorder;
+        if (system != null) {
+            constraint.mRelations = system.recordingAt(depth);
+        } else if (recorder != null) {
+            constraint.mRelations = recorder.relationsAt(depth);
+        }
+
+        int outerDepends = mDependsFlags;
+        mDependsFlags = 0;
+        order.push(position);
+        try {
+            ConstraintUpdate update = mCommittingUpdate;
+            if (update != null) {
+                View child = getChildAt(position);
+                measureViewWithConstraint(position, child, update.resolve(update.indexOf(position), constraint, child));
             } else {
-                params.left = constraintRight - child.getMeasuredWidth();
-                params.right = constraintRight;
+                measureViewWithConstraint(adapter, position, getChildAt(position), constraint);
+                if (system != null) {
+                    system.record(position, constraint, constraint.mRelations, mRectTable);
+                }
+            }
+            if (mDependsFlags != 0) {
+                deferDependent(position, mDependsFlags);
+            }
+        } finally {
+            constraint.mRelations = null;
+            mDependsFlags = outerDepends;
+        }
+        order.pop(position);
+    }
+
+
+    /**
+     * 生成约束时读取了延迟位置的临时位置:该位置在读取到的方向上也是临时位置,内容尺寸确定之后重新生成约束;
+     * 被读取的位置先完成求解,在延迟列表中排在前面
+     */
+    private void deferDependent(int position, int depends) {
+
+        RectTable table = mRectTable;
+        boolean listed = table.hasFlag(position, RectTable.FLAG_DEFERRED_HORIZONTAL | RectTable.FLAG_DEFERRED_VERTICAL);
+        table.addFlag(position, depends | RectTable.FLAG_DEFERRED_DEPENDENT);
+        if (listed) {
+            return;
+        }
+
+        int index = mDeferredCount;
+        if (index == mDeferredPositions.length) {
+            mDeferredPositions = Arrays.copyOf(mDeferredPositions, index << 1);
+            mDeferredConstraints = Arrays.copyOf(mDeferredConstraints, index << 1);
+        }
+        mDeferredPositions[index] = position;
+        mDeferredCount = index + 1;
+    }
+
+
+    /**
+     * 求解中读取一个位置之后调用:被读取的位置是延迟的临时位置时,记录到正在生成约束的位置
+     *
+     * @param flag 读取的方向{@link RectTable#FLAG_DEFERRED_HORIZONTAL}或{@link RectTable#FLAG_DEFERRED_VERTICAL}
+     */
+    private void checkDeferredRead(int position, int flag) {
+
+        if (mDeferring && mSolveOrder.depth() > 0 && position >= 0 && position < mSolveOrder.count()
+                && mRectTable.hasFlag(position, flag)) {
+            mDependsFlags |= flag;
+        }
+    }
+
+
+    /**
+     * 测量过程中读取位置信息之前调用,该位置还没有求解时先求解它
+     */
+    private void ensureSolved(int position) {
+
+        SolveOrder order = mSolveOrder;
+        if (position < 0 || position >= order.count() || order.isSolved(position)) {
+            return;
+        }
+
+        if (order.isSolving(position)) {
+            reportCycle(position);
+            return;
+        }
+
+        solvePosition(mAdapter, position);
+    }
+
+
+    /**
+     * 约束循环引用时,读取到的是上一次测量的位置;根据{@link #mValidationMode}报告
+     */
+    private void reportCycle(int position) {
+
+        final int mode = mValidationMode;
+        if (mode == VALIDATION_OFF) {
+            return;
+        }
+
+        if (mode == VALIDATION_STRICT) {
+            throw new IllegalStateException("constraint cycle: " + mSolveOrder.describeCycle(position));
+        }
+
+        if (!mRectTable.hasFlag(position, RectTable.FLAG_CYCLE_REPORTED)) {
+            mRectTable.addFlag(position, RectTable.FLAG_CYCLE_REPORTED);
+            Log.e(TAG, "constraint cycle: " + mSolveOrder.describeCycle(position) +
+                    " , using last measured position of " + position);
+        }
+    }
+
+
+    /**
+     * 记录测量之后view的布局位置,简化{@link #onLayout(boolean, int, int, int, int)}操作
+     */
+    private LayoutParams measureViewWithConstraint(BaseConstraintAdapter adapter,
+                                                   int position,
+                                                   View child,
+                                                   Constraint blank) {
+
+        final boolean trace = LayoutTracer.isEnabled();
+
+        /* 1. 先测量 */
+
+        if (trace) {
+            mTracer.begin(adapter, position, LayoutTracer.PHASE_CONSTRAINT);
+        }
+        Constraint constraint;
+        try {
+            constraint = adapter.generateConstraintTo(position, blank, child);
+        } finally {
+            if (trace) {
+                mTracer.end();
+            }
+        }
+
+        return applyConstraint(adapter, position, child, constraint);
+    }
+
+
+    /**
+     * 使用约束测量view,记录测量之后的位置
+     */
+    private LayoutParams applyConstraint(BaseConstraintAdapter adapter,
+                                         int position,
+                                         View child,
+                                         Constraint constraint) {
+
+        final boolean trace = LayoutTracer.isEnabled();
+
+        if (constraint.hasDeferredEdges()) {
+            if (mDeferring) {
+                return deferConstraint(position, child, constraint);
+            }
+            constraint.resolveDeferred(mContentRight, mContentBottom);
+        }
+        mRectTable.clearFlag(position, RectTable.FLAG_DEFERRED_HORIZONTAL | RectTable.FLAG_DEFERRED_VERTICAL
+                | RectTable.FLAG_DEFERRED_DEPENDENT);
+
+        checkConstraint(constraint, child, position);
+
+        int widthSpec = constraint.makeWidthSpec(child);
+        int heightSpec = constraint.makeHeightSpec(child);
+
+        if (trace) {
+            mTracer.begin(adapter, position, LayoutTracer.PHASE_MEASURE);
+        }
+        try {
+            adapter.beforeMeasure(position, child);
+            measureChildAt(position, child, constraint, widthSpec, heightSpec);
+            adapter.afterMeasure(position, child);
+        } finally {
+            if (trace) {
+                mTracer.end();
+            }
+        }
+
+        /* 2. 记录测量之后该view的位置 */
+
+        LayoutParams params = setChildLayoutParams(constraint, child, mRectTable.getBaselineOffset(position));
+        params.position = position;
+        mRectTable.set(position, params.left, params.top, params.right, params.bottom);
+
+        if (mRecorder != null && mRebuildingSystem == null) {
+            mRecorder.recordPosition(position, constraint, child, mRectTable.getBaselineOffset(position),
+                                     params.left, params.top, params.right, params.bottom);
+        }
+        return params;
+    }
+
+
+    /**
+     * 求解并测量所有绘制项,位置保存在{@link #mRenderTable}
+     *
+     * @return 绘制项数量
+     */
+    private int measureRenderItems(BaseConstraintAdapter adapter) {
+
+        final int count = adapter.getRenderItemCount();
+        if (count == 0 && mRenderCount == 0) {
+            return 0;
+        }
+
+        if (mRenderItems.length < count) {
+            mRenderItems = Arrays.copyOf(mRenderItems, count);
+        }
+        for (int i = count; i < mRenderCount; i++) {
+            if (mRenderItems[i] != null) {
+                mRenderItems[i].detach();
+                mRenderItems[i] = null;
+            }
+        }
+        mRenderCount = count;
+
+        if (mRenderTable == null) {
+            mRenderTable = new RectTable(count);
+        }
+        mRenderTable.ensureCapacity(count);
+
+        Rect rect = mSolvedRect;
+        for (int i = 0; i < count; i++) {
+
+            RenderItem item = mRenderItems[i];
+            if (item == null) {
+                item = adapter.generateRenderItemTo(i);
+                if (item == null) {
+                    mRenderTable.set(i, 0, 0, 0, 0);
+                    continue;
+                }
+                item.attach(this);
+                mRenderItems[i] = item;
             }
 
+            Constraint constraint = obtainConstraint();
+            constraint = adapter.generateRenderConstraintTo(i, constraint, item);
+            if (constraint.hasDeferredEdges()) {
+                constraint.resolveDeferred(mContentRight, mContentBottom);
+            }
+
+            int layoutWidth = item.getLayoutWidth();
+            int layoutHeight = item.getLayoutHeight();
+            item.measure(
+                    constraint.makeWidthSpec(layoutWidth, layoutHeight),
+                    constraint.makeHeightSpec(layoutWidth, layoutHeight)
+            );
+            int measuredWidth = item.getMeasuredWidth();
+            int measuredHeight = item.getMeasuredHeight();
+            if (constraint.isClamped(measuredWidth, measuredHeight)) {
+                item.measure(
+                        constraint.makeClampedWidthSpec(measuredWidth),
+                        constraint.makeClampedHeightSpec(measuredHeight)
+                );
+            }
+
+            solveRect(constraint, item.getMeasuredWidth(), item.getMeasuredHeight(), item.getBaseline(), rect);
+            mRenderTable.set(i, rect.left, rect.top, rect.right, rect.bottom);
+        }
+        return count;
+    }
+
+
+    /**
+     * 移除所有绘制项,例如更换adapter之后
+     */
+    private void clearRenderItems() {
+
+        for (int i = 0; i < mRenderCount; i++) {
+            if (mRenderItems[i] != null) {
+                mRenderItems[i].detach();
+                mRenderItems[i] = null;
+            }
+        }
+        mRenderCount = 0;
+    }
+
+
+    /**
+     * 在子view之前绘制绘制项,跳过与裁剪区域不相交的项
+     */
+    private void drawRenderItems(Canvas canvas) {
+
+        RectTable table = mRenderTable;
+        Rect clip = mDrawClip;
+        for (int i = 0; i < mRenderCount; i++) {
+
+            RenderItem item = mRenderItems[i];
+            if (item == null || !item.isVisible()) {
+                continue;
+            }
+
+            int left = table.getLeft(i);
+            int right = table.getRight(i);
+            if (mLayoutRtl) {
+                int mirroredLeft = mirrorX(right);
+                right = mirrorX(left);
+                left = mirroredLeft;
+            }
+            int top = table.getTop(i);
+            int bottom = table.getBottom(i);
+
+            if (mHasDrawClip && (right <= clip.left || left >= clip.right || bottom <= clip.top || top >= clip.bottom)) {
+                continue;
+            }
+            item.draw(canvas, left, top, right, bottom);
+        }
+    }
+
+
+    /**
+     * 父布局的尺寸还不确定,保存约束,内容尺寸确定之后再测量;
+     * 先以0为基准记录位置,其他约束引用它时读取到的是这个临时位置
+     */
+    private LayoutParams deferConstraint(int position, View child, Constraint constraint) {
+
+        int index = mDeferredCount;
+        if (index == mDeferredPositions.length) {
+            mDeferredPositions = Arrays.copyOf(mDeferredPositions, index << 1);
+            mDeferredConstraints = Arrays.copyOf(mDeferredConstraints, index << 1);
+        }
+        Constraint saved = mDeferredConstraints[index];
+        if (saved == null) {
+            saved = new Constraint(this);
+            mDeferredConstraints[index] = saved;
+        }
+        saved.set(constraint);
+        mDeferredPositions[index] = position;
+        mDeferredCount = index + 1;
+
+        RectTable table = mRectTable;
+        table.set(position, constraint.left, constraint.top, constraint.right, constraint.bottom);
+        table.clearFlag(position, RectTable.FLAG_DEFERRED_HORIZONTAL | RectTable.FLAG_DEFERRED_VERTICAL
+                | RectTable.FLAG_DEFERRED_DEPENDENT);
+        if (constraint.isHorizontalDeferred()) {
+            table.addFlag(position, RectTable.FLAG_DEFERRED_HORIZONTAL);
+        }
+        if (constraint.isVerticalDeferred()) {
+            table.addFlag(position, RectTable.FLAG_DEFERRED_VERTICAL);
+        }
+        if (mRecorder != null && mRebuildingSystem == null) {
+            mRecorder.recordDeferred(position, constraint.left, constraint.top, constraint.right, constraint.bottom);
+        }
+        return getChildLayoutParams(child);
+    }
+
+
+    /**
+     * @return 内容的右边, 父布局宽度是wrap_content时是上一次测量得到的内容宽度
+     */
+    int getContentRight() {
+
+        return mContentRight;
+    }
+
+
+    /**
+     * @return 内容的底边, 父布局高度是wrap_content时是上一次测量得到的内容高度
+     */
+    int getContentBottom() {
+
+        return mContentBottom;
+    }
+
+
+    /**
+     * 使用约束测量单个view,该方法用于更新约束
+     */
+    private void measureViewWithConstraint(int position,
+                                           View child,
+                                           Constraint constraint) {
+
+        /* 1. 先测量,父布局尺寸不确定的边使用上一次测量的内容尺寸 */
+
+        if (constraint.hasDeferredEdges()) {
+            constraint.resolveDeferred(mContentRight, mContentBottom);
+        }
+
+        checkConstraint(constraint, child, position);
+
+        int widthSpec = constraint.makeWidthSpec(child);
+        int heightSpec = constraint.makeHeightSpec(child);
+
+        if (position >= 0) {
+
+            final boolean trace = LayoutTracer.isEnabled() && mAdapter != null;
+            if (trace) {
+                mTracer.begin(mAdapter, position, LayoutTracer.PHASE_MEASURE);
+            }
+            try {
+                measureChildAt(position, child, constraint, widthSpec, heightSpec);
+            } finally {
+                if (trace) {
+                    mTracer.end();
+                }
+            }
         } else {
+            measureChild(child,
+                    widthSpec,
+                    heightSpec
+            );
+            remeasureClamped(child, constraint);
+        }
 
-            /* have horizontal offset */
+        /* 2. 记录测量之后该view的位置 */
 
-            int childMeasuredWidth = child.getMeasuredWidth();
-            int constraintWidth = constraintRight - constraintLeft;
+        int baseline = position >= 0 ? mRectTable.getBaselineOffset(position) : child.getBaseline();
+        LayoutParams params = setChildLayoutParams(constraint, child, baseline);
+        if (position >= 0) {
+            mRectTable.set(position, params.left, params.top, params.right, params.bottom);
+        }
+    }
 
-            int extraSpace = constraintWidth - childMeasuredWidth;
 
-            if (extraSpace > 0) {
+    /**
+     * 测量子view,记录测量使用的spec和baseline;spec没有变化时是否跳过由{@link View#measure(int, int)}自己的缓存决定,
+     * 统计时spec和上次相同并且view没有请求重新布局记为缓存命中,其余记为实际测量
+     */
+    private void measureChildAt(int position, View child, Constraint constraint, int widthSpec, int heightSpec) {
+
+        RectTable table = mRectTable;
+        final boolean cached = table.isMeasuredWith(position, widthSpec, heightSpec) && !child.isLayoutRequested();
+
+        measureChild(child,
+                widthSpec,
+                heightSpec
+        );
+        remeasureClamped(child, constraint);
+        table.setMeasuredWith(position, widthSpec, heightSpec);
+        table.setBaseline(position, child.getBaseline());
+        if (cached) {
+            mStats.recordChildMeasureSkipped();
+        } else {
+            mStats.recordChildMeasured();
+        }
+    }
+
+
+    /**
+     * wrap_content 的测量结果不在最小最大尺寸之间时,按布局使用的尺寸重新测量一次,使测量尺寸和布局尺寸相同
+     */
+    static void remeasureClamped(View child, Constraint constraint) {
+
+        int measuredWidth = child.getMeasuredWidth();
+        int measuredHeight = child.getMeasuredHeight();
+        if (constraint.isClamped(measuredWidth, measuredHeight)) {
+            child.measure(
+                    constraint.makeClampedWidthSpec(measuredWidth),
+                    constraint.makeClampedHeightSpec(measuredHeight)
+            );
+        }
+    }
+
+
+    /**
+     * 根据{@link #mValidationMode}检查约束是否合法,合法时不会创建任何对象
+     */
+    private void checkConstraint(Constraint constraint, View child, int position) {
+
+        final int mode = mValidationMode;
+        if (mode == VALIDATION_OFF) {
+            return;
+        }
+
+        LayoutParams params = getChildLayoutParams(child);
+
+        if (constraint.isLegal(params.width, params.height)) {
+            if (position >= 0) {
+                mRectTable.clearFlag(position, RectTable.FLAG_ILLEGAL_REPORTED);
+            }
+            return;
+        }
+
+        if (mode == VALIDATION_STRICT) {
+            throw new IllegalStateException(constraint.makeIllegalMessage(child, position));
+        }
+
+        /* 不在测量过程中(例如 extra view),直接报告 */
+
+        if (position < 0) {
+            Log.e(TAG, constraint.makeIllegalMessage(child, position));
+            return;
+        }
+
+        ConstraintViolations violations;
+        if (mMeasuring) {
+            if (mViolations == null) {
+                mViolations = new ConstraintViolations();
+            }
+            violations = mViolations;
+        } else {
+            if (mUpdateViolations == null) {
+                mUpdateViolations = new ConstraintViolations();
+            }
+            violations = mUpdateViolations;
+        }
+
+        boolean isNew = !mRectTable.hasFlag(position, RectTable.FLAG_ILLEGAL_REPORTED);
+        mRectTable.addFlag(position, RectTable.FLAG_ILLEGAL_REPORTED);
+        violations.add(position, constraint, isNew);
+    }
+
+
+    /**
+     * 一次测量结束后报告收集到的非法约束,只有出现新的非法约束时才报告,布局不变时不会重复报告
+     */
+    private void reportViolations() {
+
+        reportViolations(mViolations);
+    }
+
+
+    /**
+     * 测量之外更新约束结束后报告收集到的非法约束,之后清空
+     */
+    private void reportUpdateViolations() {
+
+        ConstraintViolations violations = mUpdateViolations;
+        if (violations != null && violations.size() > 0) {
+            reportViolations(violations);
+            violations.clear();
+        }
+    }
+
+
+    private void reportViolations(ConstraintViolations violations) {
+
+        if (violations == null || violations.size() == 0 || !violations.hasNew()) {
+            return;
+        }
+
+        if (mViolationListener != null) {
+            mViolationListener.onConstraintViolation(this, violations);
+        } else {
+            Log.e(TAG, violations.toString());
+        }
+    }
+
+
+    /**
+     * {@link #VALIDATION_COLLECT}模式下,测量结束后报告收集到的非法约束
+     */
+    public interface OnConstraintViolationListener {
+
+        /**
+         * 报告非法约束
+         *
+         * @param layout     布局
+         * @param violations 本次测量(或者一次更新约束)收集到的非法约束,回调结束后会被复用,不要持有
+         */
+        void onConstraintViolation(ConstraintLayout layout, ConstraintViolations violations);
+    }
+
+
+    /**
+     * 在{@link #onMeasure(int, int)}中调用,用来设置位置信息
+     * used for set layout info
+     *
+     * @param constraint child's constraint
+     * @param child      child in group
+     * @param baseline   child's baseline after measure, -1 if none
+     * @return child's layoutParams with layout Info
+     */
+    private LayoutParams setChildLayoutParams(Constraint constraint, View child, int baseline) {
+
+        LayoutParams params = getChildLayoutParams(child);
+
+        Rect rect = mSolvedRect;
+        solveRect(constraint, child.getMeasuredWidth(), child.getMeasuredHeight(), baseline, rect);
+
+        params.left = rect.left;
+        params.top = rect.top;
+        params.right = rect.right;
+        params.bottom = rect.bottom;
+
+        return params;
+    }
+
+
+    /**
+     * 根据约束和测量的尺寸计算位置
+     *
+     * @param constraint     约束
+     * @param measuredWidth  测量宽度
+     * @param measuredHeight 测量高度
+     * @param out            保存结果
+     */
+    static void solveRect(Constraint constraint, int measuredWidth, int measuredHeight, Rect out) {
+
+        solveRect(constraint, measuredWidth, measuredHeight, -1, out);
+    }
+
+
+    /**
+     * 根据约束和测量的尺寸计算位置,约束了baseline时竖直方向按baseline对齐
+     *
+     * @param constraint     约束
+     * @param measuredWidth  测量宽度
+     * @param measuredHeight 测量高度
+     * @param baseline       测量之后相对view上边的baseline,-1 表示没有,此时以底边作为baseline
+     * @param out            保存结果
+     */
+    static void solveRect(Constraint constraint, int measuredWidth, int measuredHeight, int baseline, Rect out) {
+
+        final int minBias = 0;
+
+        /* wrap_content 的view测量结果可能小于最小尺寸 */
+
+        measuredWidth = constraint.clampWidth(measuredWidth);
+        measuredHeight = constraint.clampHeight(measuredHeight);
+
+        /* 读取约束信息 */
+
+        int constraintLeft = constraint.left;
+        int constraintTop = constraint.top;
+        int constraintRight = constraint.right;
+        int constraintBottom = constraint.bottom;
+
+        /* 根据水平偏移比调整 left right */
+
+        if (constraint.horizontalBias == minBias) {
+
+            if (constraint.isLeftConstraint()) {
+                out.left = constraintLeft;
+                out.right = constraintLeft + measuredWidth;
+            } else {
+                out.left = constraintRight - measuredWidth;
+                out.right = constraintRight;
+            }
+
+        } else {
+
+            /* have horizontal offset */
+
+            int childMeasuredWidth = measuredWidth;
+            int constraintWidth = constraintRight - constraintLeft;
+
+            int extraSpace = constraintWidth - childMeasuredWidth;
+
+            if (extraSpace > 0) {
+
+                if (constraint.isLeftConstraint()) {
+
+                    float offset = constraint.horizontalBias * extraSpace;
+                    out.left = (int) (constraintLeft + offset) + 1;
+                    out.right = out.left + measuredWidth;
+
+                } else {
+
+                    float offset = (1 - constraint.horizontalBias) * extraSpace;
+                    out.right = (int) (constraintRight - offset) + 1;
+                    out.left = out.right - measuredWidth;
+
+                }
+
+            } else {
+
+                if (constraint.isLeftConstraint()) {
+                    out.left = constraintLeft;
+                    out.right = constraintLeft + measuredWidth;
+                } else {
+                    out.left = constraintRight - measuredWidth;
+                    out.right = constraintRight;
+                }
+            }
+        }
+
+        /* 根据垂直偏移比调整 top bottom,baseline 对齐时不需要偏移比 */
+
+        if (constraint.isBaselineConstraint()) {
+
+            out.top = constraint.baseline - (baseline < 0 ? measuredHeight : baseline);
+            out.bottom = out.top + measuredHeight;
+
+        } else if (constraint.verticalBias == minBias) {
+
+            if (constraint.isTopConstraint()) {
+                out.top = constraintTop;
+                out.bottom = out.top + measuredHeight;
+            } else {
+                out.top = constraintBottom - measuredHeight;
+                out.bottom = constraintBottom;
+            }
+        } else {
+
+            /* have vertical offset */
+
+            int childMeasuredHeight = measuredHeight;
+            int constraintHeight = constraintBottom - constraintTop;
+
+            int extraSpace = constraintHeight - childMeasuredHeight;
+
+            if (extraSpace > 0) {
+
+                if (constraint.isTopConstraint()) {
+
+                    float offset = constraint.verticalBias * extraSpace;
+                    out.top = (int) (constraintTop + offset) + 1;
+                    out.bottom = out.top + childMeasuredHeight;
+
+                } else {
+
+                    float offset = (1 - constraint.verticalBias) * extraSpace;
+                    out.top = constraintBottom - measuredHeight;
+                    out.bottom = (int) (constraintBottom - offset) - 1;
+
+                }
+
+            } else {
+
+                if (constraint.isTopConstraint()) {
+                    out.top = constraintTop;
+                    out.bottom = out.top + measuredHeight;
+                } else {
+                    out.top = constraintBottom - measuredHeight;
+                    out.bottom = constraintBottom;
+                }
+            }
+        }
+
+    }
+
+    //============================ 分帧测量 ============================
+
+
+    /**
+     * 开启分帧测量:布局位置很多时,每帧只求解测量不超过该时间的部分,已经求解的位置先显示,
+     * 之后每帧继续,全部求解之后才是最终的尺寸;布局位置数量变化时重新开始,没有完成时父布局的spec变化则直接完成,
+     * 求解模式{@link #setConstraintSystem(ConstraintSystem)}下不分帧
+     *
+     * @param budgetMillis 每帧的时间上限,单位毫秒,例如4,0 关闭
+     */
+    public void setMeasureFrameBudget(long budgetMillis) {
+
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("budget must >= 0: " + budgetMillis);
+        }
+
+        if (mSlicer == null) {
+            if (budgetMillis == 0) {
+                return;
+            }
+            mSlicer = new MeasureSlicer(this);
+        }
+        mSlicer.setBudgetNanos(budgetMillis * 1000000L);
+        requestLayout();
+    }
+
+
+    /**
+     * @return 每帧的时间上限, 单位毫秒,0 表示没有开启分帧测量
+     */
+    public long getMeasureFrameBudget() {
+
+        return mSlicer == null ? 0 : mSlicer.getBudgetNanos() / 1000000L;
+    }
+
+
+    /**
+     * @return true:分帧测量还没有完成, 测量得到的尺寸不是最终尺寸
+     */
+    public boolean isMeasureInProgress() {
+
+        return mSlicer != null && mSlicer.isActive();
+    }
+
+
+    /**
+     * 设置分帧测量的进度监听
+     *
+     * @param listener 监听
+     */
+    public void setOnMeasureProgressListener(OnMeasureProgressListener listener) {
+
+        mProgressListener = listener;
+    }
+
+
+    /**
+     * 放弃没有完成的分帧测量,下次测量从头开始
+     */
+    private void cancelSlicedMeasure() {
+
+        if (mSlicer != null) {
+            mSlicer.cancel();
+        }
+    }
+
+
+    /**
+     * 分帧测量的进度,在{@link #onMeasure(int, int)}中回调,不要在回调中请求重新布局
+     */
+    public interface OnMeasureProgressListener {
+
+        /**
+         * 一帧测量结束,还有没有求解的布局位置
+         *
+         * @param layout     布局
+         * @param solved     已经按求解顺序处理的数量
+         * @param childCount 布局位置数量
+         */
+        void onMeasureProgress(ConstraintLayout layout, int solved, int childCount);
+
+        /**
+         * 所有布局位置求解完成
+         *
+         * @param layout 布局
+         * @param width  最终的宽度
+         * @param height 最终的高度
+         */
+        void onMeasureComplete(ConstraintLayout layout, int width, int height);
+    }
+
+    //============================ 测量最小尺寸 ============================
+
+
+    /**
+     * 使用该方法可以测量出一个view完全显示需要的最小尺寸(不包括margin),对一个view调用该方法之后,
+     * 可以使用{@link View#getMeasuredWidth()}和{@link View#getMeasuredHeight()} ()}读取测量的值,
+     * 该方法只测量view,一般用来判断剩余viewGroup剩余空间能否显示的下view
+     */
+    public void measureAtMostSize(View view) {
+
+        int measureSpec = MeasureSpec.makeMeasureSpec(Integer.MAX_VALUE >> 1, MeasureSpec.AT_MOST);
+        measureChild(view, measureSpec, measureSpec);
+
+    }
+
+    //============================ layout ============================
+
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+
+        if (mAdapter == null) {
+            return;
+        }
+
+        final long startNanos = System.nanoTime();
+
+        BaseConstraintAdapter adapter = mAdapter;
+
+        int count = adapter.getChildCount();
+        for (int i = 0; i < count; i++) {
+
+            View child = getChildAt(i);
+
+            if (child.getVisibility() != VISIBLE) {
+                continue;
+            }
+
+            /* 分帧测量还没有求解到的位置,布局参数还是上一次测量的,先布局为空区域,求解它的那一帧之后的布局再显示 */
+
+            if (isUnsolvedInSlice(i)) {
+                child.layout(child.getLeft(), child.getTop(), child.getLeft(), child.getTop());
+            } else {
+                layoutChildWithLayoutParams(adapter, i, child);
+            }
+        }
+
+        if (mOverlay != null) {
+            mOverlay.layout(0, 0, r - l, b - t);
+        }
+
+        if (mHitTestIndex != null) {
+            mHitTestIndex.markDirty();
+        }
+        if (mIntervalIndex != null) {
+            mIntervalIndex.markDirty();
+        }
+        if (mTransition != null) {
+            mTransition.applyCurrentFrame();
+        }
+        if (mVisibleRangeListener != null) {
+            dispatchVisibleRangeChanged();
+        }
+
+        mStats.recordLayoutPass(System.nanoTime() - startNanos);
+    }
+
+
+    /**
+     * @return true:分帧测量还没有完成,并且该位置还没有求解
+     */
+    private boolean isUnsolvedInSlice(int position) {
+
+        return mSlicer != null && mSlicer.isActive() && !mSolveOrder.isSolved(position);
+    }
+
+
+    /**
+     * 使用布局参数中的逻辑坐标布局view,RTL 时水平方向镜像
+     */
+    void layoutChild(View child, LayoutParams params) {
+
+        if (mLayoutRtl) {
+            int width = getWidth();
+            child.layout(width - params.right, params.top, width - params.left, params.bottom);
+        } else {
+            child.layout(params.left, params.top, params.right, params.bottom);
+        }
+    }
+
+
+    /**
+     * 逻辑坐标和实际坐标的水平转换,镜像是对称的,两个方向相同
+     */
+    private int mirrorX(int x) {
+
+        return mLayoutRtl ? getWidth() - x : x;
+    }
+
+
+    /**
+     * @return true:布局方向是RTL, 约束和位置表中的left/right表示start/end
+     */
+    public boolean isLayoutRtl() {
+
+        return mLayoutRtl;
+    }
+
+
+    /**
+     * 使用布局参数布局view
+     */
+    private void layoutChildWithLayoutParams(BaseConstraintAdapter adapter, int position, View child) {
+
+        final boolean trace = LayoutTracer.isEnabled() && adapter != null && position >= 0;
+        if (trace) {
+            mTracer.begin(adapter, position, LayoutTracer.PHASE_LAYOUT);
+        }
+
+        try {
+            LayoutParams params = getChildLayoutParams(child);
+            adapter.beforeLayout(position, child);
+            layoutChild(child, params);
+            adapter.afterLayout(position, child);
+        } finally {
+            if (trace) {
+                mTracer.end();
+            }
+        }
+    }
+
+    //============================ 绘制 ============================
+
+    /**
+     * 是否跳过绘制不在裁剪区域内的子view
+     */
+    private boolean mDrawCullingEnabled = true;
+
+    /**
+     * 本次绘制的裁剪区域
+     */
+    private final Rect    mDrawClip = new Rect();
+    private       boolean mHasDrawClip;
+
+    /**
+     * 硬件加速时上一次记录display list使用的裁剪区域,滚动之后可见区域超出它时重新绘制
+     */
+    private final Rect    mRecordedClip = new Rect();
+    private final Rect    mCullingRect  = new Rect();
+    private       boolean mCullingScrollRegistered;
+
+    private final ViewTreeObserver.OnScrollChangedListener mCullingScrollListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+
+                @Override
+                public void onScrollChanged() {
+
+                    Rect visible = mCullingRect;
+                    if (getLocalVisibleRect(visible) && !mRecordedClip.contains(visible)) {
+                        invalidate();
+                    }
+                }
+            };
+
+
+    /**
+     * 开启之后(默认开启),绘制时使用测量好的位置跳过与裁剪区域不相交的子view,
+     * 这些子view不会调用draw,也不会重建display list;
+     * 硬件加速时画布的裁剪区域总是整个布局,此时使用布局在窗口中的可见区域(向四周各扩展半个可见区域)裁剪,
+     * 滚动到扩展的区域之外时重新绘制;在ScrollView中绘制耗时只和可见区域附近的内容有关
+     *
+     * @param enabled true:开启
+     */
+    public void setDrawCullingEnabled(boolean enabled) {
+
+        if (mDrawCullingEnabled != enabled) {
+            mDrawCullingEnabled = enabled;
+            if (!enabled) {
+                unregisterCullingScrollListener();
+            }
+            invalidate();
+        }
+    }
+
+
+    public boolean isDrawCullingEnabled() {
+
+        return mDrawCullingEnabled;
+    }
+
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+
+        mHasDrawClip = mDrawCullingEnabled && mAdapter != null && computeDrawClip(canvas, mDrawClip);
+        if (mRenderCount > 0) {
+            drawRenderItems(canvas);
+        }
+        super.dispatchDraw(canvas);
+        mHasDrawClip = false;
+    }
+
+
+    /**
+     * 计算本次绘制的裁剪区域:软件绘制(包括绘制到bitmap)直接使用画布的裁剪区域;
+     * 硬件加速时和扩展之后的可见区域相交,并监听滚动,可见区域移出这次记录的区域时重新绘制
+     *
+     * @return false:没有裁剪区域
+     */
+    private boolean computeDrawClip(Canvas canvas, Rect out) {
+
+        if (!canvas.getClipBounds(out)) {
+            return false;
+        }
+        if (!canvas.isHardwareAccelerated() || !mAttached) {
+            return true;
+        }
+
+        Rect visible = mCullingRect;
+        if (getLocalVisibleRect(visible)) {
+            visible.inset(-(visible.width() >> 1), -(visible.height() >> 1));
+            if (!out.intersect(visible)) {
+                out.setEmpty();
+            }
+        }
+        mRecordedClip.set(out);
+
+        if (!mCullingScrollRegistered) {
+            getViewTreeObserver().addOnScrollChangedListener(mCullingScrollListener);
+            mCullingScrollRegistered = true;
+        }
+        return true;
+    }
+
+
+    private void unregisterCullingScrollListener() {
+
+        if (mCullingScrollRegistered) {
+            getViewTreeObserver().removeOnScrollChangedListener(mCullingScrollListener);
+            mCullingScrollRegistered = false;
+        }
+    }
+
+
+    @Override
+    protected boolean drawChild(Canvas canvas, View child, long drawingTime) {
+
+        if (mHasDrawClip && isOutsideDrawClip(child)) {
+            return false;
+        }
+        return super.drawChild(canvas, child, drawingTime);
+    }
+
+
+    /**
+     * 子view是否完全在裁剪区域之外;有动画,变换或者z轴高度(阴影会画在边界之外)的子view总是绘制
+     */
+    private boolean isOutsideDrawClip(View child) {
+
+        int position = getChildLayoutParams(child).position;
+        if (position < 0 || position >= mAdapter.getChildCount()) {
+            return false;
+        }
+
+        if (child.getAnimation() != null || !child.getMatrix().isIdentity()) {
+            return false;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && child.getZ() != 0) {
+            return false;
+        }
+
+        /* 位置表中是逻辑坐标,裁剪区域是画布坐标,从右向左布局时需要镜像 */
+
+        RectTable table = mRectTable;
+        int left = table.getLeft(position);
+        int right = table.getRight(position);
+        if (mLayoutRtl) {
+            int mirroredLeft = mirrorX(right);
+            right = mirrorX(left);
+            left = mirroredLeft;
+        }
+
+        Rect clip = mDrawClip;
+        return right <= clip.left
+                || left >= clip.right
+                || table.getBottom(position) <= clip.top
+                || table.getTop(position) >= clip.bottom;
+    }
+
+    //============================add view 额外添加一个view ============================
+
+    /**
+     * 浮层,保存额外添加的view,第一次添加时创建,总是布局的最后一个子view
+     */
+    private OverlayLayer mOverlay;
+
+
+    /**
+     * 额外添加一个view,通常是需要弹窗的情况使用;view添加到浮层中,不占用布局位置,
+     * 添加删除时不会重新测量布局其他的view;view已经在浮层中时更新约束并显示
+     *
+     * @param view       额外的view
+     * @param constraint 对view的约束
+     */
+    public void addExtraView(View view, Constraint constraint) {
+
+        addExtraView(view, generateDefaultLayoutParams(), constraint);
+    }
+
+
+    /**
+     * 额外添加一个view,通常是需要弹窗的情况使用
+     *
+     * @param child        额外的view
+     * @param layoutParams 该view布局参数
+     * @param constraint   对view的约束
+     */
+    public void addExtraView(View child, LayoutParams layoutParams, Constraint constraint) {
+
+        obtainOverlay().addOverlayView(child, layoutParams, constraint);
+    }
+
+
+    /**
+     * 移除额外添加的view
+     *
+     * @param view {@link #addExtraView(View, Constraint)}添加的view
+     */
+    public void removeExtraView(View view) {
+
+        if (mOverlay != null && view.getParent() == mOverlay) {
+            mOverlay.removeOverlayView(view);
+        }
+    }
+
+
+    /**
+     * 隐藏额外添加的view并缓存,之后使用{@link #getRecycledExtraView(int)}取出再次显示,
+     * 不需要再创建view,也不需要再次添加到布局中
+     *
+     * @param view {@link #addExtraView(View, Constraint)}添加的view
+     * @param type view的类型,用于取出
+     */
+    public void recycleExtraView(View view, int type) {
+
+        if (mOverlay != null && view.getParent() == mOverlay) {
+            mOverlay.recycle(view, type);
+        }
+    }
+
+
+    /**
+     * 取出缓存的额外view,之后使用{@link #addExtraView(View, Constraint)}设置约束并显示
+     *
+     * @param type view的类型
+     * @return 缓存的view, 没有返回null
+     */
+    public View getRecycledExtraView(int type) {
+
+        return mOverlay == null ? null : mOverlay.obtainRecycled(type);
+    }
+
+
+    /**
+     * @param view 一个view
+     * @return true:是额外添加的view
+     */
+    public boolean isExtraView(View view) {
+
+        return mOverlay != null && view.getParent() == mOverlay;
+    }
+
+
+    /**
+     * 创建浮层,添加为最后一个子view,大小和布局相同
+     */
+    private OverlayLayer obtainOverlay() {
+
+        if (mOverlay == null) {
+
+            OverlayLayer overlay = new OverlayLayer(getContext());
+            addViewInLayout(overlay, -1, generateDefaultLayoutParams(), true);
+            overlay.measure(
+                    MeasureSpec.makeMeasureSpec(getWidth(), MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(getHeight(), MeasureSpec.EXACTLY)
+            );
+            overlay.layout(0, 0, getWidth(), getHeight());
+            mOverlay = overlay;
+        }
+        return mOverlay;
+    }
+
+    //============================ 重新布局 ============================
+
+
+    /**
+     * 根据view找到布局位置
+     *
+     * @param view view
+     * @return 布局位置
+     */
+    public int findLayoutPosition(View view) {
+
+        int count = getChildCount();
+        for (int i = 0; i < count; i++) {
+            View child = getChildAt(i);
+            if (child == view) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    //============================ 更新一个约束 ============================
+
+
+    public void updateConstraint(int position, Constraint constraint) {
+
+        View view = getChildAt(position);
+        if (view == null) {
+            return;
+        }
+        updateConstraint(position, view, constraint);
+    }
+
+
+    public void updateConstraint(View view, Constraint constraint) {
+
+        if (isExtraView(view)) {
+            mOverlay.updateOverlayView(view, constraint);
+            return;
+        }
+
+        int position = findLayoutPosition(view);
+        updateConstraint(position, view, constraint);
+    }
+
+
+    public void updateConstraint(int position, View view, Constraint constraint) {
+
+        mStats.recordUpdateRelayout();
+        measureViewWithConstraint(position, view, constraint);
+        if (view.getVisibility() != GONE) {
+            layoutChildWithLayoutParams(mAdapter, position, view);
+        }
+
+        if (mHitTestIndex != null) {
+            mHitTestIndex.update(position, mRectTable);
+        }
+        if (mIntervalIndex != null) {
+            mIntervalIndex.markDirty();
+        }
+        reportUpdateViolations();
+    }
+
+    //============================ 数据变化 ============================
+
+
+    /**
+     * adapter 在该位置插入了一个view之后调用;之后的view,位置信息和key索引后移一位,
+     * 使用key的约束仍然指向原来的view,没有变化的子view在重新测量时会跳过测量
+     *
+     * @param position 插入的布局位置
+     */
+    public void notifyItemInserted(int position) {
+
+        BaseConstraintAdapter adapter = mAdapter;
+        if (adapter == null) {
+            return;
+        }
+
+        int oldCount = adapter.getChildCount() - 1;
+        if (position < 0 || position > oldCount || getAdapterChildCount() != oldCount) {
+            notifyDataSetChanged();
+            return;
+        }
+
+        View child = adapter.generateViewTo(position);
+        LayoutParams params = adapter.generateLayoutParamsTo(position, child);
+        addView(child, position, params);
+        mStats.recordViewCreated();
+
+        mRectTable.insert(position, oldCount);
+        if (mKeyIndex != null && !mKeyIndex.isDirty()) {
+            mKeyIndex.insertPosition(position, adapter.getItemKey(position));
+        }
+        shiftVisiblePositions(position, 1);
+        onPositionsChanged();
+    }
+
+
+    /**
+     * adapter 删除了该位置的view之后调用;之后的view,位置信息和key索引前移一位
+     *
+     * @param position 删除的布局位置
+     */
+    public void notifyItemRemoved(int position) {
+
+        BaseConstraintAdapter adapter = mAdapter;
+        if (adapter == null) {
+            return;
+        }
+
+        int oldCount = adapter.getChildCount() + 1;
+        if (position < 0 || position >= oldCount || getAdapterChildCount() != oldCount) {
+            notifyDataSetChanged();
+            return;
+        }
+
+        removeViewAt(position);
+
+        mRectTable.remove(position, oldCount);
+        if (mKeyIndex != null && !mKeyIndex.isDirty()) {
+            mKeyIndex.removePosition(position);
+        }
+        shiftVisiblePositions(position, -1);
+        onPositionsChanged();
+    }
+
+
+    /**
+     * adapter 的数据整体变化之后调用,key 索引重建,所有子view重新测量
+     */
+    public void notifyDataSetChanged() {
+
+        mRectTable.clearAllFlags();
+        if (mKeyIndex != null) {
+            mKeyIndex.markDirty();
+        }
+        remapVisiblePositionsByKey();
+        onPositionsChanged();
+    }
+
+
+    /**
+     * @return 当前adapter添加的子view数量, 不包括浮层
+     */
+    private int getAdapterChildCount() {
+
+        int count = getChildCount();
+        return mOverlay == null ? count : count - 1;
+    }
+
+
+    private void onPositionsChanged() {
+
+        cancelSlicedMeasure();
+        mSolveOrder.invalidate();
+        if (mTransition != null) {
+            mTransition.cancel();
+        }
+        if (mHitTestIndex != null) {
+            mHitTestIndex.markDirty();
+        }
+        if (mIntervalIndex != null) {
+            mIntervalIndex.markDirty();
+        }
+        requestLayout();
+    }
+
+    //============================ 批量更新约束 ============================
+
+    private ConstraintUpdate mConstraintUpdate;
+
+    /**
+     * 正在提交的批量更新,求解时使用更新中的约束
+     */
+    private ConstraintUpdate mCommittingUpdate;
+
+
+    /**
+     * 开始批量更新约束,收集完之后调用{@link ConstraintUpdate#commit()};
+     * 每个布局只有一个批量更新对象,提交或者取消之前不能再次开始
+     *
+     * @return 批量更新
+     */
+    public ConstraintUpdate beginConstraintUpdate() {
+
+        if (mConstraintUpdate == null) {
+            mConstraintUpdate = new ConstraintUpdate(this);
+        }
+        mConstraintUpdate.open();
+        return mConstraintUpdate;
+    }
+
+
+    /**
+     * 按引用关系的顺序计算所有更新的约束并测量,全部计算完之后再统一布局
+     */
+    void commitConstraintUpdate(ConstraintUpdate update) {
+
+        final int count = update.size();
+        if (count == 0 || mAdapter == null) {
+            return;
+        }
+
+        SolveOrder order = mSolveOrder;
+        if (order.isActive()) {
+            throw new IllegalStateException("can not commit a constraint update while measuring");
+        }
+
+        if (mTransition != null) {
+            mTransition.end();
+        }
+        cancelSlicedMeasure();
+
+        mStats.recordUpdateRelayout();
+
+        /* 1. 使用求解顺序计算:约束读取还没有计算的更新位置时先计算它,没有更新的位置读取当前位置 */
+
+        final int childCount = Math.min(mAdapter.getChildCount(), getAdapterChildCount());
+        order.beginUpdate(childCount);
+        for (int i = 0; i < count; i++) {
+            int position = update.getPosition(i);
+            if (position < childCount) {
+                order.markUnsolved(position);
+            }
+        }
+
+        mCommittingUpdate = update;
+        try {
+            for (int i = 0; i < count; i++) {
+                int position = update.getPosition(i);
+                if (position < childCount && !order.isSolved(position)) {
+                    solvePosition(mAdapter, position);
+                }
+            }
+        } finally {
+            mCommittingUpdate = null;
+            order.endUpdate();
+        }
+
+        /* 2. 统一布局 */
+
+        for (int i = 0; i < count; i++) {
+
+            int position = update.getPosition(i);
+            if (position >= childCount) {
+                continue;
+            }
+            View child = getChildAt(position);
+            if (child.getVisibility() == GONE) {
+                continue;
+            }
+
+            layoutChildWithLayoutParams(mAdapter, position, child);
+        }
+
+        if (mHitTestIndex != null) {
+            if (count == 1) {
+                mHitTestIndex.update(update.getPosition(0), mRectTable);
+            } else {
+                mHitTestIndex.markDirty();
+            }
+        }
+        if (mIntervalIndex != null) {
+            mIntervalIndex.markDirty();
+        }
+        reportUpdateViolations();
+        invalidate();
+    }
+
+    //============================ 过渡 ============================
+
+    /**
+     * 正在进行的过渡
+     */
+    private ConstraintTransition mTransition;
+
+    /**
+     * 计算过渡结束位置时使用的约束,读取结束时的位置
+     */
+    private Constraint        mTransitionConstraint;
+    private TransitionSupport mTransitionSupport;
+
+
+    /**
+     * 创建一个从当前约束过渡到新adapter的约束的动画,新adapter的子view数量需要和当前adapter相同,
+     * 子view沿用当前的view;调用{@link ConstraintTransition#start()}开始
+     *
+     * @param endAdapter 过渡结束时使用的adapter
+     * @return 过渡
+     */
+    public ConstraintTransition createTransition(BaseConstraintAdapter endAdapter) {
+
+        if (endAdapter == null) {
+            throw new IllegalArgumentException("end adapter is null");
+        }
+        return new ConstraintTransition(this, endAdapter);
+    }
+
+
+    /**
+     * @return 正在进行的过渡, 没有返回null
+     */
+    public ConstraintTransition getTransition() {
+
+        return mTransition;
+    }
+
+
+    /**
+     * 开始过渡,取消正在进行的过渡;没有测量过或者子view数量不同时不能插值,直接使用新的adapter
+     *
+     * @return true:可以开始过渡
+     */
+    boolean startTransition(ConstraintTransition transition) {
+
+        if (mTransition != null) {
+            mTransition.cancel();
+        }
+
+        BaseConstraintAdapter endAdapter = transition.getEndAdapter();
+        int count = endAdapter.getChildCount();
+        if (mAdapter == null
+                || mAdapter.getChildCount() != count
+                || getChildCount() < count
+                || getMeasuredWidth() == 0 && getMeasuredHeight() == 0) {
+            setAdapter(endAdapter);
+            return false;
+        }
+
+        mTransition = transition;
+        return true;
+    }
+
+
+    void copyRectTable(RectTable out, int count) {
+
+        out.copyFrom(mRectTable, count);
+    }
+
+
+    /**
+     * 使用结束的adapter计算每个布局位置结束时的位置,只有spec和上次测量不同的子view才会测量
+     *
+     * @param endAdapter 结束时的adapter
+     * @param endTable   保存结束时的位置和测量使用的spec
+     */
+    void solveTransitionEnd(BaseConstraintAdapter endAdapter, RectTable endTable) {
+
+        if (mTransitionConstraint == null) {
+            mTransitionSupport = new TransitionSupport();
+            mTransitionConstraint = new Constraint(mTransitionSupport);
+        }
+
+        final int count = endAdapter.getChildCount();
+        endTable.ensureCapacity(count);
+        endTable.clearAllFlags();
+        mTransitionSupport.mEndTable = endTable;
+        mTransitionSupport.mEndAdapter = endAdapter;
+
+        Constraint constraint = mTransitionConstraint;
+        Rect rect = mSolvedRect;
+        RectTable table = mRectTable;
+
+        for (int k = 0; k < count; k++) {
+
+            /* 使用测量时得到的求解顺序,结束的约束通常和开始时的引用关系相同 */
+
+            int i = mSolveOrder.positionAt(k, count);
+            View child = getChildAt(i);
+
+            constraint.init();
+            endAdapter.generateConstraintTo(i, constraint, child);
+            if (constraint.hasDeferredEdges()) {
+                constraint.resolveDeferred(mContentRight, mContentBottom);
+            }
+            checkConstraint(constraint, child, -1);
+
+            int widthSpec = constraint.makeWidthSpec(child);
+            int heightSpec = constraint.makeHeightSpec(child);
+
+            int baseline = table.getBaselineOffset(i);
+            if (child.isLayoutRequested() || !table.isMeasuredWith(i, widthSpec, heightSpec)) {
+                measureChild(child,
+                        widthSpec,
+                        heightSpec
+                );
+                remeasureClamped(child, constraint);
+                table.clearFlag(i, RectTable.FLAG_MEASURED);
+                mStats.recordChildMeasured();
+                baseline = child.getBaseline();
+            }
+
+            solveRect(constraint, child.getMeasuredWidth(), child.getMeasuredHeight(), baseline, rect);
+            endTable.set(i, rect.left, rect.top, rect.right, rect.bottom);
+            endTable.setMeasuredWith(i, widthSpec, heightSpec);
+            endTable.setBaseline(i, baseline);
+        }
+
+        mTransitionSupport.mEndTable = null;
+        mTransitionSupport.mEndAdapter = null;
+        if (mTransitionSupport.mKeyIndex != null) {
+            mTransitionSupport.mKeyIndex.markDirty();
+        }
+    }
+
+
+    /**
+     * 放置过渡中的一帧:插值位置和尺寸,尺寸和当前相同的子view只偏移,不测量不布局
+     *
+     * @param start    开始位置
+     * @param end      结束位置
+     * @param count    布局位置数量
+     * @param fraction 插值后的进度
+     */
+    void applyTransitionFrame(RectTable start, RectTable end, int count, float fraction) {
+
+        RectTable table = mRectTable;
+
+        for (int i = 0; i < count; i++) {
+
+            View child = getChildAt(i);
+            if (child == null || child.getVisibility() == GONE) {
+                continue;
+            }
+
+            int left = lerp(start.getLeft(i), end.getLeft(i), fraction);
+            int top = lerp(start.getTop(i), end.getTop(i), fraction);
+            int width = Math.max(0, lerp(
+                    start.getRight(i) - start.getLeft(i),
+                    end.getRight(i) - end.getLeft(i),
+                    fraction
+            ));
+            int height = Math.max(0, lerp(
+                    start.getBottom(i) - start.getTop(i),
+                    end.getBottom(i) - end.getTop(i),
+                    fraction
+            ));
+            int right = left + width;
+            int bottom = top + height;
+            int layoutLeft = mLayoutRtl ? mirrorX(right) : left;
+
+            if (width == child.getWidth() && height == child.getHeight()) {
+
+                child.offsetLeftAndRight(layoutLeft - child.getLeft());
+                child.offsetTopAndBottom(top - child.getTop());
+
+            } else {
+
+                child.measure(
+                        MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                        MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY)
+                );
+                child.layout(layoutLeft, top, layoutLeft + width, bottom);
+                table.clearFlag(i, RectTable.FLAG_MEASURED);
+            }
+
+            LayoutParams params = getChildLayoutParams(child);
+            params.left = left;
+            params.top = top;
+            params.right = right;
+            params.bottom = bottom;
+            table.set(i, left, top, right, bottom);
+        }
+
+        if (mHitTestIndex != null) {
+            mHitTestIndex.markDirty();
+        }
+        if (mIntervalIndex != null) {
+            mIntervalIndex.markDirty();
+        }
+        invalidate();
+    }
+
+
+    /**
+     * 过渡结束,使用新的adapter,结束位置就是新adapter测量的结果,之后的测量可以跳过没有变化的子view
+     */
+    void commitTransition(ConstraintTransition transition, BaseConstraintAdapter endAdapter, RectTable endTable) {
+
+        if (mTransition != transition) {
+            return;
+        }
+        mTransition = null;
+
+        mAdapter = endAdapter;
+        mStats.setAggregate(LayoutStats.forAdapter(endAdapter.getClass()));
+        mSolveOrder.invalidate();
+        if (mKeyIndex != null) {
+            mKeyIndex.markDirty();
+        }
+        mRectTable.copyFrom(endTable, endAdapter.getChildCount());
+
+        /* wrap_content 时自己的尺寸可能变化 */
+
+        if (mParentRight == -1 || mParentBottom == -1) {
+            super.requestLayout();
+        }
+    }
+
+
+    /**
+     * 过渡取消,重新布局回到开始时的约束
+     */
+    void cancelTransition(ConstraintTransition transition) {
+
+        if (mTransition != transition) {
+            return;
+        }
+        mTransition = null;
+        super.requestLayout();
+    }
+
+
+    private static int lerp(int start, int end, float fraction) {
+
+        return start + Math.round((end - start) * fraction);
+    }
+
+
+    /**
+     * 计算过渡结束位置时,约束读取结束时的位置
+     */
+    private class TransitionSupport implements ConstraintSupport {
+
+        private RectTable             mEndTable;
+        private BaseConstraintAdapter mEndAdapter;
+        private KeyIndex              mKeyIndex;
+
+
+        @Override
+        public int getParentLeft() {
+
+            return ConstraintLayout.this.getParentLeft();
+        }
+
+
+        @Override
+        public int getParentTop() {
+
+            return ConstraintLayout.this.getParentTop();
+        }
+
+
+        @Override
+        public int getParentRight() {
+
+            return ConstraintLayout.this.getParentRight();
+        }
+
+
+        @Override
+        public int getParentBottom() {
+
+            return ConstraintLayout.this.getParentBottom();
+        }
+
+
+        @Override
+        public int getViewLeft(int position) {
+
+            return mEndTable.getLeft(position);
+        }
+
+
+        @Override
+        public int getViewTop(int position) {
+
+            return mEndTable.getTop(position);
+        }
+
+
+        @Override
+        public int getViewRight(int position) {
+
+            return mEndTable.getRight(position);
+        }
+
+
+        @Override
+        public int getViewBottom(int position) {
+
+            return mEndTable.getBottom(position);
+        }
+
+
+        @Override
+        public int getViewBaseline(int position) {
+
+            return mEndTable.getBaseline(position);
+        }
+
+
+        @Override
+        public int getUnitScale(int unit) {
+
+            return ConstraintLayout.this.getUnitScale(unit);
+        }
+
+
+        @Override
+        public int getDefaultUnit() {
+
+            return mDefaultUnit;
+        }
+
+
+        @Override
+        public int getPositionOfKey(long key) {
+
+            if (mKeyIndex == null) {
+                mKeyIndex = new KeyIndex();
+            }
+            if (mKeyIndex.isDirty()) {
+                mKeyIndex.build(mEndAdapter, mEndAdapter.getChildCount());
+            }
+            return mKeyIndex.get(key);
+        }
+    }
+
+    //============================ 可见区域 ============================
+
+    private OnVisibleRangeChangeListener mVisibleRangeListener;
+
+    /**
+     * 当前可见的布局位置,以及标记
+     */
+    private       int[]  mVisiblePositions = new int[16];
+    private       long[] mVisibleKeys      = new long[16];
+    private       int    mVisibleCount;
+    private       int[] mQueryPositions   = new int[16];
+    private       int[] mVisibleStamps    = new int[0];
+    private       int   mVisibleGeneration;
+    private final Rect  mVisibleRect      = new Rect();
+
+    /**
+     * 是否已经添加到窗口,{@link View#isAttachedToWindow()}需要 api 19
+     */
+    private boolean mAttached;
+
+    private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+
+                @Override
+                public void onScrollChanged() {
+
+                    dispatchVisibleRangeChanged();
+                }
+            };
+
+
+    /**
+     * 查找与区域相交的布局位置,使用竖直方向的区间树,复杂度 O((k + 1) log n);每次返回新的数组,
+     * 需要频繁查询时使用{@link #findPositionsInRect(Rect, int[])}
+     *
+     * @param rect 区域,坐标相对于该布局
+     * @return 与区域相交的布局位置
+     */
+    public int[] findPositionsInRect(Rect rect) {
+
+        int count = queryPositions(rect.left, rect.top, rect.right, rect.bottom);
+        return Arrays.copyOf(mQueryPositions, count);
+    }
+
+
+    /**
+     * 查找与区域相交的布局位置,结果写入调用者提供的数组,不会创建对象
+     *
+     * @param rect 区域,坐标相对于该布局
+     * @param out  保存结果,结果数量超过长度时只写入前面的部分
+     * @return 相交的布局位置数量, 大于{@code out.length}时需要使用更大的数组重新查询
+     */
+    public int findPositionsInRect(Rect rect, int[] out) {
+
+        int count = queryPositions(rect.left, rect.top, rect.right, rect.bottom);
+        System.arraycopy(mQueryPositions, 0, out, 0, Math.min(count, out.length));
+        return count;
+    }
+
+
+    /**
+     * 查询与区域相交的布局位置,结果保存在{@link #mQueryPositions}
+     *
+     * @return 结果数量
+     */
+    private int queryPositions(int left, int top, int right, int bottom) {
+
+        if (mAdapter == null) {
+            return 0;
+        }
+
+        if (mLayoutRtl) {
+            int logicalLeft = mirrorX(right);
+            right = mirrorX(left);
+            left = logicalLeft;
+        }
 
-                if (constraint.isLeftConstraint()) {
+        if (mIntervalIndex == null) {
+            mIntervalIndex = new IntervalIndex();
+        }
 
-                    float offset = constraint.horizontalBias * extraSpace;
-                    params.left = (int) (constraintLeft + offset) + 1;
-                    params.right = params.left + child.getMeasuredWidth();
+        IntervalIndex index = mIntervalIndex;
+        if (index.isDirty()) {
+            index.build(mRectTable, mAdapter.getChildCount());
+        }
 
-                } else {
+        mQueryPositions = index.query(mRectTable, left, top, right, bottom, mQueryPositions);
+        return index.getResultCount();
+    }
 
-                    float offset = (1 - constraint.horizontalBias) * extraSpace;
-                    params.right = (int) (constraintRight - offset) + 1;
-                    params.left = params.right - child.getMeasuredWidth();
 
-                }
+    /**
+     * 设置可见区域变化监听,在滚动和布局之后回调进入/离开可见区域的布局位置,
+     * 用于曝光统计,不需要每帧对每个子view调用{@link View#getGlobalVisibleRect(Rect)}
+     *
+     * @param listener 监听,null 取消
+     */
+    public void setOnVisibleRangeChangeListener(OnVisibleRangeChangeListener listener) {
 
-            } else {
+        OnVisibleRangeChangeListener old = mVisibleRangeListener;
+        mVisibleRangeListener = listener;
 
-                if (constraint.isLeftConstraint()) {
-                    params.left = constraintLeft;
-                    params.right = constraintLeft + child.getMeasuredWidth();
-                } else {
-                    params.left = constraintRight - child.getMeasuredWidth();
-                    params.right = constraintRight;
-                }
+        if (old == null && listener != null) {
+            mVisibleCount = 0;
+            mVisibleGeneration++;
+            if (mAttached) {
+                getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
             }
+        } else if (old != null && listener == null) {
+            getViewTreeObserver().removeOnScrollChangedListener(mScrollChangedListener);
         }
+    }
 
-        /* 根据垂直偏移比调整 top bottom */
 
-        if (constraint.verticalBias == minBias) {
+    @Override
+    protected void onAttachedToWindow() {
 
-            if (constraint.isTopConstraint()) {
-                params.top = constraintTop;
-                params.bottom = params.top + child.getMeasuredHeight();
-            } else {
-                params.top = constraintBottom - child.getMeasuredHeight();
-                params.bottom = constraintBottom;
-            }
-        } else {
+        super.onAttachedToWindow();
+        mAttached = true;
+        if (isMeasureInProgress()) {
+            requestLayout();
+        }
+        if (mVisibleRangeListener != null) {
+            getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
+        }
+    }
 
-            /* have vertical offset */
 
-            int childMeasuredHeight = child.getMeasuredHeight();
-            int constraintHeight = constraintBottom - constraintTop;
+    @Override
+    protected void onDetachedFromWindow() {
 
-            int extraSpace = constraintHeight - childMeasuredHeight;
+        super.onDetachedFromWindow();
+        mAttached = false;
+        unregisterCullingScrollListener();
+        if (mSlicer != null) {
+            mSlicer.unschedule();
+        }
+        if (mVisibleRangeListener != null) {
+            getViewTreeObserver().removeOnScrollChangedListener(mScrollChangedListener);
+        }
+    }
 
-            if (extraSpace > 0) {
 
-                if (constraint.isTopConstraint()) {
+    /**
+     * 计算当前可见的布局位置,和上次比较,回调进入/离开的位置;
+     * 每次计算使用新的标记值,上次可见的位置标记为 generation - 1,不需要清空标记数组
+     */
+    private void dispatchVisibleRangeChanged() {
 
-                    float offset = constraint.verticalBias * extraSpace;
-                    params.top = (int) (constraintTop + offset) + 1;
-                    params.bottom = params.top + childMeasuredHeight;
+        OnVisibleRangeChangeListener listener = mVisibleRangeListener;
+        if (listener == null || mAdapter == null) {
+            return;
+        }
 
-                } else {
+        Rect visible = mVisibleRect;
+        int count;
+        if (getLocalVisibleRect(visible)) {
+            int scrollX = getScrollX();
+            int scrollY = getScrollY();
+            count = queryPositions(
+                    visible.left + scrollX,
+                    visible.top + scrollY,
+                    visible.right + scrollX,
+                    visible.bottom + scrollY
+            );
+        } else {
+            count = 0;
+        }
 
-                    float offset = (1 - constraint.verticalBias) * extraSpace;
-                    params.top = constraintBottom - child.getMeasuredHeight();
-                    params.bottom = (int) (constraintBottom - offset) - 1;
+        int childCount = mAdapter.getChildCount();
+        if (mVisibleStamps.length < childCount) {
+            mVisibleStamps = Arrays.copyOf(mVisibleStamps, childCount);
+        }
 
-                }
+        if (mVisibleGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(mVisibleStamps, 0);
+            mVisibleGeneration = 1;
+        }
+        final int last = mVisibleGeneration;
+        final int current = ++mVisibleGeneration;
 
-            } else {
+        int[] stamps = mVisibleStamps;
+        int[] query = mQueryPositions;
 
-                if (constraint.isTopConstraint()) {
-                    params.top = constraintTop;
-                    params.bottom = params.top + child.getMeasuredHeight();
-                } else {
-                    params.top = constraintBottom - child.getMeasuredHeight();
-                    params.bottom = constraintBottom;
-                }
+        for (int i = 0; i < count; i++) {
+            int position = query[i];
+            if (stamps[position] != last) {
+                listener.onPositionEntered(position);
             }
+            stamps[position] = current;
         }
 
-        return params;
-    }
+        int[] lastPositions = mVisiblePositions;
+        for (int i = 0; i < mVisibleCount; i++) {
+            int position = lastPositions[i];
+            if (position >= childCount || stamps[position] != current) {
+                listener.onPositionExited(position);
+            }
+        }
 
-    //============================ 测量最小尺寸 ============================
+        if (lastPositions.length < count) {
+            lastPositions = new int[query.length];
+            mVisiblePositions = lastPositions;
+            mVisibleKeys = new long[query.length];
+        }
+        System.arraycopy(query, 0, lastPositions, 0, count);
+        BaseConstraintAdapter adapter = mAdapter;
+        long[] keys = mVisibleKeys;
+        for (int i = 0; i < count; i++) {
+            keys[i] = adapter.getItemKey(query[i]);
+        }
+        mVisibleCount = count;
+    }
 
 
     /**
-     * 使用该方法可以测量出一个view完全显示需要的最小尺寸(不包括margin),对一个view调用该方法之后,
-     * 可以使用{@link View#getMeasuredWidth()}和{@link View#getMeasuredHeight()} ()}读取测量的值,
-     * 该方法只测量view,一般用来判断剩余viewGroup剩余空间能否显示的下view
+     * 插入/删除一个布局位置之后,上次可见的位置按同样的方式移动,被删除的可见位置回调离开,
+     * 之后计算可见区域时没有变化的位置不会重复回调进入
+     *
+     * @param position 插入或者删除的布局位置
+     * @param delta    1:插入,-1:删除
      */
-    public void measureAtMostSize(View view) {
+    private void shiftVisiblePositions(int position, int delta) {
 
-        int measureSpec = MeasureSpec.makeMeasureSpec(Integer.MAX_VALUE >> 1, MeasureSpec.AT_MOST);
-        measureChild(view, measureSpec, measureSpec);
+        if (mVisibleRangeListener == null || mVisibleCount == 0) {
+            return;
+        }
 
+        int[] positions = mVisiblePositions;
+        long[] keys = mVisibleKeys;
+        int count = 0;
+        for (int i = 0; i < mVisibleCount; i++) {
+            int visible = positions[i];
+            if (delta < 0 && visible == position) {
+                mVisibleRangeListener.onPositionExited(visible);
+                continue;
+            }
+            positions[count] = visible >= position ? visible + delta : visible;
+            keys[count] = keys[i];
+            count++;
+        }
+        mVisibleCount = count;
+        restampVisiblePositions();
     }
 
-    //============================ layout ============================
-
 
-    @Override
-    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+    /**
+     * 数据整体变化之后,使用key索引找到上次可见的位置现在的布局位置,找不到的(已经删除)回调离开,
+     * 回调中是变化之前的布局位置
+     */
+    private void remapVisiblePositionsByKey() {
 
-        if (mAdapter == null) {
+        if (mVisibleRangeListener == null || mVisibleCount == 0) {
             return;
         }
 
-        BaseConstraintAdapter adapter = mAdapter;
+        int[] positions = mVisiblePositions;
+        long[] keys = mVisibleKeys;
+        int count = 0;
+        for (int i = 0; i < mVisibleCount; i++) {
+            int position = getPositionOfKey(keys[i]);
+            if (position < 0) {
+                mVisibleRangeListener.onPositionExited(positions[i]);
+                continue;
+            }
+            positions[count] = position;
+            keys[count] = keys[i];
+            count++;
+        }
+        mVisibleCount = count;
+        restampVisiblePositions();
+    }
 
-        int count = adapter.getChildCount();
-        for (int i = 0; i < count; i++) {
 
-            View child = getChildAt(i);
+    /**
+     * 使用新的标记值标记移动之后的可见位置,原来的标记全部失效
+     */
+    private void restampVisiblePositions() {
 
-            if (child.getVisibility() == VISIBLE) {
-                layoutChildWithLayoutParams(adapter, i, child);
+        int childCount = mAdapter == null ? 0 : mAdapter.getChildCount();
+        if (mVisibleStamps.length < childCount) {
+            mVisibleStamps = Arrays.copyOf(mVisibleStamps, childCount);
+        }
+        if (mVisibleGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(mVisibleStamps, 0);
+            mVisibleGeneration = 0;
+        }
+
+        final int generation = ++mVisibleGeneration;
+        int[] stamps = mVisibleStamps;
+        int[] positions = mVisiblePositions;
+        for (int i = 0; i < mVisibleCount; i++) {
+            if (positions[i] < childCount) {
+                stamps[positions[i]] = generation;
             }
         }
     }
 
 
     /**
-     * 使用布局参数布局view
+     * 可见区域变化监听
      */
-    private void layoutChildWithLayoutParams(BaseConstraintAdapter adapter, int position, View child) {
+    public interface OnVisibleRangeChangeListener {
 
-        LayoutParams params = getChildLayoutParams(child);
-        adapter.beforeLayout(position, child);
-        child.layout(params.left, params.top, params.right, params.bottom);
-        adapter.afterLayout(position, child);
+        /**
+         * 该布局位置进入可见区域
+         *
+         * @param position 布局位置
+         */
+        void onPositionEntered(int position);
+
+        /**
+         * 该布局位置离开可见区域
+         *
+         * @param position 布局位置
+         */
+        void onPositionExited(int position);
     }
 
-    //============================add view 额外添加一个view ============================
+    //============================ 触摸查找 ============================
 
     /**
-     * 标记,添加删除 ExtraView 时,不重新测量布局,因为其他的view布局位置是确定的,不需要重新布局
+     * 触摸事件分发给哪里
      */
-    private boolean addOrRemoveExtraView = false;
+    private static final int TOUCH_NONE   = 0;
+    private static final int TOUCH_SUPER  = 1;
+    private static final int TOUCH_TARGET = 2;
+    private static final int TOUCH_SELF   = 3;
 
+    private int     mTouchMode = TOUCH_NONE;
+    private View    mTouchTarget;
+    private boolean mDisallowIntercept;
 
     /**
-     * 额外添加一个view,通常是需要弹窗的情况使用
-     *
-     * @param view       额外的view
-     * @param constraint 对view的约束
+     * 索引已经确定按下事件由自己处理,交给默认分发时拦截,不再分发给子view
      */
-    public void addExtraView(View view, Constraint constraint) {
+    private boolean mInterceptForSelf;
 
-        addExtraView(view, generateDefaultLayoutParams(), constraint);
-    }
+    /**
+     * 过滤不可见的子view,以及分帧测量时还没有求解的位置
+     */
+    private final HitTestIndex.PositionFilter mVisibleFilter = new HitTestIndex.PositionFilter() {
+
+        @Override
+        public boolean accept(int position) {
+
+            View child = getChildAt(position);
+            return child != null && child.getVisibility() == VISIBLE && !isUnsolvedInSlice(position);
+        }
+    };
 
 
     /**
-     * 额外添加一个view,通常是需要弹窗的情况使用
+     * 开启之后,使用网格索引查找触摸点下的子view,不再倒序遍历所有子view,适合子view很多的画布类布局;
+     * 索引在布局之后重建,{@link #updateConstraint(int, Constraint)}只更新移动的子view;
+     * 使用索引分发时不会拆分多点触摸,子view有变换(旋转,缩放,平移)时退回到默认分发
      *
-     * @param child        额外的view
-     * @param layoutParams 该view布局参数
-     * @param constraint   对view的约束
+     * @param enabled true:开启
      */
-    public void addExtraView(View child, LayoutParams layoutParams, Constraint constraint) {
+    public void setHitTestIndexEnabled(boolean enabled) {
 
-        addOrRemoveExtraView = true;
-        addView(child, layoutParams);
+        if (enabled) {
+            if (mHitTestIndex == null) {
+                mHitTestIndex = new HitTestIndex();
+            }
+        } else {
+            mHitTestIndex = null;
+        }
+    }
 
-        int widthSpec = constraint.makeWidthSpec(child);
-        int heightSpec = constraint.makeHeightSpec(child);
-        measureChild(child,
-                widthSpec,
-                heightSpec
-        );
-        LayoutParams params = setChildLayoutParams(constraint, child);
 
-        child.layout(params.left, params.top, params.right, params.bottom);
+    public boolean isHitTestIndexEnabled() {
 
-        addOrRemoveExtraView = false;
+        return mHitTestIndex != null;
     }
 
 
     /**
-     * 移除额外添加的view,该方法没有判断移除的是否是{@link #addExtraView(View, Constraint)}添加的view
+     * 查找该点下最上层的可见子view的布局位置,需要开启{@link #setHitTestIndexEnabled(boolean)}
      *
-     * @param view 一个view
+     * @param x x坐标,相对于该布局
+     * @param y y坐标,相对于该布局
+     * @return 布局位置, 没有找到或者没有开启返回-1
      */
-    public void removeExtraView(View view) {
+    public int findPositionUnder(float x, float y) {
 
-        addOrRemoveExtraView = true;
-        removeView(view);
-        addOrRemoveExtraView = false;
+        if (mHitTestIndex == null || mAdapter == null) {
+            return -1;
+        }
+        return findPositionUnder(mirrorX((int) x + getScrollX()), (int) y + getScrollY(), Integer.MAX_VALUE);
     }
 
-    //============================ 重新布局 ============================
+
+    /**
+     * 使用索引查找逻辑坐标下,在{@code below}下层的最上层可见布局位置
+     */
+    private int findPositionUnder(int x, int y, int below) {
+
+        HitTestIndex index = mHitTestIndex;
+        if (index.isDirty()) {
+            index.build(mRectTable, mAdapter.getChildCount(), getWidth(), getHeight());
+        }
+        return index.findTopmost(x, y, below, mVisibleFilter);
+    }
 
 
     @Override
-    public void requestLayout() {
+    public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
 
-        if (addOrRemoveExtraView) {
-            return;
+        mDisallowIntercept = disallowIntercept;
+        super.requestDisallowInterceptTouchEvent(disallowIntercept);
+    }
+
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent ev) {
+
+        if (mHitTestIndex == null) {
+            return super.dispatchTouchEvent(ev);
         }
 
-        super.requestLayout();
+        final int action = ev.getActionMasked();
+
+        if (action == MotionEvent.ACTION_DOWN) {
+            mTouchTarget = null;
+            mDisallowIntercept = false;
+            mTouchMode = TOUCH_NONE;
+        }
+
+        /* 和默认分发相同,被遮挡时按设置过滤 */
+
+        if (!onFilterTouchEventForSecurity(ev)) {
+            return false;
+        }
+
+        if (action == MotionEvent.ACTION_DOWN) {
+
+            int x = mirrorX((int) ev.getX() + getScrollX());
+            int y = (int) ev.getY() + getScrollY();
+            if (canDispatchIndexed(x, y)) {
+                return startIndexedTouch(ev, x, y);
+            }
+            mTouchMode = TOUCH_SUPER;
+        }
+
+        boolean handled;
+        switch (mTouchMode) {
+
+            case TOUCH_TARGET:
+                handled = dispatchToTarget(ev);
+                break;
+
+            case TOUCH_SELF:
+                handled = dispatchToSelf(ev);
+                break;
+
+            default:
+                handled = super.dispatchTouchEvent(ev);
+                break;
+        }
+
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            mTouchMode = TOUCH_NONE;
+            mTouchTarget = null;
+        }
+        return handled;
     }
 
 
     /**
-     * 根据view找到布局位置
+     * 按下时,在分发任何事件之前判断能否使用索引:触摸点下的子view都没有变换时才能使用,
+     * 否则整个手势交给默认分发,此时事件和拦截都只经过默认分发一次
+     */
+    private boolean canDispatchIndexed(int x, int y) {
+
+        if (mAdapter == null) {
+            return false;
+        }
+
+        /* extra view 不在索引中,并且位于最上层 */
+
+        if (mOverlay != null && mOverlay.hasVisibleChildren()) {
+            return false;
+        }
+
+        int position = findPositionUnder(x, y, Integer.MAX_VALUE);
+        while (position >= 0) {
+            if (!getChildAt(position).getMatrix().isIdentity()) {
+                return false;
+            }
+            position = findPositionUnder(x, y, position);
+        }
+        return true;
+    }
+
+
+    /**
+     * 使用索引分发按下事件:索引只用来选择目标,每个事件只分发一次;最上层的子view不处理时,
+     * 按绘制顺序从上到下交给该点下的其他子view,都不处理时交给自己
      *
-     * @param view view
-     * @return 布局位置
+     * @return 按下事件是否被处理
      */
-    public int findLayoutPosition(View view) {
+    private boolean startIndexedTouch(MotionEvent ev, int x, int y) {
 
-        int count = getChildCount();
-        for (int i = 0; i < count; i++) {
-            View child = getChildAt(i);
-            if (child == view) {
-                return i;
+        if (onInterceptTouchEvent(ev)) {
+            mTouchMode = TOUCH_SELF;
+            return dispatchToSelf(ev);
+        }
+
+        int position = findPositionUnder(x, y, Integer.MAX_VALUE);
+        while (position >= 0) {
+            View child = getChildAt(position);
+            if (dispatchTransformed(ev, child)) {
+                mTouchTarget = child;
+                mTouchMode = TOUCH_TARGET;
+                return true;
             }
+            position = findPositionUnder(x, y, position);
         }
 
-        return -1;
+        mTouchMode = TOUCH_SELF;
+        return dispatchToSelf(ev);
     }
 
-    //============================ 更新一个约束 ============================
 
+    /**
+     * 交给自己处理:使用默认分发,没有触摸目标时默认分发交给{@link View#dispatchTouchEvent(MotionEvent)},
+     * 触摸监听,安全过滤,嵌套滑动的处理都和没有开启索引时相同;
+     * 按下事件已经确定没有子view处理,通过拦截让默认分发不再分发给子view
+     */
+    private boolean dispatchToSelf(MotionEvent ev) {
 
-    public void updateConstraint(int position, Constraint constraint) {
+        if (ev.getActionMasked() != MotionEvent.ACTION_DOWN) {
+            return super.dispatchTouchEvent(ev);
+        }
 
-        View view = getChildAt(position);
-        if (view == null) {
-            return;
+        mInterceptForSelf = true;
+        try {
+            return super.dispatchTouchEvent(ev);
+        } finally {
+            mInterceptForSelf = false;
         }
-        updateConstraint(position, view, constraint);
     }
 
 
-    public void updateConstraint(View view, Constraint constraint) {
+    /**
+     * 开启触摸索引时,子类重写该方法需要先调用super,索引确定由自己处理的按下事件在这里拦截
+     */
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
 
-        int position = findLayoutPosition(view);
-        updateConstraint(position, view, constraint);
+        if (mInterceptForSelf) {
+            return true;
+        }
+        return super.onInterceptTouchEvent(ev);
     }
 
 
-    public void updateConstraint(int position, View view, Constraint constraint) {
+    /**
+     * 分发给按下时找到的目标,被拦截时取消目标,之后交给自己处理
+     */
+    private boolean dispatchToTarget(MotionEvent ev) {
 
-        measureViewWithConstraint(position, view, constraint);
-        if (view.getVisibility() != GONE) {
-            layoutChildWithLayoutParams(mAdapter, position, view);
+        View target = mTouchTarget;
+
+        if (!mDisallowIntercept && onInterceptTouchEvent(ev)) {
+
+            int action = ev.getAction();
+            ev.setAction(MotionEvent.ACTION_CANCEL);
+            dispatchTransformed(ev, target);
+            ev.setAction(action);
+
+            mTouchTarget = null;
+            mTouchMode = TOUCH_SELF;
+            return true;
         }
+
+        return dispatchTransformed(ev, target);
+    }
+
+
+    private boolean dispatchTransformed(MotionEvent ev, View child) {
+
+        float offsetX = getScrollX() - child.getLeft();
+        float offsetY = getScrollY() - child.getTop();
+        ev.offsetLocation(offsetX, offsetY);
+        boolean handled = child.dispatchTouchEvent(ev);
+        ev.offsetLocation(-offsetX, -offsetY);
+        return handled;
     }
 
     //============================Layout Params============================
@@ -566,13 +3260,6 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
     }
 
 
-    private LayoutParams getChildLayoutParams(int position) {
-
-        View child = getChildAt(position);
-        return ((LayoutParams) child.getLayoutParams());
-    }
-
-
     private LayoutParams getChildLayoutParams(View view) {
 
         return ((LayoutParams) view.getLayoutParams());
@@ -617,6 +3304,18 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
         int right;
         int bottom;
 
+        /**
+         * 布局位置,不是adapter添加的view为-1
+         */
+        int position = -1;
+
+        /**
+         * 额外添加的view保存的约束,缓存时的类型,以及是否在缓存中
+         */
+        Constraint overlayConstraint;
+        int        overlayType;
+        boolean    recycled;
+
 
         @Override
         public String toString() {
@@ -682,10 +3381,13 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
     //============================constraint support============================
 
 
+    /**
+     * RTL 时逻辑坐标的左边是start,使用右边的padding
+     */
     @Override
     public int getParentLeft() {
 
-        return getPaddingLeft();
+        return mLayoutRtl ? getPaddingRight() : getPaddingLeft();
     }
 
 
@@ -702,7 +3404,7 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
         if (mParentRight == -1) {
             return -1;
         } else {
-            return mParentRight - getPaddingRight();
+            return mParentRight - (mLayoutRtl ? getPaddingLeft() : getPaddingRight());
         }
     }
 
@@ -721,27 +3423,73 @@ public class ConstraintLayout extends ViewGroup implements ConstraintSupport {
     @Override
     public int getViewLeft(int position) {
 
-        return getChildLayoutParams(position).left;
+        if (mSolveOrder.isActive()) {
+            ensureSolved(position);
+            checkDeferredRead(position, RectTable.FLAG_DEFERRED_HORIZONTAL);
+        }
+        return mRectTable.getLeft(position);
     }
 
 
     @Override
     public int getViewTop(int position) {
 
-        return getChildLayoutParams(position).top;
+        if (mSolveOrder.isActive()) {
+            ensureSolved(position);
+            checkDeferredRead(position, RectTable.FLAG_DEFERRED_VERTICAL);
+        }
+        return mRectTable.getTop(position);
     }
 
 
     @Override
     public int getViewRight(int position) {
 
-        return getChildLayoutParams(position).right;
+        if (mSolveOrder.isActive()) {
+            ensureSolved(position);
+            checkDeferredRead(position, RectTable.FLAG_DEFERRED_HORIZONTAL);
+        }
+        return mRectTable.getRight(position);
     }
 
 
     @Override
     public int getViewBottom(int position) {
 
-        return getChildLayoutParams(position).bottom;
+        if (mSolveOrder.isActive()) {
+            ensureSolved(position);
+            checkDeferredRead(position, RectTable.FLAG_DEFERRED_VERTICAL);
+        }
+        return mRectTable.getBottom(position);
+    }
+
+
+    @Override
+    public int getViewBaseline(int position) {
+
+        if (mSolveOrder.isActive()) {
+            ensureSolved(position);
+            checkDeferredRead(position, RectTable.FLAG_DEFERRED_VERTICAL);
+        }
+        return mRectTable.getBaseline(position);
+    }
+
+
+    @Override
+    public int getPositionOfKey(long key) {
+
+        if (mAdapter == null) {
+            return -1;
+        }
+
+        KeyIndex index = mKeyIndex;
+        if (index == null) {
+            index = new KeyIndex();
+            mKeyIndex = index;
+        }
+        if (index.isDirty()) {
+            index.build(mAdapter, mAdapter.getChildCount());
+        }
+        return index.get(key);
     }
 }
@@ -25,17 +25,17 @@ public interface ConstraintSupport {
 
     /**
      * 用于{@link Constraint}获取父布局右边的坐标,和PaddingRight和宽度是否是wrap_content有关,
-     * 如果宽度是wrap_content,需要返回-1,表明右边约束不可用
+     * 如果宽度是wrap_content,需要返回-1,表明右边坐标未知,约束到右边的边会延迟到内容宽度确定之后
      *
-     * @return 子view可以使用的最右边的坐标, 或者-1右边约束不可用
+     * @return 子view可以使用的最右边的坐标, 或者-1右边坐标未知
      */
     int getParentRight();
 
     /**
      * 用于{@link Constraint}获取父布局底边的坐标,和PaddingRight和高度是否是wrap_content有关,
-     * 如果高度是wrap_content,需要返回-1,表明底边约束不可用
+     * 如果高度是wrap_content,需要返回-1,表明底边坐标未知,约束到底边的边会延迟到内容高度确定之后
      *
-     * @return 子view可以使用的最底边的坐标, 或者-1底边约束不可用
+     * @return 子view可以使用的最底边的坐标, 或者-1底边坐标未知
      */
     int getParentBottom();
 
@@ -71,4 +71,45 @@ public interface ConstraintSupport {
      */
     int getViewBottom(int position);
 
+    /**
+     * 用于{@link Constraint}获取其他view的baseline坐标,使用测量之后记录的值,不会再测量
+     *
+     * @param position 需要得到baseline的view的布局位置
+     * @return view的baseline, -1 表示没有baseline
+     */
+    default int getViewBaseline(int position) {
+
+        return -1;
+    }
+
+    /**
+     * 用于{@link Constraint}把偏移量和尺寸换算为像素
+     *
+     * @param unit {@link Constraint#UNIT_PX},{@link Constraint#UNIT_DP},{@link Constraint#UNIT_SP}
+     * @return 16位小数的定点数比例, {@link Constraint#UNIT_SCALE_ONE}表示不需要换算
+     */
+    default int getUnitScale(int unit) {
+
+        return Constraint.UNIT_SCALE_ONE;
+    }
+
+    /**
+     * @return {@link Constraint#init()}之后使用的单位
+     */
+    default int getDefaultUnit() {
+
+        return Constraint.UNIT_PX;
+    }
+
+    /**
+     * 获取该key对应view的布局位置,用于{@link Constraint}使用key约束;默认key就是布局位置
+     *
+     * @param key view的key
+     * @return 布局位置, 没有该key返回-1
+     */
+    default int getPositionOfKey(long key) {
+
+        return key >= 0 && key <= Integer.MAX_VALUE ? (int) key : -1;
+    }
+
 }
@@ -0,0 +1,439 @@
+package com.example.constraintlayout;
+
+import com.example.constraintlayout.solver.LinearConstraint;
+import com.example.constraintlayout.solver.SimplexSolver;
+import com.example.constraintlayout.solver.Strength;
+import com.example.constraintlayout.solver.Variable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * 线性约束求解模式,使用{@link ConstraintLayout#setConstraintSystem(ConstraintSystem)}开启;
+ * 每个布局位置的约束区域的四条边是求解器中的变量,adapter 使用{@link Constraint}生成的约束转换为必须满足的等式:
+ * 相对父布局的边是常量,相对其他view的边是两个变量相等(加上偏移),指定宽高是同一个布局位置两条边的等式,
+ * 没有约束的边使用弱约束保持生成时的值;在这之上可以添加双向的,带强度的等式和不等式,
+ * 使用编辑变量拖动(例如分隔条)时增量求解,不需要重新生成约束
+ * <p>
+ * 求解模式中引用其他view时引用的是它的约束区域,wrap_content 的view测量之后的尺寸不会反过来影响约束
+ *
+ * @author wuxio
+ */
+public final class ConstraintSystem {
+
+    private static final int      EDGE_COUNT = 4;
+    private static final String[] EDGE_NAMES = {"left", "top", "right", "bottom"};
+
+    private final SimplexSolver mSolver = new SimplexSolver();
+
+    /**
+     * 每个布局位置四条边的变量: position * 4 + edge
+     */
+    private Variable[] mVariables = new Variable[0];
+
+    /**
+     * adapter 生成的约束,以及转换后的线性约束
+     */
+    private Constraint[]    mConstraints = new Constraint[0];
+    private EdgeRelations[] mRelations   = new EdgeRelations[0];
+    private final ArrayList< LinearConstraint > mGenerated = new ArrayList<>();
+
+    /**
+     * 按依赖顺序生成约束时每一层递归使用的记录
+     */
+    private EdgeRelations[] mRecordings = new EdgeRelations[4];
+
+    /**
+     * 生成约束时测量得到的位置: position * 4 + edge,没有约束的边以它为弱约束的值
+     */
+    private int[] mMeasured = new int[0];
+
+    /**
+     * 生成约束时测量得到的相对view上边的baseline,-1 表示没有
+     */
+    private int[] mBaselines = new int[0];
+
+    /**
+     * 生成约束时的布局位置数量和父布局的边,变化时需要重新生成
+     */
+    private int     mCount = -1;
+    private int     mParentLeft;
+    private int     mParentTop;
+    private int     mParentRight;
+    private int     mParentBottom;
+    private boolean mDirty = true;
+
+    private ConstraintLayout mLayout;
+
+    //============================ 变量 ============================
+
+
+    public Variable left(int position) {
+
+        return variable(position, EdgeRelations.LEFT);
+    }
+
+
+    public Variable top(int position) {
+
+        return variable(position, EdgeRelations.TOP);
+    }
+
+
+    public Variable right(int position) {
+
+        return variable(position, EdgeRelations.RIGHT);
+    }
+
+
+    public Variable bottom(int position) {
+
+        return variable(position, EdgeRelations.BOTTOM);
+    }
+
+
+    /**
+     * @return 求解器, 直接修改求解器之后需要调用{@link ConstraintLayout#requestLayout()}
+     */
+    public SimplexSolver getSolver() {
+
+        return mSolver;
+    }
+
+    //============================ 约束 ============================
+
+
+    /**
+     * 添加一个线性约束,之后重新布局
+     *
+     * @param constraint 约束
+     */
+    public void addConstraint(LinearConstraint constraint) {
+
+        mSolver.addConstraint(constraint);
+        requestLayout();
+    }
+
+
+    public void removeConstraint(LinearConstraint constraint) {
+
+        mSolver.removeConstraint(constraint);
+        requestLayout();
+    }
+
+
+    /**
+     * 添加一个编辑变量,例如拖动的分隔条位置
+     *
+     * @param variable 变量
+     * @param strength 强度,通常是{@link Strength#STRONG}
+     */
+    public void addEditVariable(Variable variable, double strength) {
+
+        mSolver.addEditVariable(variable, strength);
+    }
+
+
+    public void removeEditVariable(Variable variable) {
+
+        mSolver.removeEditVariable(variable);
+        requestLayout();
+    }
+
+
+    /**
+     * 修改编辑变量的值,增量求解之后重新布局,只有约束区域变化的子view会重新测量
+     *
+     * @param variable 编辑变量
+     * @param value    新的值
+     */
+    public void suggestValue(Variable variable, double value) {
+
+        mSolver.suggestValue(variable, value);
+        requestLayout();
+    }
+
+
+    /**
+     * adapter 生成的约束变化之后调用,下次测量时重新生成
+     */
+    public void invalidate() {
+
+        mDirty = true;
+        requestLayout();
+    }
+
+    //============================ 布局使用 ============================
+
+
+    void attach(ConstraintLayout layout) {
+
+        mLayout = layout;
+        mDirty = true;
+    }
+
+
+    void detach() {
+
+        mLayout = null;
+    }
+
+
+    /**
+     * @return true:需要使用adapter重新生成约束
+     */
+    boolean needsRebuild(int count, int parentLeft, int parentTop, int parentRight, int parentBottom) {
+
+        return mDirty
+                || mCount != count
+                || mParentLeft != parentLeft
+                || mParentTop != parentTop
+                || mParentRight != parentRight
+                || mParentBottom != parentBottom;
+    }
+
+
+    /**
+     * @param depth 求解的递归深度
+     * @return 该深度生成约束时记录边的来源
+     */
+    EdgeRelations recordingAt(int depth) {
+
+        if (depth >= mRecordings.length) {
+            mRecordings = Arrays.copyOf(mRecordings, depth << 1);
+        }
+        EdgeRelations relations = mRecordings[depth];
+        if (relations == null) {
+            relations = new EdgeRelations();
+            mRecordings[depth] = relations;
+        }
+        return relations;
+    }
+
+
+    /**
+     * 开始重新生成,删除上次生成的线性约束,使用者添加的约束保留
+     */
+    void beginRebuild(int count) {
+
+        for (int i = mGenerated.size() - 1; i >= 0; i--) {
+            mSolver.removeConstraint(mGenerated.get(i));
+        }
+        mGenerated.clear();
+
+        if (mConstraints.length < count) {
+            mConstraints = Arrays.copyOf(mConstraints, count);
+            mRelations = Arrays.copyOf(mRelations, count);
+            mMeasured = Arrays.copyOf(mMeasured, count * EDGE_COUNT);
+            mBaselines = Arrays.copyOf(mBaselines, count);
+        }
+        mCount = count;
+    }
+
+
+    /**
+     * 保存一个布局位置生成的约束,边的来源,以及按这个约束测量之后的位置
+     *
+     * @param position   布局位置
+     * @param constraint adapter 生成的约束
+     * @param relations  {@link #recordingAt(int)}记录的边的来源
+     * @param table      测量之后的位置;延迟的方向还没有测量,使用约束的值
+     */
+    void record(int position, Constraint constraint, EdgeRelations relations, RectTable table) {
+
+        if (mConstraints[position] == null) {
+            mConstraints[position] = new Constraint(mLayout);
+            mRelations[position] = new EdgeRelations();
+        }
+        mConstraints[position].set(constraint);
+        mRelations[position].copyFrom(relations);
+
+        int index = position * EDGE_COUNT;
+        if (table.hasFlag(position, RectTable.FLAG_DEFERRED_HORIZONTAL)) {
+            mMeasured[index + EdgeRelations.LEFT] = constraint.left;
+            mMeasured[index + EdgeRelations.RIGHT] = constraint.right;
+        } else {
+            mMeasured[index + EdgeRelations.LEFT] = table.getLeft(position);
+            mMeasured[index + EdgeRelations.RIGHT] = table.getRight(position);
+        }
+        if (table.hasFlag(position, RectTable.FLAG_DEFERRED_VERTICAL)) {
+            mMeasured[index + EdgeRelations.TOP] = constraint.top;
+            mMeasured[index + EdgeRelations.BOTTOM] = constraint.bottom;
+        } else {
+            mMeasured[index + EdgeRelations.TOP] = table.getTop(position);
+            mMeasured[index + EdgeRelations.BOTTOM] = table.getBottom(position);
+        }
+        mBaselines[position] = table.getBaselineOffset(position);
+    }
+
+
+    /**
+     * 所有布局位置记录完成,转换为线性约束添加到求解器
+     */
+    void endRebuild(int parentLeft, int parentTop, int parentRight, int parentBottom) {
+
+        mParentLeft = parentLeft;
+        mParentTop = parentTop;
+        mParentRight = parentRight;
+        mParentBottom = parentBottom;
+
+        for (int position = 0; position < mCount; position++) {
+            for (int edge = 0; edge < EDGE_COUNT; edge++) {
+                LinearConstraint constraint = makeEdgeConstraint(position, edge);
+                mSolver.addConstraint(constraint);
+                mGenerated.add(constraint);
+            }
+        }
+        mDirty = false;
+    }
+
+
+    /**
+     * 求解之后读取变量
+     */
+    void updateVariables() {
+
+        mSolver.updateVariables();
+    }
+
+
+    /**
+     * 使用求解的结果生成该布局位置的约束,偏移比和受约束的边沿用adapter生成的约束
+     *
+     * @param position 布局位置
+     * @param out      保存结果
+     */
+    void resolve(int position, Constraint out) {
+
+        out.set(mConstraints[position]);
+        out.left = (int) Math.round(left(position).getValue());
+        out.top = (int) Math.round(top(position).getValue());
+        out.right = (int) Math.round(right(position).getValue());
+        out.bottom = (int) Math.round(bottom(position).getValue());
+
+        /* baseline 对齐时布局按baseline计算上边,使用求解之后的上边还原 */
+
+        if (hasBaseline(position)) {
+            int offset = mBaselines[position];
+            out.baseline = offset < 0 ? out.bottom : out.top + offset;
+        }
+    }
+
+    //============================ 内部 ============================
+
+
+    private LinearConstraint makeEdgeConstraint(int position, int edge) {
+
+        EdgeRelations relations = mRelations[position];
+        Variable variable = variable(position, edge);
+        int offset = relations.offsets[edge];
+
+        if (hasBaseline(position) && (edge == EdgeRelations.TOP || edge == EdgeRelations.BOTTOM)) {
+            return makeBaselineConstraint(position, edge);
+        }
+
+        switch (relations.kinds[edge]) {
+
+            case EdgeRelations.KIND_PARENT:
+                return LinearConstraint.equal(
+                        variable, parentEdge(relations.targetEdges[edge]) + offset, Strength.REQUIRED);
+
+            case EdgeRelations.KIND_VIEW:
+                int target = relations.positions[edge];
+                if (target >= 0 && target < mCount) {
+                    return LinearConstraint.equal(
+                            variable, variable(target, relations.targetEdges[edge]), offset, Strength.REQUIRED);
+                }
+                break;
+
+            case EdgeRelations.KIND_SELF:
+                return LinearConstraint.equal(
+                        variable, variable(position, relations.targetEdges[edge]), offset, Strength.REQUIRED);
+
+            case EdgeRelations.KIND_ABSOLUTE:
+                return LinearConstraint.equal(variable, offset, Strength.REQUIRED);
+
+            default:
+                break;
+        }
+
+        /* 没有约束的边保持生成约束时测量得到的值(wrap_content 的view是内容的尺寸,不是父布局的-1),可以被其他约束改变 */
+
+        return LinearConstraint.equal(variable, mMeasured[position * EDGE_COUNT + edge], Strength.WEAK);
+    }
+
+
+    private boolean hasBaseline(int position) {
+
+        int target = mRelations[position].baselinePosition;
+        return target >= 0 && target < mCount;
+    }
+
+
+    /**
+     * baseline 对齐:上边 = 对齐位置的baseline(没有baseline时是底边) + 偏移 - 自己的baseline,
+     * 下边 = 上边 + 测量的高度;baseline 使用生成约束时测量的结果
+     */
+    private LinearConstraint makeBaselineConstraint(int position, int edge) {
+
+        int index = position * EDGE_COUNT;
+        int height = mMeasured[index + EdgeRelations.BOTTOM] - mMeasured[index + EdgeRelations.TOP];
+
+        if (edge == EdgeRelations.BOTTOM) {
+            return LinearConstraint.equal(bottom(position), top(position), height, Strength.REQUIRED);
+        }
+
+        EdgeRelations relations = mRelations[position];
+        int target = relations.baselinePosition;
+        int own = mBaselines[position] < 0 ? height : mBaselines[position];
+
+        if (mBaselines[target] < 0) {
+            return LinearConstraint.equal(
+                    top(position), bottom(target), relations.baselineOffset - own, Strength.REQUIRED);
+        }
+        return LinearConstraint.equal(
+                top(position), top(target), mBaselines[target] + relations.baselineOffset - own, Strength.REQUIRED);
+    }
+
+
+    /**
+     * 父布局是wrap_content时右边/底边是-1,以0为基准,内容尺寸确定之后由布局加上
+     */
+    private int parentEdge(int edge) {
+
+        switch (edge) {
+            case EdgeRelations.LEFT:
+                return mParentLeft;
+            case EdgeRelations.TOP:
+                return mParentTop;
+            case EdgeRelations.RIGHT:
+                return Math.max(mParentRight, 0);
+            default:
+                return Math.max(mParentBottom, 0);
+        }
+    }
+
+
+    private Variable variable(int position, int edge) {
+
+        int index = position * EDGE_COUNT + edge;
+        if (index >= mVariables.length) {
+            mVariables = Arrays.copyOf(mVariables, Math.max(index + 1, mVariables.length << 1));
+        }
+
+        Variable variable = mVariables[index];
+        if (variable == null) {
+            variable = new Variable(EDGE_NAMES[edge] + position);
+            mVariables[index] = variable;
+        }
+        return variable;
+    }
+
+
+    private void requestLayout() {
+
+        if (mLayout != null) {
+            mLayout.requestLayout();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.constraintlayout;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.TimeInterpolator;
+import android.animation.ValueAnimator;
+
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+
+/**
+ * 从当前的约束过渡到另一个adapter提供的约束;开始时计算一次结束位置,之后每帧只插值位置:
+ * 尺寸不变的子view直接偏移,尺寸变化的子view才使用插值后的尺寸测量,
+ * 不需要每帧调用{@link ConstraintLayout#updateConstraint(int, Constraint)}重新生成约束,测量所有子view
+ * <p>
+ * 使用{@link ConstraintLayout#createTransition(BaseConstraintAdapter)}创建,结束之后布局使用新的adapter
+ *
+ * @author wuxio
+ */
+public final class ConstraintTransition {
+
+    private static final long DEFAULT_DURATION = 300;
+
+    private final ConstraintLayout      mLayout;
+    private final BaseConstraintAdapter mEndAdapter;
+
+    /**
+     * 开始和结束时的位置
+     */
+    private final RectTable mStartTable = new RectTable();
+    private final RectTable mEndTable   = new RectTable();
+    private       int       mCount;
+
+    private long             mDuration = DEFAULT_DURATION;
+    private TimeInterpolator mInterpolator;
+    private TransitionListener mListener;
+
+    private ValueAnimator mAnimator;
+    private float         mFraction;
+
+    /**
+     * 是否被取消,取消时{@link Animator}也会回调结束
+     */
+    private boolean mCanceled;
+
+
+    ConstraintTransition(ConstraintLayout layout, BaseConstraintAdapter endAdapter) {
+
+        mLayout = layout;
+        mEndAdapter = endAdapter;
+    }
+
+
+    /**
+     * @param duration 动画时长,毫秒
+     * @return self
+     */
+    public ConstraintTransition setDuration(long duration) {
+
+        mDuration = duration;
+        return this;
+    }
+
+
+    /**
+     * @param interpolator 插值器,null 使用默认插值器
+     * @return self
+     */
+    public ConstraintTransition setInterpolator(TimeInterpolator interpolator) {
+
+        mInterpolator = interpolator;
+        return this;
+    }
+
+
+    /**
+     * @param listener 过渡监听
+     * @return self
+     */
+    public ConstraintTransition setListener(TransitionListener listener) {
+
+        mListener = listener;
+        return this;
+    }
+
+
+    public BaseConstraintAdapter getEndAdapter() {
+
+        return mEndAdapter;
+    }
+
+
+    /**
+     * @return 当前插值后的进度
+     */
+    public float getFraction() {
+
+        return mFraction;
+    }
+
+
+    public boolean isRunning() {
+
+        return mAnimator != null && mAnimator.isRunning();
+    }
+
+
+    /**
+     * 开始过渡,计算开始和结束的位置;布局还没有测量过时直接使用新的adapter
+     */
+    public void start() {
+
+        if (mAnimator != null) {
+            return;
+        }
+
+        if (!mLayout.startTransition(this)) {
+            if (mListener != null) {
+                mListener.onTransitionEnd(this);
+            }
+            return;
+        }
+
+        mCount = mEndAdapter.getChildCount();
+        mLayout.copyRectTable(mStartTable, mCount);
+        mLayout.solveTransitionEnd(mEndAdapter, mEndTable);
+
+        ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f);
+        animator.setDuration(mDuration);
+        if (mInterpolator != null) {
+            animator.setInterpolator(mInterpolator);
+        }
+        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+
+                mFraction = animation.getAnimatedFraction();
+                applyCurrentFrame();
+            }
+        });
+        animator.addListener(new AnimatorListenerAdapter() {
+
+            @Override
+            public void onAnimationCancel(Animator animation) {
+
+                mCanceled = true;
+            }
+
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+
+                finish();
+            }
+        });
+        mAnimator = animator;
+
+        if (mListener != null) {
+            mListener.onTransitionStart(this);
+        }
+        animator.start();
+    }
+
+
+    /**
+     * 取消过渡,布局回到开始时的约束
+     */
+    public void cancel() {
+
+        if (mAnimator != null) {
+            mAnimator.cancel();
+        }
+    }
+
+
+    /**
+     * 直接跳到结束位置,布局使用新的adapter
+     */
+    public void end() {
+
+        if (mAnimator != null) {
+            mAnimator.end();
+        }
+    }
+
+
+    /**
+     * 使用当前进度放置子view,布局重新布局之后也会调用,保持过渡中的位置
+     */
+    void applyCurrentFrame() {
+
+        mLayout.applyTransitionFrame(mStartTable, mEndTable, mCount, mFraction);
+    }
+
+
+    private void finish() {
+
+        mAnimator = null;
+
+        if (mCanceled) {
+            mLayout.cancelTransition(this);
+            if (mListener != null) {
+                mListener.onTransitionCancel(this);
+            }
+        } else {
+            mFraction = 1f;
+            applyCurrentFrame();
+            mLayout.commitTransition(this, mEndAdapter, mEndTable);
+            if (mListener != null) {
+                mListener.onTransitionEnd(this);
+            }
+        }
+    }
+
+
+    /**
+     * 过渡监听
+     */
+    public interface TransitionListener {
+
+        /**
+         * 开始过渡
+         *
+         * @param transition 过渡
+         */
+        void onTransitionStart(ConstraintTransition transition);
+
+        /**
+         * 过渡结束,布局已经使用新的adapter
+         *
+         * @param transition 过渡
+         */
+        void onTransitionEnd(ConstraintTransition transition);
+
+        /**
+         * 过渡被取消,布局回到开始时的约束
+         *
+         * @param transition 过渡
+         */
+        void onTransitionCancel(ConstraintTransition transition);
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.constraintlayout;
+
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * 批量更新约束,使用{@link ConstraintLayout#beginConstraintUpdate()}获取;
+ * 收集多个布局位置的新约束,{@link #commit()}时按引用关系的顺序一起计算(约束读取另一个更新的位置时先计算被读取的),
+ * 每个子view最多测量一次,最后统一布局,不需要像多次调用{@link ConstraintLayout#updateConstraint(int, Constraint)}
+ * 那样每次都测量布局,也不会读到马上要变化的位置
+ *
+ * @author wuxio
+ */
+public final class ConstraintUpdate {
+
+    private final ConstraintLayout mLayout;
+
+    /**
+     * 更新的布局位置,以及对应的约束;约束为null时使用生成器,生成器也为null时使用adapter重新生成
+     */
+    private int[]                 mPositions   = new int[8];
+    private Constraint[]          mConstraints = new Constraint[8];
+    private ConstraintGenerator[] mGenerators  = new ConstraintGenerator[8];
+    private int                   mCount;
+
+    /**
+     * true:已经开始,还没有提交
+     */
+    private boolean mOpened;
+
+
+    ConstraintUpdate(ConstraintLayout layout) {
+
+        mLayout = layout;
+    }
+
+
+    void open() {
+
+        if (mOpened) {
+            throw new IllegalStateException("constraint update already began, commit or cancel it first");
+        }
+        mOpened = true;
+        mCount = 0;
+    }
+
+
+    /**
+     * 使用一个已经计算好的约束更新,约束会被复制,之后可以继续使用或者回收
+     *
+     * @param position   布局位置
+     * @param constraint 新约束
+     * @return self
+     */
+    public ConstraintUpdate put(int position, Constraint constraint) {
+
+        int index = obtainEntry(position);
+        Constraint saved = mConstraints[index];
+        if (saved == null) {
+            saved = new Constraint(mLayout);
+            mConstraints[index] = saved;
+        }
+        saved.set(constraint);
+        mGenerators[index] = null;
+        return this;
+    }
+
+
+    /**
+     * 提交时才生成约束,约束读取的其他更新的位置会先完成更新,读取的是更新之后的位置
+     *
+     * @param position  布局位置
+     * @param generator 生成约束
+     * @return self
+     */
+    public ConstraintUpdate put(int position, ConstraintGenerator generator) {
+
+        int index = obtainEntry(position);
+        mGenerators[index] = generator;
+        mConstraints[index] = null;
+        return this;
+    }
+
+
+    /**
+     * 提交时使用adapter重新生成该位置的约束,用于依赖了其他更新位置的子view
+     *
+     * @param position 布局位置
+     * @return self
+     */
+    public ConstraintUpdate regenerate(int position) {
+
+        int index = obtainEntry(position);
+        mGenerators[index] = null;
+        mConstraints[index] = null;
+        return this;
+    }
+
+
+    /**
+     * @return 收集的更新数量
+     */
+    public int size() {
+
+        return mCount;
+    }
+
+
+    /**
+     * 计算所有更新,每个子view测量一次,之后统一布局
+     */
+    public void commit() {
+
+        checkOpened();
+        mOpened = false;
+        mLayout.commitConstraintUpdate(this);
+        clearReferences();
+    }
+
+
+    /**
+     * 放弃收集的更新
+     */
+    public void cancel() {
+
+        checkOpened();
+        mOpened = false;
+        clearReferences();
+    }
+
+    //============================ 提交时读取 ============================
+
+
+    int getPosition(int index) {
+
+        return mPositions[index];
+    }
+
+
+    /**
+     * @return 该布局位置的更新是第几条, 没有返回负数
+     */
+    int indexOf(int position) {
+
+        return Arrays.binarySearch(mPositions, 0, mCount, position);
+    }
+
+
+    /**
+     * 生成该条更新的约束
+     *
+     * @param index      第几条更新
+     * @param constraint 空白约束,需要生成时写入
+     * @param child      子view
+     * @return 约束, 可能是保存的约束
+     */
+    Constraint resolve(int index, Constraint constraint, View child) {
+
+        Constraint saved = mConstraints[index];
+        if (saved != null) {
+            return saved;
+        }
+
+        int position = mPositions[index];
+        ConstraintGenerator generator = mGenerators[index];
+        if (generator != null) {
+            return generator.generate(position, constraint, child);
+        }
+        return mLayout.getAdapter().generateConstraintTo(position, constraint, child);
+    }
+
+    //============================ 内部 ============================
+
+
+    /**
+     * 找到该位置的更新,没有时按位置升序插入一条
+     */
+    private int obtainEntry(int position) {
+
+        checkOpened();
+
+        if (position < 0) {
+            throw new IllegalArgumentException("position must >= 0: " + position);
+        }
+
+        int index = Arrays.binarySearch(mPositions, 0, mCount, position);
+        if (index >= 0) {
+            return index;
+        }
+        index = -index - 1;
+
+        if (mCount == mPositions.length) {
+            int capacity = mCount << 1;
+            mPositions = Arrays.copyOf(mPositions, capacity);
+            mConstraints = Arrays.copyOf(mConstraints, capacity);
+            mGenerators = Arrays.copyOf(mGenerators, capacity);
+        }
+
+        /* 保存的约束对象跟着条目移动,末尾空闲的约束移到插入位置复用 */
+
+        Constraint spare = mConstraints[mCount];
+        int moved = mCount - index;
+        System.arraycopy(mPositions, index, mPositions, index + 1, moved);
+        System.arraycopy(mConstraints, index, mConstraints, index + 1, moved);
+        System.arraycopy(mGenerators, index, mGenerators, index + 1, moved);
+
+        mPositions[index] = position;
+        mConstraints[index] = spare;
+        mGenerators[index] = null;
+        mCount++;
+        return index;
+    }
+
+
+    private void checkOpened() {
+
+        if (!mOpened) {
+            throw new IllegalStateException("call ConstraintLayout#beginConstraintUpdate() first");
+        }
+    }
+
+
+    private void clearReferences() {
+
+        Arrays.fill(mGenerators, 0, mCount, null);
+        mCount = 0;
+    }
+
+
+    /**
+     * 提交时生成约束
+     */
+    public interface ConstraintGenerator {
+
+        /**
+         * 生成约束
+         *
+         * @param position   布局位置
+         * @param constraint 空白约束
+         * @param view       该位置的view
+         * @return 约束
+         */
+        Constraint generate(int position, Constraint constraint, View view);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.constraintlayout;
+
+import java.util.Arrays;
+
+/**
+ * 一次测量过程中收集到的非法约束,{@link ConstraintLayout#VALIDATION_COLLECT}模式下使用,
+ * 每次测量开始时清空并复用,容量足够时记录不会创建对象
+ *
+ * @author wuxio
+ */
+public final class ConstraintViolations {
+
+    /**
+     * 每条记录占用的int数量: position, left, top, right, bottom
+     */
+    private static final int STRIDE = 5;
+
+    private int[] mRecords = new int[8 * STRIDE];
+    private int   mCount;
+
+    /**
+     * 本次测量中是否有之前没有报告过的非法约束
+     */
+    private boolean mHasNew;
+
+
+    void clear() {
+
+        mCount = 0;
+        mHasNew = false;
+    }
+
+
+    void add(int position, Constraint constraint, boolean isNew) {
+
+        int index = mCount * STRIDE;
+        if (index + STRIDE > mRecords.length) {
+            mRecords = Arrays.copyOf(mRecords, mRecords.length << 1);
+        }
+
+        int[] records = mRecords;
+        records[index] = position;
+        records[index + 1] = constraint.left;
+        records[index + 2] = constraint.top;
+        records[index + 3] = constraint.right;
+        records[index + 4] = constraint.bottom;
+
+        mCount++;
+        mHasNew |= isNew;
+    }
+
+
+    boolean hasNew() {
+
+        return mHasNew;
+    }
+
+
+    /**
+     * @return 非法约束数量
+     */
+    public int size() {
+
+        return mCount;
+    }
+
+
+    /**
+     * @param index 第几条记录
+     * @return 非法约束的布局位置
+     */
+    public int getPosition(int index) {
+
+        return mRecords[index * STRIDE];
+    }
+
+
+    public int getLeft(int index) {
+
+        return mRecords[index * STRIDE + 1];
+    }
+
+
+    public int getTop(int index) {
+
+        return mRecords[index * STRIDE + 2];
+    }
+
+
+    public int getRight(int index) {
+
+        return mRecords[index * STRIDE + 3];
+    }
+
+
+    public int getBottom(int index) {
+
+        return mRecords[index * STRIDE + 4];
+    }
+
+
+    @Override
+    public String toString() {
+
+        StringBuilder builder = new StringBuilder("illegal constraints, right must >= left, bottom must >= top:");
+        for (int i = 0; i < mCount; i++) {
+            builder.append(" [position=").append(getPosition(i))
+                   .append(" left=").append(getLeft(i))
+                   .append(" top=").append(getTop(i))
+                   .append(" right=").append(getRight(i))
+                   .append(" bottom=").append(getBottom(i))
+                   .append(']');
+        }
+        return builder.toString();
+    }
+}
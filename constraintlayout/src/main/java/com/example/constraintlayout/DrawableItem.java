@@ -0,0 +1,112 @@
+package com.example.constraintlayout;
+
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.SystemClock;
+import android.view.View;
+
+/**
+ * 绘制一个{@link Drawable}的{@link RenderItem},wrap_content 时使用drawable的固有尺寸
+ *
+ * @author wuxio
+ */
+public class DrawableItem extends RenderItem implements Drawable.Callback {
+
+    private Drawable mDrawable;
+
+
+    public DrawableItem(Drawable drawable) {
+
+        setDrawable(drawable);
+    }
+
+
+    public void setDrawable(Drawable drawable) {
+
+        if (mDrawable == drawable) {
+            return;
+        }
+
+        if (mDrawable != null) {
+            mDrawable.setCallback(null);
+        }
+        mDrawable = drawable;
+        if (drawable != null && getHost() != null) {
+            drawable.setCallback(this);
+        }
+        requestLayout();
+    }
+
+
+    public Drawable getDrawable() {
+
+        return mDrawable;
+    }
+
+
+    @Override
+    protected void onMeasure(int widthSpec, int heightSpec) {
+
+        Drawable drawable = mDrawable;
+        int width = drawable == null ? 0 : Math.max(drawable.getIntrinsicWidth(), 0);
+        int height = drawable == null ? 0 : Math.max(drawable.getIntrinsicHeight(), 0);
+        setMeasuredDimension(resolveSize(width, widthSpec), resolveSize(height, heightSpec));
+    }
+
+
+    @Override
+    protected void draw(Canvas canvas, int left, int top, int right, int bottom) {
+
+        if (mDrawable != null) {
+            mDrawable.setBounds(left, top, right, bottom);
+            mDrawable.draw(canvas);
+        }
+    }
+
+
+    @Override
+    protected void onAttached(View host) {
+
+        if (mDrawable != null) {
+            mDrawable.setCallback(this);
+        }
+    }
+
+
+    @Override
+    protected void onDetached(View host) {
+
+        if (mDrawable != null) {
+            mDrawable.setCallback(null);
+        }
+    }
+
+    //============================ drawable callback ============================
+
+
+    @Override
+    public void invalidateDrawable(Drawable who) {
+
+        invalidate();
+    }
+
+
+    @Override
+    public void scheduleDrawable(Drawable who, Runnable what, long when) {
+
+        View host = getHost();
+        if (host != null) {
+            host.postDelayed(what, when - SystemClock.uptimeMillis());
+        }
+    }
+
+
+    @Override
+    public void unscheduleDrawable(Drawable who, Runnable what) {
+
+        View host = getHost();
+        if (host != null) {
+            host.removeCallbacks(what);
+        }
+    }
+}
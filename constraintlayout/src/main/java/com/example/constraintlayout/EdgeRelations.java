@@ -0,0 +1,103 @@
+package com.example.constraintlayout;
+
+/**
+ * 记录{@link Constraint}每条边是怎样得到的(相对父布局,相对其他view,相对自己的另一条边,或者固定值),
+ * 用于{@link ConstraintSystem}把约束转换为线性方程;只有求解模式生成约束时才会记录
+ *
+ * @author wuxio
+ */
+final class EdgeRelations {
+
+    static final int LEFT   = 0;
+    static final int TOP    = 1;
+    static final int RIGHT  = 2;
+    static final int BOTTOM = 3;
+
+    /**
+     * 没有约束,使用生成约束时的值
+     */
+    static final int KIND_NONE     = 0;
+    /**
+     * 父布局的一条边 + offset
+     */
+    static final int KIND_PARENT   = 1;
+    /**
+     * 另一个布局位置的一条边 + offset
+     */
+    static final int KIND_VIEW     = 2;
+    /**
+     * 自己的另一条边 + offset,用于指定宽高
+     */
+    static final int KIND_SELF     = 3;
+    /**
+     * 固定值 offset
+     */
+    static final int KIND_ABSOLUTE = 4;
+
+    final int[] kinds       = new int[4];
+    final int[] positions   = new int[4];
+    final int[] targetEdges = new int[4];
+    final int[] offsets     = new int[4];
+
+    /**
+     * baseline 对齐的布局位置,-1 表示没有;自己的baseline在它的baseline(没有baseline时是底边) + baselineOffset
+     */
+    int baselinePosition = -1;
+    int baselineOffset;
+
+
+    void clear() {
+
+        for (int i = 0; i < 4; i++) {
+            kinds[i] = KIND_NONE;
+            positions[i] = -1;
+            targetEdges[i] = -1;
+            offsets[i] = 0;
+        }
+        baselinePosition = -1;
+        baselineOffset = 0;
+    }
+
+
+    void set(int edge, int kind, int position, int targetEdge, int offset) {
+
+        kinds[edge] = kind;
+        positions[edge] = position;
+        targetEdges[edge] = targetEdge;
+        offsets[edge] = offset;
+    }
+
+
+    void setBaseline(int position, int offset) {
+
+        baselinePosition = position;
+        baselineOffset = offset;
+    }
+
+
+    /**
+     * 每条边平移之后调整偏移量;相对自己另一条边的边,另一条边的平移已经包含在内,只加上差值
+     */
+    void shift(int leftOffset, int topOffset, int rightOffset, int bottomOffset) {
+
+        int[] deltas = {leftOffset, topOffset, rightOffset, bottomOffset};
+        for (int i = 0; i < 4; i++) {
+            if (kinds[i] == KIND_SELF) {
+                offsets[i] += deltas[i] - deltas[targetEdges[i]];
+            } else {
+                offsets[i] += deltas[i];
+            }
+        }
+    }
+
+
+    void copyFrom(EdgeRelations other) {
+
+        System.arraycopy(other.kinds, 0, kinds, 0, 4);
+        System.arraycopy(other.positions, 0, positions, 0, 4);
+        System.arraycopy(other.targetEdges, 0, targetEdges, 0, 4);
+        System.arraycopy(other.offsets, 0, offsets, 0, 4);
+        baselinePosition = other.baselinePosition;
+        baselineOffset = other.baselineOffset;
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.constraintlayout;
+
+import java.util.Arrays;
+
+/**
+ * 对{@link RectTable}中已经测量好的位置建立均匀网格索引,用于快速查找触摸点下的布局位置;
+ * 每个格子按布局位置升序保存与之相交的布局位置,查找时从后往前(绘制顺序从上到下)检查,
+ * 平均只需要检查一个格子中的少量位置,与子view数量无关
+ *
+ * @author wuxio
+ */
+final class HitTestIndex {
+
+    /**
+     * 格子最小边长,避免子view很小很多时格子过多
+     */
+    private static final int MIN_CELL_SIZE = 32;
+
+    /**
+     * 平均每个格子期望容纳的子view数量
+     */
+    private static final int TARGET_PER_CELL = 4;
+
+    private int mCellSize;
+    private int mColumns;
+    private int mRows;
+
+    /**
+     * 每个格子中的布局位置,升序
+     */
+    private int[][] mCells = new int[0][];
+    private int[]   mCellSizes = new int[0];
+
+    /**
+     * 索引中记录的每个布局位置的范围,用于增量更新时找到原来所在的格子
+     */
+    private RectTable mIndexed = new RectTable();
+    private int       mCount;
+
+    /**
+     * true:需要完全重建
+     */
+    private boolean mDirty = true;
+
+
+    boolean isDirty() {
+
+        return mDirty;
+    }
+
+
+    void markDirty() {
+
+        mDirty = true;
+    }
+
+
+    /**
+     * 使用位置信息完全重建索引
+     *
+     * @param table  位置信息
+     * @param count  布局位置数量
+     * @param width  布局宽度
+     * @param height 布局高度
+     */
+    void build(RectTable table, int count, int width, int height) {
+
+        width = Math.max(width, 1);
+        height = Math.max(height, 1);
+
+        /* 根据面积和数量决定格子大小,使平均每个格子约有 TARGET_PER_CELL 个子view */
+
+        long area = (long) width * height;
+        int cellSize = (int) Math.sqrt(area * TARGET_PER_CELL / Math.max(count, 1));
+        mCellSize = Math.max(cellSize, MIN_CELL_SIZE);
+        mColumns = (width + mCellSize - 1) / mCellSize;
+        mRows = (height + mCellSize - 1) / mCellSize;
+
+        int cellCount = mColumns * mRows;
+        if (mCells.length < cellCount) {
+            mCells = Arrays.copyOf(mCells, cellCount);
+            mCellSizes = new int[cellCount];
+        } else {
+            Arrays.fill(mCellSizes, 0);
+        }
+
+        mIndexed.ensureCapacity(count);
+        mCount = count;
+
+        for (int i = 0; i < count; i++) {
+            int left = table.getLeft(i);
+            int top = table.getTop(i);
+            int right = table.getRight(i);
+            int bottom = table.getBottom(i);
+            mIndexed.set(i, left, top, right, bottom);
+            insert(i, left, top, right, bottom);
+        }
+
+        mDirty = false;
+    }
+
+
+    /**
+     * 一个布局位置移动之后,只更新它所在的格子
+     *
+     * @param position 布局位置
+     * @param table    新的位置信息
+     */
+    void update(int position, RectTable table) {
+
+        if (mDirty || position < 0 || position >= mCount) {
+            mDirty = true;
+            return;
+        }
+
+        remove(position,
+               mIndexed.getLeft(position),
+               mIndexed.getTop(position),
+               mIndexed.getRight(position),
+               mIndexed.getBottom(position)
+        );
+
+        int left = table.getLeft(position);
+        int top = table.getTop(position);
+        int right = table.getRight(position);
+        int bottom = table.getBottom(position);
+        mIndexed.set(position, left, top, right, bottom);
+        insert(position, left, top, right, bottom);
+    }
+
+
+    /**
+     * 查找包含该点,并且在指定布局位置下层的最上层布局位置;依次传入上一次的结果可以从上到下遍历该点下的所有位置
+     *
+     * @param x      x坐标,相对布局
+     * @param y      y坐标,相对布局
+     * @param below  只查找小于该值的布局位置,{@link Integer#MAX_VALUE}查找所有
+     * @param filter 过滤不能接收触摸的位置,可以为null
+     * @return 布局位置, 没有返回-1
+     */
+    int findTopmost(int x, int y, int below, PositionFilter filter) {
+
+        if (mDirty || x < 0 || y < 0) {
+            return -1;
+        }
+
+        int column = x / mCellSize;
+        int row = y / mCellSize;
+        if (column >= mColumns || row >= mRows) {
+            return -1;
+        }
+
+        int cell = row * mColumns + column;
+        int[] positions = mCells[cell];
+        RectTable indexed = mIndexed;
+
+        for (int i = mCellSizes[cell] - 1; i >= 0; i--) {
+            int position = positions[i];
+            if (position >= below) {
+                continue;
+            }
+            if (x >= indexed.getLeft(position) && x < indexed.getRight(position)
+                    && y >= indexed.getTop(position) && y < indexed.getBottom(position)) {
+                if (filter == null || filter.accept(position)) {
+                    return position;
+                }
+            }
+        }
+        return -1;
+    }
+
+    //============================ 格子操作 ============================
+
+
+    private void insert(int position, int left, int top, int right, int bottom) {
+
+        if (right <= left || bottom <= top || right <= 0 || bottom <= 0) {
+            return;
+        }
+
+        int fromColumn = clampColumn(left);
+        int toColumn = clampColumn(right - 1);
+        int fromRow = clampRow(top);
+        int toRow = clampRow(bottom - 1);
+
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                insertToCell(row * mColumns + column, position);
+            }
+        }
+    }
+
+
+    private void remove(int position, int left, int top, int right, int bottom) {
+
+        if (right <= left || bottom <= top || right <= 0 || bottom <= 0) {
+            return;
+        }
+
+        int fromColumn = clampColumn(left);
+        int toColumn = clampColumn(right - 1);
+        int fromRow = clampRow(top);
+        int toRow = clampRow(bottom - 1);
+
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                removeFromCell(row * mColumns + column, position);
+            }
+        }
+    }
+
+
+    private void insertToCell(int cell, int position) {
+
+        int[] positions = mCells[cell];
+        int size = mCellSizes[cell];
+
+        if (positions == null) {
+            positions = new int[TARGET_PER_CELL * 2];
+            mCells[cell] = positions;
+        } else if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size << 1);
+            mCells[cell] = positions;
+        }
+
+        /* 保持升序,通常按顺序插入,只需要比较一次 */
+
+        int index = size;
+        while (index > 0 && positions[index - 1] > position) {
+            positions[index] = positions[index - 1];
+            index--;
+        }
+        positions[index] = position;
+        mCellSizes[cell] = size + 1;
+    }
+
+
+    private void removeFromCell(int cell, int position) {
+
+        int[] positions = mCells[cell];
+        int size = mCellSizes[cell];
+        if (positions == null) {
+            return;
+        }
+
+        int index = Arrays.binarySearch(positions, 0, size, position);
+        if (index < 0) {
+            return;
+        }
+        System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+        mCellSizes[cell] = size - 1;
+    }
+
+
+    private int clampColumn(int x) {
+
+        int column = x / mCellSize;
+        return Math.max(0, Math.min(column, mColumns - 1));
+    }
+
+
+    private int clampRow(int y) {
+
+        int row = y / mCellSize;
+        return Math.max(0, Math.min(row, mRows - 1));
+    }
+
+
+    /**
+     * 过滤布局位置
+     */
+    interface PositionFilter {
+
+        /**
+         * @param position 布局位置
+         * @return true:可以作为触摸目标
+         */
+        boolean accept(int position);
+    }
+}
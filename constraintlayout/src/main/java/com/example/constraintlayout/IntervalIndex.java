@@ -0,0 +1,169 @@
+package com.example.constraintlayout;
+
+import java.util.Arrays;
+
+/**
+ * 对{@link RectTable}中的布局位置建立区间树,用于查找与一个竖直区间相交的布局位置:
+ * 按top排序之后的数组就是一棵隐式的平衡二叉搜索树(区间的中点是根),每个节点记录子树中最大的bottom,
+ * 查找时跳过最大bottom不超过区间上边的子树,以及top超过区间下边的右子树,
+ * 复杂度为 O((k + 1) log n),不会因为一个很高的布局位置退化为扫描全部
+ *
+ * @author wuxio
+ */
+final class IntervalIndex {
+
+    /**
+     * 排序使用的键:高32位是top,低32位是布局位置
+     */
+    private long[] mKeys = new long[0];
+
+    /**
+     * 按top升序排列的布局位置,以及对应的top,bottom
+     */
+    private int[] mOrder   = new int[0];
+    private int[] mTops    = new int[0];
+    private int[] mBottoms = new int[0];
+
+    /**
+     * 以该下标为根的子树中最大的bottom
+     */
+    private int[] mMaxBottoms = new int[0];
+
+    private int mCount;
+
+    /**
+     * 上一次查询的结果数量
+     */
+    private int mResultCount;
+
+    /**
+     * true:需要重建
+     */
+    private boolean mDirty = true;
+
+
+    boolean isDirty() {
+
+        return mDirty;
+    }
+
+
+    void markDirty() {
+
+        mDirty = true;
+    }
+
+
+    /**
+     * 重建索引
+     *
+     * @param table 位置信息
+     * @param count 布局位置数量
+     */
+    void build(RectTable table, int count) {
+
+        if (mOrder.length < count) {
+            mKeys = new long[count];
+            mOrder = new int[count];
+            mTops = new int[count];
+            mBottoms = new int[count];
+            mMaxBottoms = new int[count];
+        }
+
+        long[] keys = mKeys;
+        for (int i = 0; i < count; i++) {
+            keys[i] = ((long) table.getTop(i) << 32) | i;
+        }
+        Arrays.sort(keys, 0, count);
+
+        for (int i = 0; i < count; i++) {
+            int position = (int) keys[i];
+            mOrder[i] = position;
+            mTops[i] = table.getTop(position);
+            mBottoms[i] = table.getBottom(position);
+        }
+
+        mCount = count;
+        buildMaxBottom(0, count);
+        mDirty = false;
+    }
+
+
+    /**
+     * 计算 [from, to) 这棵子树中最大的bottom,保存在中点
+     */
+    private int buildMaxBottom(int from, int to) {
+
+        if (from >= to) {
+            return Integer.MIN_VALUE;
+        }
+
+        int mid = (from + to) >>> 1;
+        int max = Math.max(mBottoms[mid], Math.max(buildMaxBottom(from, mid), buildMaxBottom(mid + 1, to)));
+        mMaxBottoms[mid] = max;
+        return max;
+    }
+
+
+    /**
+     * 查找与区域相交的布局位置,结果按top升序
+     *
+     * @param table  位置信息,用于检查水平方向
+     * @param left   区域
+     * @param top    区域
+     * @param right  区域
+     * @param bottom 区域
+     * @param out    保存结果,空间不够时会扩容
+     * @return 结果数组, 可能是新的数组;结果数量在{@link #getResultCount()}
+     */
+    int[] query(RectTable table, int left, int top, int right, int bottom, int[] out) {
+
+        mResultCount = 0;
+        if (bottom <= top || right <= left) {
+            return out;
+        }
+        return query(table, 0, mCount, left, top, right, bottom, out);
+    }
+
+
+    private int[] query(RectTable table, int from, int to,
+                        int left, int top, int right, int bottom, int[] out) {
+
+        if (from >= to) {
+            return out;
+        }
+
+        int mid = (from + to) >>> 1;
+        if (mMaxBottoms[mid] <= top) {
+            return out;
+        }
+
+        out = query(table, from, mid, left, top, right, bottom, out);
+
+        if (mTops[mid] >= bottom) {
+            return out;
+        }
+
+        int position = mOrder[mid];
+        if (mBottoms[mid] > top
+                && table.getRight(position) > left
+                && table.getLeft(position) < right) {
+
+            if (mResultCount == out.length) {
+                out = Arrays.copyOf(out, Math.max(8, out.length << 1));
+            }
+            out[mResultCount++] = position;
+        }
+
+        return query(table, mid + 1, to, left, top, right, bottom, out);
+    }
+
+
+    /**
+     * @return 上一次{@link #query(RectTable, int, int, int, int, int[])}的结果数量
+     */
+    int getResultCount() {
+
+        return mResultCount;
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.constraintlayout;
+
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+
+import java.util.Arrays;
+
+/**
+ * key 到布局位置的哈希索引,开放寻址,使用两个基本类型数组保存,查找时不会装箱也不会创建对象;
+ * 插入删除view时只平移受影响的布局位置,不需要重新计算哈希
+ *
+ * @author wuxio
+ */
+final class KeyIndex {
+
+    private static final int EMPTY = -1;
+
+    private long[] mKeys      = new long[16];
+    private int[]  mPositions = new int[16];
+    private int    mMask      = 15;
+    private int    mSize;
+
+    /**
+     * true:需要使用adapter重建
+     */
+    private boolean mDirty = true;
+
+
+    KeyIndex() {
+
+        Arrays.fill(mPositions, EMPTY);
+    }
+
+
+    boolean isDirty() {
+
+        return mDirty;
+    }
+
+
+    void markDirty() {
+
+        mDirty = true;
+    }
+
+
+    int size() {
+
+        return mSize;
+    }
+
+
+    /**
+     * 使用adapter重建
+     *
+     * @param adapter adapter
+     * @param count   布局位置数量
+     */
+    void build(BaseConstraintAdapter adapter, int count) {
+
+        int capacity = Integer.highestOneBit(Math.max(count * 2 - 1, 15)) << 1;
+        if (capacity != mKeys.length) {
+            mKeys = new long[capacity];
+            mPositions = new int[capacity];
+            mMask = capacity - 1;
+        }
+        Arrays.fill(mPositions, EMPTY);
+        mSize = 0;
+
+        for (int i = 0; i < count; i++) {
+            put(adapter.getItemKey(i), i);
+        }
+        mDirty = false;
+    }
+
+
+    /**
+     * @param key key
+     * @return 布局位置, 没有返回-1
+     */
+    int get(long key) {
+
+        long[] keys = mKeys;
+        int[] positions = mPositions;
+        int mask = mMask;
+
+        int slot = hash(key) & mask;
+        while (true) {
+            int position = positions[slot];
+            if (position == EMPTY) {
+                return -1;
+            }
+            if (keys[slot] == key) {
+                return position;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+
+    /**
+     * 添加或者更新一个key
+     */
+    void put(long key, int position) {
+
+        if ((mSize + 1) * 2 > mKeys.length) {
+            resize(mKeys.length << 1);
+        }
+
+        long[] keys = mKeys;
+        int[] positions = mPositions;
+        int mask = mMask;
+
+        int slot = hash(key) & mask;
+        while (positions[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                positions[slot] = position;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        positions[slot] = position;
+        mSize++;
+    }
+
+
+    /**
+     * 删除该布局位置对应的key,之后的布局位置前移一位
+     *
+     * @param position 删除的布局位置
+     */
+    void removePosition(int position) {
+
+        int[] positions = mPositions;
+        for (int slot = 0; slot < positions.length; slot++) {
+            if (positions[slot] == position) {
+                deleteSlot(slot);
+                break;
+            }
+        }
+        shift(position + 1, -1);
+    }
+
+
+    /**
+     * 插入一个布局位置,之前在该位置以及之后的布局位置后移一位
+     *
+     * @param position 插入的布局位置
+     * @param key      插入的key
+     */
+    void insertPosition(int position, long key) {
+
+        shift(position, 1);
+        put(key, position);
+    }
+
+    //============================ 内部 ============================
+
+
+    /**
+     * 布局位置 >= from 的都加上 delta
+     */
+    private void shift(int from, int delta) {
+
+        int[] positions = mPositions;
+        for (int slot = 0; slot < positions.length; slot++) {
+            if (positions[slot] >= from) {
+                positions[slot] += delta;
+            }
+        }
+    }
+
+
+    /**
+     * 删除一个槽,后面同一个探测序列中的元素前移,不使用墓碑
+     */
+    private void deleteSlot(int slot) {
+
+        long[] keys = mKeys;
+        int[] positions = mPositions;
+        int mask = mMask;
+
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (positions[next] != EMPTY) {
+            int ideal = hash(keys[next]) & mask;
+
+            /* ideal 不在 (hole, next] 之间时,可以移到空位 */
+
+            boolean movable = hole <= next
+                    ? ideal <= hole || ideal > next
+                    : ideal <= hole && ideal > next;
+            if (movable) {
+                keys[hole] = keys[next];
+                positions[hole] = positions[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        positions[hole] = EMPTY;
+        mSize--;
+    }
+
+
+    private void resize(int capacity) {
+
+        long[] oldKeys = mKeys;
+        int[] oldPositions = mPositions;
+
+        mKeys = new long[capacity];
+        mPositions = new int[capacity];
+        Arrays.fill(mPositions, EMPTY);
+        mMask = capacity - 1;
+        mSize = 0;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldPositions[i] != EMPTY) {
+                put(oldKeys[i], oldPositions[i]);
+            }
+        }
+    }
+
+
+    private static int hash(long key) {
+
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,710 @@
+package com.example.constraintlayout;
+
+import android.graphics.Rect;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 不创建view,预先计算adapter所有布局位置的位置,例如在后台线程为很大的布局提前求解;内容使用{@link Measurer}测量
+ * <p>
+ * 先生成一次所有约束,记录每个布局位置引用了哪些位置,按引用关系分为互不引用的子图(例如横幅,导航行,推荐网格),
+ * 每个子图内按引用的拓扑顺序求解;传入{@link ForkJoinPool}时(api 21)各个子图并行求解,结果直接写入同一个位置表
+ * <p>
+ * 预先计算时adapter的{@link BaseConstraintAdapter#generateConstraintTo(int, Constraint, android.view.View)}
+ * 收到的view是null,每个布局位置会生成两次约束,引用的位置不能依赖读取到的值;
+ * 并行时会在多个线程同时生成约束,adapter 需要是线程安全的
+ *
+ * @author wuxio
+ */
+public final class LayoutPrecomputer {
+
+    /**
+     * 布局位置少于这个数量的子图合并到同一个任务中求解
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 64;
+
+    private final BaseConstraintAdapter mAdapter;
+    private final Measurer              mMeasurer;
+
+    private int mPaddingLeft;
+    private int mPaddingTop;
+    private int mPaddingRight;
+    private int mPaddingBottom;
+
+    private int mDefaultUnit = Constraint.UNIT_PX;
+    private int mDpScale     = Constraint.UNIT_SCALE_ONE;
+    private int mSpScale     = Constraint.UNIT_SCALE_ONE;
+
+    /**
+     * 一次计算中使用的数据
+     */
+    private int          mCount;
+    private int          mParentRight;
+    private int          mParentBottom;
+    private RectTable    mTable;
+    private KeyIndex     mKeyIndex;
+    private Constraint[] mDeferred;
+
+    /**
+     * 分组的结果: 所有布局位置按子图排列,每个子图内是求解顺序; mGroupStarts 是每个子图的开始,最后一个是总数
+     */
+    private int[] mSolveOrder;
+    private int[] mGroupStarts;
+    private int   mGroupCount;
+
+    private int mWidth;
+    private int mHeight;
+
+
+    /**
+     * @param adapter  生成约束的adapter
+     * @param measurer 测量内容
+     */
+    public LayoutPrecomputer(BaseConstraintAdapter adapter, Measurer measurer) {
+
+        if (adapter == null || measurer == null) {
+            throw new IllegalArgumentException("adapter and measurer must not be null");
+        }
+        mAdapter = adapter;
+        mMeasurer = measurer;
+    }
+
+
+    public void setPadding(int left, int top, int right, int bottom) {
+
+        mPaddingLeft = left;
+        mPaddingTop = top;
+        mPaddingRight = right;
+        mPaddingBottom = bottom;
+    }
+
+
+    /**
+     * 设置约束使用的单位,和{@link ConstraintLayout#setDefaultUnit(int)}相同
+     *
+     * @param unit          默认单位
+     * @param density       dp 到像素的比例
+     * @param scaledDensity sp 到像素的比例
+     */
+    public void setUnit(int unit, float density, float scaledDensity) {
+
+        if (unit < Constraint.UNIT_PX || unit > Constraint.UNIT_SP) {
+            throw new IllegalArgumentException("unknown unit: " + unit);
+        }
+        mDefaultUnit = unit;
+        mDpScale = Math.round(density * Constraint.UNIT_SCALE_ONE);
+        mSpScale = Math.round(scaledDensity * Constraint.UNIT_SCALE_ONE);
+    }
+
+    //============================ 计算 ============================
+
+
+    /**
+     * 在当前线程计算
+     *
+     * @see #compute(int, int, ForkJoinPool)
+     */
+    public RectTable compute(int width, int height) {
+
+        return computeTable(width, height, null);
+    }
+
+
+    /**
+     * 计算所有布局位置的位置
+     *
+     * @param width  布局宽度,-1 表示wrap_content
+     * @param height 布局高度,-1 表示wrap_content
+     * @param pool   并行求解子图使用的线程池(api 21),null 在当前线程计算
+     * @return 位置表, 之后可以使用{@link #getWidth()},{@link #getHeight()}读取布局的尺寸
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    public RectTable compute(int width, int height, ForkJoinPool pool) {
+
+        return computeTable(width, height, pool == null ? null : new ParallelSolver(pool));
+    }
+
+
+    /**
+     * @param parallel 并行求解子图,null 在当前线程计算
+     */
+    private RectTable computeTable(int width, int height, ParallelSolver parallel) {
+
+        final int count = mAdapter.getChildCount();
+
+        mCount = count;
+        mParentRight = width < 0 ? -1 : width - mPaddingRight;
+        mParentBottom = height < 0 ? -1 : height - mPaddingBottom;
+        mTable = new RectTable(count);
+        mDeferred = new Constraint[count];
+        mKeyIndex = new KeyIndex();
+        mKeyIndex.build(mAdapter, count);
+
+        /* 1. 记录引用关系,分为互不引用的子图 */
+
+        group(count);
+
+        /* 2. 求解每个子图,写入同一个位置表 */
+
+        if (parallel == null || mGroupCount <= 1) {
+            new Worker().solveGroups(0, mGroupCount);
+        } else {
+            parallel.solve(this);
+        }
+
+        /* 3. 内容尺寸确定之后,求解约束到未知的父布局右边/底边的位置 */
+
+        RectTable table = mTable;
+        int mostRight = 0;
+        int mostBottom = 0;
+        for (int i = 0; i < count; i++) {
+            if (!table.hasFlag(i, RectTable.FLAG_DEFERRED_HORIZONTAL)) {
+                mostRight = Math.max(mostRight, table.getRight(i));
+            }
+            if (!table.hasFlag(i, RectTable.FLAG_DEFERRED_VERTICAL)) {
+                mostBottom = Math.max(mostBottom, table.getBottom(i));
+            }
+        }
+
+        int contentRight = mParentRight != -1 ? mParentRight : mostRight;
+        int contentBottom = mParentBottom != -1 ? mParentBottom : mostBottom;
+
+        /* 按求解顺序,读取了延迟位置的布局位置在被读取的位置之后重新生成约束 */
+
+        Worker worker = null;
+        int[] order = mSolveOrder;
+        for (int k = 0; k < count; k++) {
+            int i = order[k];
+            boolean dependent = table.hasFlag(i, RectTable.FLAG_DEFERRED_DEPENDENT);
+            Constraint constraint = mDeferred[i];
+            if (constraint == null && !dependent) {
+                continue;
+            }
+            if (worker == null) {
+                worker = new Worker();
+            }
+            if (dependent) {
+                worker.resolve(i, contentRight, contentBottom);
+            } else {
+                constraint.resolveDeferred(contentRight, contentBottom);
+                worker.apply(i, constraint);
+            }
+            table.clearFlag(i, RectTable.FLAG_DEFERRED_HORIZONTAL | RectTable.FLAG_DEFERRED_VERTICAL
+                    | RectTable.FLAG_DEFERRED_DEPENDENT);
+
+            mostRight = Math.max(mostRight, table.getRight(i));
+            mostBottom = Math.max(mostBottom, table.getBottom(i));
+        }
+
+        mWidth = width < 0 ? mostRight : width;
+        mHeight = height < 0 ? mostBottom : height;
+
+        mDeferred = null;
+        mKeyIndex = null;
+        mTable = null;
+        return table;
+    }
+
+
+    /**
+     * @return 上一次计算得到的布局宽度
+     */
+    public int getWidth() {
+
+        return mWidth;
+    }
+
+
+    /**
+     * @return 上一次计算得到的布局高度
+     */
+    public int getHeight() {
+
+        return mHeight;
+    }
+
+
+    /**
+     * @return 上一次计算分成的子图数量
+     */
+    public int getGroupCount() {
+
+        return mGroupCount;
+    }
+
+    //============================ 分组 ============================
+
+
+    /**
+     * 生成所有约束记录引用的位置,使用并查集合并为子图,每个子图内按深度优先的后序排列,被引用的位置在前
+     */
+    private void group(int count) {
+
+        ReferenceRecorder recorder = new ReferenceRecorder();
+        Constraint constraint = new Constraint(recorder);
+        for (int i = 0; i < count; i++) {
+            recorder.mFrom = i;
+            constraint.init();
+            mAdapter.generateConstraintTo(i, constraint, null);
+        }
+
+        int edgeCount = recorder.mEdgeCount;
+        int[] from = recorder.mEdgeFrom;
+        int[] to = recorder.mEdgeTo;
+
+        /* 并查集 */
+
+        int[] roots = new int[count];
+        for (int i = 0; i < count; i++) {
+            roots[i] = i;
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            int a = find(roots, from[e]);
+            int b = find(roots, to[e]);
+            if (a != b) {
+                roots[a] = b;
+            }
+        }
+
+        /* 邻接表 */
+
+        int[] edgeStarts = new int[count + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            edgeStarts[from[e] + 1]++;
+        }
+        for (int i = 0; i < count; i++) {
+            edgeStarts[i + 1] += edgeStarts[i];
+        }
+        int[] targets = new int[edgeCount];
+        int[] cursor = Arrays.copyOf(edgeStarts, count);
+        for (int e = 0; e < edgeCount; e++) {
+            targets[cursor[from[e]]++] = to[e];
+        }
+
+        /* 深度优先后序,循环引用时不再深入,读取到的是还没有求解的值 */
+
+        int[] postOrder = new int[count];
+        int postCount = 0;
+        byte[] state = new byte[count];
+        int[] stack = new int[count];
+        int[] next = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (state[i] != 0) {
+                continue;
+            }
+            int depth = 0;
+            stack[depth++] = i;
+            state[i] = 1;
+            next[i] = edgeStarts[i];
+            while (depth > 0) {
+                int position = stack[depth - 1];
+                if (next[position] < edgeStarts[position + 1]) {
+                    int target = targets[next[position]++];
+                    if (state[target] == 0) {
+                        state[target] = 1;
+                        next[target] = edgeStarts[target];
+                        stack[depth++] = target;
+                    }
+                } else {
+                    state[position] = 2;
+                    postOrder[postCount++] = position;
+                    depth--;
+                }
+            }
+        }
+
+        /* 按子图稳定排序,子图内保持后序 */
+
+        int[] groupOfRoot = new int[count];
+        Arrays.fill(groupOfRoot, -1);
+        int[] groupOf = new int[count];
+        int groupCount = 0;
+        for (int i = 0; i < count; i++) {
+            int root = find(roots, i);
+            if (groupOfRoot[root] == -1) {
+                groupOfRoot[root] = groupCount++;
+            }
+            groupOf[i] = groupOfRoot[root];
+        }
+
+        int[] groupStarts = new int[groupCount + 1];
+        for (int i = 0; i < count; i++) {
+            groupStarts[groupOf[i] + 1]++;
+        }
+        for (int g = 0; g < groupCount; g++) {
+            groupStarts[g + 1] += groupStarts[g];
+        }
+        int[] order = new int[count];
+        int[] fill = Arrays.copyOf(groupStarts, groupCount);
+        for (int k = 0; k < count; k++) {
+            int position = postOrder[k];
+            order[fill[groupOf[position]]++] = position;
+        }
+
+        mSolveOrder = order;
+        mGroupStarts = groupStarts;
+        mGroupCount = groupCount;
+    }
+
+
+    private static int find(int[] roots, int i) {
+
+        while (roots[i] != i) {
+            roots[i] = roots[roots[i]];
+            i = roots[i];
+        }
+        return i;
+    }
+
+    //============================ 求解 ============================
+
+
+    /**
+     * 父布局的边和单位,两种support共用
+     */
+    private abstract class BaseSupport implements ConstraintSupport {
+
+        @Override
+        public int getParentLeft() {
+
+            return mPaddingLeft;
+        }
+
+
+        @Override
+        public int getParentTop() {
+
+            return mPaddingTop;
+        }
+
+
+        @Override
+        public int getParentRight() {
+
+            return mParentRight;
+        }
+
+
+        @Override
+        public int getParentBottom() {
+
+            return mParentBottom;
+        }
+
+
+        @Override
+        public int getUnitScale(int unit) {
+
+            switch (unit) {
+                case Constraint.UNIT_DP:
+                    return mDpScale;
+                case Constraint.UNIT_SP:
+                    return mSpScale;
+                default:
+                    return Constraint.UNIT_SCALE_ONE;
+            }
+        }
+
+
+        @Override
+        public int getDefaultUnit() {
+
+            return mDefaultUnit;
+        }
+
+
+        @Override
+        public int getPositionOfKey(long key) {
+
+            return mKeyIndex.get(key);
+        }
+    }
+
+
+    /**
+     * 记录正在生成的布局位置引用了哪些位置,读取到的位置都是0
+     */
+    private class ReferenceRecorder extends BaseSupport {
+
+        private int   mFrom;
+        private int[] mEdgeFrom = new int[16];
+        private int[] mEdgeTo   = new int[16];
+        private int   mEdgeCount;
+
+
+        private int record(int position) {
+
+            if (position < 0 || position >= mCount || position == mFrom) {
+                return 0;
+            }
+
+            int count = mEdgeCount;
+            if (count > 0 && mEdgeFrom[count - 1] == mFrom && mEdgeTo[count - 1] == position) {
+                return 0;
+            }
+            if (count == mEdgeFrom.length) {
+                mEdgeFrom = Arrays.copyOf(mEdgeFrom, count << 1);
+                mEdgeTo = Arrays.copyOf(mEdgeTo, count << 1);
+            }
+            mEdgeFrom[count] = mFrom;
+            mEdgeTo[count] = position;
+            mEdgeCount = count + 1;
+            return 0;
+        }
+
+
+        @Override
+        public int getViewLeft(int position) {
+
+            return record(position);
+        }
+
+
+        @Override
+        public int getViewTop(int position) {
+
+            return record(position);
+        }
+
+
+        @Override
+        public int getViewRight(int position) {
+
+            return record(position);
+        }
+
+
+        @Override
+        public int getViewBottom(int position) {
+
+            return record(position);
+        }
+
+
+        @Override
+        public int getViewBaseline(int position) {
+
+            record(position);
+            return -1;
+        }
+    }
+
+
+    /**
+     * 求解一组子图,每个线程使用自己的约束和临时数据;读取的位置都在同一个子图中,已经由同一个线程求解
+     */
+    private class Worker extends BaseSupport {
+
+        private final Constraint mConstraint = new Constraint(this);
+        private final Rect       mRect       = new Rect();
+        private final int[]      mMeasured   = new int[3];
+
+        /**
+         * 正在生成的约束读取到的延迟方向
+         */
+        private int mDependsFlags;
+
+
+        void solveGroups(int fromGroup, int toGroup) {
+
+            int[] order = mSolveOrder;
+            int end = mGroupStarts[toGroup];
+            for (int k = mGroupStarts[fromGroup]; k < end; k++) {
+                solve(order[k]);
+            }
+        }
+
+
+        private void solve(int position) {
+
+            Constraint constraint = mConstraint;
+            constraint.init();
+            mDependsFlags = 0;
+            constraint = mAdapter.generateConstraintTo(position, constraint, null);
+
+            /* 读取了延迟位置的临时位置,在读取到的方向上也是临时位置,内容尺寸确定之后重新生成 */
+
+            int depends = mDependsFlags;
+            if (depends != 0) {
+                mTable.addFlag(position, depends | RectTable.FLAG_DEFERRED_DEPENDENT);
+            }
+
+            if (constraint.hasDeferredEdges()) {
+
+                /* 先以0为基准记录临时位置,内容尺寸确定之后再求解 */
+
+                Constraint saved = new Constraint(this);
+                saved.set(constraint);
+                mDeferred[position] = saved;
+
+                RectTable table = mTable;
+                table.set(position, constraint.left, constraint.top, constraint.right, constraint.bottom);
+                if (constraint.isHorizontalDeferred()) {
+                    table.addFlag(position, RectTable.FLAG_DEFERRED_HORIZONTAL);
+                }
+                if (constraint.isVerticalDeferred()) {
+                    table.addFlag(position, RectTable.FLAG_DEFERRED_VERTICAL);
+                }
+                return;
+            }
+
+            apply(position, constraint);
+        }
+
+
+        /**
+         * 内容尺寸确定之后重新生成约束并求解,读取的位置都已经是最终位置
+         */
+        void resolve(int position, int contentRight, int contentBottom) {
+
+            Constraint constraint = mConstraint;
+            constraint.init();
+            constraint = mAdapter.generateConstraintTo(position, constraint, null);
+            if (constraint.hasDeferredEdges()) {
+                constraint.resolveDeferred(contentRight, contentBottom);
+            }
+            apply(position, constraint);
+        }
+
+
+        void apply(int position, Constraint constraint) {
+
+            Measurer measurer = mMeasurer;
+            int layoutWidth = measurer.getLayoutWidth(position);
+            int layoutHeight = measurer.getLayoutHeight(position);
+
+            int[] measured = mMeasured;
+            measured[2] = -1;
+            measurer.measure(
+                    position,
+                    constraint.makeWidthSpec(layoutWidth, layoutHeight),
+                    constraint.makeHeightSpec(layoutWidth, layoutHeight),
+                    measured
+            );
+            if (constraint.isClamped(measured[0], measured[1])) {
+                int measuredWidth = measured[0];
+                int measuredHeight = measured[1];
+                measured[2] = -1;
+                measurer.measure(
+                        position,
+                        constraint.makeClampedWidthSpec(measuredWidth),
+                        constraint.makeClampedHeightSpec(measuredHeight),
+                        measured
+                );
+            }
+
+            Rect rect = mRect;
+            ConstraintLayout.solveRect(constraint, measured[0], measured[1], measured[2], rect);
+            mTable.set(position, rect.left, rect.top, rect.right, rect.bottom);
+            mTable.setBaseline(position, measured[2]);
+        }
+
+
+        private void checkDeferredRead(int position, int flag) {
+
+            if (position >= 0 && position < mCount && mTable.hasFlag(position, flag)) {
+                mDependsFlags |= flag;
+            }
+        }
+
+
+        @Override
+        public int getViewLeft(int position) {
+
+            checkDeferredRead(position, RectTable.FLAG_DEFERRED_HORIZONTAL);
+            return mTable.getLeft(position);
+        }
+
+
+        @Override
+        public int getViewTop(int position) {
+
+            checkDeferredRead(position, RectTable.FLAG_DEFERRED_VERTICAL);
+            return mTable.getTop(position);
+        }
+
+
+        @Override
+        public int getViewRight(int position) {
+
+            checkDeferredRead(position, RectTable.FLAG_DEFERRED_HORIZONTAL);
+            return mTable.getRight(position);
+        }
+
+
+        @Override
+        public int getViewBottom(int position) {
+
+            checkDeferredRead(position, RectTable.FLAG_DEFERRED_VERTICAL);
+            return mTable.getBottom(position);
+        }
+
+
+        @Override
+        public int getViewBaseline(int position) {
+
+            checkDeferredRead(position, RectTable.FLAG_DEFERRED_VERTICAL);
+            return mTable.getBaseline(position);
+        }
+    }
+
+
+    /**
+     * 单独的类,api 21 以下不会加载{@link ForkJoinPool}
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static class ParallelSolver {
+
+        private final ForkJoinPool mPool;
+
+
+        ParallelSolver(ForkJoinPool pool) {
+
+            mPool = pool;
+        }
+
+
+        void solve(LayoutPrecomputer precomputer) {
+
+            mPool.invoke(precomputer.new GroupTask(0, precomputer.mGroupCount));
+        }
+    }
+
+
+    /**
+     * 二分子图区间并行求解,布局位置数量较少的区间在当前线程求解
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private class GroupTask extends RecursiveAction {
+
+        private final int mFromGroup;
+        private final int mToGroup;
+
+
+        GroupTask(int fromGroup, int toGroup) {
+
+            mFromGroup = fromGroup;
+            mToGroup = toGroup;
+        }
+
+
+        @Override
+        protected void compute() {
+
+            int positions = mGroupStarts[mToGroup] - mGroupStarts[mFromGroup];
+            if (mToGroup - mFromGroup == 1 || positions < SEQUENTIAL_THRESHOLD) {
+                new Worker().solveGroups(mFromGroup, mToGroup);
+                return;
+            }
+
+            int middle = (mFromGroup + mToGroup) >>> 1;
+            invokeAll(new GroupTask(mFromGroup, middle), new GroupTask(middle, mToGroup));
+        }
+    }
+}
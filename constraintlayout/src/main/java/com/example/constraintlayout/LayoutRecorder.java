@@ -0,0 +1,277 @@
+package com.example.constraintlayout;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 录制{@link ConstraintLayout}的测量过程:每次测量的父布局条件,每个布局位置按求解顺序生成的约束(每条边的来源:
+ * 父布局,其他布局位置,自己的另一条边,固定值;以及baseline对齐的布局位置),约束的其他状态,以及子view测量之后的尺寸和位置;
+ * 录制的数据使用{@link LayoutReplay}在没有view的情况下重放,用于在JVM上用真实页面测试求解的耗时
+ * <p>
+ * 使用{@link ConstraintLayout#setLayoutRecorder(LayoutRecorder)}开始录制,数据保存在内存中,录制期间没有IO,
+ * 之后使用{@link #writeTo(OutputStream)}保存;数据使用变长整数编码;不录制绘制项
+ *
+ * @author wuxio
+ */
+public final class LayoutRecorder {
+
+    static final int MAGIC   = 0x434C5243;
+    static final int VERSION = 2;
+
+    static final int TAG_PASS     = 1;
+    static final int TAG_POSITION = 2;
+    static final int TAG_DEFER    = 3;
+    static final int TAG_END      = 4;
+
+    private byte[] mBuffer = new byte[1024];
+    private int    mSize;
+
+    /**
+     * 最后一次完成的测量结束的位置
+     */
+    private int mCommitted;
+
+    /**
+     * 每一层递归求解使用的边的来源记录
+     */
+    private EdgeRelations[] mRelations = new EdgeRelations[4];
+
+    private final int[] mState = new int[Constraint.STATE_SIZE];
+
+    private int     mPassCount;
+    private boolean mInPass;
+
+
+    public LayoutRecorder() {
+
+        writeInt(MAGIC);
+        writeInt(VERSION);
+        mCommitted = mSize;
+    }
+
+
+    /**
+     * @return 已经录制完成的测量次数
+     */
+    public int getPassCount() {
+
+        return mPassCount;
+    }
+
+
+    /**
+     * @return 已经完成的测量录制的字节数
+     */
+    public int size() {
+
+        return mCommitted;
+    }
+
+
+    /**
+     * 保存录制的数据,没有完成的测量不保存
+     *
+     * @param out 输出
+     */
+    public void writeTo(OutputStream out) throws IOException {
+
+        out.write(mBuffer, 0, mCommitted);
+    }
+
+
+    /**
+     * @return 录制的数据, 没有完成的测量不包括在内
+     */
+    public byte[] toByteArray() {
+
+        return Arrays.copyOf(mBuffer, mCommitted);
+    }
+
+    //============================ 布局使用 ============================
+
+
+    /**
+     * 开始录制一次测量,上一次没有完成的测量(例如抛出异常)丢弃
+     */
+    void beginPass(int widthSpec, int heightSpec,
+                   int parentLeft, int parentTop, int parentRight, int parentBottom,
+                   int childCount) {
+
+        mSize = mCommitted;
+        mInPass = true;
+
+        writeInt(TAG_PASS);
+        writeInt(widthSpec);
+        writeInt(heightSpec);
+        writeInt(parentLeft);
+        writeInt(parentTop);
+        writeInt(parentRight);
+        writeInt(parentBottom);
+        writeInt(childCount);
+    }
+
+
+    /**
+     * @return 该层求解记录边的来源使用的对象
+     */
+    EdgeRelations relationsAt(int depth) {
+
+        if (depth >= mRelations.length) {
+            mRelations = Arrays.copyOf(mRelations, depth << 1);
+        }
+        EdgeRelations relations = mRelations[depth];
+        if (relations == null) {
+            relations = new EdgeRelations();
+            mRelations[depth] = relations;
+        }
+        relations.clear();
+        return relations;
+    }
+
+
+    /**
+     * 录制一个布局位置测量之后的结果;约束没有记录边的来源时(例如求解模式,延迟求解)使用固定值
+     */
+    void recordPosition(int position, Constraint constraint, View child, int baselineOffset,
+                        int left, int top, int right, int bottom) {
+
+        if (!mInPass) {
+            return;
+        }
+
+        ViewGroup.LayoutParams params = child.getLayoutParams();
+
+        writeInt(TAG_POSITION);
+        writeInt(position);
+        writeInt(params.width);
+        writeInt(params.height);
+
+        EdgeRelations relations = constraint.mRelations;
+        writeEdge(relations, EdgeRelations.LEFT, constraint.left);
+        writeEdge(relations, EdgeRelations.TOP, constraint.top);
+        writeEdge(relations, EdgeRelations.RIGHT, constraint.right);
+        writeEdge(relations, EdgeRelations.BOTTOM, constraint.bottom);
+        writeBaseline(relations);
+
+        int[] state = mState;
+        constraint.saveState(state);
+        for (int value : state) {
+            writeInt(value);
+        }
+
+        writeInt(child.getMeasuredWidth());
+        writeInt(child.getMeasuredHeight());
+        writeInt(baselineOffset);
+
+        writeInt(left);
+        writeInt(top);
+        writeInt(right);
+        writeInt(bottom);
+    }
+
+
+    /**
+     * 录制一个延迟求解的布局位置记录的临时位置
+     */
+    void recordDeferred(int position, int left, int top, int right, int bottom) {
+
+        if (!mInPass) {
+            return;
+        }
+
+        writeInt(TAG_DEFER);
+        writeInt(position);
+        writeInt(left);
+        writeInt(top);
+        writeInt(right);
+        writeInt(bottom);
+    }
+
+
+    /**
+     * 一次测量完成
+     */
+    void endPass(int width, int height) {
+
+        if (!mInPass) {
+            return;
+        }
+
+        writeInt(TAG_END);
+        writeInt(width);
+        writeInt(height);
+
+        mInPass = false;
+        mCommitted = mSize;
+        mPassCount++;
+    }
+
+    //============================ 编码 ============================
+
+
+    private void writeEdge(EdgeRelations relations, int edge, int value) {
+
+        if (relations == null) {
+            writeInt(EdgeRelations.KIND_ABSOLUTE);
+            writeInt(value);
+            return;
+        }
+
+        int kind = relations.kinds[edge];
+        writeInt(kind);
+        switch (kind) {
+            case EdgeRelations.KIND_PARENT:
+            case EdgeRelations.KIND_SELF:
+                writeInt(relations.targetEdges[edge]);
+                writeInt(relations.offsets[edge]);
+                break;
+            case EdgeRelations.KIND_VIEW:
+                writeInt(relations.positions[edge]);
+                writeInt(relations.targetEdges[edge]);
+                writeInt(relations.offsets[edge]);
+                break;
+            case EdgeRelations.KIND_ABSOLUTE:
+                writeInt(relations.offsets[edge]);
+                break;
+            default:
+                writeInt(value);
+                break;
+        }
+    }
+
+
+    /**
+     * baseline 对齐的布局位置和偏移量,-1 表示没有,此时重放使用状态中记录的baseline
+     */
+    private void writeBaseline(EdgeRelations relations) {
+
+        if (relations == null || relations.baselinePosition < 0) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(relations.baselinePosition);
+        writeInt(relations.baselineOffset);
+    }
+
+
+    /**
+     * zigzag 变长编码,小的正数和负数都只占一个字节
+     */
+    private void writeInt(int value) {
+
+        if (mSize + 5 > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, mBuffer.length << 1);
+        }
+
+        int bits = (value << 1) ^ (value >> 31);
+        while ((bits & ~0x7F) != 0) {
+            mBuffer[mSize++] = (byte) ((bits & 0x7F) | 0x80);
+            bits >>>= 7;
+        }
+        mBuffer[mSize++] = (byte) bits;
+    }
+}
@@ -0,0 +1,493 @@
+package com.example.constraintlayout;
+
+import android.graphics.Rect;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 重放{@link LayoutRecorder}录制的测量过程:不创建view,按录制的求解顺序使用每条边的来源重新计算约束,
+ * 对齐baseline时使用被对齐位置重放之后的baseline,生成measureSpec,使用录制的子view尺寸计算位置,写入位置表;用于在JVM上使用真实页面测试求解部分的耗时,
+ * 重放的结果和录制时的位置不同时记为不一致,可以检查对求解的修改是否改变了布局
+ * <p>
+ * 读取时一次解码为int数组,计时不包括解码
+ *
+ * @author wuxio
+ */
+public final class LayoutReplay {
+
+    private final int[] mData;
+    private final int   mLength;
+    private final int   mPassCount;
+    private final int   mPositionCount;
+
+    private final ReplaySupport mSupport    = new ReplaySupport();
+    private final Constraint    mConstraint = new Constraint(mSupport);
+    private final EdgeRelations mEdges      = new EdgeRelations();
+    private final Rect          mRect       = new Rect();
+    private final int[]         mState      = new int[Constraint.STATE_SIZE];
+    private final RectTable     mTable      = new RectTable();
+
+    private int mMismatchCount;
+
+    /**
+     * 上一次重放中按顺序累加的生成的spec,每次重放相同,同时避免计算被优化掉
+     */
+    private int mSpecChecksum;
+
+
+    private LayoutReplay(int[] data, int length) {
+
+        mData = data;
+        mLength = length;
+
+        /* 检查结构,统计数量 */
+
+        int passes = 0;
+        int positions = 0;
+        int index = 2;
+        while (index < length) {
+            int tag = data[index];
+            switch (tag) {
+                case LayoutRecorder.TAG_PASS:
+                    index += 8;
+                    break;
+                case LayoutRecorder.TAG_POSITION:
+                    index = skipPosition(data, index + 1);
+                    positions++;
+                    break;
+                case LayoutRecorder.TAG_DEFER:
+                    index += 6;
+                    break;
+                case LayoutRecorder.TAG_END:
+                    index += 3;
+                    passes++;
+                    break;
+                default:
+                    throw new IllegalArgumentException("bad tag " + tag + " at " + index);
+            }
+        }
+        if (index != length) {
+            throw new IllegalArgumentException("truncated recording");
+        }
+
+        mPassCount = passes;
+        mPositionCount = positions;
+    }
+
+
+    /**
+     * 读取{@link LayoutRecorder#writeTo(java.io.OutputStream)}保存的数据
+     *
+     * @param in 输入,读取到结束,不会关闭
+     * @return 重放
+     */
+    public static LayoutReplay read(InputStream in) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return read(out.toByteArray());
+    }
+
+
+    /**
+     * 读取{@link LayoutRecorder#toByteArray()}的数据
+     *
+     * @param bytes 录制的数据
+     * @return 重放
+     */
+    public static LayoutReplay read(byte[] bytes) {
+
+        int[] data = new int[Math.max(16, bytes.length / 2)];
+        int length = 0;
+
+        int index = 0;
+        while (index < bytes.length) {
+            int bits = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (index >= bytes.length || shift > 28) {
+                    throw new IllegalArgumentException("bad varint at " + index);
+                }
+                b = bytes[index++];
+                bits |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            if (length == data.length) {
+                data = Arrays.copyOf(data, length << 1);
+            }
+            data[length++] = (bits >>> 1) ^ -(bits & 1);
+        }
+
+        if (length < 2 || data[0] != LayoutRecorder.MAGIC) {
+            throw new IllegalArgumentException("not a layout recording");
+        }
+        if (data[1] != LayoutRecorder.VERSION) {
+            throw new IllegalArgumentException("unsupported recording version: " + data[1]);
+        }
+        return new LayoutReplay(data, length);
+    }
+
+
+    /**
+     * @return 录制的测量次数
+     */
+    public int getPassCount() {
+
+        return mPassCount;
+    }
+
+
+    /**
+     * @return 所有测量中录制的布局位置数量
+     */
+    public int getPositionCount() {
+
+        return mPositionCount;
+    }
+
+
+    /**
+     * @return 上一次重放中结果和录制时不同的布局位置数量
+     */
+    public int getMismatchCount() {
+
+        return mMismatchCount;
+    }
+
+
+    /**
+     * @return 上一次重放中按顺序累加所有布局位置生成的spec, 约束和测量条件相同时每次重放都相同
+     */
+    public int getSpecChecksum() {
+
+        return mSpecChecksum;
+    }
+
+    //============================ 重放 ============================
+
+
+    /**
+     * 重放一次所有录制的测量
+     *
+     * @return 耗时, 纳秒
+     */
+    public long replay() {
+
+        final long start = System.nanoTime();
+
+        int[] data = mData;
+        int index = 2;
+        int mismatches = 0;
+        mSpecChecksum = 0;
+        while (index < mLength) {
+            int tag = data[index++];
+            switch (tag) {
+                case LayoutRecorder.TAG_PASS:
+                    index = beginPass(data, index);
+                    break;
+                case LayoutRecorder.TAG_POSITION:
+                    index = replayPosition(data, index);
+                    if (index < 0) {
+                        index = -index;
+                        mismatches++;
+                    }
+                    break;
+                case LayoutRecorder.TAG_DEFER:
+                    mTable.set(data[index], data[index + 1], data[index + 2], data[index + 3], data[index + 4]);
+                    index += 5;
+                    break;
+                default:
+                    index += 2;
+                    break;
+            }
+        }
+
+        mMismatchCount = mismatches;
+        return System.nanoTime() - start;
+    }
+
+
+    private int beginPass(int[] data, int index) {
+
+        /* 0 widthSpec, 1 heightSpec 只用于查看 */
+
+        ReplaySupport support = mSupport;
+        support.mParentLeft = data[index + 2];
+        support.mParentTop = data[index + 3];
+        support.mParentRight = data[index + 4];
+        support.mParentBottom = data[index + 5];
+        mTable.ensureCapacity(data[index + 6]);
+        return index + 7;
+    }
+
+
+    /**
+     * @return 下一个数据的位置, 结果和录制不同时返回负数
+     */
+    private int replayPosition(int[] data, int index) {
+
+        int position = data[index++];
+        int layoutWidth = data[index++];
+        int layoutHeight = data[index++];
+
+        EdgeRelations edges = mEdges;
+        for (int edge = 0; edge < 4; edge++) {
+            int kind = data[index++];
+            switch (kind) {
+                case EdgeRelations.KIND_PARENT:
+                case EdgeRelations.KIND_SELF:
+                    edges.set(edge, kind, -1, data[index], data[index + 1]);
+                    index += 2;
+                    break;
+                case EdgeRelations.KIND_VIEW:
+                    edges.set(edge, kind, data[index], data[index + 1], data[index + 2]);
+                    index += 3;
+                    break;
+                default:
+                    edges.set(edge, kind, -1, -1, data[index++]);
+                    break;
+            }
+        }
+        int baselineTarget = data[index++];
+        int baselineTargetOffset = 0;
+        if (baselineTarget >= 0) {
+            baselineTargetOffset = data[index++];
+        }
+
+        int[] state = mState;
+        System.arraycopy(data, index, state, 0, Constraint.STATE_SIZE);
+        index += Constraint.STATE_SIZE;
+
+        int measuredWidth = data[index++];
+        int measuredHeight = data[index++];
+        int baselineOffset = data[index++];
+
+        /* 重新计算约束:先计算不依赖自己的边,再计算相对自己另一条边的边 */
+
+        Constraint constraint = mConstraint;
+        constraint.init();
+        for (int edge = 0; edge < 4; edge++) {
+            if (edges.kinds[edge] != EdgeRelations.KIND_SELF) {
+                setEdge(constraint, edge, resolveEdge(constraint, edges, edge));
+            }
+        }
+        for (int edge = 0; edge < 4; edge++) {
+            if (edges.kinds[edge] == EdgeRelations.KIND_SELF) {
+                setEdge(constraint, edge, resolveEdge(constraint, edges, edge));
+            }
+        }
+        constraint.restoreState(state);
+        if (baselineTarget >= 0) {
+            int target = mTable.getBaseline(baselineTarget);
+            if (target == -1) {
+                target = mTable.getBottom(baselineTarget);
+            }
+            constraint.baseline = target + baselineTargetOffset;
+        }
+
+        mSpecChecksum = 31 * (31 * mSpecChecksum + constraint.makeWidthSpec(layoutWidth, layoutHeight))
+                + constraint.makeHeightSpec(layoutWidth, layoutHeight);
+
+        Rect rect = mRect;
+        ConstraintLayout.solveRect(constraint, measuredWidth, measuredHeight, baselineOffset, rect);
+        mTable.set(position, rect.left, rect.top, rect.right, rect.bottom);
+        mTable.setBaseline(position, baselineOffset);
+
+        boolean same = rect.left == data[index]
+                && rect.top == data[index + 1]
+                && rect.right == data[index + 2]
+                && rect.bottom == data[index + 3];
+        index += 4;
+        return same ? index : -index;
+    }
+
+
+    private int resolveEdge(Constraint constraint, EdgeRelations edges, int edge) {
+
+        int offset = edges.offsets[edge];
+        switch (edges.kinds[edge]) {
+            case EdgeRelations.KIND_PARENT:
+                return mSupport.parentEdge(edges.targetEdges[edge]) + offset;
+            case EdgeRelations.KIND_VIEW:
+                return tableEdge(edges.positions[edge], edges.targetEdges[edge]) + offset;
+            case EdgeRelations.KIND_SELF:
+                return getEdge(constraint, edges.targetEdges[edge]) + offset;
+            default:
+                return offset;
+        }
+    }
+
+
+    private int tableEdge(int position, int edge) {
+
+        switch (edge) {
+            case EdgeRelations.LEFT:
+                return mTable.getLeft(position);
+            case EdgeRelations.TOP:
+                return mTable.getTop(position);
+            case EdgeRelations.RIGHT:
+                return mTable.getRight(position);
+            default:
+                return mTable.getBottom(position);
+        }
+    }
+
+
+    private static int getEdge(Constraint constraint, int edge) {
+
+        switch (edge) {
+            case EdgeRelations.LEFT:
+                return constraint.left;
+            case EdgeRelations.TOP:
+                return constraint.top;
+            case EdgeRelations.RIGHT:
+                return constraint.right;
+            default:
+                return constraint.bottom;
+        }
+    }
+
+
+    private static void setEdge(Constraint constraint, int edge, int value) {
+
+        switch (edge) {
+            case EdgeRelations.LEFT:
+                constraint.left = value;
+                break;
+            case EdgeRelations.TOP:
+                constraint.top = value;
+                break;
+            case EdgeRelations.RIGHT:
+                constraint.right = value;
+                break;
+            default:
+                constraint.bottom = value;
+                break;
+        }
+    }
+
+
+    /**
+     * @return 跳过一个布局位置之后的位置
+     */
+    private static int skipPosition(int[] data, int index) {
+
+        index += 3;
+        for (int edge = 0; edge < 4; edge++) {
+            int kind = data[index++];
+            if (kind == EdgeRelations.KIND_VIEW) {
+                index += 3;
+            } else if (kind == EdgeRelations.KIND_PARENT || kind == EdgeRelations.KIND_SELF) {
+                index += 2;
+            } else {
+                index += 1;
+            }
+        }
+        if (data[index++] >= 0) {
+            index++;
+        }
+        return index + Constraint.STATE_SIZE + 3 + 4;
+    }
+
+
+    /**
+     * 父布局的边是录制时的值,读取其他布局位置的约束已经在录制中转换为边的来源
+     */
+    private class ReplaySupport implements ConstraintSupport {
+
+        private int mParentLeft;
+        private int mParentTop;
+        private int mParentRight;
+        private int mParentBottom;
+
+
+        /**
+         * 父布局是wrap_content时右边/底边是-1,录制中只有延迟求解之后的固定值会用到它们
+         */
+        int parentEdge(int edge) {
+
+            switch (edge) {
+                case EdgeRelations.LEFT:
+                    return mParentLeft;
+                case EdgeRelations.TOP:
+                    return mParentTop;
+                case EdgeRelations.RIGHT:
+                    return Math.max(mParentRight, 0);
+                default:
+                    return Math.max(mParentBottom, 0);
+            }
+        }
+
+
+        @Override
+        public int getParentLeft() {
+
+            return mParentLeft;
+        }
+
+
+        @Override
+        public int getParentTop() {
+
+            return mParentTop;
+        }
+
+
+        @Override
+        public int getParentRight() {
+
+            return mParentRight;
+        }
+
+
+        @Override
+        public int getParentBottom() {
+
+            return mParentBottom;
+        }
+
+
+        @Override
+        public int getViewLeft(int position) {
+
+            return mTable.getLeft(position);
+        }
+
+
+        @Override
+        public int getViewTop(int position) {
+
+            return mTable.getTop(position);
+        }
+
+
+        @Override
+        public int getViewRight(int position) {
+
+            return mTable.getRight(position);
+        }
+
+
+        @Override
+        public int getViewBottom(int position) {
+
+            return mTable.getBottom(position);
+        }
+
+
+        @Override
+        public int getViewBaseline(int position) {
+
+            return mTable.getBaseline(position);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.constraintlayout;
+
+import android.os.Build;
+import android.view.Choreographer;
+
+/**
+ * 分帧测量的进度:布局位置很多时,一次测量只求解测量不超过时间上限的一部分,下一帧继续;
+ * 按{@link SolveOrder}的顺序记录下一个要求解的序号,布局位置数量变化时重新开始;
+ * 没有完成时父布局的spec变化(例如父布局一次布局中用不同的spec测量两次),这次测量不再分帧,直接完成,
+ * 否则每次都重新开始会一直无法完成
+ * <p>
+ * api 16 以上使用{@link Choreographer}在下一帧请求布局,以下使用一帧的延时
+ *
+ * @author wuxio
+ */
+final class MeasureSlicer implements Runnable {
+
+    private static final long FRAME_DELAY = 16;
+
+    private final ConstraintLayout mLayout;
+
+    /**
+     * 每帧的时间上限,0 表示关闭
+     */
+    private long mBudgetNanos;
+
+    /**
+     * 正在进行的分帧测量,以及它的测量条件
+     */
+    private boolean mActive;
+    private int     mNext;
+    private int     mCount;
+    private int     mWidthSpec;
+    private int     mHeightSpec;
+
+    private boolean   mScheduled;
+    private FrameTick mFrameTick;
+
+
+    MeasureSlicer(ConstraintLayout layout) {
+
+        mLayout = layout;
+    }
+
+
+    void setBudgetNanos(long budgetNanos) {
+
+        mBudgetNanos = budgetNanos;
+        if (budgetNanos <= 0) {
+            cancel();
+        }
+    }
+
+
+    long getBudgetNanos() {
+
+        return mBudgetNanos;
+    }
+
+
+    boolean isEnabled() {
+
+        return mBudgetNanos > 0;
+    }
+
+
+    /**
+     * @return true:有没有完成的分帧测量
+     */
+    boolean isActive() {
+
+        return mActive;
+    }
+
+
+    /**
+     * @return true:测量条件没有变化,可以继续上一帧的测量
+     */
+    boolean canResume(int count, int widthSpec, int heightSpec) {
+
+        return mActive && mCount == count && mWidthSpec == widthSpec && mHeightSpec == heightSpec;
+    }
+
+
+    /**
+     * @return true:有没有完成的分帧测量,但是父布局的spec变化了,这次测量不分帧
+     */
+    boolean isSpecChanged(int count, int widthSpec, int heightSpec) {
+
+        return mActive && mCount == count && (mWidthSpec != widthSpec || mHeightSpec != heightSpec);
+    }
+
+
+    /**
+     * 开始一次新的分帧测量
+     */
+    void start(int count, int widthSpec, int heightSpec) {
+
+        mActive = true;
+        mNext = 0;
+        mCount = count;
+        mWidthSpec = widthSpec;
+        mHeightSpec = heightSpec;
+    }
+
+
+    /**
+     * @return 下一个要求解的序号, 也是已经处理的序号数量
+     */
+    int next() {
+
+        return mNext;
+    }
+
+
+    void advance() {
+
+        mNext++;
+    }
+
+
+    /**
+     * @return 本帧测量的截止时间
+     */
+    long deadline(long startNanos) {
+
+        return startNanos + mBudgetNanos;
+    }
+
+
+    /**
+     * 所有布局位置都已经求解
+     */
+    void finish() {
+
+        mActive = false;
+        unschedule();
+    }
+
+
+    /**
+     * 放弃没有完成的测量,例如adapter或者数据变化,下次测量重新开始
+     */
+    void cancel() {
+
+        mActive = false;
+        unschedule();
+    }
+
+
+    /**
+     * 下一帧请求布局继续测量
+     */
+    void scheduleNextFrame() {
+
+        if (mScheduled) {
+            return;
+        }
+        mScheduled = true;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (mFrameTick == null) {
+                mFrameTick = new FrameTick(this);
+            }
+            Choreographer.getInstance().postFrameCallback(mFrameTick);
+        } else {
+            mLayout.postDelayed(this, FRAME_DELAY);
+        }
+    }
+
+
+    /**
+     * 移除还没有执行的下一帧请求,测量状态保留,例如从窗口移除时
+     */
+    void unschedule() {
+
+        if (!mScheduled) {
+            return;
+        }
+        mScheduled = false;
+
+        if (mFrameTick != null) {
+            Choreographer.getInstance().removeFrameCallback(mFrameTick);
+        } else {
+            mLayout.removeCallbacks(this);
+        }
+    }
+
+
+    @Override
+    public void run() {
+
+        mScheduled = false;
+        if (mActive) {
+            mLayout.requestLayout();
+        }
+    }
+
+
+    /**
+     * 单独的类,api 16 以下不会加载{@link Choreographer.FrameCallback}
+     */
+    private static class FrameTick implements Choreographer.FrameCallback {
+
+        private final Runnable mTarget;
+
+
+        FrameTick(Runnable target) {
+
+            mTarget = target;
+        }
+
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+
+            mTarget.run();
+        }
+    }
+}
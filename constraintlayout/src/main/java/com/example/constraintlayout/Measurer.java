@@ -0,0 +1,32 @@
+package com.example.constraintlayout;
+
+/**
+ * 不创建view时测量布局位置的内容,用于{@link LayoutPrecomputer}预先计算布局;
+ * 并行计算时会在多个线程同时调用,实现需要是线程安全的,例如只读取不可变的数据,每次测量使用自己的临时对象
+ *
+ * @author wuxio
+ */
+public interface Measurer {
+
+    /**
+     * @param position 布局位置
+     * @return 布局参数中的宽度, 像素值,或者{@link android.view.ViewGroup.LayoutParams#WRAP_CONTENT}
+     */
+    int getLayoutWidth(int position);
+
+    /**
+     * @param position 布局位置
+     * @return 布局参数中的高度, 像素值,或者{@link android.view.ViewGroup.LayoutParams#WRAP_CONTENT}
+     */
+    int getLayoutHeight(int position);
+
+    /**
+     * 使用约束生成的spec测量内容
+     *
+     * @param position   布局位置
+     * @param widthSpec  宽度spec
+     * @param heightSpec 高度spec
+     * @param out        保存结果: out[0] 测量宽度,out[1] 测量高度,out[2] 相对上边的baseline,没有时为-1
+     */
+    void measure(int position, int widthSpec, int heightSpec, int[] out);
+}
@@ -0,0 +1,306 @@
+package com.example.constraintlayout;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * {@link ConstraintLayout}的浮层,保存{@link ConstraintLayout#addExtraView(View, Constraint)}添加的view;
+ * 作为布局的最后一个子view,覆盖整个布局,不参与adapter的测量布局过程,也不占用布局位置;
+ * 浮层中的view使用自己布局参数中保存的约束和位置,添加,移除,显示,隐藏以及自身请求重新布局时都只测量布局它自己,
+ * 不会让布局重新测量布局
+ *
+ * @author wuxio
+ */
+final class OverlayLayer extends ViewGroup {
+
+    /**
+     * 添加删除view时,不向上请求重新布局
+     */
+    private boolean mSuppressLayout;
+
+    /**
+     * 已经安排了重新布局请求了重新布局的浮层view
+     */
+    private boolean mRelayoutPosted;
+
+    private final Rect mSolvedRect = new Rect();
+
+    /**
+     * 约束到尺寸未知的父布局右边/底边时,复制保存的约束再确定位置
+     */
+    private Constraint mResolvedConstraint;
+
+    private final Runnable mRelayoutRunnable = new Runnable() {
+
+        @Override
+        public void run() {
+
+            mRelayoutPosted = false;
+            relayoutRequestedChildren();
+        }
+    };
+
+
+    OverlayLayer(Context context) {
+
+        super(context);
+    }
+
+    //============================ 添加 移除 ============================
+
+
+    /**
+     * 添加一个view,或者更新已经在浮层中的view的约束并显示
+     *
+     * @param child      view
+     * @param params     布局参数,已经在浮层中时忽略
+     * @param constraint 约束,会被复制
+     */
+    void addOverlayView(View child, ConstraintLayout.LayoutParams params, Constraint constraint) {
+
+        if (child.getParent() == this) {
+            params = (ConstraintLayout.LayoutParams) child.getLayoutParams();
+        } else {
+            mSuppressLayout = true;
+            addView(child, params);
+            mSuppressLayout = false;
+        }
+
+        saveConstraint(params, constraint);
+        params.recycled = false;
+
+        if (child.getVisibility() != VISIBLE) {
+            mSuppressLayout = true;
+            child.setVisibility(VISIBLE);
+            mSuppressLayout = false;
+        }
+
+        measureAndLayout(child, params);
+    }
+
+
+    /**
+     * 更新浮层中view的约束
+     */
+    void updateOverlayView(View child, Constraint constraint) {
+
+        ConstraintLayout.LayoutParams params = (ConstraintLayout.LayoutParams) child.getLayoutParams();
+        saveConstraint(params, constraint);
+        measureAndLayout(child, params);
+    }
+
+
+    void removeOverlayView(View child) {
+
+        mSuppressLayout = true;
+        removeView(child);
+        mSuppressLayout = false;
+    }
+
+
+    /**
+     * 隐藏浮层中的view并放入缓存,view仍然在浮层中,之后使用{@link #obtainRecycled(int)}取出,
+     * 不需要再次添加移除
+     *
+     * @param child view
+     * @param type  view的类型
+     */
+    void recycle(View child, int type) {
+
+        ConstraintLayout.LayoutParams params = (ConstraintLayout.LayoutParams) child.getLayoutParams();
+        params.recycled = true;
+        params.overlayType = type;
+
+        mSuppressLayout = true;
+        child.setVisibility(GONE);
+        mSuppressLayout = false;
+    }
+
+
+    /**
+     * @param type view的类型
+     * @return 缓存中该类型的view, 没有返回null;取出之后需要使用{@link #addOverlayView}重新显示
+     */
+    View obtainRecycled(int type) {
+
+        int count = getChildCount();
+        for (int i = 0; i < count; i++) {
+            View child = getChildAt(i);
+            ConstraintLayout.LayoutParams params = (ConstraintLayout.LayoutParams) child.getLayoutParams();
+            if (params.recycled && params.overlayType == type) {
+                params.recycled = false;
+                return child;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * @return true:有显示中的view,需要接收触摸事件
+     */
+    boolean hasVisibleChildren() {
+
+        int count = getChildCount();
+        for (int i = 0; i < count; i++) {
+            if (getChildAt(i).getVisibility() == VISIBLE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //============================ 测量布局 ============================
+
+
+    @Override
+    public void requestLayout() {
+
+        if (mSuppressLayout) {
+            return;
+        }
+
+        /* 浮层中的view请求重新布局,只需要重新测量布局它自己,不影响布局中的其他view;
+        标记自己需要布局,同一帧中其他view的请求不会再传到这里,在重新布局之后清除 */
+
+        forceLayout();
+        if (!mRelayoutPosted) {
+            mRelayoutPosted = true;
+            post(mRelayoutRunnable);
+        }
+    }
+
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+
+        setMeasuredDimension(
+                MeasureSpec.getSize(widthMeasureSpec),
+                MeasureSpec.getSize(heightMeasureSpec)
+        );
+
+        int count = getChildCount();
+        for (int i = 0; i < count; i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() != GONE) {
+                measureWithConstraint(child, (ConstraintLayout.LayoutParams) child.getLayoutParams());
+            }
+        }
+    }
+
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+
+        int count = getChildCount();
+        for (int i = 0; i < count; i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() != GONE) {
+                ConstraintLayout.LayoutParams params = (ConstraintLayout.LayoutParams) child.getLayoutParams();
+                ((ConstraintLayout) getParent()).layoutChild(child, params);
+            }
+        }
+    }
+
+
+    /**
+     * 重新测量布局请求了重新布局的view,之后使用原来的位置布局自己,清除{@link #requestLayout()}中的标记,
+     * 否则之后浮层中的view请求重新布局时不会再通知浮层;位置没有变化,不会调用{@link #onLayout}
+     */
+    private void relayoutRequestedChildren() {
+
+        int count = getChildCount();
+        for (int i = 0; i < count; i++) {
+            View child = getChildAt(i);
+            if (child.getVisibility() != GONE && child.isLayoutRequested()) {
+                measureAndLayout(child, (ConstraintLayout.LayoutParams) child.getLayoutParams());
+            }
+        }
+
+        if (isLayoutRequested()) {
+            layout(getLeft(), getTop(), getRight(), getBottom());
+        }
+    }
+
+
+    private void measureAndLayout(View child, ConstraintLayout.LayoutParams params) {
+
+        measureWithConstraint(child, params);
+        ((ConstraintLayout) getParent()).layoutChild(child, params);
+        invalidate();
+    }
+
+
+    /**
+     * 使用保存的约束测量,计算位置保存在布局参数中
+     */
+    private void measureWithConstraint(View child, ConstraintLayout.LayoutParams params) {
+
+        Constraint constraint = params.overlayConstraint;
+        if (constraint == null) {
+            return;
+        }
+
+        if (constraint.hasDeferredEdges()) {
+            ConstraintLayout layout = (ConstraintLayout) getParent();
+            if (mResolvedConstraint == null) {
+                mResolvedConstraint = new Constraint(layout);
+            }
+            mResolvedConstraint.set(constraint);
+            mResolvedConstraint.resolveDeferred(layout.getContentRight(), layout.getContentBottom());
+            constraint = mResolvedConstraint;
+        }
+
+        measureChild(child,
+                constraint.makeWidthSpec(child),
+                constraint.makeHeightSpec(child)
+        );
+        ConstraintLayout.remeasureClamped(child, constraint);
+
+        Rect rect = mSolvedRect;
+        ConstraintLayout.solveRect(constraint, child.getMeasuredWidth(), child.getMeasuredHeight(), child.getBaseline(), rect);
+        params.left = rect.left;
+        params.top = rect.top;
+        params.right = rect.right;
+        params.bottom = rect.bottom;
+    }
+
+
+    private void saveConstraint(ConstraintLayout.LayoutParams params, Constraint constraint) {
+
+        Constraint saved = params.overlayConstraint;
+        if (saved == null) {
+            saved = new Constraint((ConstraintSupport) getParent());
+            params.overlayConstraint = saved;
+        }
+        saved.set(constraint);
+    }
+
+    //============================ 布局参数 ============================
+
+
+    @Override
+    protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+
+        return p instanceof ConstraintLayout.LayoutParams;
+    }
+
+
+    @Override
+    protected ViewGroup.LayoutParams generateDefaultLayoutParams() {
+
+        return new ConstraintLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT
+        );
+    }
+
+
+    @Override
+    protected ViewGroup.LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+
+        return new ConstraintLayout.LayoutParams(p);
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.constraintlayout;
+
+import java.util.Arrays;
+
+/**
+ * 记录每个布局位置测量之后的位置信息,使用一个int数组保存,每个布局位置占用{@link #STRIDE}个int,
+ * 读取位置信息时不需要查找view,强转layoutParams,容量足够时读写都不会创建对象
+ *
+ * @author wuxio
+ */
+public final class RectTable {
+
+    /**
+     * 每个布局位置占用的int数量
+     */
+    private static final int STRIDE = 8;
+
+    private static final int LEFT        = 0;
+    private static final int TOP         = 1;
+    private static final int RIGHT       = 2;
+    private static final int BOTTOM      = 3;
+    private static final int FLAGS       = 4;
+    private static final int WIDTH_SPEC  = 5;
+    private static final int HEIGHT_SPEC = 6;
+    private static final int BASELINE    = 7;
+
+    /**
+     * 标记:该位置的非法约束已经报告过,不再重复报告
+     */
+    static final int FLAG_ILLEGAL_REPORTED = 0b1;
+
+    /**
+     * 标记:该位置已经使用{@link #WIDTH_SPEC},{@link #HEIGHT_SPEC}测量过
+     */
+    static final int FLAG_MEASURED = 0b10;
+
+    /**
+     * 标记:该位置的循环引用已经报告过
+     */
+    static final int FLAG_CYCLE_REPORTED = 0b100;
+
+    /**
+     * 标记:该位置水平/竖直方向约束到了尺寸未知的父布局右边/底边,记录的是临时位置
+     */
+    static final int FLAG_DEFERRED_HORIZONTAL = 0b1000;
+    static final int FLAG_DEFERRED_VERTICAL   = 0b10000;
+
+    /**
+     * 标记:该位置的约束读取了延迟位置的临时位置,内容尺寸确定之后需要重新生成约束
+     */
+    static final int FLAG_DEFERRED_DEPENDENT = 0b100000;
+
+    /**
+     * 保存数据
+     */
+    private int[] mTable;
+
+    /**
+     * 可以保存多少个布局位置
+     */
+    private int mCapacity;
+
+
+    public RectTable() {
+
+        this(16);
+    }
+
+
+    public RectTable(int capacity) {
+
+        mCapacity = Math.max(capacity, 1);
+        mTable = new int[mCapacity * STRIDE];
+    }
+
+
+    /**
+     * 确保可以保存足够的布局位置,只有容量不够时才会扩容
+     *
+     * @param count 需要保存的布局位置数量
+     */
+    public void ensureCapacity(int count) {
+
+        if (count <= mCapacity) {
+            return;
+        }
+
+        int newCapacity = Math.max(count, mCapacity << 1);
+        mTable = Arrays.copyOf(mTable, newCapacity * STRIDE);
+        mCapacity = newCapacity;
+    }
+
+
+    /**
+     * @return 可以保存多少个布局位置
+     */
+    public int capacity() {
+
+        return mCapacity;
+    }
+
+
+    /**
+     * 设置一个布局位置的位置信息
+     */
+    public void set(int position, int left, int top, int right, int bottom) {
+
+        int index = position * STRIDE;
+        int[] table = mTable;
+        table[index + LEFT] = left;
+        table[index + TOP] = top;
+        table[index + RIGHT] = right;
+        table[index + BOTTOM] = bottom;
+    }
+
+
+    public int getLeft(int position) {
+
+        return mTable[position * STRIDE + LEFT];
+    }
+
+
+    public int getTop(int position) {
+
+        return mTable[position * STRIDE + TOP];
+    }
+
+
+    public int getRight(int position) {
+
+        return mTable[position * STRIDE + RIGHT];
+    }
+
+
+    public int getBottom(int position) {
+
+        return mTable[position * STRIDE + BOTTOM];
+    }
+
+
+    /**
+     * 记录测量之后view的baseline,只在测量之后读取一次
+     *
+     * @param baseline 相对view上边的baseline,{@link android.view.View#getBaseline()},-1 表示没有
+     */
+    void setBaseline(int position, int baseline) {
+
+        mTable[position * STRIDE + BASELINE] = baseline;
+    }
+
+
+    /**
+     * @return 相对view上边的baseline, -1 表示没有
+     */
+    int getBaselineOffset(int position) {
+
+        return mTable[position * STRIDE + BASELINE];
+    }
+
+
+    /**
+     * @return 该位置view的baseline坐标, -1 表示没有
+     */
+    public int getBaseline(int position) {
+
+        int index = position * STRIDE;
+        int offset = mTable[index + BASELINE];
+        return offset < 0 ? -1 : mTable[index + TOP] + offset;
+    }
+
+
+    /**
+     * 复制另一个表中前{@code count}个布局位置的数据,包括标记和测量使用的spec
+     *
+     * @param source 数据来源
+     * @param count  布局位置数量
+     */
+    void copyFrom(RectTable source, int count) {
+
+        ensureCapacity(count);
+        System.arraycopy(source.mTable, 0, mTable, 0, count * STRIDE);
+    }
+
+
+    /**
+     * 在该位置插入一个空的布局位置,之后的数据后移一位
+     *
+     * @param position 插入的位置
+     * @param count    插入之前的布局位置数量
+     */
+    void insert(int position, int count) {
+
+        ensureCapacity(count + 1);
+        int index = position * STRIDE;
+        System.arraycopy(mTable, index, mTable, index + STRIDE, (count - position) * STRIDE);
+        Arrays.fill(mTable, index, index + STRIDE, 0);
+    }
+
+
+    /**
+     * 删除该位置,之后的数据前移一位
+     *
+     * @param position 删除的位置
+     * @param count    删除之前的布局位置数量
+     */
+    void remove(int position, int count) {
+
+        int index = position * STRIDE;
+        System.arraycopy(mTable, index + STRIDE, mTable, index, (count - position - 1) * STRIDE);
+        Arrays.fill(mTable, (count - 1) * STRIDE, count * STRIDE, 0);
+    }
+
+
+    /**
+     * 该位置上一次是否使用相同的spec测量过
+     */
+    boolean isMeasuredWith(int position, int widthSpec, int heightSpec) {
+
+        int index = position * STRIDE;
+        int[] table = mTable;
+        return (table[index + FLAGS] & FLAG_MEASURED) != 0
+                && table[index + WIDTH_SPEC] == widthSpec
+                && table[index + HEIGHT_SPEC] == heightSpec;
+    }
+
+
+    /**
+     * 记录该位置测量使用的spec
+     */
+    void setMeasuredWith(int position, int widthSpec, int heightSpec) {
+
+        int index = position * STRIDE;
+        int[] table = mTable;
+        table[index + FLAGS] |= FLAG_MEASURED;
+        table[index + WIDTH_SPEC] = widthSpec;
+        table[index + HEIGHT_SPEC] = heightSpec;
+    }
+
+
+    /**
+     * 清除所有位置的标记,例如更换adapter之后,上次测量的spec不再可信
+     */
+    void clearAllFlags() {
+
+        int[] table = mTable;
+        for (int i = FLAGS; i < table.length; i += STRIDE) {
+            table[i] = 0;
+        }
+    }
+
+
+    boolean hasFlag(int position, int flag) {
+
+        return (mTable[position * STRIDE + FLAGS] & flag) != 0;
+    }
+
+
+    void addFlag(int position, int flag) {
+
+        mTable[position * STRIDE + FLAGS] |= flag;
+    }
+
+
+    void clearFlag(int position, int flag) {
+
+        mTable[position * STRIDE + FLAGS] &= ~flag;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.constraintlayout;
+
+import android.graphics.Canvas;
+import android.view.View;
+import android.view.View.MeasureSpec;
+
+import static android.view.ViewGroup.LayoutParams.WRAP_CONTENT;
+
+/**
+ * 没有view的绘制项,用于静态的文字和图片;使用和view相同的{@link Constraint}约束位置,
+ * 由{@link ConstraintLayout}测量之后保存在单独的位置表中,在{@link ConstraintLayout#dispatchDraw(Canvas)}中直接绘制,
+ * 没有view的测量布局遍历和display list;绘制项不能接收触摸事件
+ *
+ * @author wuxio
+ */
+public abstract class RenderItem {
+
+    /**
+     * 和布局参数相同的宽高,{@link android.view.ViewGroup.LayoutParams#WRAP_CONTENT}或者其他值表示使用约束的尺寸
+     */
+    private int mLayoutWidth  = WRAP_CONTENT;
+    private int mLayoutHeight = WRAP_CONTENT;
+
+    private int mMeasuredWidth;
+    private int mMeasuredHeight;
+
+    /**
+     * 上次测量使用的spec,相同时跳过测量
+     */
+    private int     mWidthSpec;
+    private int     mHeightSpec;
+    private boolean mLayoutRequested = true;
+
+    private boolean mVisible = true;
+
+    /**
+     * 绘制该项的布局
+     */
+    private View mHost;
+
+
+    /**
+     * 设置宽高,和布局参数中的宽高相同
+     *
+     * @param width  宽度
+     * @param height 高度
+     */
+    public RenderItem setLayoutSize(int width, int height) {
+
+        mLayoutWidth = width;
+        mLayoutHeight = height;
+        requestLayout();
+        return this;
+    }
+
+
+    public int getLayoutWidth() {
+
+        return mLayoutWidth;
+    }
+
+
+    public int getLayoutHeight() {
+
+        return mLayoutHeight;
+    }
+
+
+    public void setVisible(boolean visible) {
+
+        if (mVisible != visible) {
+            mVisible = visible;
+            invalidate();
+        }
+    }
+
+
+    public boolean isVisible() {
+
+        return mVisible;
+    }
+
+    //============================ 测量 ============================
+
+
+    /**
+     * 使用约束生成的spec测量,spec和上次相同并且没有请求重新布局时跳过
+     */
+    final void measure(int widthSpec, int heightSpec) {
+
+        if (!mLayoutRequested && mWidthSpec == widthSpec && mHeightSpec == heightSpec) {
+            return;
+        }
+
+        onMeasure(widthSpec, heightSpec);
+        mWidthSpec = widthSpec;
+        mHeightSpec = heightSpec;
+        mLayoutRequested = false;
+    }
+
+
+    /**
+     * 测量,需要调用{@link #setMeasuredDimension(int, int)}
+     *
+     * @param widthSpec  宽度spec
+     * @param heightSpec 高度spec
+     */
+    protected abstract void onMeasure(int widthSpec, int heightSpec);
+
+
+    protected final void setMeasuredDimension(int width, int height) {
+
+        mMeasuredWidth = width;
+        mMeasuredHeight = height;
+    }
+
+
+    public final int getMeasuredWidth() {
+
+        return mMeasuredWidth;
+    }
+
+
+    public final int getMeasuredHeight() {
+
+        return mMeasuredHeight;
+    }
+
+
+    /**
+     * @return 测量之后相对上边的baseline, -1 表示没有,用于baseline对齐
+     */
+    public int getBaseline() {
+
+        return -1;
+    }
+
+
+    /**
+     * 根据spec得到尺寸,同{@link View#resolveSize(int, int)}
+     */
+    protected static int resolveSize(int desired, int spec) {
+
+        int size = MeasureSpec.getSize(spec);
+        switch (MeasureSpec.getMode(spec)) {
+            case MeasureSpec.EXACTLY:
+                return size;
+            case MeasureSpec.AT_MOST:
+                return Math.min(desired, size);
+            default:
+                return desired;
+        }
+    }
+
+    //============================ 绘制 ============================
+
+
+    /**
+     * 在约束的位置绘制
+     *
+     * @param canvas 布局的画布
+     * @param left   左边
+     * @param top    上边
+     * @param right  右边
+     * @param bottom 下边
+     */
+    protected abstract void draw(Canvas canvas, int left, int top, int right, int bottom);
+
+
+    /**
+     * 内容变化,尺寸不变时调用,重新绘制
+     */
+    public void invalidate() {
+
+        if (mHost != null) {
+            mHost.invalidate();
+        }
+    }
+
+
+    /**
+     * 内容变化,尺寸可能变化时调用,重新测量
+     */
+    public void requestLayout() {
+
+        mLayoutRequested = true;
+        if (mHost != null) {
+            mHost.requestLayout();
+        }
+    }
+
+
+    protected View getHost() {
+
+        return mHost;
+    }
+
+
+    void attach(View host) {
+
+        mHost = host;
+        mLayoutRequested = true;
+        onAttached(host);
+    }
+
+
+    void detach() {
+
+        onDetached(mHost);
+        mHost = null;
+    }
+
+
+    /**
+     * 添加到布局
+     */
+    protected void onAttached(View host) {
+
+    }
+
+
+    /**
+     * 从布局移除
+     */
+    protected void onDetached(View host) {
+
+    }
+}
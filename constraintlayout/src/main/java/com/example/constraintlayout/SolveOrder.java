@@ -0,0 +1,228 @@
+package com.example.constraintlayout;
+
+import java.util.Arrays;
+
+/**
+ * 记录一次测量过程中每个布局位置的求解状态,以及上一次测量时的求解顺序;
+ * 约束引用还没有求解的布局位置时先求解被引用的位置(深度优先),求解顺序就是引用关系的拓扑顺序,
+ * 保存下来之后的测量直接按这个顺序求解,不需要再递归;引用正在求解的位置说明存在循环引用
+ *
+ * @author wuxio
+ */
+final class SolveOrder {
+
+    /**
+     * 每个布局位置开始求解和求解完成时的标记,等于{@link #mStamp}表示本次测量中的状态
+     */
+    private int[] mSolving = new int[16];
+    private int[] mSolved  = new int[16];
+    private int   mStamp;
+
+    /**
+     * 上一次测量的求解顺序,以及本次测量正在记录的顺序
+     */
+    private int[]   mOrder     = new int[16];
+    private int[]   mNextOrder = new int[16];
+    private int     mOrderCount;
+    private int     mNextCount;
+    private boolean mOrderValid;
+
+    /**
+     * 正在求解的布局位置,用于描述循环引用
+     */
+    private int[] mStack = new int[16];
+    private int   mDepth;
+
+    private int     mCount;
+    private boolean mActive;
+
+
+    /**
+     * 开始一次测量
+     *
+     * @param count 布局位置数量
+     */
+    void begin(int count) {
+
+        if (mSolved.length < count) {
+            int capacity = Math.max(count, mSolved.length << 1);
+            mSolving = Arrays.copyOf(mSolving, capacity);
+            mSolved = Arrays.copyOf(mSolved, capacity);
+            mOrder = Arrays.copyOf(mOrder, capacity);
+            mNextOrder = new int[capacity];
+            mStack = new int[capacity];
+        }
+
+        if (mStamp == Integer.MAX_VALUE) {
+            Arrays.fill(mSolving, 0);
+            Arrays.fill(mSolved, 0);
+            mStamp = 0;
+        }
+        mStamp++;
+
+        if (mOrderCount != count) {
+            mOrderValid = false;
+        }
+
+        mCount = count;
+        mNextCount = 0;
+        mDepth = 0;
+        mActive = true;
+    }
+
+
+    /**
+     * 测量完成,保存本次的求解顺序
+     */
+    void end() {
+
+        int[] order = mOrder;
+        mOrder = mNextOrder;
+        mNextOrder = order;
+        mOrderCount = mNextCount;
+        mOrderValid = mOrderCount == mCount;
+        mActive = false;
+    }
+
+
+    /**
+     * 开始更新部分布局位置:所有位置先标记为已经求解,读取的是当前的位置,之后使用{@link #markUnsolved(int)}
+     * 标记需要更新的位置,更新的位置引用另一个更新的位置时先求解被引用的;不记录求解顺序,使用{@link #endUpdate()}结束
+     *
+     * @param count 布局位置数量
+     */
+    void beginUpdate(int count) {
+
+        begin(count);
+        Arrays.fill(mSolved, 0, count, mStamp);
+    }
+
+
+    void markUnsolved(int position) {
+
+        mSolved[position] = mStamp - 1;
+    }
+
+
+    /**
+     * 更新结束,上一次测量的求解顺序不变
+     */
+    void endUpdate() {
+
+        mActive = false;
+    }
+
+
+    /**
+     * 测量中断(例如抛出异常),不保存求解顺序
+     */
+    void abort() {
+
+        mActive = false;
+        mOrderValid = false;
+    }
+
+
+    /**
+     * 分帧测量时一帧结束,保留本次测量的求解状态,下一帧{@link #resume()}继续;
+     * 暂停期间读取位置信息不会触发求解
+     */
+    void pause() {
+
+        mActive = false;
+    }
+
+
+    void resume() {
+
+        mActive = true;
+    }
+
+
+    void invalidate() {
+
+        mOrderValid = false;
+    }
+
+
+    /**
+     * @return true:正在测量
+     */
+    boolean isActive() {
+
+        return mActive;
+    }
+
+
+    int count() {
+
+        return mCount;
+    }
+
+
+    /**
+     * @param index 第几个求解
+     * @param count 布局位置数量
+     * @return 按上一次求解顺序的布局位置, 没有可用的顺序时就是index
+     */
+    int positionAt(int index, int count) {
+
+        return mOrderValid && mOrderCount == count ? mOrder[index] : index;
+    }
+
+
+    boolean isSolved(int position) {
+
+        return mSolved[position] == mStamp;
+    }
+
+
+    boolean isSolving(int position) {
+
+        return mSolving[position] == mStamp && mSolved[position] != mStamp;
+    }
+
+
+    /**
+     * @return 当前求解的深度, 0 表示按顺序求解,大于0表示正在求解被引用的位置
+     */
+    int depth() {
+
+        return mDepth;
+    }
+
+
+    void push(int position) {
+
+        mSolving[position] = mStamp;
+        mStack[mDepth++] = position;
+    }
+
+
+    void pop(int position) {
+
+        mDepth--;
+        mSolved[position] = mStamp;
+        mNextOrder[mNextCount++] = position;
+    }
+
+
+    /**
+     * 描述循环引用,只在需要报告时创建
+     *
+     * @param position 被引用的正在求解的位置
+     * @return 例如 "3 -> 5 -> 3"
+     */
+    String describeCycle(int position) {
+
+        StringBuilder builder = new StringBuilder();
+        int from = mDepth - 1;
+        while (from > 0 && mStack[from] != position) {
+            from--;
+        }
+        for (int i = from; i < mDepth; i++) {
+            builder.append(mStack[i]).append(" -> ");
+        }
+        return builder.append(position).toString();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.constraintlayout;
+
+import android.graphics.Canvas;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.View.MeasureSpec;
+
+/**
+ * 绘制文字的{@link RenderItem},测量时创建{@link StaticLayout},宽度不变时复用,绘制时直接绘制排版好的文字
+ *
+ * @author wuxio
+ */
+public class TextItem extends RenderItem {
+
+    private CharSequence     mText;
+    private TextPaint        mPaint;
+    private Layout.Alignment mAlignment = Layout.Alignment.ALIGN_NORMAL;
+
+    /**
+     * 排版结果,文字,画笔或者宽度变化时重新创建
+     */
+    private StaticLayout mLayout;
+
+
+    public TextItem(CharSequence text, TextPaint paint) {
+
+        mText = text == null ? "" : text;
+        mPaint = paint;
+    }
+
+
+    public void setText(CharSequence text) {
+
+        mText = text == null ? "" : text;
+        mLayout = null;
+        requestLayout();
+    }
+
+
+    public CharSequence getText() {
+
+        return mText;
+    }
+
+
+    /**
+     * 设置画笔,修改画笔的属性之后也需要调用该方法
+     *
+     * @param paint 画笔
+     */
+    public void setPaint(TextPaint paint) {
+
+        mPaint = paint;
+        mLayout = null;
+        requestLayout();
+    }
+
+
+    public TextPaint getPaint() {
+
+        return mPaint;
+    }
+
+
+    public void setAlignment(Layout.Alignment alignment) {
+
+        mAlignment = alignment;
+        mLayout = null;
+        requestLayout();
+    }
+
+
+    @Override
+    protected void onMeasure(int widthSpec, int heightSpec) {
+
+        int width;
+        if (MeasureSpec.getMode(widthSpec) == MeasureSpec.EXACTLY) {
+            width = MeasureSpec.getSize(widthSpec);
+        } else {
+            int desired = (int) Math.ceil(Layout.getDesiredWidth(mText, mPaint));
+            width = resolveSize(desired, widthSpec);
+        }
+
+        StaticLayout layout = mLayout;
+        if (layout == null || layout.getWidth() != width) {
+            layout = createLayout(width);
+            mLayout = layout;
+        }
+
+        setMeasuredDimension(width, resolveSize(layout.getHeight(), heightSpec));
+    }
+
+
+    @SuppressWarnings("deprecation")
+    private StaticLayout createLayout(int width) {
+
+        return new StaticLayout(mText, mPaint, width, mAlignment, 1f, 0f, false);
+    }
+
+
+    @Override
+    public int getBaseline() {
+
+        return mLayout == null ? -1 : mLayout.getLineBaseline(0);
+    }
+
+
+    @Override
+    protected void draw(Canvas canvas, int left, int top, int right, int bottom) {
+
+        if (mLayout == null) {
+            return;
+        }
+
+        int save = canvas.save();
+        canvas.clipRect(left, top, right, bottom);
+        canvas.translate(left, top);
+        mLayout.draw(canvas);
+        canvas.restoreToCount(save);
+    }
+}
@@ -5,6 +5,7 @@ import android.view.ViewGroup;
 
 import com.example.constraintlayout.Constraint;
 import com.example.constraintlayout.ConstraintLayout.LayoutParams;
+import com.example.constraintlayout.RenderItem;
 
 /**
  * Created by LiuJin on 2018-04-03:9:59
@@ -53,6 +54,56 @@ public abstract class BaseConstraintAdapter {
     public abstract int getChildCount();
 
 
+    /**
+     * 返回该布局位置的view的key,用于{@link Constraint}通过key引用view,每个view的key需要不同;
+     * 插入删除view之后key不变,使用key的约束仍然指向同一个view,默认使用布局位置
+     *
+     * @param position 布局位置
+     * @return key
+     */
+    public long getItemKey(int position) {
+
+        return position;
+    }
+
+
+    /**
+     * 返回没有view的绘制项数量,绘制项在所有view之后求解,约束可以引用所有view的位置
+     *
+     * @return 绘制项数量
+     */
+    public int getRenderItemCount() {
+
+        return 0;
+    }
+
+
+    /**
+     * 生成一个绘制项,例如{@link com.example.constraintlayout.TextItem},{@link com.example.constraintlayout.DrawableItem}
+     *
+     * @param index 绘制项的序号
+     * @return 绘制项, 已经生成的不会再次调用该方法;null 表示该序号没有绘制项,跳过
+     */
+    public RenderItem generateRenderItemTo(int index) {
+
+        return null;
+    }
+
+
+    /**
+     * 为绘制项生成一个约束,和{@link #generateConstraintTo(int, Constraint, View)}相同
+     *
+     * @param index      绘制项的序号
+     * @param constraint 初始化的约束
+     * @param item       绘制项
+     * @return 修改后的约束
+     */
+    public Constraint generateRenderConstraintTo(int index, Constraint constraint, RenderItem item) {
+
+        return constraint;
+    }
+
+
     public void beforeMeasure(int position, View view) {
 
     }
@@ -0,0 +1,161 @@
+package com.example.constraintlayout.image;
+
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * 可以复用的bitmap池,按宽高和config分组;不再显示的bitmap放入池中,之后绘制相同尺寸的图片时复用,
+ * api 19 以上解码时复用内存足够的任意尺寸;避免频繁创建大块内存;池中bitmap的总字节数有上限,超过时移除最早放入的
+ *
+ * @author wuxio
+ */
+public final class BitmapPool {
+
+    private final HashMap< Long, ArrayDeque< Bitmap > > mGroups = new HashMap<>();
+
+    /**
+     * 放入的顺序,用于超过上限时移除最早的
+     */
+    private final ArrayDeque< Bitmap > mOrder = new ArrayDeque<>();
+
+    private final long mMaxBytes;
+    private       long mBytes;
+
+
+    /**
+     * @param maxBytes 池中bitmap的总字节数上限
+     */
+    public BitmapPool(long maxBytes) {
+
+        mMaxBytes = maxBytes;
+    }
+
+
+    /**
+     * 取出一个尺寸和config都相同的bitmap,内容没有清除
+     *
+     * @return bitmap, 没有返回null
+     */
+    public synchronized Bitmap get(int width, int height, Config config) {
+
+        ArrayDeque< Bitmap > group = mGroups.get(key(width, height, config));
+        if (group == null || group.isEmpty()) {
+            return null;
+        }
+
+        Bitmap bitmap = group.pollLast();
+        mOrder.remove(bitmap);
+        mBytes -= bitmap.getByteCount();
+        return bitmap;
+    }
+
+
+    /**
+     * 取出一个config相同,分配的内存不小于该字节数的bitmap,选择满足条件的最小一个;
+     * 用于api 19 以上解码时的{@link android.graphics.BitmapFactory.Options#inBitmap},解码会重新设置它的尺寸
+     *
+     * @param byteCount 需要的字节数
+     * @return bitmap, 没有返回null
+     */
+    @RequiresApi(Build.VERSION_CODES.KITKAT)
+    public synchronized Bitmap getAtLeast(int byteCount, Config config) {
+
+        Bitmap best = null;
+        for (Bitmap bitmap : mOrder) {
+            int allocation = bitmap.getAllocationByteCount();
+            if (bitmap.getConfig() == config && allocation >= byteCount
+                    && (best == null || allocation < best.getAllocationByteCount())) {
+                best = bitmap;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+
+        mGroups.get(key(best.getWidth(), best.getHeight(), best.getConfig())).remove(best);
+        mOrder.remove(best);
+        mBytes -= best.getByteCount();
+        return best;
+    }
+
+
+    /**
+     * 放入一个不再使用的bitmap,之后不要再使用它
+     *
+     * @param bitmap bitmap
+     * @return true:已经放入池中, false:不能复用(不可修改,已经回收,或者超过上限)
+     */
+    public synchronized boolean put(Bitmap bitmap) {
+
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() == null) {
+            return false;
+        }
+
+        int bytes = bitmap.getByteCount();
+        if (bytes > mMaxBytes) {
+            return false;
+        }
+
+        Long key = key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        ArrayDeque< Bitmap > group = mGroups.get(key);
+        if (group == null) {
+            group = new ArrayDeque<>();
+            mGroups.put(key, group);
+        }
+        group.addLast(bitmap);
+        mOrder.addLast(bitmap);
+        mBytes += bytes;
+
+        trimToSize(mMaxBytes);
+        return true;
+    }
+
+
+    /**
+     * 移除最早放入的bitmap,直到总字节数不超过该值
+     *
+     * @param maxBytes 字节数
+     */
+    public synchronized void trimToSize(long maxBytes) {
+
+        while (mBytes > maxBytes && !mOrder.isEmpty()) {
+            Bitmap bitmap = mOrder.pollFirst();
+            ArrayDeque< Bitmap > group = mGroups.get(key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()));
+            if (group != null) {
+                group.remove(bitmap);
+            }
+            mBytes -= bitmap.getByteCount();
+        }
+
+        Iterator< ArrayDeque< Bitmap > > iterator = mGroups.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+
+    public synchronized void clear() {
+
+        trimToSize(0);
+    }
+
+
+    public synchronized long getBytes() {
+
+        return mBytes;
+    }
+
+
+    private static Long key(int width, int height, Config config) {
+
+        return ((long) width << 32) | ((long) height << 8) | config.ordinal();
+    }
+}
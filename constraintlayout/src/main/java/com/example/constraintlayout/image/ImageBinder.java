@@ -0,0 +1,516 @@
+package com.example.constraintlayout.image;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.view.Choreographer;
+import android.widget.ImageView;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 按显示尺寸加载图片资源:约束求解之后view的尺寸已经确定,在后台线程把图片解码为刚好放进该尺寸的bitmap
+ * (保持宽高比,不会放大),每张图片占用的内存只和显示面积有关;解码结果保存在LRU缓存中,
+ * 不再显示的bitmap放入{@link BitmapPool}复用;view 先清除图片,至少经过一帧绘制之后才放入复用池,
+ * 避免还在显示(硬件加速时渲染线程还在使用)的bitmap被后台解码覆盖
+ * <p>
+ * 在{@link com.example.constraintlayout.adapter.BaseConstraintAdapter#afterMeasure(int, android.view.View)}中调用
+ * {@link #bind(ImageView, int)},或者在生成约束时使用约束的尺寸调用{@link #bind(ImageView, int, int, int)};
+ * 只能在主线程调用
+ *
+ * @author wuxio
+ */
+public final class ImageBinder implements Runnable {
+
+    private static final long FRAME_DELAY = 16;
+
+    private static ImageBinder sInstance;
+
+    private final Resources       mResources;
+    private final ExecutorService mExecutor;
+    private final Handler         mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final LruCache< String, Bitmap > mCache;
+    private final BitmapPool                 mPool;
+
+    /**
+     * view 请求的图片,以及正在显示的图片;显示数量为0并且不在缓存中的bitmap可以复用
+     */
+    private final WeakHashMap< ImageView, Request > mRequested = new WeakHashMap<>();
+    private final WeakHashMap< ImageView, Shown >   mShown     = new WeakHashMap<>();
+    private final HashMap< String, Integer >        mShowCount = new HashMap<>();
+
+    /**
+     * 所有正在显示的记录;view 被回收之后记录进入队列,减少显示数量
+     */
+    private final HashSet< Shown >              mShownRecords = new HashSet<>();
+    private final ReferenceQueue< ImageView > mCollected    = new ReferenceQueue<>();
+
+    /**
+     * 等待放入复用池的bitmap:mPendingRecycle 还没有经过帧的开始,mFramedRecycle 已经经过一次,
+     * 再经过一次时清除图片之后的一帧已经绘制完成
+     */
+    private ArrayList< Bitmap > mPendingRecycle = new ArrayList<>();
+    private ArrayList< Bitmap > mFramedRecycle  = new ArrayList<>();
+    private boolean             mFrameScheduled;
+    private FrameTick           mFrameTick;
+
+    private final Paint mScalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect  mScaleRect  = new Rect();
+
+
+    /**
+     * @return 共用的实例, 缓存为最大内存的1/8,复用池为1/16
+     */
+    public static synchronized ImageBinder get(Context context) {
+
+        if (sInstance == null) {
+            long maxMemory = Runtime.getRuntime().maxMemory();
+            sInstance = new ImageBinder(
+                    context.getApplicationContext().getResources(),
+                    (int) Math.min(maxMemory / 8, Integer.MAX_VALUE),
+                    maxMemory / 16
+            );
+        }
+        return sInstance;
+    }
+
+
+    /**
+     * @param resources     读取图片资源
+     * @param cacheBytes    缓存的字节数上限
+     * @param poolBytes     复用池的字节数上限
+     */
+    public ImageBinder(Resources resources, int cacheBytes, long poolBytes) {
+
+        mResources = resources;
+        mPool = new BitmapPool(poolBytes);
+        mExecutor = Executors.newFixedThreadPool(2);
+        mCache = new LruCache< String, Bitmap >(cacheBytes) {
+
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+
+                return value.getByteCount();
+            }
+
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+
+                if (oldValue != newValue) {
+                    recycleIfUnused(key, oldValue);
+                }
+            }
+        };
+    }
+
+
+    public BitmapPool getBitmapPool() {
+
+        return mPool;
+    }
+
+    //============================ 绑定 ============================
+
+
+    /**
+     * 使用view测量之后的尺寸加载图片
+     *
+     * @param view  图片显示的view
+     * @param resId 图片资源
+     */
+    public void bind(ImageView view, int resId) {
+
+        bind(view, resId, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+
+
+    /**
+     * 把图片加载为刚好放进该尺寸的bitmap,缓存中没有时先清除view的图片,在后台解码;
+     * 和view上一次请求的图片和尺寸相同时直接返回,不创建任何对象,可以在每次测量时调用
+     *
+     * @param view   图片显示的view
+     * @param resId  图片资源
+     * @param width  显示宽度
+     * @param height 显示高度
+     */
+    public void bind(ImageView view, int resId, int width, int height) {
+
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        Request last = mRequested.get(view);
+        if (last != null && last.matches(resId, width, height)) {
+            return;
+        }
+
+        pollCollected();
+        release(view);
+        Request request = new Request(resId, width, height);
+        mRequested.put(view, request);
+
+        Bitmap cached = mCache.get(request.key);
+        if (cached != null) {
+            show(view, request.key, cached);
+            return;
+        }
+
+        view.setImageDrawable(null);
+        mExecutor.execute(new DecodeTask(view, request));
+    }
+
+
+    /**
+     * 不再显示该view的图片,例如view被移除,显示的bitmap不在缓存中时放入复用池
+     *
+     * @param view 图片显示的view
+     */
+    public void unbind(ImageView view) {
+
+        pollCollected();
+        if (mRequested.remove(view) != null) {
+            view.setImageDrawable(null);
+        }
+        release(view);
+    }
+
+
+    /**
+     * 清除缓存和复用池,例如内存不足时
+     */
+    public void clear() {
+
+        mCache.evictAll();
+        mPool.clear();
+    }
+
+
+    /**
+     * 每一帧开始时移动等待的bitmap,经过两次帧的开始之后放入复用池
+     */
+    @Override
+    public void run() {
+
+        ArrayList< Bitmap > framed = mFramedRecycle;
+        for (int i = 0, size = framed.size(); i < size; i++) {
+            mPool.put(framed.get(i));
+        }
+        framed.clear();
+
+        mFramedRecycle = mPendingRecycle;
+        mPendingRecycle = framed;
+
+        mFrameScheduled = false;
+        if (!mFramedRecycle.isEmpty()) {
+            scheduleFrame();
+        }
+    }
+
+    //============================ 内部 ============================
+
+
+    private void show(ImageView view, String key, Bitmap bitmap) {
+
+        view.setImageBitmap(bitmap);
+        Shown shown = new Shown(view, key, bitmap, mCollected);
+        mShown.put(view, shown);
+        mShownRecords.add(shown);
+        Integer count = mShowCount.get(key);
+        mShowCount.put(key, count == null ? 1 : count + 1);
+    }
+
+
+    private void release(ImageView view) {
+
+        Shown shown = mShown.remove(view);
+        if (shown == null) {
+            return;
+        }
+        mShownRecords.remove(shown);
+        shown.clear();
+
+        /* view 还在显示这个bitmap时先清除,之后才能复用 */
+
+        Drawable drawable = view.getDrawable();
+        if (drawable instanceof BitmapDrawable && ((BitmapDrawable) drawable).getBitmap() == shown.bitmap) {
+            view.setImageDrawable(null);
+        }
+        decrementShown(shown);
+    }
+
+
+    /**
+     * 被回收的view不会再调用{@link #release(ImageView)},在这里减少它的显示数量
+     */
+    private void pollCollected() {
+
+        Reference< ? extends ImageView > reference;
+        while ((reference = mCollected.poll()) != null) {
+            Shown shown = (Shown) reference;
+            if (mShownRecords.remove(shown)) {
+                decrementShown(shown);
+            }
+        }
+    }
+
+
+    private void decrementShown(Shown shown) {
+
+        Integer count = mShowCount.get(shown.key);
+        if (count == null || count <= 1) {
+            mShowCount.remove(shown.key);
+        } else {
+            mShowCount.put(shown.key, count - 1);
+        }
+        recycleIfUnused(shown.key, shown.bitmap);
+    }
+
+
+    /**
+     * 没有view显示,并且不在缓存中的bitmap在下一帧绘制之后放入复用池
+     */
+    private void recycleIfUnused(String key, Bitmap bitmap) {
+
+        if (mShowCount.containsKey(key) || mCache.get(key) == bitmap) {
+            return;
+        }
+        mPendingRecycle.add(bitmap);
+        if (!mFrameScheduled) {
+            scheduleFrame();
+        }
+    }
+
+
+    private void scheduleFrame() {
+
+        mFrameScheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (mFrameTick == null) {
+                mFrameTick = new FrameTick(this);
+            }
+            Choreographer.getInstance().postFrameCallback(mFrameTick);
+        } else {
+            mMainHandler.postDelayed(this, FRAME_DELAY);
+        }
+    }
+
+
+    private void onDecoded(WeakReference< ImageView > reference, Request request, Bitmap bitmap) {
+
+        if (bitmap == null) {
+            return;
+        }
+
+        String key = request.key;
+        Bitmap cached = mCache.get(key);
+        if (cached == null) {
+            mCache.put(key, bitmap);
+        } else {
+
+            /* 同一个图片同时请求了多次,使用先完成的 */
+
+            mPool.put(bitmap);
+            bitmap = cached;
+        }
+
+        ImageView view = reference.get();
+        if (view != null && mRequested.get(view) == request && !mShown.containsKey(view)) {
+            show(view, key, bitmap);
+        }
+    }
+
+
+    /**
+     * 在后台线程解码:先按2的幂次采样到不小于目标的尺寸,再缩放到刚好放进目标尺寸,缩放使用复用池中的bitmap
+     */
+    private Bitmap decode(int resId, int width, int height) {
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(mResources, resId, options);
+
+        int sourceWidth = options.outWidth;
+        int sourceHeight = options.outHeight;
+        if (sourceWidth <= 0 || sourceHeight <= 0) {
+            return null;
+        }
+
+        float scale = Math.min(1f, Math.min(width * 1f / sourceWidth, height * 1f / sourceHeight));
+        int targetWidth = Math.max(1, Math.round(sourceWidth * scale));
+        int targetHeight = Math.max(1, Math.round(sourceHeight * scale));
+
+        int sampleSize = 1;
+        while (sourceWidth / (sampleSize << 1) >= targetWidth && sourceHeight / (sampleSize << 1) >= targetHeight) {
+            sampleSize <<= 1;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+
+        /* KITKAT 之后解码可以复用内存不小于解码结果的任意尺寸bitmap */
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            int sampledWidth = (sourceWidth + sampleSize - 1) / sampleSize;
+            int sampledHeight = (sourceHeight + sampleSize - 1) / sampleSize;
+            options.inBitmap = mPool.getAtLeast(sampledWidth * sampledHeight * 4, Bitmap.Config.ARGB_8888);
+        }
+
+        Bitmap sampled;
+        try {
+            sampled = BitmapFactory.decodeResource(mResources, resId, options);
+        } catch (IllegalArgumentException e) {
+
+            /* 不能复用时放回复用池,不复用重新解码 */
+
+            Bitmap unused = options.inBitmap;
+            options.inBitmap = null;
+            mPool.put(unused);
+            sampled = BitmapFactory.decodeResource(mResources, resId, options);
+        }
+        if (sampled == null) {
+            return null;
+        }
+
+        if (sampled.getWidth() == targetWidth && sampled.getHeight() == targetHeight) {
+            return sampled;
+        }
+
+        Bitmap result = mPool.get(targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+        if (result == null) {
+            result = Bitmap.createBitmap(targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+        } else {
+            result.eraseColor(0);
+        }
+
+        synchronized (mScaleRect) {
+            mScaleRect.set(0, 0, targetWidth, targetHeight);
+            new Canvas(result).drawBitmap(sampled, null, mScaleRect, mScalePaint);
+        }
+        mPool.put(sampled);
+        return result;
+    }
+
+
+    /**
+     * 一个view正在显示的图片,view 被回收之后进入队列
+     */
+    private static class Shown extends WeakReference< ImageView > {
+
+        final String key;
+        final Bitmap bitmap;
+
+
+        Shown(ImageView view, String key, Bitmap bitmap, ReferenceQueue< ImageView > queue) {
+
+            super(view, queue);
+            this.key = key;
+            this.bitmap = bitmap;
+        }
+    }
+
+
+    /**
+     * 单独的类,api 16 以下不会加载{@link Choreographer.FrameCallback}
+     */
+    private static class FrameTick implements Choreographer.FrameCallback {
+
+        private final Runnable mTarget;
+
+
+        FrameTick(Runnable target) {
+
+            mTarget = target;
+        }
+
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+
+            mTarget.run();
+        }
+    }
+
+
+    /**
+     * view 请求的图片和显示尺寸,缓存的key只在请求变化时创建
+     */
+    private static class Request {
+
+        final int    resId;
+        final int    width;
+        final int    height;
+        final String key;
+
+
+        Request(int resId, int width, int height) {
+
+            this.resId = resId;
+            this.width = width;
+            this.height = height;
+            this.key = resId + ":" + width + "x" + height;
+        }
+
+
+        boolean matches(int resId, int width, int height) {
+
+            return this.resId == resId && this.width == width && this.height == height;
+        }
+    }
+
+
+    private class DecodeTask implements Runnable {
+
+        private final WeakReference< ImageView > mView;
+        private final Request                    mRequest;
+
+
+        DecodeTask(ImageView view, Request request) {
+
+            mView = new WeakReference<>(view);
+            mRequest = request;
+        }
+
+
+        @Override
+        public void run() {
+
+            if (mView.get() == null) {
+                return;
+            }
+
+            final Request request = mRequest;
+            final Bitmap bitmap = decode(request.resId, request.width, request.height);
+            mMainHandler.post(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    onDecoded(mView, request, bitmap);
+                }
+            });
+        }
+    }
+}
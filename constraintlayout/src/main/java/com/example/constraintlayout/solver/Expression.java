@@ -0,0 +1,90 @@
+package com.example.constraintlayout.solver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 线性表达式: c0 * v0 + c1 * v1 + ... + constant
+ *
+ * @author wuxio
+ */
+public final class Expression {
+
+    final List< Variable > variables    = new ArrayList<>();
+    final List< Double >   coefficients = new ArrayList<>();
+    double constant;
+
+
+    public Expression() {
+
+    }
+
+
+    public Expression(double constant) {
+
+        this.constant = constant;
+    }
+
+
+    public Expression(Variable variable) {
+
+        add(variable, 1.0);
+    }
+
+
+    /**
+     * 加上 coefficient * variable
+     *
+     * @return self
+     */
+    public Expression add(Variable variable, double coefficient) {
+
+        variables.add(variable);
+        coefficients.add(coefficient);
+        return this;
+    }
+
+
+    /**
+     * 加上一个常量
+     *
+     * @return self
+     */
+    public Expression add(double value) {
+
+        constant += value;
+        return this;
+    }
+
+
+    /**
+     * 加上另一个表达式乘以系数
+     *
+     * @return self
+     */
+    public Expression add(Expression other, double coefficient) {
+
+        for (int i = 0; i < other.variables.size(); i++) {
+            add(other.variables.get(i), other.coefficients.get(i) * coefficient);
+        }
+        constant += other.constant * coefficient;
+        return this;
+    }
+
+
+    public double getConstant() {
+
+        return constant;
+    }
+
+
+    @Override
+    public String toString() {
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < variables.size(); i++) {
+            builder.append(coefficients.get(i)).append(" * ").append(variables.get(i).getName()).append(" + ");
+        }
+        return builder.append(constant).toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.constraintlayout.solver;
+
+/**
+ * 线性约束: expression (<= | >= | ==) 0,带有强度
+ *
+ * @author wuxio
+ */
+public final class LinearConstraint {
+
+    public static final int OP_LE = 0;
+    public static final int OP_GE = 1;
+    public static final int OP_EQ = 2;
+
+    final Expression expression;
+    final int        op;
+    final double     strength;
+
+
+    /**
+     * @param expression 表达式,约束为 expression op 0
+     * @param op         {@link #OP_LE},{@link #OP_GE},{@link #OP_EQ}
+     * @param strength   强度,见{@link Strength}
+     */
+    public LinearConstraint(Expression expression, int op, double strength) {
+
+        if (op < OP_LE || op > OP_EQ) {
+            throw new IllegalArgumentException("unknown operator: " + op);
+        }
+        this.expression = expression;
+        this.op = op;
+        this.strength = Strength.clip(strength);
+    }
+
+
+    /**
+     * 创建约束: lhs op rhs
+     */
+    public static LinearConstraint create(Expression lhs, int op, Expression rhs, double strength) {
+
+        Expression expression = new Expression().add(lhs, 1.0).add(rhs, -1.0);
+        return new LinearConstraint(expression, op, strength);
+    }
+
+
+    /**
+     * 创建约束: a == b + offset
+     */
+    public static LinearConstraint equal(Variable a, Variable b, double offset, double strength) {
+
+        Expression expression = new Expression(a).add(b, -1.0).add(-offset);
+        return new LinearConstraint(expression, OP_EQ, strength);
+    }
+
+
+    /**
+     * 创建约束: a == value
+     */
+    public static LinearConstraint equal(Variable a, double value, double strength) {
+
+        return new LinearConstraint(new Expression(a).add(-value), OP_EQ, strength);
+    }
+
+
+    /**
+     * 创建约束: a >= b + offset
+     */
+    public static LinearConstraint greaterOrEqual(Variable a, Variable b, double offset, double strength) {
+
+        Expression expression = new Expression(a).add(b, -1.0).add(-offset);
+        return new LinearConstraint(expression, OP_GE, strength);
+    }
+
+
+    /**
+     * 创建约束: a <= b + offset
+     */
+    public static LinearConstraint lessOrEqual(Variable a, Variable b, double offset, double strength) {
+
+        Expression expression = new Expression(a).add(b, -1.0).add(-offset);
+        return new LinearConstraint(expression, OP_LE, strength);
+    }
+
+
+    public int getOp() {
+
+        return op;
+    }
+
+
+    public double getStrength() {
+
+        return strength;
+    }
+
+
+    @Override
+    public String toString() {
+
+        String operator = op == OP_LE ? " <= 0" : op == OP_GE ? " >= 0" : " == 0";
+        return expression + operator + " | strength = " + strength;
+    }
+}
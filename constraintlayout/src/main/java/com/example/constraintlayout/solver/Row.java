@@ -0,0 +1,144 @@
+package com.example.constraintlayout.solver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 单纯形表中的一行: constant + sum(coefficient * symbol)
+ *
+ * @author wuxio
+ */
+final class Row {
+
+    private static final double EPS = 1.0e-8;
+
+    final LinkedHashMap< Symbol, Double > cells = new LinkedHashMap<>();
+    double constant;
+
+
+    Row(double constant) {
+
+        this.constant = constant;
+    }
+
+
+    Row(Row other) {
+
+        cells.putAll(other.cells);
+        constant = other.constant;
+    }
+
+
+    static boolean nearZero(double value) {
+
+        return value < 0 ? -value < EPS : value < EPS;
+    }
+
+
+    /**
+     * 常量加上 value
+     *
+     * @return 新的常量
+     */
+    double add(double value) {
+
+        return constant += value;
+    }
+
+
+    /**
+     * 加上 coefficient * symbol,系数为0时删除该符号
+     */
+    void insert(Symbol symbol, double coefficient) {
+
+        Double existing = cells.get(symbol);
+        if (existing != null) {
+            coefficient += existing;
+        }
+
+        if (nearZero(coefficient)) {
+            cells.remove(symbol);
+        } else {
+            cells.put(symbol, coefficient);
+        }
+    }
+
+
+    /**
+     * 加上 coefficient * other
+     */
+    void insert(Row other, double coefficient) {
+
+        constant += other.constant * coefficient;
+        for (Map.Entry< Symbol, Double > entry : other.cells.entrySet()) {
+            insert(entry.getKey(), entry.getValue() * coefficient);
+        }
+    }
+
+
+    void remove(Symbol symbol) {
+
+        cells.remove(symbol);
+    }
+
+
+    void reverseSign() {
+
+        constant = -constant;
+        for (Map.Entry< Symbol, Double > entry : cells.entrySet()) {
+            entry.setValue(-entry.getValue());
+        }
+    }
+
+
+    /**
+     * 求解该行,使symbol成为基本变量: symbol = ...
+     */
+    void solveFor(Symbol symbol) {
+
+        double coefficient = -1.0 / cells.remove(symbol);
+        constant *= coefficient;
+        for (Map.Entry< Symbol, Double > entry : cells.entrySet()) {
+            entry.setValue(entry.getValue() * coefficient);
+        }
+    }
+
+
+    /**
+     * 该行原来是 lhs = ...,改为 rhs = ...
+     */
+    void solveFor(Symbol lhs, Symbol rhs) {
+
+        insert(lhs, -1.0);
+        solveFor(rhs);
+    }
+
+
+    double coefficientFor(Symbol symbol) {
+
+        Double coefficient = cells.get(symbol);
+        return coefficient == null ? 0.0 : coefficient;
+    }
+
+
+    /**
+     * 使用row替换该行中的symbol
+     */
+    void substitute(Symbol symbol, Row row) {
+
+        Double coefficient = cells.remove(symbol);
+        if (coefficient != null) {
+            insert(row, coefficient);
+        }
+    }
+
+
+    /**
+     * @return 所有符号, 复制一份,遍历时可以修改该行
+     */
+    ArrayList< Symbol > symbols() {
+
+        return new ArrayList<>(cells.keySet());
+    }
+}
@@ -0,0 +1,568 @@
+package com.example.constraintlayout.solver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 增量单纯形求解器,算法和 Cassowary 相同:添加删除约束,修改编辑变量的建议值时,
+ * 只在当前的单纯形表上做少量的转轴操作,不需要从头求解;
+ * 强度低于{@link Strength#REQUIRED}的约束通过误差变量进入目标函数,冲突时按强度尽量满足
+ *
+ * @author wuxio
+ */
+public final class SimplexSolver {
+
+    /**
+     * 每个约束对应的标记符号
+     */
+    private static final class Tag {
+
+        Symbol marker;
+        Symbol other;
+    }
+
+    /**
+     * 编辑变量的信息
+     */
+    private static final class EditInfo {
+
+        final LinearConstraint constraint;
+        final Tag              tag;
+        double constant;
+
+
+        EditInfo(LinearConstraint constraint, Tag tag) {
+
+            this.constraint = constraint;
+            this.tag = tag;
+        }
+    }
+
+    private final HashMap< LinearConstraint, Tag >     mConstraints = new HashMap<>();
+    private final LinkedHashMap< Symbol, Row >         mRows        = new LinkedHashMap<>();
+    private final LinkedHashMap< Variable, Symbol >    mVariables   = new LinkedHashMap<>();
+    private final HashMap< Variable, EditInfo >        mEdits       = new HashMap<>();
+    private final ArrayList< Symbol >                  mInfeasible  = new ArrayList<>();
+    private final Row                                  mObjective   = new Row(0.0);
+    private       Row                                  mArtificial;
+
+    //============================ 约束 ============================
+
+
+    /**
+     * 添加一个约束
+     *
+     * @param constraint 约束
+     * @throws IllegalArgumentException 约束已经添加过
+     * @throws IllegalStateException    必须满足的约束无法满足
+     */
+    public void addConstraint(LinearConstraint constraint) {
+
+        if (mConstraints.containsKey(constraint)) {
+            throw new IllegalArgumentException("duplicate constraint: " + constraint);
+        }
+
+        Tag tag = new Tag();
+        Row row = createRow(constraint, tag);
+        Symbol subject = chooseSubject(row, tag);
+
+        if (subject == null && allDummies(row)) {
+            if (!Row.nearZero(row.constant)) {
+                throw new IllegalStateException("unsatisfiable constraint: " + constraint);
+            }
+            subject = tag.marker;
+        }
+
+        if (subject == null) {
+            if (!addWithArtificialVariable(row)) {
+                throw new IllegalStateException("unsatisfiable constraint: " + constraint);
+            }
+        } else {
+            row.solveFor(subject);
+            substitute(subject, row);
+            mRows.put(subject, row);
+        }
+
+        mConstraints.put(constraint, tag);
+        optimize(mObjective);
+    }
+
+
+    /**
+     * 删除一个约束
+     *
+     * @param constraint 约束
+     * @throws IllegalArgumentException 约束没有添加过
+     */
+    public void removeConstraint(LinearConstraint constraint) {
+
+        Tag tag = mConstraints.remove(constraint);
+        if (tag == null) {
+            throw new IllegalArgumentException("unknown constraint: " + constraint);
+        }
+
+        removeConstraintEffects(constraint, tag);
+
+        Row row = mRows.remove(tag.marker);
+        if (row == null) {
+            Symbol leaving = getMarkerLeavingSymbol(tag.marker);
+            if (leaving == null) {
+                throw new IllegalStateException("failed to find leaving row");
+            }
+            row = mRows.remove(leaving);
+            row.solveFor(leaving, tag.marker);
+            substitute(tag.marker, row);
+        }
+
+        optimize(mObjective);
+    }
+
+
+    public boolean hasConstraint(LinearConstraint constraint) {
+
+        return mConstraints.containsKey(constraint);
+    }
+
+    //============================ 编辑变量 ============================
+
+
+    /**
+     * 添加一个编辑变量,之后使用{@link #suggestValue(Variable, double)}修改它的值
+     *
+     * @param variable 变量
+     * @param strength 强度,不能是{@link Strength#REQUIRED}
+     */
+    public void addEditVariable(Variable variable, double strength) {
+
+        if (mEdits.containsKey(variable)) {
+            throw new IllegalArgumentException("duplicate edit variable: " + variable.getName());
+        }
+
+        strength = Strength.clip(strength);
+        if (strength == Strength.REQUIRED) {
+            throw new IllegalArgumentException("edit variable can't be required");
+        }
+
+        LinearConstraint constraint = new LinearConstraint(new Expression(variable), LinearConstraint.OP_EQ, strength);
+        addConstraint(constraint);
+        mEdits.put(variable, new EditInfo(constraint, mConstraints.get(constraint)));
+    }
+
+
+    public void removeEditVariable(Variable variable) {
+
+        EditInfo info = mEdits.remove(variable);
+        if (info == null) {
+            throw new IllegalArgumentException("unknown edit variable: " + variable.getName());
+        }
+        removeConstraint(info.constraint);
+    }
+
+
+    public boolean hasEditVariable(Variable variable) {
+
+        return mEdits.containsKey(variable);
+    }
+
+
+    /**
+     * 修改编辑变量的建议值,使用对偶单纯形增量求解
+     *
+     * @param variable 编辑变量
+     * @param value    建议值
+     */
+    public void suggestValue(Variable variable, double value) {
+
+        EditInfo info = mEdits.get(variable);
+        if (info == null) {
+            throw new IllegalArgumentException("unknown edit variable: " + variable.getName());
+        }
+
+        double delta = value - info.constant;
+        info.constant = value;
+
+        /* 误差变量是基本变量时,只需要修改该行 */
+
+        Row row = mRows.get(info.tag.marker);
+        if (row != null) {
+            if (row.add(-delta) < 0.0) {
+                mInfeasible.add(info.tag.marker);
+            }
+            dualOptimize();
+            return;
+        }
+
+        row = mRows.get(info.tag.other);
+        if (row != null) {
+            if (row.add(delta) < 0.0) {
+                mInfeasible.add(info.tag.other);
+            }
+            dualOptimize();
+            return;
+        }
+
+        /* 否则修改所有包含该误差变量的行 */
+
+        for (Map.Entry< Symbol, Row > entry : mRows.entrySet()) {
+            Row current = entry.getValue();
+            double coefficient = current.coefficientFor(info.tag.marker);
+            if (coefficient != 0.0
+                    && current.add(delta * coefficient) < 0.0
+                    && entry.getKey().type != Symbol.EXTERNAL) {
+                mInfeasible.add(entry.getKey());
+            }
+        }
+        dualOptimize();
+    }
+
+
+    /**
+     * 把求解结果写到变量中
+     */
+    public void updateVariables() {
+
+        for (Map.Entry< Variable, Symbol > entry : mVariables.entrySet()) {
+            Row row = mRows.get(entry.getValue());
+            entry.getKey().setValue(row == null ? 0.0 : row.constant);
+        }
+    }
+
+    //============================ 内部 ============================
+
+
+    /**
+     * 把约束转换为单纯形表中的一行,已经是基本变量的外部变量使用它所在的行替换
+     */
+    private Row createRow(LinearConstraint constraint, Tag tag) {
+
+        Expression expression = constraint.expression;
+        Row row = new Row(expression.constant);
+
+        for (int i = 0; i < expression.variables.size(); i++) {
+            double coefficient = expression.coefficients.get(i);
+            if (Row.nearZero(coefficient)) {
+                continue;
+            }
+
+            Symbol symbol = getVariableSymbol(expression.variables.get(i));
+            Row basic = mRows.get(symbol);
+            if (basic != null) {
+                row.insert(basic, coefficient);
+            } else {
+                row.insert(symbol, coefficient);
+            }
+        }
+
+        switch (constraint.op) {
+
+            case LinearConstraint.OP_LE:
+            case LinearConstraint.OP_GE: {
+                double coefficient = constraint.op == LinearConstraint.OP_LE ? 1.0 : -1.0;
+                Symbol slack = new Symbol(Symbol.SLACK);
+                tag.marker = slack;
+                row.insert(slack, coefficient);
+                if (constraint.strength < Strength.REQUIRED) {
+                    Symbol error = new Symbol(Symbol.ERROR);
+                    tag.other = error;
+                    row.insert(error, -coefficient);
+                    mObjective.insert(error, constraint.strength);
+                }
+                break;
+            }
+
+            default: {
+                if (constraint.strength < Strength.REQUIRED) {
+                    Symbol plus = new Symbol(Symbol.ERROR);
+                    Symbol minus = new Symbol(Symbol.ERROR);
+                    tag.marker = plus;
+                    tag.other = minus;
+                    row.insert(plus, -1.0);
+                    row.insert(minus, 1.0);
+                    mObjective.insert(plus, constraint.strength);
+                    mObjective.insert(minus, constraint.strength);
+                } else {
+                    Symbol dummy = new Symbol(Symbol.DUMMY);
+                    tag.marker = dummy;
+                    row.insert(dummy, 1.0);
+                }
+                break;
+            }
+        }
+
+        if (row.constant < 0.0) {
+            row.reverseSign();
+        }
+        return row;
+    }
+
+
+    /**
+     * 选择一个符号作为该行的基本变量:优先外部变量,其次是系数为负的松弛变量或者误差变量
+     */
+    private static Symbol chooseSubject(Row row, Tag tag) {
+
+        for (Symbol symbol : row.cells.keySet()) {
+            if (symbol.type == Symbol.EXTERNAL) {
+                return symbol;
+            }
+        }
+
+        if (isPivotable(tag.marker) && row.coefficientFor(tag.marker) < 0.0) {
+            return tag.marker;
+        }
+        if (tag.other != null && isPivotable(tag.other) && row.coefficientFor(tag.other) < 0.0) {
+            return tag.other;
+        }
+        return null;
+    }
+
+
+    private static boolean isPivotable(Symbol symbol) {
+
+        return symbol.type == Symbol.SLACK || symbol.type == Symbol.ERROR;
+    }
+
+
+    private static boolean allDummies(Row row) {
+
+        for (Symbol symbol : row.cells.keySet()) {
+            if (symbol.type != Symbol.DUMMY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * 没有合适的基本变量时,使用人工变量求一个可行解
+     *
+     * @return true:约束可以满足
+     */
+    private boolean addWithArtificialVariable(Row row) {
+
+        Symbol artificial = new Symbol(Symbol.SLACK);
+        mRows.put(artificial, new Row(row));
+        mArtificial = new Row(row);
+
+        optimize(mArtificial);
+        boolean success = Row.nearZero(mArtificial.constant);
+        mArtificial = null;
+
+        Row current = mRows.remove(artificial);
+        if (current != null) {
+            if (current.cells.isEmpty()) {
+                return success;
+            }
+
+            Symbol entering = null;
+            for (Symbol symbol : current.cells.keySet()) {
+                if (isPivotable(symbol)) {
+                    entering = symbol;
+                    break;
+                }
+            }
+            if (entering == null) {
+                return false;
+            }
+
+            current.solveFor(artificial, entering);
+            substitute(entering, current);
+            mRows.put(entering, current);
+        }
+
+        for (Row other : mRows.values()) {
+            other.remove(artificial);
+        }
+        mObjective.remove(artificial);
+        return success;
+    }
+
+
+    /**
+     * 所有行和目标函数中的symbol使用row替换
+     */
+    private void substitute(Symbol symbol, Row row) {
+
+        for (Map.Entry< Symbol, Row > entry : mRows.entrySet()) {
+            Row current = entry.getValue();
+            current.substitute(symbol, row);
+            if (entry.getKey().type != Symbol.EXTERNAL && current.constant < 0.0) {
+                mInfeasible.add(entry.getKey());
+            }
+        }
+
+        mObjective.substitute(symbol, row);
+        if (mArtificial != null) {
+            mArtificial.substitute(symbol, row);
+        }
+    }
+
+
+    /**
+     * 原始单纯形,使目标函数最小
+     */
+    private void optimize(Row objective) {
+
+        while (true) {
+
+            Symbol entering = null;
+            for (Map.Entry< Symbol, Double > entry : objective.cells.entrySet()) {
+                if (entry.getKey().type != Symbol.DUMMY && entry.getValue() < 0.0) {
+                    entering = entry.getKey();
+                    break;
+                }
+            }
+            if (entering == null) {
+                return;
+            }
+
+            Symbol leaving = getLeavingSymbol(entering);
+            if (leaving == null) {
+                throw new IllegalStateException("objective is unbounded");
+            }
+
+            Row row = mRows.remove(leaving);
+            row.solveFor(leaving, entering);
+            substitute(entering, row);
+            mRows.put(entering, row);
+        }
+    }
+
+
+    /**
+     * 对偶单纯形,修改编辑变量之后恢复可行
+     */
+    private void dualOptimize() {
+
+        while (!mInfeasible.isEmpty()) {
+
+            Symbol leaving = mInfeasible.remove(mInfeasible.size() - 1);
+            Row row = mRows.get(leaving);
+            if (row == null || row.constant >= 0.0) {
+                continue;
+            }
+
+            Symbol entering = null;
+            double ratio = Double.MAX_VALUE;
+            for (Map.Entry< Symbol, Double > entry : row.cells.entrySet()) {
+                double coefficient = entry.getValue();
+                Symbol symbol = entry.getKey();
+                if (coefficient > 0.0 && symbol.type != Symbol.DUMMY) {
+                    double current = mObjective.coefficientFor(symbol) / coefficient;
+                    if (current < ratio) {
+                        ratio = current;
+                        entering = symbol;
+                    }
+                }
+            }
+            if (entering == null) {
+                throw new IllegalStateException("dual optimize failed");
+            }
+
+            mRows.remove(leaving);
+            row.solveFor(leaving, entering);
+            substitute(entering, row);
+            mRows.put(entering, row);
+        }
+    }
+
+
+    private Symbol getLeavingSymbol(Symbol entering) {
+
+        double ratio = Double.MAX_VALUE;
+        Symbol found = null;
+        for (Map.Entry< Symbol, Row > entry : mRows.entrySet()) {
+            if (entry.getKey().type == Symbol.EXTERNAL) {
+                continue;
+            }
+            Row row = entry.getValue();
+            double coefficient = row.coefficientFor(entering);
+            if (coefficient < 0.0) {
+                double current = -row.constant / coefficient;
+                if (current < ratio) {
+                    ratio = current;
+                    found = entry.getKey();
+                }
+            }
+        }
+        return found;
+    }
+
+
+    /**
+     * 删除约束时,标记符号不是基本变量,找到一行让它离开
+     */
+    private Symbol getMarkerLeavingSymbol(Symbol marker) {
+
+        double ratio1 = Double.MAX_VALUE;
+        double ratio2 = Double.MAX_VALUE;
+        Symbol first = null;
+        Symbol second = null;
+        Symbol third = null;
+
+        for (Map.Entry< Symbol, Row > entry : mRows.entrySet()) {
+            Row row = entry.getValue();
+            double coefficient = row.coefficientFor(marker);
+            if (coefficient == 0.0) {
+                continue;
+            }
+
+            if (entry.getKey().type == Symbol.EXTERNAL) {
+                third = entry.getKey();
+            } else if (coefficient < 0.0) {
+                double ratio = -row.constant / coefficient;
+                if (ratio < ratio1) {
+                    ratio1 = ratio;
+                    first = entry.getKey();
+                }
+            } else {
+                double ratio = row.constant / coefficient;
+                if (ratio < ratio2) {
+                    ratio2 = ratio;
+                    second = entry.getKey();
+                }
+            }
+        }
+
+        if (first != null) {
+            return first;
+        }
+        return second != null ? second : third;
+    }
+
+
+    private void removeConstraintEffects(LinearConstraint constraint, Tag tag) {
+
+        if (tag.marker.type == Symbol.ERROR) {
+            removeMarkerEffects(tag.marker, constraint.strength);
+        }
+        if (tag.other != null && tag.other.type == Symbol.ERROR) {
+            removeMarkerEffects(tag.other, constraint.strength);
+        }
+    }
+
+
+    private void removeMarkerEffects(Symbol marker, double strength) {
+
+        Row row = mRows.get(marker);
+        if (row != null) {
+            mObjective.insert(row, -strength);
+        } else {
+            mObjective.insert(marker, -strength);
+        }
+    }
+
+
+    private Symbol getVariableSymbol(Variable variable) {
+
+        Symbol symbol = mVariables.get(variable);
+        if (symbol == null) {
+            symbol = new Symbol(Symbol.EXTERNAL);
+            mVariables.put(variable, symbol);
+        }
+        return symbol;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.constraintlayout.solver;
+
+/**
+ * 约束的强度,强度高的约束优先满足;{@link #REQUIRED}必须满足,其余的约束在冲突时按强度尽量满足
+ *
+ * @author wuxio
+ */
+public final class Strength {
+
+    public static final double REQUIRED = create(1000.0, 1000.0, 1000.0);
+    public static final double STRONG   = create(1.0, 0.0, 0.0);
+    public static final double MEDIUM   = create(0.0, 1.0, 0.0);
+    public static final double WEAK     = create(0.0, 0.0, 1.0);
+
+
+    private Strength() {
+
+    }
+
+
+    /**
+     * 创建一个强度,每一级的范围是 0~1000,高一级的强度总是大于低一级
+     *
+     * @param strong 强
+     * @param medium 中
+     * @param weak   弱
+     * @return 强度
+     */
+    public static double create(double strong, double medium, double weak) {
+
+        double result = 0.0;
+        result += clamp(strong) * 1000000.0;
+        result += clamp(medium) * 1000.0;
+        result += clamp(weak);
+        return result;
+    }
+
+
+    /**
+     * 限制在 0 ~ {@link #REQUIRED}
+     */
+    static double clip(double strength) {
+
+        return Math.max(0.0, Math.min(REQUIRED, strength));
+    }
+
+
+    private static double clamp(double value) {
+
+        return Math.max(0.0, Math.min(1000.0, value));
+    }
+}
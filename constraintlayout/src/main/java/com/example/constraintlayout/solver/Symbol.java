@@ -0,0 +1,22 @@
+package com.example.constraintlayout.solver;
+
+/**
+ * 单纯形表中的符号,使用对象标识区分
+ *
+ * @author wuxio
+ */
+final class Symbol {
+
+    static final int EXTERNAL = 1;
+    static final int SLACK    = 2;
+    static final int ERROR    = 3;
+    static final int DUMMY    = 4;
+
+    final int type;
+
+
+    Symbol(int type) {
+
+        this.type = type;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.constraintlayout.solver;
+
+/**
+ * 线性约束中的变量,{@link SimplexSolver#updateVariables()}之后读取求解的值
+ *
+ * @author wuxio
+ */
+public final class Variable {
+
+    private final String mName;
+    private       double mValue;
+
+
+    public Variable(String name) {
+
+        mName = name;
+    }
+
+
+    public String getName() {
+
+        return mName;
+    }
+
+
+    public double getValue() {
+
+        return mValue;
+    }
+
+
+    void setValue(double value) {
+
+        mValue = value;
+    }
+
+
+    @Override
+    public String toString() {
+
+        return mName + "=" + mValue;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.constraintlayout.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的耗时直方图,按微秒以2的幂分桶:第0个桶记录小于1us的数据,第i个桶记录[2^(i-1), 2^i)us的数据,
+ * 最后一个桶记录所有更大的数据;可以在任意线程读取,记录时不会创建对象
+ *
+ * @author wuxio
+ */
+public final class LatencyHistogram {
+
+    /**
+     * 桶数量,最后一个桶的下界约为 2^30 us,约18分钟
+     */
+    public static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong      mCount   = new AtomicLong();
+    private final AtomicLong      mTotal   = new AtomicLong();
+    private final AtomicLong      mMax     = new AtomicLong();
+
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时,纳秒
+     */
+    public void record(long nanos) {
+
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        mBuckets.incrementAndGet(bucketOf(nanos / 1000));
+        mCount.incrementAndGet();
+        mTotal.addAndGet(nanos);
+
+        long max;
+        do {
+            max = mMax.get();
+        } while (nanos > max && !mMax.compareAndSet(max, nanos));
+    }
+
+
+    private static int bucketOf(long micros) {
+
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return bucket < BUCKET_COUNT ? bucket : BUCKET_COUNT - 1;
+    }
+
+
+    /**
+     * @param bucket 桶
+     * @return 该桶的上界(不包含),微秒,最后一个桶返回{@link Long#MAX_VALUE}
+     */
+    public static long getBucketUpperBoundMicros(int bucket) {
+
+        if (bucket >= BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        return 1L << bucket;
+    }
+
+
+    /**
+     * @return 该桶记录的数量
+     */
+    public long getBucketCount(int bucket) {
+
+        return mBuckets.get(bucket);
+    }
+
+
+    /**
+     * @return 记录的总数
+     */
+    public long getCount() {
+
+        return mCount.get();
+    }
+
+
+    /**
+     * @return 总耗时,纳秒
+     */
+    public long getTotalNanos() {
+
+        return mTotal.get();
+    }
+
+
+    /**
+     * @return 最大耗时,纳秒
+     */
+    public long getMaxNanos() {
+
+        return mMax.get();
+    }
+
+
+    /**
+     * @return 平均耗时,纳秒
+     */
+    public long getMeanNanos() {
+
+        long count = mCount.get();
+        return count == 0 ? 0 : mTotal.get() / count;
+    }
+
+
+    /**
+     * 估算百分位数,返回该百分位所在桶的上界
+     *
+     * @param percent 百分位,0~100
+     * @return 耗时上界,微秒,没有数据时返回0
+     */
+    public long getPercentileMicros(float percent) {
+
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = (long) Math.ceil(count * Math.min(Math.max(percent, 0f), 100f) / 100f);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= target) {
+                return getBucketUpperBoundMicros(i);
+            }
+        }
+        return getBucketUpperBoundMicros(BUCKET_COUNT - 1);
+    }
+
+
+    /**
+     * @return 各个桶数量的快照
+     */
+    public long[] snapshot() {
+
+        long[] result = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            result[i] = mBuckets.get(i);
+        }
+        return result;
+    }
+
+
+    /**
+     * 清空数据
+     */
+    public void reset() {
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mTotal.set(0);
+        mMax.set(0);
+    }
+}
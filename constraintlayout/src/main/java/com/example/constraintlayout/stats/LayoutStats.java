@@ -0,0 +1,283 @@
+package com.example.constraintlayout.stats;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 布局统计数据,每个{@link com.example.constraintlayout.ConstraintLayout}一份,同时汇总到adapter类对应的一份中,
+ * 计数和耗时直方图都是无锁的,可以在任意线程读取上报
+ *
+ * @author wuxio
+ */
+public final class LayoutStats {
+
+    /**
+     * 按adapter类汇总的统计数据,弱引用adapter类,不会阻止动态加载的类被卸载;只在设置adapter时访问,使用自己加锁
+     */
+    private static final WeakHashMap< Class< ? >, LayoutStats > ADAPTER_STATS = new WeakHashMap<>();
+
+    private final AtomicLong mMeasurePasses       = new AtomicLong();
+    private final AtomicLong mLayoutPasses        = new AtomicLong();
+    private final AtomicLong mChildMeasured       = new AtomicLong();
+    private final AtomicLong mChildMeasureSkipped = new AtomicLong();
+    private final AtomicLong mViewCreated         = new AtomicLong();
+    private final AtomicLong mViewReused          = new AtomicLong();
+    private final AtomicLong mUpdateRelayouts     = new AtomicLong();
+
+    private final LatencyHistogram mMeasureLatency = new LatencyHistogram();
+    private final LatencyHistogram mLayoutLatency  = new LatencyHistogram();
+
+    /**
+     * 汇总数据,记录时同时记录到这里
+     */
+    private volatile LayoutStats mAggregate;
+
+
+    /**
+     * 获取该adapter类的汇总数据
+     *
+     * @param adapterClass adapter类
+     * @return 汇总数据
+     */
+    public static LayoutStats forAdapter(Class< ? > adapterClass) {
+
+        synchronized (ADAPTER_STATS) {
+            LayoutStats stats = ADAPTER_STATS.get(adapterClass);
+            if (stats == null) {
+                stats = new LayoutStats();
+                ADAPTER_STATS.put(adapterClass, stats);
+            }
+            return stats;
+        }
+    }
+
+
+    /**
+     * @return 所有adapter类的汇总数据快照,用于上报
+     */
+    public static Map< Class< ? >, LayoutStats > allAdapters() {
+
+        synchronized (ADAPTER_STATS) {
+            return new HashMap<>(ADAPTER_STATS);
+        }
+    }
+
+
+    /**
+     * 设置汇总数据,之后的记录同时记录到汇总数据
+     *
+     * @param aggregate 汇总数据,null 不汇总
+     */
+    public void setAggregate(LayoutStats aggregate) {
+
+        mAggregate = aggregate == this ? null : aggregate;
+    }
+
+    //============================ 记录 ============================
+
+
+    public void recordMeasurePass(long nanos) {
+
+        mMeasurePasses.incrementAndGet();
+        mMeasureLatency.record(nanos);
+        LayoutStats aggregate = mAggregate;
+        if (aggregate != null) {
+            aggregate.recordMeasurePass(nanos);
+        }
+    }
+
+
+    public void recordLayoutPass(long nanos) {
+
+        mLayoutPasses.incrementAndGet();
+        mLayoutLatency.record(nanos);
+        LayoutStats aggregate = mAggregate;
+        if (aggregate != null) {
+            aggregate.recordLayoutPass(nanos);
+        }
+    }
+
+
+    public void recordChildMeasured() {
+
+        mChildMeasured.incrementAndGet();
+        LayoutStats aggregate = mAggregate;
+        if (aggregate != null) {
+            aggregate.recordChildMeasured();
+        }
+    }
+
+
+    public void recordChildMeasureSkipped() {
+
+        mChildMeasureSkipped.incrementAndGet();
+        LayoutStats aggregate = mAggregate;
+        if (aggregate != null) {
+            aggregate.recordChildMeasureSkipped();
+        }
+    }
+
+
+    public void recordViewCreated() {
+
+        mViewCreated.incrementAndGet();
+        LayoutStats aggregate = mAggregate;
+        if (aggregate != null) {
+            aggregate.recordViewCreated();
+        }
+    }
+
+
+    public void recordViewReused() {
+
+        mViewReused.incrementAndGet();
+        LayoutStats aggregate = mAggregate;
+        if (aggregate != null) {
+            aggregate.recordViewReused();
+        }
+    }
+
+
+    public void recordUpdateRelayout() {
+
+        mUpdateRelayouts.incrementAndGet();
+        LayoutStats aggregate = mAggregate;
+        if (aggregate != null) {
+            aggregate.recordUpdateRelayout();
+        }
+    }
+
+    //============================ 读取 ============================
+
+
+    /**
+     * @return 测量次数
+     */
+    public long getMeasurePasses() {
+
+        return mMeasurePasses.get();
+    }
+
+
+    /**
+     * @return 布局次数
+     */
+    public long getLayoutPasses() {
+
+        return mLayoutPasses.get();
+    }
+
+
+    /**
+     * @return 实际测量子view的次数:约束生成的spec变化或者子view请求了重新布局
+     */
+    public long getChildMeasured() {
+
+        return mChildMeasured.get();
+    }
+
+
+    /**
+     * @return 测量缓存命中次数:约束生成的spec没有变化并且子view没有请求重新布局,{@link android.view.View#measure(int, int)}
+     * 直接使用上次测量的尺寸
+     */
+    public long getChildMeasureSkipped() {
+
+        return mChildMeasureSkipped.get();
+    }
+
+
+    /**
+     * @return 测量缓存命中率,0~1
+     */
+    public float getMeasureCacheHitRate() {
+
+        long skipped = mChildMeasureSkipped.get();
+        long total = skipped + mChildMeasured.get();
+        return total == 0 ? 0 : skipped * 1f / total;
+    }
+
+
+    /**
+     * @return adapter新创建view的次数
+     */
+    public long getViewCreated() {
+
+        return mViewCreated.get();
+    }
+
+
+    /**
+     * @return 复用已经添加的view的次数
+     */
+    public long getViewReused() {
+
+        return mViewReused.get();
+    }
+
+
+    /**
+     * @return 由{@link com.example.constraintlayout.ConstraintLayout#updateConstraint(int, com.example.constraintlayout.Constraint)}
+     * 引起的重新测量布局次数
+     */
+    public long getUpdateRelayouts() {
+
+        return mUpdateRelayouts.get();
+    }
+
+
+    /**
+     * @return 完整测量过程的耗时直方图
+     */
+    public LatencyHistogram getMeasureLatency() {
+
+        return mMeasureLatency;
+    }
+
+
+    /**
+     * @return 完整布局过程的耗时直方图
+     */
+    public LatencyHistogram getLayoutLatency() {
+
+        return mLayoutLatency;
+    }
+
+
+    /**
+     * 清空数据,不会清空汇总数据
+     */
+    public void reset() {
+
+        mMeasurePasses.set(0);
+        mLayoutPasses.set(0);
+        mChildMeasured.set(0);
+        mChildMeasureSkipped.set(0);
+        mViewCreated.set(0);
+        mViewReused.set(0);
+        mUpdateRelayouts.set(0);
+        mMeasureLatency.reset();
+        mLayoutLatency.reset();
+    }
+
+
+    @Override
+    public String toString() {
+
+        return "LayoutStats{" +
+                "measurePasses=" + mMeasurePasses +
+                ", layoutPasses=" + mLayoutPasses +
+                ", childMeasured=" + mChildMeasured +
+                ", childMeasureSkipped=" + mChildMeasureSkipped +
+                ", viewCreated=" + mViewCreated +
+                ", viewReused=" + mViewReused +
+                ", updateRelayouts=" + mUpdateRelayouts +
+                ", measureMeanNanos=" + mMeasureLatency.getMeanNanos() +
+                ", measureP90Micros=" + mMeasureLatency.getPercentileMicros(90) +
+                ", layoutMeanNanos=" + mLayoutLatency.getMeanNanos() +
+                ", layoutP90Micros=" + mLayoutLatency.getPercentileMicros(90) +
+                '}';
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.constraintlayout.trace;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * 使用{@link Trace}输出片段,可以在systrace/perfetto中查看,api 18 以下不输出
+ *
+ * @author wuxio
+ */
+public class AndroidTraceSink implements TraceSink {
+
+    private static final boolean SUPPORT = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+
+    @Override
+    public void beginSection(String sectionName) {
+
+        if (SUPPORT) {
+            Trace.beginSection(sectionName);
+        }
+    }
+
+
+    @Override
+    public void endSection() {
+
+        if (SUPPORT) {
+            Trace.endSection();
+        }
+    }
+}
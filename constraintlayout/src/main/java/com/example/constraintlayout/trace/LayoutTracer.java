@@ -0,0 +1,137 @@
+package com.example.constraintlayout.trace;
+
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+
+/**
+ * 记录每个布局位置的约束生成/测量/布局耗时,片段名称包含adapter类名和布局位置,
+ * 关闭时(默认)只有一次静态字段的读取,不会产生其他开销;开启后片段名称会按布局位置缓存,不会每次都创建
+ *
+ * @author wuxio
+ */
+public final class LayoutTracer {
+
+    /**
+     * 阶段:生成约束
+     */
+    public static final int PHASE_CONSTRAINT = 0;
+    /**
+     * 阶段:测量
+     */
+    public static final int PHASE_MEASURE    = 1;
+    /**
+     * 阶段:布局
+     */
+    public static final int PHASE_LAYOUT     = 2;
+
+    private static final int      PHASE_COUNT = 3;
+    private static final String[] PHASE_NAMES = {"constraint", "measure", "layout"};
+
+    /**
+     * {@link android.os.Trace}片段名称最大长度
+     */
+    private static final int MAX_NAME_LENGTH = 127;
+
+    /**
+     * 是否开启,只在主线程读写
+     */
+    private static boolean   sEnabled;
+    private static TraceSink sSink = new AndroidTraceSink();
+
+    /**
+     * 缓存的片段名称,按照 position * PHASE_COUNT + phase 保存
+     */
+    private Class< ? > mAdapterClass;
+    private String[]   mNames = new String[0];
+
+
+    /**
+     * 开启/关闭trace,可以在运行时随时切换
+     */
+    public static void setEnabled(boolean enabled) {
+
+        sEnabled = enabled;
+    }
+
+
+    public static boolean isEnabled() {
+
+        return sEnabled;
+    }
+
+
+    /**
+     * 设置片段输出,JVM上可以替换为自己的实现
+     *
+     * @param sink 片段输出,null 时恢复为{@link AndroidTraceSink}
+     */
+    public static void setSink(TraceSink sink) {
+
+        sSink = sink == null ? new AndroidTraceSink() : sink;
+    }
+
+
+    public static TraceSink getSink() {
+
+        return sSink;
+    }
+
+
+    /**
+     * 开始一个布局位置的片段,只在{@link #isEnabled()}为true时调用
+     *
+     * @param adapter  adapter
+     * @param position 布局位置
+     * @param phase    阶段{@link #PHASE_CONSTRAINT},{@link #PHASE_MEASURE},{@link #PHASE_LAYOUT}
+     */
+    public void begin(BaseConstraintAdapter adapter, int position, int phase) {
+
+        sSink.beginSection(getSectionName(adapter, position, phase));
+    }
+
+
+    /**
+     * 开始一个不区分布局位置的片段,例如整个测量过程
+     *
+     * @param sectionName 片段名称
+     */
+    public void begin(String sectionName) {
+
+        sSink.beginSection(sectionName);
+    }
+
+
+    /**
+     * 结束最近开始的片段
+     */
+    public void end() {
+
+        sSink.endSection();
+    }
+
+
+    private String getSectionName(BaseConstraintAdapter adapter, int position, int phase) {
+
+        Class< ? > adapterClass = adapter.getClass();
+        if (adapterClass != mAdapterClass) {
+            mAdapterClass = adapterClass;
+            mNames = new String[mNames.length];
+        }
+
+        int index = position * PHASE_COUNT + phase;
+        if (index >= mNames.length) {
+            String[] names = new String[Math.max(index + 1, mNames.length << 1)];
+            System.arraycopy(mNames, 0, names, 0, mNames.length);
+            mNames = names;
+        }
+
+        String name = mNames[index];
+        if (name == null) {
+            name = adapterClass.getName() + "#" + position + ":" + PHASE_NAMES[phase];
+            if (name.length() > MAX_NAME_LENGTH) {
+                name = name.substring(name.length() - MAX_NAME_LENGTH);
+            }
+            mNames[index] = name;
+        }
+        return name;
+    }
+}
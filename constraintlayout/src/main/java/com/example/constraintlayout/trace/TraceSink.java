@@ -0,0 +1,21 @@
+package com.example.constraintlayout.trace;
+
+/**
+ * 接收{@link LayoutTracer}产生的trace片段,设备上默认使用{@link AndroidTraceSink},JVM上可以替换为自己的实现
+ *
+ * @author wuxio
+ */
+public interface TraceSink {
+
+    /**
+     * 开始一个片段,与{@link #endSection()}成对调用
+     *
+     * @param sectionName 片段名称,包含adapter类名,布局位置和阶段
+     */
+    void beginSection(String sectionName);
+
+    /**
+     * 结束最近开始的一个片段
+     */
+    void endSection();
+}
@@ -0,0 +1,172 @@
+package com.example.constraintlayout;
+
+import android.view.View;
+import android.view.View.MeasureSpec;
+
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static android.view.ViewGroup.LayoutParams.MATCH_PARENT;
+import static android.view.ViewGroup.LayoutParams.WRAP_CONTENT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 检查布局没有变化时,重复的测量布局过程(onMeasure/onLayout,包括子view的测量布局)不会创建任何对象
+ *
+ * @author wuxio
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ConstraintAllocationTest {
+
+    private static final int CHILD_COUNT = 200;
+    private static final int PASSES      = 1000;
+
+    private static final int PARENT_WIDTH = 1080;
+
+
+    @Test
+    public void steadyStatePassDoesNotAllocate() {
+
+        com.sun.management.ThreadMXBean bean = allocationBean();
+        ConstraintLayout layout = new ConstraintLayout(RuntimeEnvironment.application);
+        layout.setAdapter(new GridAdapter(layout));
+
+        /* 预热:创建子view,让 jit 编译完成,同时让位置表扩容到需要的大小 */
+
+        for (int i = 0; i < PASSES; i++) {
+            runPass(layout);
+        }
+
+        long threadId = Thread.currentThread().getId();
+
+        /* 读取一次,排除读取本身第一次调用的开销 */
+
+        bean.getThreadAllocatedBytes(threadId);
+        long before = bean.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < PASSES; i++) {
+            runPass(layout);
+        }
+
+        long after = bean.getThreadAllocatedBytes(threadId);
+        long base = bean.getThreadAllocatedBytes(threadId) - after;
+
+        assertEquals(CHILD_COUNT, layout.getChildCount());
+        assertEquals("steady state pass allocated", 0, after - before - base);
+    }
+
+
+    @Test
+    public void illegalCheckDoesNotAllocate() {
+
+        com.sun.management.ThreadMXBean bean = allocationBean();
+        Constraint constraint = new Constraint(new ConstraintLayout(RuntimeEnvironment.application));
+        constraint.init(100, 100, 0, 0);
+
+        for (int i = 0; i < PASSES; i++) {
+            constraint.isLegal(MATCH_PARENT, MATCH_PARENT);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        bean.getThreadAllocatedBytes(threadId);
+        long before = bean.getThreadAllocatedBytes(threadId);
+
+        boolean legal = true;
+        for (int i = 0; i < PASSES; i++) {
+            legal &= constraint.isLegal(MATCH_PARENT, MATCH_PARENT);
+        }
+
+        long after = bean.getThreadAllocatedBytes(threadId);
+        long base = bean.getThreadAllocatedBytes(threadId) - after;
+
+        assertFalse(legal);
+        assertTrue(constraint.isLegal(WRAP_CONTENT, WRAP_CONTENT));
+        assertEquals("illegal check allocated", 0, after - before - base);
+    }
+
+    //============================ 辅助 ============================
+
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+        return allocationBean;
+    }
+
+
+    /**
+     * 一次完整的测量布局过程:宽度固定,高度不限制,强制重新测量自己,子view的spec没有变化
+     */
+    private static void runPass(ConstraintLayout layout) {
+
+        layout.forceLayout();
+        layout.measure(
+                MeasureSpec.makeMeasureSpec(PARENT_WIDTH, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED)
+        );
+        layout.layout(0, 0, layout.getMeasuredWidth(), layout.getMeasuredHeight());
+    }
+
+
+    /**
+     * 第一个位置约束至父布局,之后的位置横向排列,一行放满之后换行
+     */
+    private static class GridAdapter extends BaseConstraintAdapter {
+
+        private static final int SIZE   = 100;
+        private static final int MARGIN = 20;
+
+        private final ConstraintLayout mLayout;
+
+
+        GridAdapter(ConstraintLayout layout) {
+
+            mLayout = layout;
+        }
+
+
+        @Override
+        public View generateViewTo(int position) {
+
+            return new View(mLayout.getContext());
+        }
+
+
+        @Override
+        public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+            if (position == 0) {
+                constraint.leftToLeftOfParent(MARGIN, SIZE).topToTopOfParent(MARGIN, SIZE);
+            } else if (constraint.getViewRight(position - 1) + MARGIN + SIZE > constraint.getParentWidth()) {
+                constraint.copyFrom(position - 1).translateY(SIZE + MARGIN).translateLeftTo(MARGIN);
+            } else {
+                constraint.copyFrom(position - 1).translateX(constraint.getViewWidth(position - 1) + MARGIN);
+            }
+            return constraint;
+        }
+
+
+        @Override
+        public int getChildCount() {
+
+            return CHILD_COUNT;
+        }
+    }
+}
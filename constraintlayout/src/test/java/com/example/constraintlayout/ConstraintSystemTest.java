@@ -0,0 +1,198 @@
+package com.example.constraintlayout;
+
+import android.content.Context;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+
+import com.example.constraintlayout.ConstraintLayout.LayoutParams;
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+import com.example.constraintlayout.solver.LinearConstraint;
+import com.example.constraintlayout.solver.Strength;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 通过{@link ConstraintLayout}测量检查求解模式{@link ConstraintSystem}生成的线性约束:
+ * 引用后面的布局位置时读取的是这次的结果,没有约束的边使用测量之后的尺寸
+ *
+ * @author wuxio
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ConstraintSystemTest {
+
+    private static final int CHILD_WIDTH  = 60;
+    private static final int CHILD_HEIGHT = 40;
+
+
+    @Test
+    public void forwardReferenceReadsCurrentPass() {
+
+        /* 0 使用1的宽度作为左边的偏移,1 在0之后 */
+
+        ConstraintLayout layout = new ConstraintLayout(RuntimeEnvironment.application);
+        layout.setConstraintSystem(new ConstraintSystem());
+        layout.setAdapter(new TestAdapter(layout, ViewGroup.LayoutParams.MATCH_PARENT) {
+
+            @Override
+            public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+                if (position == 0) {
+                    constraint.leftToLeftOfParent(constraint.getViewWidth(1), 50).topToTopOfParent(0, 50);
+                } else {
+                    constraint.leftToLeftOfParent(0, 200).topToTopOfParent(100, 50);
+                }
+                return constraint;
+            }
+        });
+
+        measure(layout, MeasureSpec.makeMeasureSpec(1080, MeasureSpec.EXACTLY));
+
+        assertEquals(200, params(layout, 0).left);
+        assertEquals(250, params(layout, 0).right);
+        assertEquals(200, params(layout, 1).right);
+    }
+
+
+    @Test
+    public void unconstrainedEdgeUsesMeasuredSizeInWrapParent() {
+
+        /* 父布局宽度是wrap_content,0 只约束左边和上边,1 在0的右边 */
+
+        ConstraintLayout layout = new ConstraintLayout(RuntimeEnvironment.application);
+        layout.setConstraintSystem(new ConstraintSystem());
+        layout.setAdapter(new TestAdapter(layout, ViewGroup.LayoutParams.WRAP_CONTENT) {
+
+            @Override
+            public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+                if (position == 0) {
+                    constraint.leftToLeftOfParent(10).topToTopOfParent(10);
+                } else {
+                    constraint.leftToRightOfView(0, 5).topToTopOfParent(10);
+                }
+                return constraint;
+            }
+        });
+
+        measure(layout, MeasureSpec.makeMeasureSpec(1080, MeasureSpec.AT_MOST));
+
+        assertEquals(10, params(layout, 0).left);
+        assertEquals(10 + CHILD_WIDTH, params(layout, 0).right);
+        assertEquals(10 + CHILD_WIDTH + 5, params(layout, 1).left);
+        assertEquals(10 + CHILD_WIDTH + 5 + CHILD_WIDTH, layout.getMeasuredWidth());
+    }
+
+
+    @Test
+    public void baselineFollowsSolvedTarget() {
+
+        /* 0 的baseline对齐1(没有baseline,以底边对齐),1 的竖直位置由添加的约束决定 */
+
+        ConstraintLayout layout = new ConstraintLayout(RuntimeEnvironment.application);
+        ConstraintSystem system = new ConstraintSystem();
+        layout.setConstraintSystem(system);
+        layout.setAdapter(new TestAdapter(layout, ViewGroup.LayoutParams.WRAP_CONTENT) {
+
+            @Override
+            public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+                if (position == 0) {
+                    constraint.leftToLeftOfParent(0).baselineToBaselineOfView(1, 0);
+                } else {
+                    constraint.leftToLeftOfParent(100);
+                }
+                return constraint;
+            }
+        });
+        system.addConstraint(LinearConstraint.equal(system.top(1), 200, Strength.STRONG));
+        system.addConstraint(LinearConstraint.equal(system.bottom(1), 200 + CHILD_HEIGHT, Strength.STRONG));
+
+        measure(layout, MeasureSpec.makeMeasureSpec(1080, MeasureSpec.EXACTLY));
+
+        assertEquals(200, params(layout, 1).top);
+        assertEquals(200 + CHILD_HEIGHT, params(layout, 0).bottom);
+    }
+
+    //============================ 辅助 ============================
+
+
+    private static void measure(ConstraintLayout layout, int widthSpec) {
+
+        layout.measure(widthSpec, MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        layout.layout(0, 0, layout.getMeasuredWidth(), layout.getMeasuredHeight());
+    }
+
+
+    private static LayoutParams params(ConstraintLayout layout, int position) {
+
+        return (LayoutParams) layout.getChildAt(position).getLayoutParams();
+    }
+
+
+    /**
+     * wrap_content 时测量为固定尺寸的view
+     */
+    private static class FixedSizeView extends View {
+
+        FixedSizeView(Context context) {
+
+            super(context);
+        }
+
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+
+            setMeasuredDimension(
+                    resolveSize(CHILD_WIDTH, widthMeasureSpec),
+                    resolveSize(CHILD_HEIGHT, heightMeasureSpec)
+            );
+        }
+    }
+
+
+    private abstract static class TestAdapter extends BaseConstraintAdapter {
+
+        private final ConstraintLayout mLayout;
+        private final int              mLayoutSize;
+
+
+        /**
+         * @param layoutSize 子view布局参数的宽高
+         */
+        TestAdapter(ConstraintLayout layout, int layoutSize) {
+
+            mLayout = layout;
+            mLayoutSize = layoutSize;
+        }
+
+
+        @Override
+        public View generateViewTo(int position) {
+
+            return new FixedSizeView(mLayout.getContext());
+        }
+
+
+        @Override
+        public LayoutParams generateLayoutParamsTo(int position, View view) {
+
+            return new LayoutParams(mLayoutSize, mLayoutSize);
+        }
+
+
+        @Override
+        public int getChildCount() {
+
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.constraintlayout;
+
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+
+import com.example.constraintlayout.ConstraintLayout.LayoutParams;
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 检查{@link ConstraintLayout#VALIDATION_COLLECT}模式下测量之外更新约束时收集的非法约束在更新结束后报告,
+ * 之后的测量再次收集到同一个非法约束时不重复报告
+ *
+ * @author wuxio
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class ConstraintValidationTest {
+
+    private ConstraintLayout mLayout;
+
+    /**
+     * 每次回调报告的布局位置
+     */
+    private List< Integer > mReported;
+
+
+    @Before
+    public void setUp() {
+
+        mLayout = new ConstraintLayout(RuntimeEnvironment.application);
+        mLayout.setValidationMode(ConstraintLayout.VALIDATION_COLLECT);
+        mReported = new ArrayList<>();
+        mLayout.setOnConstraintViolationListener(new ConstraintLayout.OnConstraintViolationListener() {
+
+            @Override
+            public void onConstraintViolation(ConstraintLayout layout, ConstraintViolations violations) {
+
+                for (int i = 0; i < violations.size(); i++) {
+                    mReported.add(violations.getPosition(i));
+                }
+            }
+        });
+    }
+
+
+    @Test
+    public void updateConstraintReportsIllegalConstraint() {
+
+        mLayout.setAdapter(new TestAdapter(false));
+        measure();
+        assertEquals(0, mReported.size());
+
+        /* 更新为右边在左边之前的约束 */
+
+        Constraint constraint = new Constraint(mLayout);
+        constraint.init(100, 0, 50, 40);
+        mLayout.updateConstraint(1, constraint);
+
+        assertEquals(1, mReported.size());
+        assertEquals(1, (int) mReported.get(0));
+    }
+
+
+    @Test
+    public void measureDoesNotRepeatReportedViolation() {
+
+        TestAdapter adapter = new TestAdapter(true);
+        mLayout.setAdapter(adapter);
+        measure();
+        assertEquals(1, mReported.size());
+
+        /* 同一个非法约束在更新和之后的测量中都不是新的 */
+
+        Constraint constraint = new Constraint(mLayout);
+        constraint.init(100, 0, 50, 40);
+        mLayout.updateConstraint(1, constraint);
+        measure();
+        assertEquals(1, mReported.size());
+    }
+
+    //============================ 辅助 ============================
+
+
+    private void measure() {
+
+        mLayout.requestLayout();
+        mLayout.measure(
+                MeasureSpec.makeMeasureSpec(1080, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED)
+        );
+        mLayout.layout(0, 0, mLayout.getMeasuredWidth(), mLayout.getMeasuredHeight());
+    }
+
+
+    /**
+     * 两个布局位置,布局参数是match_parent,检查水平方向
+     */
+    private class TestAdapter extends BaseConstraintAdapter {
+
+        private final boolean mIllegal;
+
+
+        /**
+         * @param illegal true:布局位置1 生成右边在左边之前的约束
+         */
+        TestAdapter(boolean illegal) {
+
+            mIllegal = illegal;
+        }
+
+
+        @Override
+        public View generateViewTo(int position) {
+
+            return new View(mLayout.getContext());
+        }
+
+
+        @Override
+        public LayoutParams generateLayoutParamsTo(int position, View view) {
+
+            return new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
+        }
+
+
+        @Override
+        public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+            if (position == 1 && mIllegal) {
+                constraint.init(100, 0, 50, 40);
+            } else {
+                constraint.leftToLeftOfParent(0, 100).topToTopOfParent(position * 50, 40);
+            }
+            return constraint;
+        }
+
+
+        @Override
+        public int getChildCount() {
+
+            return 2;
+        }
+    }
+}
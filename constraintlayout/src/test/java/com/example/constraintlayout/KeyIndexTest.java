@@ -0,0 +1,163 @@
+package com.example.constraintlayout;
+
+import android.view.View;
+
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 检查key索引在插入删除布局位置之后仍然和逐个查找的结果相同,删除时同一探测序列中后面的key需要前移
+ *
+ * @author wuxio
+ */
+public class KeyIndexTest {
+
+    @Test
+    public void buildFindsEveryKey() {
+
+        List< Long > keys = randomKeys(new Random(1), 100);
+        KeyIndex index = new KeyIndex();
+        index.build(new KeyAdapter(keys), keys.size());
+
+        assertMatches(keys, index);
+        assertEquals(-1, index.get(Long.MIN_VALUE));
+    }
+
+
+    @Test
+    public void insertShiftsLaterPositions() {
+
+        List< Long > keys = randomKeys(new Random(2), 10);
+        KeyIndex index = new KeyIndex();
+        index.build(new KeyAdapter(keys), keys.size());
+
+        keys.add(0, 1000L);
+        index.insertPosition(0, 1000L);
+        keys.add(5, 1001L);
+        index.insertPosition(5, 1001L);
+        keys.add(keys.size(), 1002L);
+        index.insertPosition(keys.size() - 1, 1002L);
+
+        assertMatches(keys, index);
+    }
+
+
+    @Test
+    public void removeKeepsProbeSequencesReachable() {
+
+        /* 表中装满一半,探测序列很长,删除之后后面的key都需要还能找到 */
+
+        Random random = new Random(3);
+        List< Long > keys = randomKeys(random, 200);
+        KeyIndex index = new KeyIndex();
+        index.build(new KeyAdapter(keys), keys.size());
+
+        while (!keys.isEmpty()) {
+            int position = random.nextInt(keys.size());
+            long removed = keys.remove(position);
+            index.removePosition(position);
+
+            assertEquals(-1, index.get(removed));
+            assertMatches(keys, index);
+        }
+    }
+
+
+    @Test
+    public void mixedInsertRemoveMatchesList() {
+
+        Random random = new Random(4);
+        List< Long > keys = randomKeys(random, 20);
+        KeyIndex index = new KeyIndex();
+        index.build(new KeyAdapter(keys), keys.size());
+
+        long next = 1L << 40;
+        for (int i = 0; i < 2000; i++) {
+            if (keys.isEmpty() || random.nextInt(3) > 0) {
+                int position = random.nextInt(keys.size() + 1);
+                keys.add(position, next);
+                index.insertPosition(position, next);
+                next++;
+            } else {
+                int position = random.nextInt(keys.size());
+                keys.remove(position);
+                index.removePosition(position);
+            }
+        }
+        assertMatches(keys, index);
+    }
+
+    //============================ 辅助 ============================
+
+
+    private static void assertMatches(List< Long > keys, KeyIndex index) {
+
+        assertEquals(keys.size(), index.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals("key " + keys.get(i), i, index.get(keys.get(i)));
+        }
+    }
+
+
+    /**
+     * 不同的key,包括连续的小整数和随机的大整数
+     */
+    private static List< Long > randomKeys(Random random, int count) {
+
+        List< Long > keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long key = (i & 1) == 0 ? i : random.nextLong();
+            if (!keys.contains(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+
+    private static class KeyAdapter extends BaseConstraintAdapter {
+
+        private final List< Long > mKeys;
+
+
+        KeyAdapter(List< Long > keys) {
+
+            mKeys = keys;
+        }
+
+
+        @Override
+        public View generateViewTo(int position) {
+
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+            return constraint;
+        }
+
+
+        @Override
+        public int getChildCount() {
+
+            return mKeys.size();
+        }
+
+
+        @Override
+        public long getItemKey(int position) {
+
+            return mKeys.get(position);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.constraintlayout;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 检查{@link LayoutPrecomputer}按引用关系分成的子图,以及并行求解之后写入同一个位置表的结果和当前线程计算相同
+ *
+ * @author wuxio
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class LayoutPrecomputerTest {
+
+    private static final int CHILD_WIDTH  = 60;
+    private static final int CHILD_HEIGHT = 40;
+
+
+    @Test
+    public void independentSectionsAreGrouped() {
+
+        /* 3 个区域,每个区域4个布局位置,每个位置都引用区域中后面的位置 */
+
+        final int sectionSize = 4;
+        LayoutPrecomputer precomputer = new LayoutPrecomputer(new TestAdapter(3 * sectionSize) {
+
+            @Override
+            public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+                int first = position - position % sectionSize;
+                if (position == first + sectionSize - 1) {
+                    constraint.leftToLeftOfParent(0).topToTopOfParent(first * 100);
+                } else {
+                    constraint.leftToRightOfView(position + 1, 10).topToTopOfView(position + 1, 0);
+                }
+                return constraint;
+            }
+        }, new FixedMeasurer());
+
+        RectTable table = precomputer.compute(1080, -1);
+
+        assertEquals(3, precomputer.getGroupCount());
+        for (int first = 0; first < 3 * sectionSize; first += sectionSize) {
+            assertEquals((sectionSize - 1) * (CHILD_WIDTH + 10), table.getLeft(first));
+            assertEquals(first * 100, table.getTop(first));
+        }
+    }
+
+
+    @Test
+    public void groupsJoinedLaterAreMerged() {
+
+        /* 0 -> 1, 2 -> 3 先是两个子图,4 同时引用1和3把它们合并;5 独立 */
+
+        LayoutPrecomputer precomputer = new LayoutPrecomputer(new TestAdapter(6) {
+
+            @Override
+            public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+                switch (position) {
+                    case 0:
+                        constraint.leftToRightOfView(1, 10).topToTopOfParent(0);
+                        break;
+                    case 1:
+                        constraint.leftToLeftOfParent(0).topToTopOfParent(0);
+                        break;
+                    case 2:
+                        constraint.leftToLeftOfParent(200).topToBottomOfView(3, 0);
+                        break;
+                    case 3:
+                        constraint.leftToLeftOfParent(0).topToTopOfParent(100);
+                        break;
+                    case 4:
+                        constraint.leftToRightOfView(1, 5).topToBottomOfView(3, 5);
+                        break;
+                    default:
+                        constraint.leftToLeftOfParent(500).topToTopOfParent(500);
+                        break;
+                }
+                return constraint;
+            }
+        }, new FixedMeasurer());
+
+        RectTable table = precomputer.compute(1080, -1);
+
+        assertEquals(2, precomputer.getGroupCount());
+        assertEquals(CHILD_WIDTH + 10, table.getLeft(0));
+        assertEquals(100 + CHILD_HEIGHT, table.getTop(2));
+        assertEquals(CHILD_WIDTH + 5, table.getLeft(4));
+        assertEquals(100 + CHILD_HEIGHT + 5, table.getTop(4));
+        assertEquals(500 + CHILD_HEIGHT, precomputer.getHeight());
+    }
+
+
+    @Test
+    public void parallelMatchesSequential() {
+
+        /* 4 个区域,每个区域的布局位置多于合并到同一个任务的数量;最后一个位置约束到wrap_content 父布局的右边 */
+
+        final int sectionSize = 100;
+        final int columns = 10;
+        TestAdapter adapter = new TestAdapter(4 * sectionSize) {
+
+            @Override
+            public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+                int first = position - position % sectionSize;
+                int index = position - first;
+                if (index == sectionSize - 1) {
+                    constraint.rightToRightOfParent(0).topToBottomOfView(position - 1, 0);
+                } else if (index == 0) {
+                    constraint.leftToLeftOfParent(0).topToTopOfParent(first * 50);
+                } else if (index % columns == 0) {
+                    constraint.leftToLeftOfParent(0).topToBottomOfView(position - columns, 4);
+                } else {
+                    constraint.leftToRightOfView(position - 1, index).topToTopOfView(position - 1, 1);
+                }
+                return constraint;
+            }
+        };
+
+        LayoutPrecomputer sequential = new LayoutPrecomputer(adapter, new FixedMeasurer());
+        RectTable expected = sequential.compute(-1, -1);
+
+        LayoutPrecomputer parallel = new LayoutPrecomputer(adapter, new FixedMeasurer());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        RectTable actual;
+        try {
+            actual = parallel.compute(-1, -1, pool);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(4, parallel.getGroupCount());
+        assertEquals(sequential.getWidth(), parallel.getWidth());
+        assertEquals(sequential.getHeight(), parallel.getHeight());
+        for (int i = 0; i < adapter.getChildCount(); i++) {
+            assertEquals("left " + i, expected.getLeft(i), actual.getLeft(i));
+            assertEquals("top " + i, expected.getTop(i), actual.getTop(i));
+            assertEquals("right " + i, expected.getRight(i), actual.getRight(i));
+            assertEquals("bottom " + i, expected.getBottom(i), actual.getBottom(i));
+        }
+        assertEquals(sequential.getWidth(), actual.getRight(sectionSize - 1));
+    }
+
+    @Test
+    public void minSizeIsMeasuredExactly() {
+
+        /* 内容尺寸小于最小尺寸,按最小尺寸再测量一次,测量结果和布局尺寸相同 */
+
+        final int minWidth = CHILD_WIDTH * 2;
+        final int[] lastWidthSpec = new int[1];
+        LayoutPrecomputer precomputer = new LayoutPrecomputer(new TestAdapter(1) {
+
+            @Override
+            public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+                constraint.leftToLeftOfParent(0).topToTopOfParent(0).setMinWidth(minWidth);
+                return constraint;
+            }
+        }, new FixedMeasurer() {
+
+            @Override
+            public void measure(int position, int widthSpec, int heightSpec, int[] out) {
+
+                lastWidthSpec[0] = widthSpec;
+                super.measure(position, widthSpec, heightSpec, out);
+            }
+        });
+
+        RectTable table = precomputer.compute(1080, -1);
+
+        assertEquals(View.MeasureSpec.EXACTLY, View.MeasureSpec.getMode(lastWidthSpec[0]));
+        assertEquals(minWidth, View.MeasureSpec.getSize(lastWidthSpec[0]));
+        assertEquals(minWidth, table.getRight(0) - table.getLeft(0));
+        assertEquals(CHILD_HEIGHT, table.getBottom(0) - table.getTop(0));
+    }
+
+    //============================ 辅助 ============================
+
+
+    /**
+     * 内容尺寸固定,布局参数是wrap_content
+     */
+    private static class FixedMeasurer implements Measurer {
+
+        @Override
+        public int getLayoutWidth(int position) {
+
+            return ViewGroup.LayoutParams.WRAP_CONTENT;
+        }
+
+
+        @Override
+        public int getLayoutHeight(int position) {
+
+            return ViewGroup.LayoutParams.WRAP_CONTENT;
+        }
+
+
+        @Override
+        public void measure(int position, int widthSpec, int heightSpec, int[] out) {
+
+            out[0] = View.resolveSize(CHILD_WIDTH, widthSpec);
+            out[1] = View.resolveSize(CHILD_HEIGHT, heightSpec);
+            out[2] = -1;
+        }
+    }
+
+
+    private abstract static class TestAdapter extends BaseConstraintAdapter {
+
+        private final int mCount;
+
+
+        TestAdapter(int count) {
+
+            mCount = count;
+        }
+
+
+        @Override
+        public View generateViewTo(int position) {
+
+            throw new UnsupportedOperationException();
+        }
+
+
+        @Override
+        public int getChildCount() {
+
+            return mCount;
+        }
+    }
+}
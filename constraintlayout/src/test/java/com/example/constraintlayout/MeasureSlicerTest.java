@@ -0,0 +1,206 @@
+package com.example.constraintlayout;
+
+import android.content.Context;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+
+import com.example.constraintlayout.ConstraintLayout.LayoutParams;
+import com.example.constraintlayout.adapter.BaseConstraintAdapter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 检查分帧测量:spec 不变时每次测量继续上一次的进度,父布局交替使用两个spec测量时不会一直重新开始,
+ * 还没有求解的位置不按上一次的布局参数布局
+ *
+ * @author wuxio
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 27)
+public class MeasureSlicerTest {
+
+    private static final int CHILD_COUNT  = 5;
+    private static final int CHILD_HEIGHT = 40;
+
+    /**
+     * 每个view测量的耗时,大于每帧的时间上限,每次分帧测量只能求解一个位置
+     */
+    private static final long MEASURE_NANOS = 3000000L;
+
+    private ConstraintLayout mLayout;
+
+
+    @Before
+    public void setUp() {
+
+        mLayout = new ConstraintLayout(RuntimeEnvironment.application);
+        mLayout.setAdapter(new SlowAdapter(mLayout));
+        mLayout.setMeasureFrameBudget(1);
+    }
+
+
+    @Test
+    public void sameSpecResumesProgress() {
+
+        int widthSpec = MeasureSpec.makeMeasureSpec(1080, MeasureSpec.EXACTLY);
+
+        for (int i = 1; i < CHILD_COUNT; i++) {
+            measure(widthSpec);
+            assertTrue(mLayout.isMeasureInProgress());
+            assertEquals(i * CHILD_HEIGHT, mLayout.getMeasuredHeight());
+        }
+
+        measure(widthSpec);
+        assertFalse(mLayout.isMeasureInProgress());
+        assertEquals(CHILD_COUNT * CHILD_HEIGHT, mLayout.getMeasuredHeight());
+    }
+
+
+    @Test
+    public void alternatingSpecsFinish() {
+
+        /* 和LinearLayout使用weight时相同:每次布局先用AT_MOST测量,之后用EXACTLY再测量一次 */
+
+        int atMost = MeasureSpec.makeMeasureSpec(1080, MeasureSpec.AT_MOST);
+        int exactly = MeasureSpec.makeMeasureSpec(720, MeasureSpec.EXACTLY);
+
+        measure(atMost);
+        assertTrue(mLayout.isMeasureInProgress());
+
+        measure(exactly);
+        assertFalse(mLayout.isMeasureInProgress());
+        assertEquals(720, mLayout.getMeasuredWidth());
+        assertEquals(CHILD_COUNT * CHILD_HEIGHT, mLayout.getMeasuredHeight());
+
+        /* 之后的布局同样在第二次测量时完成 */
+
+        for (int i = 0; i < 3; i++) {
+            measure(atMost);
+            measure(exactly);
+            assertFalse(mLayout.isMeasureInProgress());
+            assertEquals(CHILD_COUNT * CHILD_HEIGHT, mLayout.getMeasuredHeight());
+        }
+    }
+
+    @Test
+    public void unsolvedChildrenAreNotLaidOut() {
+
+        int widthSpec = MeasureSpec.makeMeasureSpec(1080, MeasureSpec.EXACTLY);
+        for (int i = 0; i < CHILD_COUNT; i++) {
+            measure(widthSpec);
+        }
+        assertFalse(mLayout.isMeasureInProgress());
+
+        /* 新的一次分帧测量,还没有求解的位置不使用上一次的布局参数 */
+
+        measure(widthSpec);
+        assertTrue(mLayout.isMeasureInProgress());
+        assertEquals(CHILD_HEIGHT, mLayout.getChildAt(0).getHeight());
+        for (int i = 1; i < CHILD_COUNT; i++) {
+            assertEquals(0, mLayout.getChildAt(i).getWidth());
+            assertEquals(0, mLayout.getChildAt(i).getHeight());
+        }
+
+        for (int i = 1; i < CHILD_COUNT; i++) {
+            measure(widthSpec);
+        }
+        assertFalse(mLayout.isMeasureInProgress());
+        for (int i = 0; i < CHILD_COUNT; i++) {
+            assertEquals(i * CHILD_HEIGHT, mLayout.getChildAt(i).getTop());
+            assertEquals(CHILD_HEIGHT, mLayout.getChildAt(i).getHeight());
+        }
+    }
+
+    //============================ 辅助 ============================
+
+
+    /**
+     * 和一帧中的布局相同:先请求布局,否则相同的spec会使用缓存的测量结果
+     */
+    private void measure(int widthSpec) {
+
+        mLayout.requestLayout();
+        mLayout.measure(widthSpec, MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+        mLayout.layout(0, 0, mLayout.getMeasuredWidth(), mLayout.getMeasuredHeight());
+    }
+
+
+    /**
+     * 测量很慢的view
+     */
+    private static class SlowView extends View {
+
+        SlowView(Context context) {
+
+            super(context);
+        }
+
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+
+            long end = System.nanoTime() + MEASURE_NANOS;
+            while (System.nanoTime() < end) {
+                /* 分帧测量使用的是真实时间 */
+            }
+            setMeasuredDimension(
+                    resolveSize(60, widthMeasureSpec),
+                    resolveSize(CHILD_HEIGHT, heightMeasureSpec)
+            );
+        }
+    }
+
+
+    /**
+     * 竖直排列的布局位置
+     */
+    private static class SlowAdapter extends BaseConstraintAdapter {
+
+        private final ConstraintLayout mLayout;
+
+
+        SlowAdapter(ConstraintLayout layout) {
+
+            mLayout = layout;
+        }
+
+
+        @Override
+        public View generateViewTo(int position) {
+
+            return new SlowView(mLayout.getContext());
+        }
+
+
+        @Override
+        public LayoutParams generateLayoutParamsTo(int position, View view) {
+
+            return new LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        }
+
+
+        @Override
+        public Constraint generateConstraintTo(int position, Constraint constraint, View view) {
+
+            constraint.leftToLeftOfParent(0).topToTopOfParent(position * CHILD_HEIGHT);
+            return constraint;
+        }
+
+
+        @Override
+        public int getChildCount() {
+
+            return CHILD_COUNT;
+        }
+    }
+}
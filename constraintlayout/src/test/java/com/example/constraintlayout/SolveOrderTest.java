@@ -0,0 +1,200 @@
+package com.example.constraintlayout;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 使用一个引用关系图模拟{@link ConstraintLayout}的求解过程,检查引用后面的布局位置,循环引用,以及部分更新
+ *
+ * @author wuxio
+ */
+public class SolveOrderTest {
+
+    private SolveOrder mOrder;
+
+    /**
+     * 每个布局位置引用的位置
+     */
+    private int[][] mReferences;
+
+    /**
+     * 一次测量中完成求解的顺序,按顺序求解时的最大深度,以及发现的循环引用
+     */
+    private List< Integer > mSolved;
+    private int             mMaxOrderedDepth;
+    private List< String >  mCycles;
+
+
+    @Before
+    public void setUp() {
+
+        mOrder = new SolveOrder();
+        mSolved = new ArrayList<>();
+        mCycles = new ArrayList<>();
+    }
+
+
+    @Test
+    public void forwardReferenceIsSolvedFirst() {
+
+        /* 0 -> 2 -> 3, 1 没有引用 */
+
+        mReferences = new int[][]{{2}, {}, {3}, {}};
+
+        runPass();
+        assertEquals(list(3, 2, 0, 1), mSolved);
+        assertEquals(2, mMaxOrderedDepth);
+
+        /* 之后的测量直接按拓扑顺序求解,不需要递归 */
+
+        runPass();
+        assertEquals(list(3, 2, 0, 1), mSolved);
+        assertEquals(0, mMaxOrderedDepth);
+        assertTrue(mCycles.isEmpty());
+    }
+
+
+    @Test
+    public void cycleIsDetected() {
+
+        /* 0 -> 1 -> 2 -> 0 */
+
+        mReferences = new int[][]{{1}, {2}, {0}};
+
+        runPass();
+        assertEquals(list("0 -> 1 -> 2 -> 0"), mCycles);
+        assertEquals(list(2, 1, 0), mSolved);
+    }
+
+
+    @Test
+    public void abortDropsTheOrder() {
+
+        mReferences = new int[][]{{1}, {}};
+        runPass();
+        assertEquals(1, mOrder.positionAt(0, 2));
+
+        mOrder.begin(2);
+        mOrder.abort();
+        assertFalse(mOrder.isActive());
+        assertEquals(0, mOrder.positionAt(0, 2));
+    }
+
+
+    @Test
+    public void countChangeDropsTheOrder() {
+
+        mReferences = new int[][]{{1}, {}};
+        runPass();
+
+        mReferences = new int[][]{{1}, {}, {}};
+        mOrder.begin(3);
+        assertEquals(0, mOrder.positionAt(0, 3));
+        mOrder.abort();
+    }
+
+
+    @Test
+    public void updateOnlySolvesMarkedPositions() {
+
+        /* 1 -> 3 -> 0,0 没有更新,读取当前位置 */
+
+        mReferences = new int[][]{{}, {3}, {}, {0}};
+        runPass();
+        int[] order = new int[4];
+        for (int i = 0; i < 4; i++) {
+            order[i] = mOrder.positionAt(i, 4);
+        }
+
+        mSolved.clear();
+        mOrder.beginUpdate(4);
+        mOrder.markUnsolved(1);
+        mOrder.markUnsolved(3);
+        assertTrue(mOrder.isSolved(0));
+        assertTrue(mOrder.isSolved(2));
+
+        for (int position : new int[]{1, 3}) {
+            if (!mOrder.isSolved(position)) {
+                solve(position);
+            }
+        }
+        mOrder.endUpdate();
+
+        assertEquals(list(3, 1), mSolved);
+        assertFalse(mOrder.isActive());
+
+        /* 测量的求解顺序不变 */
+
+        int[] after = new int[4];
+        for (int i = 0; i < 4; i++) {
+            after[i] = mOrder.positionAt(i, 4);
+        }
+        assertArrayEquals(order, after);
+    }
+
+    //============================ 模拟求解 ============================
+
+
+    private void runPass() {
+
+        mSolved.clear();
+        mMaxOrderedDepth = 0;
+
+        int count = mReferences.length;
+        mOrder.begin(count);
+        for (int i = 0; i < count; i++) {
+            int position = mOrder.positionAt(i, count);
+            if (!mOrder.isSolved(position)) {
+                solve(position);
+            }
+        }
+        mOrder.end();
+    }
+
+
+    /**
+     * 和{@link ConstraintLayout}相同:求解中读取还没有求解的位置时先求解它
+     */
+    private void solve(int position) {
+
+        mOrder.push(position);
+        for (int reference : mReferences[position]) {
+            read(reference);
+        }
+        mOrder.pop(position);
+        mSolved.add(position);
+    }
+
+
+    private void read(int position) {
+
+        if (mOrder.isSolved(position)) {
+            return;
+        }
+        if (mOrder.isSolving(position)) {
+            mCycles.add(mOrder.describeCycle(position));
+            return;
+        }
+        mMaxOrderedDepth = Math.max(mMaxOrderedDepth, mOrder.depth());
+        solve(position);
+    }
+
+
+    @SafeVarargs
+    private static < T > List< T > list(T... values) {
+
+        List< T > list = new ArrayList<>();
+        for (T value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
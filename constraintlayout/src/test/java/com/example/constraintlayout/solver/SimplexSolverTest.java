@@ -0,0 +1,83 @@
+package com.example.constraintlayout.solver;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 使用一个可以拖动的分隔条检查求解器:两个面板之间的分隔条限制在 [50, 450] 之间
+ *
+ * @author wuxio
+ */
+public class SimplexSolverTest {
+
+    private static final double DELTA = 1.0e-6;
+
+    private SimplexSolver mSolver;
+    private Variable      mLeftRight;
+    private Variable      mRightLeft;
+    private Variable      mDivider;
+
+
+    @Before
+    public void setUp() {
+
+        mSolver = new SimplexSolver();
+
+        Variable leftLeft = new Variable("leftLeft");
+        Variable rightRight = new Variable("rightRight");
+        mLeftRight = new Variable("leftRight");
+        mRightLeft = new Variable("rightLeft");
+        mDivider = new Variable("divider");
+
+        mSolver.addConstraint(LinearConstraint.equal(leftLeft, 0, Strength.REQUIRED));
+        mSolver.addConstraint(LinearConstraint.equal(rightRight, 500, Strength.REQUIRED));
+        mSolver.addConstraint(LinearConstraint.equal(mLeftRight, mDivider, 0, Strength.REQUIRED));
+        mSolver.addConstraint(LinearConstraint.equal(mRightLeft, mDivider, 10, Strength.REQUIRED));
+        mSolver.addConstraint(LinearConstraint.greaterOrEqual(mDivider, leftLeft, 50, Strength.REQUIRED));
+        mSolver.addConstraint(LinearConstraint.lessOrEqual(mDivider, rightRight, -50, Strength.REQUIRED));
+        mSolver.addConstraint(LinearConstraint.equal(mDivider, 200, Strength.WEAK));
+        mSolver.updateVariables();
+    }
+
+
+    @Test
+    public void weakConstraintHoldsWithoutEdits() {
+
+        assertEquals(200, mDivider.getValue(), DELTA);
+        assertEquals(200, mLeftRight.getValue(), DELTA);
+        assertEquals(210, mRightLeft.getValue(), DELTA);
+    }
+
+
+    @Test
+    public void suggestedValueIsClampedByRequiredInequalities() {
+
+        mSolver.addEditVariable(mDivider, Strength.STRONG);
+
+        mSolver.suggestValue(mDivider, 300);
+        mSolver.updateVariables();
+        assertEquals(300, mDivider.getValue(), DELTA);
+        assertEquals(310, mRightLeft.getValue(), DELTA);
+
+        mSolver.suggestValue(mDivider, 600);
+        mSolver.updateVariables();
+        assertEquals(450, mDivider.getValue(), DELTA);
+
+        mSolver.suggestValue(mDivider, -10);
+        mSolver.updateVariables();
+        assertEquals(50, mDivider.getValue(), DELTA);
+
+        mSolver.removeEditVariable(mDivider);
+        mSolver.updateVariables();
+        assertEquals(200, mDivider.getValue(), DELTA);
+    }
+
+
+    @Test(expected = IllegalStateException.class)
+    public void conflictingRequiredConstraintThrows() {
+
+        mSolver.addConstraint(LinearConstraint.equal(mDivider, 20, Strength.REQUIRED));
+    }
+}